@@ -0,0 +1,87 @@
+package net.osmand;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+
+/**
+ * Matching of query against street / poi like names by {@link CollatorStringMatcher} and
+ * {@link CollationKeyStringMatcher}. Names are repeated as in search where same names are checked by
+ * several words of phrase, so cache of name keys is used as in application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CollatorStringMatcherBenchmark {
+
+	private static final String[] WORDS = { "Hauptstraße", "Rue", "de", "la", "République", "Saint-Étienne", "Avenue",
+			"Главная", "улица", "Ленина", "Plac", "Świętego", "Ducha", "Calle", "Mayor", "Köln", "Straße", "Église",
+			"Station", "Park", "Ærøskøbing", "Vej", "Piazza", "Garibaldi", "Οδός", "Αθηνών", "12", "B" };
+
+	@Param({ "CHECK_STARTS_FROM_SPACE", "CHECK_EQUALS_FROM_SPACE", "CHECK_ONLY_STARTS_WITH" })
+	public StringMatcherMode mode;
+
+	@Param({ "str", "ул", "saint e" })
+	public String query;
+
+	private List<String> names;
+	private StringMatcher collatorMatcher;
+	private StringMatcher keyMatcher;
+
+	@Setup
+	public void setup() {
+		Random r = new Random(1);
+		names = new ArrayList<String>();
+		for (int i = 0; i < 1000; i++) {
+			StringBuilder sb = new StringBuilder();
+			int words = 1 + r.nextInt(4);
+			for (int j = 0; j < words; j++) {
+				if (j > 0) {
+					sb.append(' ');
+				}
+				sb.append(WORDS[r.nextInt(WORDS.length)]);
+			}
+			names.add(sb.toString());
+		}
+		collatorMatcher = new CollatorStringMatcher(query, mode);
+		keyMatcher = new CollationKeyStringMatcher(query, mode);
+	}
+
+	@Benchmark
+	public int collatorMatcher() {
+		return match(collatorMatcher);
+	}
+
+	@Benchmark
+	public int collationKeyMatcher() {
+		return match(keyMatcher);
+	}
+
+	private int match(StringMatcher matcher) {
+		int matched = 0;
+		for (String name : names) {
+			if (matcher.matches(name)) {
+				matched++;
+			}
+		}
+		return matched;
+	}
+}
@@ -0,0 +1,78 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.TestObfWriter.TestRoad;
+
+/**
+ * Loading of one routing block with lazy objects (id and types only) and with decoded objects.
+ * Allocation per operation is reported by gc profiler (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteDataLoadingBenchmark {
+
+	private static final int BASE = 1 << 30;
+
+	@Param({ "true", "false" })
+	public boolean lazy;
+
+	private File file;
+	private BinaryMapIndexReader reader;
+	private RouteSubregion subregion;
+
+	@Setup
+	public void setUp() throws IOException {
+		List<TestRoad> roads = new ArrayList<TestRoad>();
+		for (int i = 0; i < 1000; i++) {
+			int[] coordinates = new int[2 * 20];
+			for (int k = 0; k < 20; k++) {
+				coordinates[2 * k] = BASE + (i % 40) * 8192 + k * 256;
+				coordinates[2 * k + 1] = BASE + (i / 40) * 8192 + k * 128;
+			}
+			TestRoad road = new TestRoad(i * 2, new int[] { 1, 2 }, coordinates);
+			road.names.put(3, "Street " + i);
+			roads.add(road);
+		}
+		TestObfWriter writer = new TestObfWriter();
+		writer.addRoutingIndex("benchmark", new String[][] { { "highway", "residential" }, { "oneway", "yes" },
+				{ "name", "" } }, roads);
+		file = writer.write(File.createTempFile("route", ".obf"));
+		reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+		subregion = reader.getRoutingIndexes().get(0).getSubregions().get(0);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		reader.close();
+		file.delete();
+	}
+
+	@Benchmark
+	public List<RouteDataObject> loadBlock() throws IOException {
+		return reader.loadRouteIndexData(subregion, lazy);
+	}
+}
@@ -0,0 +1,169 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+
+import net.osmand.LocationsHolder;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RoutePlannerFrontEnd.GpxPoint;
+import net.osmand.router.RoutePlannerFrontEnd.GpxRouteApproximation;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+
+/**
+ * Routing speed baseline on test maps and routes of RouteTestingTest (test_routing.json).
+ * Each invocation builds new routing context, so time includes loading of tiles as in application.
+ * Run with gradle jmh (gc profiler reports allocation rate), visited segments and loaded tiles
+ * are reported as secondary results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoutingBenchmark {
+
+	private static final String RESOURCES = System.getProperty("osmand.test.resources", "src/test/resources/");
+
+	// index of not ignored test entry (taken by modulo of entries count)
+	@Param({ "0", "1", "2" })
+	public int entry;
+
+	private TestEntry te;
+	private BinaryMapIndexReader[] readers;
+	private RoutingConfiguration config;
+	private final RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+	private RoutingContext preparedCtx;
+	private List<RouteSegmentResult> preparedRoute;
+	private List<LatLon> track;
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class SearchCounters {
+		public long visitedSegments;
+		public long loadedTiles;
+
+		@Setup(Level.Iteration)
+		public void clean() {
+			visitedSegments = 0;
+			loadedTiles = 0;
+		}
+
+		void add(RoutingContext ctx) {
+			visitedSegments += ctx.getVisitedSegments();
+			loadedTiles += ctx.getLoadedTiles();
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		List<TestEntry> entries = new ArrayList<TestEntry>();
+		Reader reader = new InputStreamReader(RoutingBenchmark.class.getResourceAsStream("/test_routing.json"));
+		for (TestEntry t : new Gson().fromJson(reader, TestEntry[].class)) {
+			if (!t.isIgnore() && t.getExpectedResults() != null) {
+				entries.add(t);
+			}
+		}
+		reader.close();
+		te = entries.get(entry % entries.size());
+		Map<String, String> params = te.getParams();
+		File fl = new File(RESOURCES, "Routing_test.obf");
+		if (params.containsKey("map")) {
+			File fl1 = new File(RESOURCES, params.get("map"));
+			readers = new BinaryMapIndexReader[] { new BinaryMapIndexReader(new RandomAccessFile(fl1, "r"), fl1),
+					new BinaryMapIndexReader(new RandomAccessFile(fl, "r"), fl) };
+		} else {
+			readers = new BinaryMapIndexReader[] { new BinaryMapIndexReader(new RandomAccessFile(fl, "r"), fl) };
+		}
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		config = RoutingConfiguration.getDefault().build(params.containsKey("vehicle") ? params.get("vehicle") : "car",
+				memoryLimits, params);
+		if (params.containsKey("heuristicCoefficient")) {
+			config.heuristicCoefficient = Float.parseFloat(params.get("heuristicCoefficient"));
+		}
+		preparedCtx = createContext();
+		preparedRoute = fe.searchRoute(preparedCtx, te.getStartPoint(), te.getEndPoint(), te.getTransitPoint());
+		track = new ArrayList<LatLon>();
+		for (RouteSegmentResult r : preparedRoute) {
+			track.add(r.getStartPoint());
+		}
+		if (!preparedRoute.isEmpty()) {
+			track.add(preparedRoute.get(preparedRoute.size() - 1).getEndPoint());
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		for (BinaryMapIndexReader r : readers) {
+			r.close();
+		}
+	}
+
+	private RoutingContext createContext() {
+		RoutingContext ctx = fe.buildRoutingContext(config, null, readers, RouteCalculationMode.NORMAL);
+		ctx.leftSideNavigation = false;
+		ctx.calculationProgress = new RouteCalculationProgress();
+		return ctx;
+	}
+
+	@Benchmark
+	public List<RouteSegmentResult> searchRoute(SearchCounters counters) throws Exception {
+		RoutingContext ctx = createContext();
+		List<RouteSegmentResult> res = fe.searchRoute(ctx, te.getStartPoint(), te.getEndPoint(), te.getTransitPoint());
+		counters.add(ctx);
+		return res;
+	}
+
+	@Benchmark
+	public RouteSegmentPoint findRouteSegment(SearchCounters counters) throws IOException {
+		RoutingContext ctx = createContext();
+		LatLon start = te.getStartPoint();
+		RouteSegmentPoint pnt = fe.findRouteSegment(start.getLatitude(), start.getLongitude(), ctx, null);
+		counters.add(ctx);
+		return pnt;
+	}
+
+	@Benchmark
+	public List<RouteSegmentResult> prepareTurnResults() {
+		new RouteResultPreparation().prepareTurnResults(preparedCtx, preparedRoute);
+		return preparedRoute;
+	}
+
+	@Benchmark
+	public GpxRouteApproximation searchGpxRoute(SearchCounters counters) throws Exception {
+		RoutingContext ctx = createContext();
+		GpxRouteApproximation gctx = new GpxRouteApproximation(ctx);
+		List<GpxPoint> points = fe.generateGpxPoints(gctx, new LocationsHolder(track));
+		GpxRouteApproximation res = fe.searchGpxRoute(gctx, points, null);
+		counters.add(ctx);
+		return res;
+	}
+}
@@ -33,6 +33,7 @@ package com.google.protobuf;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -68,6 +69,35 @@ public final class CodedInputStream {
     return new CodedInputStream(raf);
   }
 
+  /**
+   * Create a new CodedInputStream reading memory mapped file split in chunks.
+   * Chunks are shared (not modified) and all chunks except last one should have chunkSize bytes.
+   */
+  public static CodedInputStream newInstance(ByteBuffer[] chunks, int chunkSize, long length) {
+    return new CodedInputStream(chunks, chunkSize, length);
+  }
+
+  /**
+   * Create a new CodedInputStream reading file by blocks of block source (e.g. shared cache of blocks).
+   * Blocks returned by source are not modified and could be shared by streams.
+   */
+  public static CodedInputStream newInstance(RandomAccessFile raf, BlockSource blocks) {
+    return new CodedInputStream(raf, blocks);
+  }
+
+  /**
+   * Source of aligned blocks of file, all blocks except last one should have getBlockSize() bytes.
+   */
+  public interface BlockSource {
+
+    int getBlockSize();
+
+    /**
+     * @return block or null if block is after end of file
+     */
+    byte[] getBlock(RandomAccessFile raf, int block) throws IOException;
+  }
+
   /**
    * Create a new CodedInputStream wrapping the given byte array slice.
    */
@@ -222,7 +252,7 @@ public final class CodedInputStream {
   /** Read a {@code string} field value from the stream. */
   public String readString() throws IOException {
     final int size = readRawVarint32();
-    if (size <= (bufferSize - bufferPos) && size > 0) {
+    if (size <= (bufferSize - bufferPos) && size > 0 && chunks == null) {
       // Fast path:  We already have the bytes in a contiguous buffer, so
       //   just copy directly from it.
       final String result = new String(buffer, bufferPos, size, "UTF-8");
@@ -324,7 +354,7 @@ public final class CodedInputStream {
     final int size = readRawVarint32();
     if (size == 0) {
       return ByteString.EMPTY;
-    } else if (size <= (bufferSize - bufferPos) && size > 0) {
+    } else if (size <= (bufferSize - bufferPos) && size > 0 && chunks == null) {
       // Fast path:  We already have the bytes in a contiguous buffer, so
       //   just copy directly from it.
       final ByteString result = ByteString.copyFrom(buffer, bufferPos, size);
@@ -537,13 +567,22 @@ public final class CodedInputStream {
 
   // -----------------------------------------------------------------
 
-  private final byte[] buffer;
+  private byte[] buffer;
   private RandomAccessFile raf;
   private int bufferSize;
   private int bufferSizeAfterLimit;
   private int bufferPos;
   private final InputStream input;
   private int lastTag;
+  // osmand change: memory mapped file, window of current chunk is [totalBytesRetired, totalBytesRetired + bufferSize)
+  private ByteBuffer[] chunks;
+  private ByteBuffer[] chunkViews;
+  private ByteBuffer chunk;
+  private int chunkSize;
+  private long mappedLength;
+  // osmand change: blocks of file, window of current block is [totalBytesRetired, totalBytesRetired + bufferSize)
+  private BlockSource blocks;
+  private RandomAccessFile blocksRaf;
 
   /**
    * The total number of bytes read before the current buffer.  The total
@@ -586,6 +625,30 @@ public final class CodedInputStream {
 		input = null;
 	}
 
+  // osmand change
+	private CodedInputStream(ByteBuffer[] chunks, int chunkSize, long length) {
+		buffer = null;
+		this.bufferSize = 0;
+		bufferPos = 0;
+		totalBytesRetired = 0;
+		this.chunks = chunks;
+		this.chunkViews = new ByteBuffer[chunks.length];
+		this.chunkSize = chunkSize;
+		this.mappedLength = length;
+		input = null;
+	}
+
+  // osmand change
+	private CodedInputStream(RandomAccessFile raf, BlockSource blocks) {
+		buffer = null;
+		this.bufferSize = 0;
+		bufferPos = 0;
+		totalBytesRetired = 0;
+		this.blocks = blocks;
+		this.blocksRaf = raf;
+		input = null;
+	}
+
   private CodedInputStream(final InputStream input) {
     buffer = new byte[BUFFER_SIZE];
     bufferSize = 0;
@@ -751,7 +814,43 @@ public final class CodedInputStream {
     totalBytesRetired += bufferSize;
 
     bufferPos = 0;
-    if (raf != null) {
+    if (chunks != null) {
+    	// osmand change: switch window to the chunk containing position, no copy
+    	long position = totalBytesRetired;
+    	if (position >= mappedLength) {
+    		bufferSize = -1;
+    	} else {
+    		int ind = (int) (position / chunkSize);
+    		chunk = chunkViews[ind];
+    		if (chunk == null) {
+    			// duplicate to keep position of bulk reads per stream
+    			chunk = chunks[ind].duplicate();
+    			chunkViews[ind] = chunk;
+    		}
+    		long chunkStart = (long) ind * chunkSize;
+    		totalBytesRetired = (int) chunkStart;
+    		bufferPos = (int) (position - chunkStart);
+    		// positions are int, so only first 2 GB are addressable
+    		bufferSize = (int) Math.min(chunk.limit(), Integer.MAX_VALUE - chunkStart);
+    		if (bufferSize <= bufferPos) {
+    			bufferSize = -1;
+    		}
+    	}
+    } else if (blocks != null) {
+    	// osmand change: switch window to the block containing position, no copy
+    	int position = totalBytesRetired;
+    	int blockSize = blocks.getBlockSize();
+    	int ind = position / blockSize;
+    	byte[] block = blocks.getBlock(blocksRaf, ind);
+    	if (block == null || block.length <= position - ind * blockSize) {
+    		bufferSize = -1;
+    	} else {
+    		buffer = block;
+    		totalBytesRetired = ind * blockSize;
+    		bufferPos = position - totalBytesRetired;
+    		bufferSize = block.length;
+    	}
+    } else if (raf != null) {
     	// osmand change
      totalBytesRetired = (int) raf.getFilePointer();
     	long remain = raf.length() - raf.getFilePointer();
@@ -797,6 +896,9 @@ public final class CodedInputStream {
     if (bufferPos == bufferSize) {
       refillBuffer(true);
     }
+    if (chunks != null) {
+      return chunk.get(bufferPos++);
+    }
     return buffer[bufferPos++];
   }
 
@@ -818,6 +920,14 @@ public final class CodedInputStream {
       throw InvalidProtocolBufferException.truncatedMessage();
     }
 
+    if (chunks != null) {
+      // osmand change
+      return readMappedBytes(size);
+    } else if (blocks != null) {
+      // osmand change
+      return readBlockBytes(size);
+    }
+
     if (size <= bufferSize - bufferPos) {
       // We have all the bytes we need already.
       final byte[] bytes = new byte[size];
@@ -914,6 +1024,44 @@ public final class CodedInputStream {
     }
   }
 
+  private byte[] readMappedBytes(final int size) throws IOException {
+    if ((long) totalBytesRetired + bufferPos + size > mappedLength) {
+      throw InvalidProtocolBufferException.truncatedMessage();
+    }
+    final byte[] bytes = new byte[size];
+    int pos = 0;
+    while (true) {
+      int n = Math.min(size - pos, bufferSize - bufferPos);
+      if (n > 0) {
+        chunk.position(bufferPos);
+        chunk.get(bytes, pos, n);
+        bufferPos += n;
+        pos += n;
+      }
+      if (pos == size) {
+        return bytes;
+      }
+      refillBuffer(true);
+    }
+  }
+
+  private byte[] readBlockBytes(final int size) throws IOException {
+    final byte[] bytes = new byte[size];
+    int pos = 0;
+    while (true) {
+      int n = Math.min(size - pos, bufferSize - bufferPos);
+      if (n > 0) {
+        System.arraycopy(buffer, bufferPos, bytes, pos, n);
+        bufferPos += n;
+        pos += n;
+      }
+      if (pos == size) {
+        return bytes;
+      }
+      refillBuffer(true);
+    }
+  }
+
   /**
    * Reads and discards {@code size} bytes.
    *
@@ -941,7 +1089,23 @@ public final class CodedInputStream {
       bufferPos = bufferSize;
 
       // osmand change
-      if(raf != null) {
+      if (chunks != null) {
+        long position = (long) totalBytesRetired + bufferSize + (size - pos);
+        if (position > mappedLength) {
+          throw InvalidProtocolBufferException.truncatedMessage();
+        }
+        // window will be switched on next read
+        totalBytesRetired = (int) position;
+        bufferSizeAfterLimit = 0;
+        bufferPos = 0;
+        bufferSize = 0;
+      } else if (blocks != null) {
+        // window will be switched on next read
+        totalBytesRetired = totalBytesRetired + bufferSize + (size - pos);
+        bufferSizeAfterLimit = 0;
+        bufferPos = 0;
+        bufferSize = 0;
+      } else if(raf != null) {
          bufferPos = 0;
          bufferSize = 0;
       	 int n = raf.skipBytes(size - pos);
@@ -975,7 +1139,9 @@ public final class CodedInputStream {
 	  } else {
 		  totalBytesRetired = (int) pointer;
 		  bufferSizeAfterLimit = 0;
-		  raf.seek(pointer);
+		  if (raf != null) {
+			  raf.seek(pointer);
+		  }
 		  bufferPos = 0;
 		  bufferSize = 0;
 	  }
@@ -0,0 +1,606 @@
+package net.osmand;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.apache.commons.logging.Log;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+import net.osmand.GPXUtilities.ColumnarPoints;
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+import net.osmand.binary.MappedIndexFile;
+import net.osmand.data.QuadRect;
+
+/**
+ * Binary container of gpx file used as cache beside gpx files. Track points are stored in chunks
+ * (coordinates, times and elevations are delta encoded varints) with index of chunks by bbox and time at the end
+ * of file, so file is memory mapped and points of time range or bbox are read without reading whole file.
+ * Everything except track points (metadata, waypoints, routes, names and extensions) is stored as gpx text.
+ * Values are rounded as in gpx, so gpx written from loaded file is the same as gpx written from original one.
+ * <p>
+ * File layout: header (magic, version, segments count, gpx text length, size and modification time of source gpx
+ * file), gpx text, chunks of points, chunks index, footer (index offset, chunks count, magic).
+ */
+public class BinaryTrackFile {
+
+	private static final Log log = PlatformUtil.getLog(BinaryTrackFile.class);
+
+	public static final String BINARY_TRACK_EXT = ".gpxb";
+	public static final int DEFAULT_CHUNK_SIZE = 256;
+
+	private static final int MAGIC = 0x4F47544B;
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 32;
+	private static final int FOOTER_SIZE = 16;
+	private static final int CHUNK_INDEX_SIZE = 56;
+
+	private static final int HAS_ELE = 1;
+	private static final int HAS_HDOP = 2;
+	private static final int HAS_SPEED = 4;
+	private static final int HAS_HEADING = 8;
+	private static final int HAS_ATTRIBUTES = 16;
+
+	private static final int HAS_NAME = 1;
+	private static final int HAS_DESC = 2;
+	private static final int HAS_COMMENT = 4;
+	private static final int HAS_LINK = 8;
+	private static final int HAS_CATEGORY = 16;
+
+	private final MappedIndexFile mappedFile;
+	private final int segmentsCount;
+	private final int gpxLength;
+	private final long sourceLength;
+	private final long sourceModified;
+	private final List<Chunk> chunks;
+
+	private static class Chunk {
+		int segment;
+		int firstPoint;
+		int count;
+		int minLat;
+		int minLon;
+		int maxLat;
+		int maxLon;
+		long minTime;
+		long maxTime;
+		long offset;
+		int length;
+	}
+
+	private BinaryTrackFile(MappedIndexFile mappedFile, int segmentsCount, int gpxLength, long sourceLength,
+			long sourceModified, List<Chunk> chunks) {
+		this.mappedFile = mappedFile;
+		this.segmentsCount = segmentsCount;
+		this.gpxLength = gpxLength;
+		this.sourceLength = sourceLength;
+		this.sourceModified = sourceModified;
+		this.chunks = chunks;
+	}
+
+	/**
+	 * Maps file (mapping is released by GC, so file doesn't need to be closed)
+	 */
+	public static BinaryTrackFile open(File file) throws IOException {
+		MappedIndexFile mappedFile = MappedIndexFile.map(file);
+		if (mappedFile.length() < HEADER_SIZE + FOOTER_SIZE) {
+			throw new IOException("Not a binary track file " + file.getName());
+		}
+		CodedInputStream codedIS = newInputStream(mappedFile);
+		codedIS.seek(mappedFile.length() - FOOTER_SIZE);
+		long indexOffset = codedIS.readRawLittleEndian64();
+		int chunksCount = codedIS.readRawLittleEndian32();
+		int footerMagic = codedIS.readRawLittleEndian32();
+		codedIS.seek(0);
+		int magic = codedIS.readRawLittleEndian32();
+		int version = codedIS.readRawLittleEndian32();
+		if (magic != MAGIC || footerMagic != MAGIC
+				|| indexOffset + (long) chunksCount * CHUNK_INDEX_SIZE != mappedFile.length() - FOOTER_SIZE) {
+			throw new IOException("Not a binary track file " + file.getName());
+		}
+		if (version != VERSION) {
+			throw new IOException("Unsupported version " + version + " of binary track file " + file.getName());
+		}
+		int segmentsCount = codedIS.readRawLittleEndian32();
+		int gpxLength = codedIS.readRawLittleEndian32();
+		long sourceLength = codedIS.readRawLittleEndian64();
+		long sourceModified = codedIS.readRawLittleEndian64();
+		List<Chunk> chunks = new ArrayList<>(chunksCount);
+		codedIS.seek(indexOffset);
+		for (int i = 0; i < chunksCount; i++) {
+			Chunk c = new Chunk();
+			c.segment = codedIS.readRawLittleEndian32();
+			c.firstPoint = codedIS.readRawLittleEndian32();
+			c.count = codedIS.readRawLittleEndian32();
+			c.minLat = codedIS.readRawLittleEndian32();
+			c.minLon = codedIS.readRawLittleEndian32();
+			c.maxLat = codedIS.readRawLittleEndian32();
+			c.maxLon = codedIS.readRawLittleEndian32();
+			c.minTime = codedIS.readRawLittleEndian64();
+			c.maxTime = codedIS.readRawLittleEndian64();
+			c.offset = codedIS.readRawLittleEndian64();
+			c.length = codedIS.readRawLittleEndian32();
+			chunks.add(c);
+		}
+		return new BinaryTrackFile(mappedFile, segmentsCount, gpxLength, sourceLength, sourceModified, chunks);
+	}
+
+	public File getFile() {
+		return mappedFile.getFile();
+	}
+
+	/**
+	 * Size of gpx file which was source of this file (0 if it is unknown)
+	 */
+	public long getSourceLength() {
+		return sourceLength;
+	}
+
+	/**
+	 * Modification time of gpx file which was source of this file (0 if it is unknown)
+	 */
+	public long getSourceModified() {
+		return sourceModified;
+	}
+
+	/**
+	 * Segments are numbered in order of tracks (except general track) and their segments
+	 */
+	public int getSegmentsCount() {
+		return segmentsCount;
+	}
+
+	public int getPointsCount(int segment) {
+		int count = 0;
+		for (Chunk c : chunks) {
+			if (c.segment == segment) {
+				count += c.count;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Bounds of all track points (left and right are longitudes) or null if there are no points
+	 */
+	public QuadRect getBounds() {
+		QuadRect bounds = null;
+		for (Chunk c : chunks) {
+			if (bounds == null) {
+				bounds = new QuadRect(c.minLon / 1e7, c.maxLat / 1e7, c.maxLon / 1e7, c.minLat / 1e7);
+			} else {
+				bounds.left = Math.min(bounds.left, c.minLon / 1e7);
+				bounds.right = Math.max(bounds.right, c.maxLon / 1e7);
+				bounds.top = Math.max(bounds.top, c.maxLat / 1e7);
+				bounds.bottom = Math.min(bounds.bottom, c.minLat / 1e7);
+			}
+		}
+		return bounds;
+	}
+
+	/**
+	 * Loads gpx file with track points in {@link ColumnarPoints} segments
+	 */
+	public GPXFile loadGPXFile() throws IOException {
+		CodedInputStream codedIS = newInputStream(mappedFile);
+		codedIS.seek(HEADER_SIZE);
+		byte[] gpxBytes = codedIS.readRawBytes(gpxLength);
+		GPXFile gpxFile = GPXUtilities.loadGPXFile(new ByteArrayInputStream(gpxBytes));
+		if (gpxFile.error != null) {
+			throw new IOException("Error reading gpx of " + getFile().getName(), gpxFile.error);
+		}
+		List<TrkSegment> segments = getSegments(gpxFile);
+		if (segments.size() != segmentsCount) {
+			throw new IOException("Segments of gpx don't match points of " + getFile().getName());
+		}
+		for (int i = 0; i < segments.size(); i++) {
+			segments.get(i).points = readSegment(i);
+		}
+		if (gpxFile.getNonEmptySegmentsCount() > 0) {
+			// artificial points of routes are already created by gpx loading
+			GPXUtilities.createArtificialPrimeMeridianPoints(gpxFile);
+		}
+		gpxFile.addGeneralTrack();
+		return gpxFile;
+	}
+
+	public ColumnarPoints readSegment(int segment) throws IOException {
+		return readPoints(segment, Long.MIN_VALUE, Long.MAX_VALUE, null);
+	}
+
+	/**
+	 * Points of segment with time in range (inclusive), only chunks intersecting range are read
+	 */
+	public ColumnarPoints readPointsByTime(int segment, long fromTime, long toTime) throws IOException {
+		return readPoints(segment, fromTime, toTime, null);
+	}
+
+	/**
+	 * Points of segment inside bounds (left and right are longitudes), only chunks intersecting bounds are read
+	 */
+	public ColumnarPoints readPointsInBounds(int segment, QuadRect bounds) throws IOException {
+		return readPoints(segment, Long.MIN_VALUE, Long.MAX_VALUE, bounds);
+	}
+
+	private ColumnarPoints readPoints(int segment, long fromTime, long toTime, QuadRect bounds) throws IOException {
+		ColumnarPoints points = null;
+		CodedInputStream codedIS = null;
+		for (Chunk c : chunks) {
+			if (c.segment != segment || c.maxTime < fromTime || c.minTime > toTime) {
+				continue;
+			}
+			if (bounds != null && (c.maxLon / 1e7 < bounds.left || c.minLon / 1e7 > bounds.right
+					|| c.maxLat / 1e7 < bounds.bottom || c.minLat / 1e7 > bounds.top)) {
+				continue;
+			}
+			if (points == null) {
+				boolean all = fromTime == Long.MIN_VALUE && toTime == Long.MAX_VALUE && bounds == null;
+				points = new ColumnarPoints(all ? getPointsCount(segment) : c.count);
+				codedIS = newInputStream(mappedFile);
+			}
+			codedIS.seek(c.offset);
+			readChunk(codedIS, c, fromTime, toTime, bounds, points);
+		}
+		return points == null ? new ColumnarPoints() : points;
+	}
+
+	private static void readChunk(CodedInputStream codedIS, Chunk c, long fromTime, long toTime, QuadRect bounds,
+	                              ColumnarPoints points) throws IOException {
+		long lat = 0;
+		long lon = 0;
+		long time = 0;
+		long ele = 0;
+		for (int i = 0; i < c.count; i++) {
+			int mask = codedIS.readRawByte();
+			lat += codedIS.readSInt64();
+			lon += codedIS.readSInt64();
+			time += codedIS.readSInt64();
+			double elevation = Double.NaN;
+			if ((mask & HAS_ELE) != 0) {
+				ele += codedIS.readSInt64();
+				elevation = ele / 10d;
+			}
+			double hdop = (mask & HAS_HDOP) != 0 ? codedIS.readSInt64() / 10d : Double.NaN;
+			double speed = (mask & HAS_SPEED) != 0 ? codedIS.readSInt64() / 10d : 0;
+			float heading = (mask & HAS_HEADING) != 0 ? codedIS.readSInt32() : Float.NaN;
+			WptPt point = null;
+			if ((mask & HAS_ATTRIBUTES) != 0) {
+				point = readAttributes(codedIS);
+			}
+			if ((mask & HAS_SPEED) != 0 && speed == 0) {
+				// gpx writer writes small speed as 0, it's kept in extensions by gpx reader
+				point = point == null ? new WptPt() : point;
+				point.getExtensionsToWrite().put("speed", "0");
+			}
+			double latitude = lat / 1e7;
+			double longitude = lon / 1e7;
+			if (time < fromTime || time > toTime) {
+				continue;
+			}
+			if (bounds != null && (longitude < bounds.left || longitude > bounds.right
+					|| latitude < bounds.bottom || latitude > bounds.top)) {
+				continue;
+			}
+			if (point == null) {
+				points.addPoint(latitude, longitude, time, elevation, speed, hdop, heading);
+			} else {
+				point.lat = latitude;
+				point.lon = longitude;
+				point.time = time;
+				point.ele = elevation;
+				point.speed = speed;
+				point.hdop = hdop;
+				point.heading = heading;
+				points.add(point);
+			}
+		}
+	}
+
+	private static WptPt readAttributes(CodedInputStream codedIS) throws IOException {
+		WptPt point = new WptPt();
+		int mask = codedIS.readUInt32();
+		if ((mask & HAS_NAME) != 0) {
+			point.name = codedIS.readString();
+		}
+		if ((mask & HAS_DESC) != 0) {
+			point.desc = codedIS.readString();
+		}
+		if ((mask & HAS_COMMENT) != 0) {
+			point.comment = codedIS.readString();
+		}
+		if ((mask & HAS_LINK) != 0) {
+			point.link = codedIS.readString();
+		}
+		if ((mask & HAS_CATEGORY) != 0) {
+			point.category = codedIS.readString();
+		}
+		int extensions = codedIS.readUInt32();
+		for (int i = 0; i < extensions; i++) {
+			String key = codedIS.readString();
+			point.getExtensionsToWrite().put(key, codedIS.readString());
+		}
+		return point;
+	}
+
+	private static CodedInputStream newInputStream(MappedIndexFile mappedFile) {
+		CodedInputStream codedIS = mappedFile.newCodedInputStream();
+		codedIS.setSizeLimit(Integer.MAX_VALUE);
+		return codedIS;
+	}
+
+	public static GPXFile loadGPXFile(File file) throws IOException {
+		return open(file).loadGPXFile();
+	}
+
+	/**
+	 * Loads gpx from binary cache if cache was written from gpx file of same size and modification time,
+	 * otherwise loads gpx and writes cache
+	 */
+	public static GPXFile loadGPXFile(File gpxFile, File cacheFile) {
+		// taken before gpx is read, so cache of gpx changed while reading is not valid
+		long sourceLength = gpxFile.length();
+		long sourceModified = gpxFile.lastModified();
+		if (cacheFile.exists()) {
+			try {
+				BinaryTrackFile track = open(cacheFile);
+				if (track.sourceLength == sourceLength && track.sourceModified == sourceModified) {
+					GPXFile gpx = track.loadGPXFile();
+					gpx.path = gpxFile.getAbsolutePath();
+					gpx.modifiedTime = sourceModified;
+					return gpx;
+				}
+			} catch (IOException e) {
+				log.error("Error reading binary track " + cacheFile.getName(), e);
+			}
+		}
+		GPXFile gpx = GPXUtilities.loadColumnarGPXFile(gpxFile);
+		if (gpx.error == null) {
+			// cache could be memory mapped by another reader, so it is replaced by new file and not overwritten
+			File tmp = null;
+			try {
+				tmp = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getAbsoluteFile().getParentFile());
+				writeTrackFile(tmp, gpx, DEFAULT_CHUNK_SIZE, sourceLength, sourceModified);
+				if (!tmp.renameTo(cacheFile)) {
+					cacheFile.delete();
+					if (!tmp.renameTo(cacheFile)) {
+						throw new IOException("Binary track could not be renamed " + tmp.getName());
+					}
+				}
+			} catch (IOException e) {
+				log.error("Error writing binary track " + cacheFile.getName(), e);
+				if (tmp != null) {
+					tmp.delete();
+				}
+			}
+		}
+		return gpx;
+	}
+
+	public static void writeTrackFile(File file, GPXFile gpxFile) throws IOException {
+		writeTrackFile(file, gpxFile, DEFAULT_CHUNK_SIZE);
+	}
+
+	public static void writeTrackFile(File file, GPXFile gpxFile, int chunkSize) throws IOException {
+		writeTrackFile(file, gpxFile, chunkSize, 0, 0);
+	}
+
+	private static void writeTrackFile(File file, GPXFile gpxFile, int chunkSize, long sourceLength,
+			long sourceModified) throws IOException {
+		StringWriter gpx = new StringWriter();
+		Exception error = GPXUtilities.writeGpx(gpx, gpxFile, null, false);
+		if (error != null) {
+			throw new IOException("Error writing gpx", error);
+		}
+		byte[] gpxBytes = gpx.toString().getBytes("UTF-8");
+		List<TrkSegment> segments = getSegments(gpxFile);
+		FileOutputStream fout = new FileOutputStream(file);
+		try {
+			CodedOutputStream out = CodedOutputStream.newInstance(fout);
+			out.writeFixed32NoTag(MAGIC);
+			out.writeFixed32NoTag(VERSION);
+			out.writeFixed32NoTag(segments.size());
+			out.writeFixed32NoTag(gpxBytes.length);
+			out.writeFixed64NoTag(sourceLength);
+			out.writeFixed64NoTag(sourceModified);
+			out.writeRawBytes(gpxBytes);
+			long offset = HEADER_SIZE + gpxBytes.length;
+
+			ChunkWriter writer = new ChunkWriter();
+			List<Chunk> chunks = new ArrayList<>();
+			for (int s = 0; s < segments.size(); s++) {
+				int index = 0;
+				for (WptPt p : segments.get(s).points) {
+					if (Math.abs(p.lon) == GPXUtilities.PRIME_MERIDIAN) {
+						continue;
+					}
+					if (writer.chunk == null) {
+						writer.start(s, index, offset);
+					}
+					writer.writePoint(p);
+					index++;
+					if (writer.chunk.count == chunkSize) {
+						offset += writer.finish(out);
+						chunks.add(writer.chunk);
+						writer.chunk = null;
+					}
+				}
+				if (writer.chunk != null) {
+					offset += writer.finish(out);
+					chunks.add(writer.chunk);
+					writer.chunk = null;
+				}
+			}
+			for (Chunk c : chunks) {
+				out.writeFixed32NoTag(c.segment);
+				out.writeFixed32NoTag(c.firstPoint);
+				out.writeFixed32NoTag(c.count);
+				out.writeFixed32NoTag(c.minLat);
+				out.writeFixed32NoTag(c.minLon);
+				out.writeFixed32NoTag(c.maxLat);
+				out.writeFixed32NoTag(c.maxLon);
+				out.writeFixed64NoTag(c.minTime);
+				out.writeFixed64NoTag(c.maxTime);
+				out.writeFixed64NoTag(c.offset);
+				out.writeFixed32NoTag(c.length);
+			}
+			out.writeFixed64NoTag(offset);
+			out.writeFixed32NoTag(chunks.size());
+			out.writeFixed32NoTag(MAGIC);
+			out.flush();
+		} finally {
+			fout.close();
+		}
+	}
+
+	/**
+	 * Rounds value to 1 / scale as gpx writer does (decimal format rounds exact value of double half even),
+	 * only values close to half are rounded by BigDecimal
+	 */
+	static long round(double value, double scale) {
+		double scaled = value * scale;
+		double fraction = scaled - Math.floor(scaled);
+		if (Math.abs(fraction - 0.5) < 1e-4) {
+			return new BigDecimal(value).multiply(BigDecimal.valueOf(scale)).setScale(0, RoundingMode.HALF_EVEN)
+					.longValue();
+		}
+		return (long) Math.rint(scaled);
+	}
+
+	private static List<TrkSegment> getSegments(GPXFile gpxFile) {
+		List<TrkSegment> segments = new ArrayList<>();
+		for (Track track : gpxFile.tracks) {
+			if (!track.generalTrack) {
+				segments.addAll(track.segments);
+			}
+		}
+		return segments;
+	}
+
+	private static class ChunkWriter {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+
+		private Chunk chunk;
+		private long lat;
+		private long lon;
+		private long time;
+		private long ele;
+
+		void start(int segment, int firstPoint, long offset) {
+			chunk = new Chunk();
+			chunk.segment = segment;
+			chunk.firstPoint = firstPoint;
+			chunk.offset = offset;
+			chunk.minLat = chunk.minLon = Integer.MAX_VALUE;
+			chunk.maxLat = chunk.maxLon = Integer.MIN_VALUE;
+			chunk.minTime = Long.MAX_VALUE;
+			chunk.maxTime = Long.MIN_VALUE;
+			lat = lon = time = ele = 0;
+			bytes.reset();
+		}
+
+		void writePoint(WptPt p) throws IOException {
+			int pLat = (int) round(p.lat, 1e7);
+			int pLon = (int) round(p.lon, 1e7);
+			boolean speed = p.speed > 0;
+			// heading is kept in extensions by gpx reader
+			float heading = ColumnarPoints.getHeading(p);
+			boolean attributes = p.name != null || p.desc != null || p.comment != null || p.link != null
+					|| p.category != null;
+			for (String key : p.getExtensionsToRead().keySet()) {
+				attributes |= !isWrittenExtension(p, key);
+			}
+			int mask = (Double.isNaN(p.ele) ? 0 : HAS_ELE) | (Double.isNaN(p.hdop) ? 0 : HAS_HDOP)
+					| (speed ? HAS_SPEED : 0) | (Float.isNaN(heading) ? 0 : HAS_HEADING) | (attributes ? HAS_ATTRIBUTES : 0);
+			out.writeRawByte(mask);
+			out.writeSInt64NoTag(pLat - lat);
+			out.writeSInt64NoTag(pLon - lon);
+			out.writeSInt64NoTag(p.time - time);
+			lat = pLat;
+			lon = pLon;
+			time = p.time;
+			if ((mask & HAS_ELE) != 0) {
+				long pEle = round(p.ele, 10);
+				out.writeSInt64NoTag(pEle - ele);
+				ele = pEle;
+			}
+			if ((mask & HAS_HDOP) != 0) {
+				out.writeSInt64NoTag(round(p.hdop, 10));
+			}
+			if (speed) {
+				out.writeSInt64NoTag(round(p.speed, 10));
+			}
+			if ((mask & HAS_HEADING) != 0) {
+				out.writeSInt32NoTag(Math.round(heading));
+			}
+			if (attributes) {
+				writeAttributes(p);
+			}
+			chunk.count++;
+			chunk.minLat = Math.min(chunk.minLat, pLat);
+			chunk.minLon = Math.min(chunk.minLon, pLon);
+			chunk.maxLat = Math.max(chunk.maxLat, pLat);
+			chunk.maxLon = Math.max(chunk.maxLon, pLon);
+			chunk.minTime = Math.min(chunk.minTime, p.time);
+			chunk.maxTime = Math.max(chunk.maxTime, p.time);
+		}
+
+		private void writeAttributes(WptPt p) throws IOException {
+			int mask = (p.name != null ? HAS_NAME : 0) | (p.desc != null ? HAS_DESC : 0)
+					| (p.comment != null ? HAS_COMMENT : 0) | (p.link != null ? HAS_LINK : 0)
+					| (p.category != null ? HAS_CATEGORY : 0);
+			out.writeUInt32NoTag(mask);
+			writeNotNullString(p.name);
+			writeNotNullString(p.desc);
+			writeNotNullString(p.comment);
+			writeNotNullString(p.link);
+			writeNotNullString(p.category);
+			int count = 0;
+			for (String key : p.getExtensionsToRead().keySet()) {
+				if (!isWrittenExtension(p, key)) {
+					count++;
+				}
+			}
+			out.writeUInt32NoTag(count);
+			for (Entry<String, String> e : p.getExtensionsToRead().entrySet()) {
+				if (!isWrittenExtension(p, e.getKey())) {
+					out.writeStringNoTag(e.getKey());
+					out.writeStringNoTag(e.getValue() == null ? "" : e.getValue());
+				}
+			}
+		}
+
+		private void writeNotNullString(String s) throws IOException {
+			if (s != null) {
+				out.writeStringNoTag(s);
+			}
+		}
+
+		// speed and heading extensions are written by gpx writer from fields
+		private boolean isWrittenExtension(WptPt p, String key) {
+			return (key.equals("speed") && p.speed > 0)
+					|| (key.equals("heading") && !Float.isNaN(ColumnarPoints.getHeading(p)));
+		}
+
+		int finish(CodedOutputStream fileOut) throws IOException {
+			out.flush();
+			byte[] data = bytes.toByteArray();
+			fileOut.writeRawBytes(data);
+			chunk.length = data.length;
+			return data.length;
+		}
+	}
+}
@@ -0,0 +1,274 @@
+package net.osmand;
+
+import java.text.CollationElementIterator;
+import java.text.RuleBasedCollator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Collator matcher which compares primary collation keys instead of calling collator for every
+ * substring of name. Key of string is primary weight of each its char (0 for ignorable chars), it is calculated
+ * once for query and once for name (keys of names are cached), so matching is simple comparison of int arrays.
+ * Keys are used only for strings where each char has at most one primary weight and weights of whole string
+ * are the same (no contractions or expansions), for such strings comparison of substrings by primary collator
+ * is the same as comparison of keys without ignorable chars. Other strings are matched by collator,
+ * so results are always the same as of {@link CollatorStringMatcher}.
+ */
+public class CollationKeyStringMatcher extends CollatorStringMatcher {
+
+	private static final Map<java.text.Collator, CollationKeys> KEYS = new HashMap<java.text.Collator, CollationKeys>();
+
+	private final CollationKeys keys;
+	private final int[] partKey;
+
+	public CollationKeyStringMatcher(String part, StringMatcherMode mode) {
+		super(part, mode);
+		keys = getCollationKeys(OsmAndCollator.unwrapCollator(getCollator()));
+		partKey = keys == null || getMode() == StringMatcherMode.CHECK_CONTAINS ? null : keys.calculateKey(getPart());
+	}
+
+	@Override
+	public boolean matches(String name) {
+		if (partKey == null) {
+			return super.matches(name);
+		}
+		NameKey nameKey = keys.getNameKey(name);
+		if (nameKey.key == null) {
+			return super.matches(name);
+		}
+		switch (getMode()) {
+		case CHECK_EQUALS_FROM_SPACE:
+			return startsWith(nameKey, true, true, true);
+		case CHECK_STARTS_FROM_SPACE:
+			return startsWith(nameKey, true, true, false);
+		case CHECK_STARTS_FROM_SPACE_NOT_BEGINNING:
+			return startsWith(nameKey, false, true, false);
+		case CHECK_ONLY_STARTS_WITH:
+			return startsWith(nameKey, true, false, false);
+		case CHECK_EQUALS:
+			return startsWith(nameKey, false, false, true);
+		default:
+			return super.matches(name);
+		}
+	}
+
+	/**
+	 * Same as {@link CollatorStringMatcher#cstartsWith} with comparison of keys
+	 */
+	private boolean startsWith(NameKey name, boolean checkBeginning, boolean checkSpaces, boolean equals) {
+		String searchIn = name.text;
+		int[] key = name.key;
+		int searchInLength = key.length;
+		int startLength = partKey.length;
+		if (startLength == 0) {
+			return true;
+		}
+		if (startLength > searchInLength) {
+			return false;
+		}
+		if (checkBeginning && keyEquals(key, 0, startLength)) {
+			if (!equals || startLength == searchInLength || isSpace(searchIn.charAt(startLength))) {
+				return true;
+			}
+		}
+		if (checkSpaces) {
+			for (int i = 1; i <= searchInLength - startLength; i++) {
+				if (isSpace(searchIn.charAt(i - 1)) && !isSpace(searchIn.charAt(i)) && keyEquals(key, i, i + startLength)) {
+					if (!equals || i + startLength == searchInLength || isSpace(searchIn.charAt(i + startLength))) {
+						return true;
+					}
+				}
+			}
+		}
+		if (!checkBeginning && !checkSpaces && equals) {
+			return keyEquals(key, 0, searchInLength);
+		}
+		return false;
+	}
+
+	/**
+	 * Compares key[from, to) with key of part skipping ignorable chars
+	 */
+	private boolean keyEquals(int[] key, int from, int to) {
+		int i = from;
+		int j = 0;
+		while (true) {
+			while (i < to && key[i] == CollationKeys.IGNORABLE) {
+				i++;
+			}
+			while (j < partKey.length && partKey[j] == CollationKeys.IGNORABLE) {
+				j++;
+			}
+			if (i == to || j == partKey.length) {
+				return i == to && j == partKey.length;
+			}
+			if (key[i++] != partKey[j++]) {
+				return false;
+			}
+		}
+	}
+
+	private static CollationKeys getCollationKeys(java.text.Collator collator) {
+		if (!(collator instanceof RuleBasedCollator) || collator.getStrength() != java.text.Collator.PRIMARY) {
+			return null;
+		}
+		synchronized (KEYS) {
+			CollationKeys keys = KEYS.get(collator);
+			if (keys == null || !keys.locale.equals(Locale.getDefault())) {
+				keys = new CollationKeys((RuleBasedCollator) collator.clone(), Locale.getDefault());
+				KEYS.put(collator, keys);
+			}
+			return keys;
+		}
+	}
+
+	static class NameKey {
+		// simplified name (lower case) and its key, key is null if name can't be matched by key
+		final String text;
+		final int[] key;
+
+		NameKey(String text, int[] key) {
+			this.text = text;
+			this.key = key;
+		}
+	}
+
+	static class CollationKeys {
+
+		private static final int NAME_KEYS_CACHE_SIZE = 4096;
+		private static final int NO_KEY = -1;
+		private static final int IGNORABLE = 0;
+		// chars not described by collator rules have 2 weights: 0x7fff and own weight,
+		// key of such char is UNMAPPED_KEY + 1 + own weight
+		private static final int UNMAPPED_PRIMARY = 0x7fff;
+		private static final int UNMAPPED_KEY = 0x10000;
+
+		private final RuleBasedCollator collator;
+		private final Locale locale;
+		// keys of chars + 2 by pages of 256 chars (0 - not calculated)
+		private final int[][] charKeys = new int[256][];
+		private final Map<String, NameKey> nameKeys = new LinkedHashMap<String, NameKey>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, NameKey> eldest) {
+				return size() > NAME_KEYS_CACHE_SIZE;
+			}
+		};
+
+		CollationKeys(RuleBasedCollator collator, Locale locale) {
+			this.collator = collator;
+			this.locale = locale;
+		}
+
+		NameKey getNameKey(String name) {
+			NameKey nk;
+			synchronized (nameKeys) {
+				nk = nameKeys.get(name);
+			}
+			if (nk == null) {
+				String text = simplifyStringAndAlignChars(name);
+				nk = new NameKey(text, calculateKey(text));
+				synchronized (nameKeys) {
+					nameKeys.put(name, nk);
+				}
+			}
+			return nk;
+		}
+
+		/**
+		 * @return keys of chars (primary weight + 1, 0 for ignorable) or null if weights of string are not the same
+		 * as weights of its chars
+		 */
+		int[] calculateKey(String s) {
+			int[] key = new int[s.length()];
+			for (int i = 0; i < key.length; i++) {
+				int k = getCharKey(s.charAt(i));
+				if (k == NO_KEY) {
+					return null;
+				}
+				key[i] = k;
+			}
+			int i = 0;
+			int second = -1;
+			CollationElementIterator it = collator.getCollationElementIterator(s);
+			int e;
+			while ((e = it.next()) != CollationElementIterator.NULLORDER) {
+				int primary = CollationElementIterator.primaryOrder(e);
+				if (primary == 0) {
+					continue;
+				}
+				int expected;
+				if (second >= 0) {
+					expected = second;
+					second = -1;
+				} else {
+					while (i < key.length && key[i] == IGNORABLE) {
+						i++;
+					}
+					if (i == key.length) {
+						return null;
+					}
+					int k = key[i++];
+					if (k > UNMAPPED_KEY) {
+						expected = UNMAPPED_PRIMARY;
+						second = k - UNMAPPED_KEY - 1;
+					} else {
+						expected = k - 1;
+					}
+				}
+				if (primary != expected) {
+					return null;
+				}
+			}
+			while (i < key.length && key[i] == IGNORABLE) {
+				i++;
+			}
+			return i == key.length && second < 0 ? key : null;
+		}
+
+		private int getCharKey(char c) {
+			int[] page;
+			synchronized (charKeys) {
+				page = charKeys[c >> 8];
+				if (page == null) {
+					page = new int[256];
+					charKeys[c >> 8] = page;
+				}
+			}
+			int k = page[c & 0xff];
+			if (k == 0) {
+				k = calculateCharKey(c) + 2;
+				page[c & 0xff] = k;
+			}
+			return k - 2;
+		}
+
+		private int calculateCharKey(char c) {
+			if (Character.isSurrogate(c)) {
+				return NO_KEY;
+			}
+			TIntArrayList primaries = new TIntArrayList(2);
+			CollationElementIterator it = collator.getCollationElementIterator(String.valueOf(c));
+			int e;
+			while ((e = it.next()) != CollationElementIterator.NULLORDER) {
+				int primary = CollationElementIterator.primaryOrder(e);
+				if (primary != 0) {
+					primaries.add(primary);
+				}
+			}
+			if (primaries.isEmpty()) {
+				return IGNORABLE;
+			} else if (primaries.size() == 1 && primaries.get(0) != UNMAPPED_PRIMARY) {
+				return primaries.get(0) + 1;
+			} else if (primaries.size() == 2 && primaries.get(0) == UNMAPPED_PRIMARY) {
+				return UNMAPPED_KEY + 1 + primaries.get(1);
+			}
+			return NO_KEY;
+		}
+	}
+}
@@ -0,0 +1,497 @@
+package net.osmand;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.osmand.GPXUtilities.ColumnarPoints;
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.GPXTrackAnalysis;
+import net.osmand.GPXUtilities.GPXTrackAnalysis.ElevationDiffsCalculator;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+
+/**
+ * Track analysis over primitive values in one pass: statistics of {@link GPXTrackAnalysis#prepareInformation}
+ * (segments with less than 2 points are skipped as in {@link GPXFile#getAnalysis(long)}) and splits by distance
+ * or time of each segment (as {@link TrkSegment#splitByDistance(double, boolean)}) are updated per added point
+ * without creating objects, so results could be requested at any time during recording.
+ * Elevation gain is calculated by sliding window which length depends on points of whole segment, so elevation and
+ * distance of points of current segment (and split) are kept in arrays. Chart data (elevationData, speedData) is not
+ * collected.
+ */
+public class GPXTrackAnalyzer {
+
+	private final Accumulator track = new Accumulator();
+	private final Splitter splitter;
+	private int segments;
+	private int segmentPoints;
+	// first point of segment is analyzed when segment has second point
+	private double firstLat;
+	private double firstLon;
+	private long firstTime;
+	private double firstEle;
+	private double firstSpeed;
+	private double firstHdop;
+
+	public GPXTrackAnalyzer() {
+		this.splitter = null;
+	}
+
+	private GPXTrackAnalyzer(boolean splitByTime, double metricLimit) {
+		this.splitter = new Splitter(splitByTime, metricLimit);
+	}
+
+	public static GPXTrackAnalyzer splitByDistance(double meters) {
+		return new GPXTrackAnalyzer(false, meters);
+	}
+
+	public static GPXTrackAnalyzer splitByTime(int seconds) {
+		return new GPXTrackAnalyzer(true, seconds);
+	}
+
+	public static GPXTrackAnalysis getAnalysis(GPXFile gpxFile, long fileTimestamp) {
+		GPXTrackAnalyzer analyzer = new GPXTrackAnalyzer();
+		analyzer.addGPXFile(gpxFile);
+		GPXTrackAnalysis analysis = analyzer.getAnalysis(fileTimestamp);
+		analysis.wptPoints = gpxFile.getPointsSize();
+		analysis.name = gpxFile.path;
+		analysis.wptCategoryNames = gpxFile.getWaypointCategories(true);
+		return analysis;
+	}
+
+	public void addGPXFile(GPXFile gpxFile) {
+		for (Track t : gpxFile.tracks) {
+			for (TrkSegment s : t.segments) {
+				if (!s.generalSegment) {
+					addSegment(s);
+				}
+			}
+		}
+	}
+
+	public void addSegment(TrkSegment segment) {
+		startSegment();
+		List<WptPt> points = segment.points;
+		if (points instanceof ColumnarPoints) {
+			ColumnarPoints c = (ColumnarPoints) points;
+			for (int i = 0; i < c.size(); i++) {
+				addPoint(c.getLatitude(i), c.getLongitude(i), c.getTime(i), c.getElevation(i), c.getSpeed(i),
+						c.getHdop(i));
+			}
+		} else {
+			for (WptPt p : points) {
+				addPoint(p.lat, p.lon, p.time, p.ele, p.speed, p.hdop);
+			}
+		}
+	}
+
+	/**
+	 * Next points belong to new segment (distance and moving time between segments are not counted)
+	 */
+	public void startSegment() {
+		if (segmentPoints > 1) {
+			track.finishSegment();
+		}
+		if (splitter != null && segmentPoints > 0) {
+			splitter.finishSegment();
+		}
+		segmentPoints = 0;
+		segments++;
+	}
+
+	public void addPoint(double lat, double lon, long time, double ele, double speed, double hdop) {
+		if (segments == 0) {
+			segments++;
+		}
+		if (segmentPoints == 0) {
+			firstLat = lat;
+			firstLon = lon;
+			firstTime = time;
+			firstEle = ele;
+			firstSpeed = speed;
+			firstHdop = hdop;
+		} else {
+			if (segmentPoints == 1) {
+				track.add(firstLat, firstLon, firstTime, firstEle, firstSpeed, firstHdop);
+			}
+			track.add(lat, lon, time, ele, speed, hdop);
+		}
+		segmentPoints++;
+		if (splitter != null) {
+			splitter.add(lat, lon, time, ele, speed, hdop);
+		}
+	}
+
+	public GPXTrackAnalysis getAnalysis(long fileTimestamp) {
+		GPXTrackAnalysis analysis = track.getAnalysis(fileTimestamp);
+		analysis.totalTracks = segments;
+		return analysis;
+	}
+
+	/**
+	 * Splits of all segments including last split of current segment
+	 */
+	public List<GPXTrackAnalysis> getSplits() {
+		List<GPXTrackAnalysis> splits = new ArrayList<>();
+		if (splitter != null) {
+			splits.addAll(splitter.splits);
+			if (splitter.points > 0) {
+				splits.add(splitter.getLastSplit());
+			}
+		}
+		return splits;
+	}
+
+	private static class Splitter {
+		private final boolean byTime;
+		private final double metricLimit;
+		private final Accumulator split = new Accumulator();
+		private final List<GPXTrackAnalysis> splits = new ArrayList<>();
+		private final float[] calculations = new float[1];
+
+		private int points;
+		private double currentMetricEnd;
+		private double total;
+		private double secondaryMetricEnd;
+		private double prevLat;
+		private double prevLon;
+		private long prevTime;
+		private double prevEle;
+		private double prevSpeed;
+		private double prevHdop;
+
+		Splitter(boolean byTime, double metricLimit) {
+			this.byTime = byTime;
+			this.metricLimit = metricLimit;
+		}
+
+		void add(double lat, double lon, long time, double ele, double speed, double hdop) {
+			if (points == 0) {
+				split.reset();
+				currentMetricEnd = metricLimit;
+				total = 0;
+				secondaryMetricEnd = 0;
+			} else {
+				double distance = distance(prevLat, prevLon, lat, lon);
+				double seconds = prevTime != 0 && time != 0 ? (int) Math.abs((time - prevTime) / 1000L) : 0;
+				double current = byTime ? seconds : distance;
+				secondaryMetricEnd += byTime ? distance : seconds;
+				while (total + current > currentMetricEnd) {
+					double cf = (currentMetricEnd - total) / current;
+					addApprox(lat, lon, time, ele, speed, hdop, cf);
+					split.metricEnd = currentMetricEnd;
+					split.secondaryMetricEnd = secondaryMetricEnd;
+					splits.add(split.getAnalysis(0));
+					split.reset();
+					if (cf == 0) {
+						split.add(prevLat, prevLon, prevTime, prevEle, prevSpeed, prevHdop);
+					} else {
+						addApprox(lat, lon, time, ele, speed, hdop, cf);
+					}
+					currentMetricEnd += metricLimit;
+				}
+				total += current;
+			}
+			split.add(lat, lon, time, ele, speed, hdop);
+			points++;
+			prevLat = lat;
+			prevLon = lon;
+			prevTime = time;
+			prevEle = ele;
+			prevSpeed = speed;
+			prevHdop = hdop;
+		}
+
+		// point between previous and current point as in split segment
+		private void addApprox(double lat, double lon, long time, double ele, double speed, double hdop, double cf) {
+			split.add(value(prevLat, lat, -360, cf), value(prevLon, lon, -360, cf), value(prevTime, time, cf),
+					value(prevEle, ele, 0, cf), value(prevSpeed, speed, 0, cf), value(prevHdop, hdop, 0, cf));
+		}
+
+		private double distance(double lat1, double lon1, double lat2, double lon2) {
+			Location.distanceBetween(lat1, lon1, lat2, lon2, calculations);
+			return calculations[0];
+		}
+
+		GPXTrackAnalysis getLastSplit() {
+			split.metricEnd = total;
+			split.secondaryMetricEnd = secondaryMetricEnd;
+			return split.getAnalysis(0);
+		}
+
+		void finishSegment() {
+			splits.add(getLastSplit());
+			points = 0;
+		}
+
+		private static double value(double vl, double vl2, double none, double cf) {
+			if (vl == none || Double.isNaN(vl)) {
+				return vl2;
+			} else if (vl2 == none || Double.isNaN(vl2)) {
+				return vl;
+			}
+			return vl + cf * (vl2 - vl);
+		}
+
+		private static long value(long vl, long vl2, double cf) {
+			if (vl == 0) {
+				return vl2;
+			} else if (vl2 == 0) {
+				return vl;
+			}
+			return vl + ((long) (cf * (vl2 - vl)));
+		}
+	}
+
+	/**
+	 * Statistics of points as calculated by {@link GPXTrackAnalysis#prepareInformation} (same types of sums)
+	 */
+	private static class Accumulator {
+		private final float[] calculations = new float[1];
+
+		float totalDistance;
+		long startTime;
+		long endTime;
+		long timeMoving;
+		float totalDistanceMoving;
+		double diffElevationUp;
+		double diffElevationDown;
+		float totalElevation;
+		int elevationPoints;
+		double minElevation;
+		double maxElevation;
+		float minSpeed;
+		float maxSpeed;
+		double totalSpeedSum;
+		int speedCount;
+		double minHdop;
+		double maxHdop;
+		int points;
+		double left;
+		double right;
+		double top;
+		double bottom;
+		boolean hasElevationData;
+		boolean hasSpeedData;
+		boolean hasSpeedInTrack;
+		double metricEnd;
+		double secondaryMetricEnd;
+		WptPt locationStart;
+
+		// current segment
+		int segmentPoints;
+		float segmentDistance;
+		double prevLat;
+		double prevLon;
+		long prevTime;
+		double prevEle;
+		double prevSpeed;
+		double prevHdop;
+		double[] segmentEle = new double[256];
+		float[] segmentDist = new float[256];
+
+		Accumulator() {
+			reset();
+		}
+
+		void reset() {
+			totalDistance = 0;
+			startTime = Long.MAX_VALUE;
+			endTime = Long.MIN_VALUE;
+			timeMoving = 0;
+			totalDistanceMoving = 0;
+			diffElevationUp = 0;
+			diffElevationDown = 0;
+			totalElevation = 0;
+			elevationPoints = 0;
+			minElevation = 99999;
+			maxElevation = -100;
+			minSpeed = Float.MAX_VALUE;
+			maxSpeed = 0;
+			totalSpeedSum = 0;
+			speedCount = 0;
+			minHdop = Double.NaN;
+			maxHdop = Double.NaN;
+			points = 0;
+			left = right = top = bottom = 0;
+			hasElevationData = false;
+			hasSpeedData = false;
+			hasSpeedInTrack = false;
+			metricEnd = 0;
+			secondaryMetricEnd = 0;
+			locationStart = null;
+			segmentPoints = 0;
+			segmentDistance = 0;
+		}
+
+		void add(double lat, double lon, long time, double ele, double pointSpeed, double hdop) {
+			if (points == 0) {
+				locationStart = new WptPt(lat, lon, time, ele, pointSpeed, hdop);
+			}
+			if (time != 0) {
+				startTime = Math.min(startTime, time);
+				endTime = Math.max(endTime, time);
+			}
+			if (left == 0 && right == 0) {
+				left = lon;
+				right = lon;
+				top = lat;
+				bottom = lat;
+			} else {
+				left = Math.min(left, lon);
+				right = Math.max(right, lon);
+				top = Math.max(top, lat);
+				bottom = Math.min(bottom, lat);
+			}
+			if (!Double.isNaN(ele)) {
+				totalElevation += ele;
+				elevationPoints++;
+				minElevation = Math.min(ele, minElevation);
+				maxElevation = Math.max(ele, maxElevation);
+			}
+			float speed = (float) pointSpeed;
+			if (speed > 0) {
+				hasSpeedInTrack = true;
+			}
+			if (hdop > 0) {
+				if (Double.isNaN(minHdop) || hdop < minHdop) {
+					minHdop = hdop;
+				}
+				if (Double.isNaN(maxHdop) || hdop > maxHdop) {
+					maxHdop = hdop;
+				}
+			}
+			float distance = 0;
+			if (segmentPoints == 0) {
+				segmentDistance = 0;
+			} else {
+				Location.distanceBetween(prevLat, prevLon, lat, lon, calculations);
+				distance = calculations[0];
+				totalDistance += distance;
+				segmentDistance += distance;
+				long timeDiffMillis = Math.max(0, time - prevTime);
+				int timeDiff = (int) ((timeDiffMillis) / 1000);
+				if (!hasSpeedInTrack && speed == 0 && timeDiff > 0) {
+					speed = distance / timeDiff;
+				}
+				boolean timeSpecified = time != 0 && prevTime != 0;
+				if (speed > 0 && timeSpecified && distance > timeDiffMillis / 10000f) {
+					timeMoving = timeMoving + timeDiffMillis;
+					totalDistanceMoving += distance;
+				}
+			}
+			if (!hasElevationData && !Double.isNaN(ele) && totalDistance > 0) {
+				hasElevationData = true;
+			}
+			minSpeed = Math.min(speed, minSpeed);
+			if (speed > 0) {
+				totalSpeedSum += speed;
+				maxSpeed = Math.max(speed, maxSpeed);
+				speedCount++;
+			}
+			if (!hasSpeedData && speed > 0 && totalDistance > 0) {
+				hasSpeedData = true;
+			}
+			if (segmentPoints == segmentEle.length) {
+				segmentEle = Arrays.copyOf(segmentEle, segmentPoints * 2);
+				segmentDist = Arrays.copyOf(segmentDist, segmentPoints * 2);
+			}
+			segmentEle[segmentPoints] = ele;
+			segmentDist[segmentPoints] = segmentPoints > 0 ? segmentDistance : 0;
+			segmentPoints++;
+			points++;
+			prevLat = lat;
+			prevLon = lon;
+			prevTime = time;
+			prevEle = ele;
+			prevSpeed = pointSpeed;
+			prevHdop = hdop;
+		}
+
+		void finishSegment() {
+			if (segmentPoints > 0) {
+				ElevationDiffsCalculator calculator = calculateElevationDiffs();
+				diffElevationUp += calculator.getDiffElevationUp();
+				diffElevationDown += calculator.getDiffElevationDown();
+			}
+			segmentPoints = 0;
+		}
+
+		private ElevationDiffsCalculator calculateElevationDiffs() {
+			final double[] ele = segmentEle;
+			final float[] dist = segmentDist;
+			final WptPt point = new WptPt();
+			int count = segmentPoints;
+			double windowLength = prevTime == 0 ? ElevationDiffsCalculator.CALCULATED_GPX_WINDOW_LENGTH
+					: Math.max(20d, dist[count - 1] / count * 4);
+			ElevationDiffsCalculator calculator = new ElevationDiffsCalculator(windowLength, 0, count) {
+				@Override
+				public WptPt getPoint(int index) {
+					point.ele = ele[index];
+					point.distance = dist[index];
+					return point;
+				}
+			};
+			calculator.calculateElevationDiffs();
+			return calculator;
+		}
+
+		GPXTrackAnalysis getAnalysis(long filestamp) {
+			GPXTrackAnalysis a = new GPXTrackAnalysis();
+			a.totalDistance = totalDistance;
+			a.startTime = startTime;
+			a.endTime = endTime;
+			a.timeMoving = timeMoving;
+			a.totalDistanceMoving = totalDistanceMoving;
+			a.diffElevationUp = diffElevationUp;
+			a.diffElevationDown = diffElevationDown;
+			if (segmentPoints > 0) {
+				// current segment isn't finished
+				ElevationDiffsCalculator calculator = calculateElevationDiffs();
+				a.diffElevationUp += calculator.getDiffElevationUp();
+				a.diffElevationDown += calculator.getDiffElevationDown();
+			}
+			a.minElevation = minElevation;
+			a.maxElevation = maxElevation;
+			if (elevationPoints > 0) {
+				a.avgElevation = totalElevation / elevationPoints;
+			}
+			a.minSpeed = minSpeed;
+			a.maxSpeed = maxSpeed;
+			if (speedCount > 0) {
+				if (timeMoving > 0) {
+					a.avgSpeed = totalDistanceMoving / (float) timeMoving * 1000f;
+				} else {
+					a.avgSpeed = (float) totalSpeedSum / (float) speedCount;
+				}
+			} else {
+				a.avgSpeed = -1;
+			}
+			a.minHdop = minHdop;
+			a.maxHdop = maxHdop;
+			a.points = points;
+			a.left = left;
+			a.right = right;
+			a.top = top;
+			a.bottom = bottom;
+			a.hasElevationData = hasElevationData;
+			a.hasSpeedData = hasSpeedData;
+			a.hasSpeedInTrack = hasSpeedInTrack;
+			a.metricEnd = metricEnd;
+			a.secondaryMetricEnd = secondaryMetricEnd;
+			if (points > 0) {
+				a.locationStart = new WptPt(locationStart);
+				a.locationEnd = new WptPt(prevLat, prevLon, prevTime, prevEle, prevSpeed, prevHdop);
+				a.locationEnd.distance = segmentDistance;
+			}
+			if (!a.isTimeSpecified()) {
+				a.startTime = filestamp;
+				a.endTime = filestamp;
+			}
+			a.timeSpan = a.endTime - a.startTime;
+			return a;
+		}
+	}
+}
@@ -31,6 +31,7 @@ import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -43,6 +44,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.RandomAccess;
 import java.util.Set;
 import java.util.Stack;
 import java.util.TimeZone;
@@ -129,6 +131,13 @@ public class GPXUtilities {
 		boolean readExtensions(GPXFile res, XmlPullParser parser) throws IOException, XmlPullParserException;
 	}
 
+	public interface GPXTrackPointsListener {
+		/**
+		 * Called when track point is read completely, parser doesn't add point to segment
+		 */
+		void onTrackPoint(Track track, TrkSegment segment, WptPt point);
+	}
+
 	public static class GPXExtensions {
 		Map<String, String> extensions = null;
 		GPXExtensionsWriter extensionsWriter = null;
@@ -472,6 +481,358 @@ public class GPXUtilities {
 		}
 	}
 
+	/**
+	 * Compact column storage of track points (about 50 bytes per point instead of WptPt object). Points are
+	 * materialized as new WptPt on get(), so changes of returned points should be stored back by set().
+	 * Points with names, descriptions, colors or custom extensions are kept as objects along with columns.
+	 */
+	public static class ColumnarPoints extends AbstractList<WptPt> implements RandomAccess {
+
+		private static final byte FIRST_POINT = 1;
+		private static final byte LAST_POINT = 2;
+
+		private int size;
+		private double[] lat;
+		private double[] lon;
+		private long[] time;
+		private float[] ele;
+		private float[] speed;
+		private float[] hdop;
+		private float[] heading;
+		private double[] distance;
+		private byte[] flags;
+		private WptPt[] objects;
+
+		public ColumnarPoints() {
+			this(16);
+		}
+
+		public ColumnarPoints(int capacity) {
+			capacity = Math.max(capacity, 1);
+			lat = new double[capacity];
+			lon = new double[capacity];
+			time = new long[capacity];
+			ele = new float[capacity];
+			speed = new float[capacity];
+			hdop = new float[capacity];
+			heading = new float[capacity];
+			distance = new double[capacity];
+			flags = new byte[capacity];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		public double getLatitude(int index) {
+			checkIndex(index);
+			return lat[index];
+		}
+
+		public double getLongitude(int index) {
+			checkIndex(index);
+			return lon[index];
+		}
+
+		public long getTime(int index) {
+			checkIndex(index);
+			return time[index];
+		}
+
+		public double getElevation(int index) {
+			checkIndex(index);
+			return ele[index];
+		}
+
+		public double getSpeed(int index) {
+			checkIndex(index);
+			return speed[index];
+		}
+
+		public double getHdop(int index) {
+			checkIndex(index);
+			return hdop[index];
+		}
+
+		public float getHeading(int index) {
+			checkIndex(index);
+			return heading[index];
+		}
+
+		public double getDistance(int index) {
+			checkIndex(index);
+			return distance[index];
+		}
+
+		public void setDistance(int index, double dist) {
+			checkIndex(index);
+			distance[index] = dist;
+		}
+
+		public boolean isFirstPoint(int index) {
+			checkIndex(index);
+			return (flags[index] & FIRST_POINT) != 0;
+		}
+
+		public boolean isLastPoint(int index) {
+			checkIndex(index);
+			return (flags[index] & LAST_POINT) != 0;
+		}
+
+		public void setFirstPoint(int index, boolean firstPoint) {
+			checkIndex(index);
+			flags[index] = (byte) (firstPoint ? flags[index] | FIRST_POINT : flags[index] & ~FIRST_POINT);
+		}
+
+		public void setLastPoint(int index, boolean lastPoint) {
+			checkIndex(index);
+			flags[index] = (byte) (lastPoint ? flags[index] | LAST_POINT : flags[index] & ~LAST_POINT);
+		}
+
+		public void addPoint(double lat, double lon, long time, double ele, double speed, double hdop) {
+			addPoint(lat, lon, time, ele, speed, hdop, Float.NaN);
+		}
+
+		public void addPoint(double lat, double lon, long time, double ele, double speed, double hdop, float heading) {
+			ensureCapacity(size + 1);
+			int i = size++;
+			this.lat[i] = lat;
+			this.lon[i] = lon;
+			this.time[i] = time;
+			this.ele[i] = (float) ele;
+			this.speed[i] = (float) speed;
+			this.hdop[i] = (float) hdop;
+			this.heading[i] = heading;
+			this.distance[i] = 0;
+			this.flags[i] = 0;
+			if (objects != null) {
+				objects[i] = null;
+			}
+			modCount++;
+		}
+
+		@Override
+		public WptPt get(int index) {
+			return get(index, null);
+		}
+
+		/**
+		 * Returns point at index, compact point is read to reuse object (if set) without allocation
+		 */
+		public WptPt get(int index, WptPt reuse) {
+			checkIndex(index);
+			WptPt p;
+			if (objects != null && objects[index] != null) {
+				p = copy(objects[index]);
+			} else {
+				p = reuse == null ? new WptPt() : reuse;
+				p.name = null;
+				p.link = null;
+				p.category = null;
+				p.desc = null;
+				p.comment = null;
+				p.extensions = null;
+				p.extensionsWriter = null;
+				p.deleted = false;
+				p.speedColor = 0;
+				p.altitudeColor = 0;
+				p.slopeColor = 0;
+				p.colourARGB = 0;
+				p.lat = lat[index];
+				p.lon = lon[index];
+				p.time = time[index];
+				p.ele = ele[index];
+				p.speed = speed[index];
+				p.hdop = hdop[index];
+				p.heading = heading[index];
+			}
+			p.distance = distance[index];
+			p.firstPoint = (flags[index] & FIRST_POINT) != 0;
+			p.lastPoint = (flags[index] & LAST_POINT) != 0;
+			return p;
+		}
+
+		@Override
+		public WptPt set(int index, WptPt point) {
+			WptPt old = get(index);
+			write(index, point);
+			return old;
+		}
+
+		@Override
+		public void add(int index, WptPt point) {
+			if (index < 0 || index > size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			ensureCapacity(size + 1);
+			move(index, index + 1, size - index);
+			size++;
+			write(index, point);
+			modCount++;
+		}
+
+		@Override
+		public boolean addAll(Collection<? extends WptPt> c) {
+			if (!(c instanceof ColumnarPoints)) {
+				return super.addAll(c);
+			}
+			ColumnarPoints src = (ColumnarPoints) c;
+			int n = src.size;
+			ensureCapacity(size + n);
+			System.arraycopy(src.lat, 0, lat, size, n);
+			System.arraycopy(src.lon, 0, lon, size, n);
+			System.arraycopy(src.time, 0, time, size, n);
+			System.arraycopy(src.ele, 0, ele, size, n);
+			System.arraycopy(src.speed, 0, speed, size, n);
+			System.arraycopy(src.hdop, 0, hdop, size, n);
+			System.arraycopy(src.heading, 0, heading, size, n);
+			System.arraycopy(src.distance, 0, distance, size, n);
+			System.arraycopy(src.flags, 0, flags, size, n);
+			if (src.objects != null) {
+				if (objects == null) {
+					objects = new WptPt[lat.length];
+				}
+				System.arraycopy(src.objects, 0, objects, size, n);
+			} else if (objects != null) {
+				Arrays.fill(objects, size, size + n, null);
+			}
+			size += n;
+			modCount++;
+			return n > 0;
+		}
+
+		@Override
+		public WptPt remove(int index) {
+			WptPt old = get(index);
+			move(index + 1, index, size - index - 1);
+			size--;
+			if (objects != null) {
+				objects[size] = null;
+			}
+			modCount++;
+			return old;
+		}
+
+		@Override
+		public void clear() {
+			size = 0;
+			objects = null;
+			modCount++;
+		}
+
+		public void trimToSize() {
+			if (size < lat.length) {
+				resize(Math.max(size, 1));
+			}
+		}
+
+		private void write(int i, WptPt p) {
+			lat[i] = p.lat;
+			lon[i] = p.lon;
+			time[i] = p.time;
+			ele[i] = (float) p.ele;
+			speed[i] = (float) p.speed;
+			hdop[i] = (float) p.hdop;
+			heading[i] = getHeading(p);
+			distance[i] = p.distance;
+			flags[i] = (byte) ((p.firstPoint ? FIRST_POINT : 0) | (p.lastPoint ? LAST_POINT : 0));
+			if (isCompact(p)) {
+				if (objects != null) {
+					objects[i] = null;
+				}
+			} else {
+				if (objects == null) {
+					objects = new WptPt[lat.length];
+				}
+				objects[i] = copy(p);
+			}
+		}
+
+		private void move(int from, int to, int length) {
+			System.arraycopy(lat, from, lat, to, length);
+			System.arraycopy(lon, from, lon, to, length);
+			System.arraycopy(time, from, time, to, length);
+			System.arraycopy(ele, from, ele, to, length);
+			System.arraycopy(speed, from, speed, to, length);
+			System.arraycopy(hdop, from, hdop, to, length);
+			System.arraycopy(heading, from, heading, to, length);
+			System.arraycopy(distance, from, distance, to, length);
+			System.arraycopy(flags, from, flags, to, length);
+			if (objects != null) {
+				System.arraycopy(objects, from, objects, to, length);
+			}
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (capacity > lat.length) {
+				resize(Math.max(capacity, lat.length * 3 / 2 + 1));
+			}
+		}
+
+		private void resize(int capacity) {
+			lat = Arrays.copyOf(lat, capacity);
+			lon = Arrays.copyOf(lon, capacity);
+			time = Arrays.copyOf(time, capacity);
+			ele = Arrays.copyOf(ele, capacity);
+			speed = Arrays.copyOf(speed, capacity);
+			hdop = Arrays.copyOf(hdop, capacity);
+			heading = Arrays.copyOf(heading, capacity);
+			distance = Arrays.copyOf(distance, capacity);
+			flags = Arrays.copyOf(flags, capacity);
+			if (objects != null) {
+				objects = Arrays.copyOf(objects, capacity);
+			}
+		}
+
+		private void checkIndex(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+		}
+
+		static float getHeading(WptPt p) {
+			if (!Float.isNaN(p.heading)) {
+				return p.heading;
+			}
+			String heading = p.getExtensionsToRead().get("heading");
+			if (heading != null) {
+				try {
+					return Float.parseFloat(heading);
+				} catch (NumberFormatException e) {
+					// not compact
+				}
+			}
+			return Float.NaN;
+		}
+
+		// speed and heading extensions are written from fields, so they are not needed to be kept
+		private static boolean isCompact(WptPt p) {
+			if (p.name != null || p.link != null || p.category != null || p.desc != null || p.comment != null
+					|| p.deleted || p.speedColor != 0 || p.altitudeColor != 0 || p.slopeColor != 0
+					|| p.colourARGB != 0 || p.extensionsWriter != null) {
+				return false;
+			}
+			for (String key : p.getExtensionsToRead().keySet()) {
+				if (key.equals("speed")) {
+					if (!(p.speed > 0)) {
+						return false;
+					}
+				} else if (!key.equals("heading") || Float.isNaN(getHeading(p))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static WptPt copy(WptPt p) {
+			WptPt c = new WptPt(p);
+			c.copyExtensions(p);
+			c.extensionsWriter = p.extensionsWriter;
+			return c;
+		}
+	}
+
 	public static class Track extends GPXExtensions {
 		public String name = null;
 		public String desc = null;
@@ -761,19 +1122,20 @@ public class GPXUtilities {
 			elevationData = new ArrayList<>();
 			speedData = new ArrayList<>();
 
+			// points of columnar segments are read to these objects
+			WptPt pointBuffer = new WptPt();
+			WptPt prevBuffer = new WptPt();
 			for (final SplitSegment s : splitSegments) {
 				final int numberOfPoints = s.getNumberOfPoints();
 				float segmentDistance = 0f;
 				metricEnd += s.metricEnd;
 				secondaryMetricEnd += s.secondaryMetricEnd;
 				points += numberOfPoints;
+				WptPt prev = null;
 				for (int j = 0; j < numberOfPoints; j++) {
-					WptPt point = s.get(j);
+					WptPt point = s.get(j, pointBuffer);
 					if (j == 0 && locationStart == null) {
-						locationStart = point;
-					}
-					if (j == numberOfPoints - 1) {
-						locationEnd = point;
+						locationStart = point == pointBuffer ? s.get(j) : point;
 					}
 					long time = point.time;
 					if (time != 0) {
@@ -836,8 +1198,6 @@ public class GPXUtilities {
 					}
 
 					if (j > 0) {
-						WptPt prev = s.get(j - 1);
-
 						// Old complete summation approach for elevation gain/loss
 						//if (!Double.isNaN(point.ele) && !Double.isNaN(prev.ele)) {
 						//	double diff = point.ele - prev.ele;
@@ -854,7 +1214,7 @@ public class GPXUtilities {
 						net.osmand.Location.distanceBetween(prev.lat, prev.lon, point.lat, point.lon, calculations);
 						totalDistance += calculations[0];
 						segmentDistance += calculations[0];
-						point.distance = segmentDistance;
+						s.setDistance(j, point, segmentDistance);
 
 						// In case points are reversed and => time is decreasing
 						long timeDiffMillis = Math.max(0, point.time - prev.time);
@@ -928,12 +1288,21 @@ public class GPXUtilities {
 							}
 						}
 					}
+					if (j == numberOfPoints - 1) {
+						locationEnd = point == pointBuffer ? s.get(j) : point;
+					}
+					if (point == pointBuffer) {
+						pointBuffer = prevBuffer;
+						prevBuffer = point;
+					}
+					prev = point;
 				}
 
+				final WptPt elevationBuffer = pointBuffer;
 				ElevationDiffsCalculator elevationDiffsCalc = new ElevationDiffsCalculator(0, numberOfPoints) {
 					@Override
 					public WptPt getPoint(int index) {
-						return s.get(index);
+						return s.get(index, elevationBuffer);
 					}
 				};
 				elevationDiffsCalc.calculateElevationDiffs();
@@ -1125,6 +1494,26 @@ public class GPXUtilities {
 			return segment.points.get(ind);
 		}
 
+		/**
+		 * Compact points are read to reuse object, see {@link ColumnarPoints#get(int, WptPt)}
+		 */
+		public WptPt get(int j, WptPt reuse) {
+			if (segment.points instanceof ColumnarPoints && !isApproximated(j)) {
+				return ((ColumnarPoints) segment.points).get(j + startPointInd, reuse);
+			}
+			return get(j);
+		}
+
+		public void setDistance(int j, WptPt point, double distance) {
+			point.distance = distance;
+			if (segment.points instanceof ColumnarPoints && !isApproximated(j)) {
+				((ColumnarPoints) segment.points).setDistance(j + startPointInd, distance);
+			}
+		}
+
+		private boolean isApproximated(int j) {
+			return (j == 0 && startCoeff != 0) || (j == getNumberOfPoints() - 1 && endCoeff != 1);
+		}
 
 		private WptPt approx(WptPt w1, WptPt w2, double cf) {
 			long time = value(w1.time, w2.time, 0, cf);
@@ -1412,7 +1801,18 @@ public class GPXUtilities {
 			TrkSegment segment = new TrkSegment();
 			for (Track track : tracks) {
 				for (TrkSegment s : track.segments) {
-					if (s.points.size() > 0) {
+					if (s.points instanceof ColumnarPoints && s.points.size() > 0) {
+						if (!(segment.points instanceof ColumnarPoints)) {
+							ColumnarPoints points = new ColumnarPoints(s.points.size());
+							points.addAll(segment.points);
+							segment.points = points;
+						}
+						ColumnarPoints points = (ColumnarPoints) segment.points;
+						int start = points.size();
+						points.addAll(s.points);
+						points.setFirstPoint(start, true);
+						points.setLastPoint(points.size() - 1, true);
+					} else if (s.points.size() > 0) {
 						List<WptPt> waypoints = new ArrayList<>(s.points.size());
 						for (WptPt wptPt : s.points) {
 							waypoints.add(new WptPt(wptPt));
@@ -2046,6 +2446,10 @@ public class GPXUtilities {
 	}
 
 	public static Exception writeGpx(Writer output, GPXFile file, IProgress progress) {
+		return writeGpx(output, file, progress, true);
+	}
+
+	static Exception writeGpx(Writer output, GPXFile file, IProgress progress, boolean writeTrackPoints) {
 		if (progress != null) {
 			progress.startWork(file.getItemsToWriteSize());
 		}
@@ -2068,7 +2472,7 @@ public class GPXUtilities {
 			writeMetadata(serializer, file, progress);
 			writePoints(serializer, file, progress);
 			writeRoutes(serializer, file, progress);
-			writeTracks(serializer, file, progress);
+			writeTracks(serializer, file, progress, writeTrackPoints);
 			writeExtensions(serializer, file, progress);
 
 			serializer.endTag(null, "gpx"); //$NON-NLS-1$
@@ -2139,7 +2543,8 @@ public class GPXUtilities {
 		}
 	}
 
-	private static void writeTracks(XmlSerializer serializer, GPXFile file, IProgress progress) throws IOException {
+	private static void writeTracks(XmlSerializer serializer, GPXFile file, IProgress progress,
+	                                boolean writeTrackPoints) throws IOException {
 		for (Track track : file.tracks) {
 			if (!track.generalTrack) {
 				serializer.startTag(null, "trk"); //$NON-NLS-1$
@@ -2148,12 +2553,14 @@ public class GPXUtilities {
 				for (TrkSegment segment : track.segments) {
 					serializer.startTag(null, "trkseg"); //$NON-NLS-1$
 					writeNotNullText(serializer, "name", segment.name);
-					for (WptPt p : segment.points) {
-						boolean artificial = Math.abs(p.lon) == PRIME_MERIDIAN;
-						if (!artificial) {
-							serializer.startTag(null, "trkpt"); //$NON-NLS-1$
-							writeWpt(serializer, p, progress);
-							serializer.endTag(null, "trkpt"); //$NON-NLS-1$
+					if (writeTrackPoints) {
+						for (WptPt p : segment.points) {
+							boolean artificial = Math.abs(p.lon) == PRIME_MERIDIAN;
+							if (!artificial) {
+								serializer.startTag(null, "trkpt"); //$NON-NLS-1$
+								writeWpt(serializer, p, progress);
+								serializer.endTag(null, "trkpt"); //$NON-NLS-1$
+							}
 						}
 					}
 					assignRouteExtensionWriter(segment);
@@ -2411,10 +2818,26 @@ public class GPXUtilities {
 	}
 
 	public static GPXFile loadGPXFile(File file, GPXExtensionsReader extensionsReader) {
+		return loadGPXFile(file, extensionsReader, null);
+	}
+
+	/**
+	 * Loads track points to compact ColumnarPoints segments
+	 */
+	public static GPXFile loadColumnarGPXFile(File file) {
+		return loadGPXFile(file, null, COLUMNAR_POINTS_LISTENER);
+	}
+
+	public static GPXFile loadColumnarGPXFile(InputStream stream) {
+		return loadGPXFile(stream, null, COLUMNAR_POINTS_LISTENER);
+	}
+
+	public static GPXFile loadGPXFile(File file, GPXExtensionsReader extensionsReader,
+	                                  GPXTrackPointsListener pointsListener) {
 		FileInputStream fis = null;
 		try {
 			fis = new FileInputStream(file);
-			GPXFile gpxFile = loadGPXFile(fis, extensionsReader);
+			GPXFile gpxFile = loadGPXFile(fis, extensionsReader, pointsListener);
 			gpxFile.path = file.getAbsolutePath();
 			gpxFile.modifiedTime = file.lastModified();
 
@@ -2436,6 +2859,15 @@ public class GPXUtilities {
 	}
 
 	public static GPXFile loadGPXFile(InputStream stream, GPXExtensionsReader extensionsReader) {
+		return loadGPXFile(stream, extensionsReader, null);
+	}
+
+	/**
+	 * @param pointsListener receives track points instead of segments (segments stay empty),
+	 *                       so large tracks could be processed without keeping all points in memory
+	 */
+	public static GPXFile loadGPXFile(InputStream stream, GPXExtensionsReader extensionsReader,
+	                                  GPXTrackPointsListener pointsListener) {
 		GPXFile gpxFile = new GPXFile(null);
 		try {
 			XmlPullParser parser = PlatformUtil.newXMLPullParser();
@@ -2445,6 +2877,9 @@ public class GPXUtilities {
 			routeTrack.segments.add(routeTrackSegment);
 			Stack<GPXExtensions> parserState = new Stack<>();
 			TrkSegment firstSegment = null;
+			Track currentTrack = null;
+			WptPt streamedPoint = null;
+			TrkSegment streamedSegment = null;
 			boolean extensionReadMode = false;
 			boolean routePointExtension = false;
 			List<RouteSegment> routeSegments = new ArrayList<>();
@@ -2528,6 +2963,7 @@ public class GPXUtilities {
 								Track track = new Track();
 								((GPXFile) parse).tracks.add(track);
 								parserState.push(track);
+								currentTrack = track;
 							}
 							if (tag.equals("rte")) {
 								Route route = new Route();
@@ -2623,7 +3059,13 @@ public class GPXUtilities {
 									((Track) parse).segments.add(new TrkSegment());
 									size++;
 								}
-								((Track) parse).segments.get(size - 1).points.add(wptPt);
+								TrkSegment segment = ((Track) parse).segments.get(size - 1);
+								if (pointsListener != null) {
+									streamedPoint = wptPt;
+									streamedSegment = segment;
+								} else {
+									segment.points.add(wptPt);
+								}
 								parserState.push(wptPt);
 							}
 						} else if (parse instanceof TrkSegment) {
@@ -2631,7 +3073,12 @@ public class GPXUtilities {
 								((TrkSegment) parse).name = readText(parser, "name");
 							} else if (tag.equals("trkpt") || tag.equals("rpt")) {
 								WptPt wptPt = parseWptAttributes(parser);
-								((TrkSegment) parse).points.add(wptPt);
+								if (pointsListener != null) {
+									streamedPoint = wptPt;
+									streamedSegment = (TrkSegment) parse;
+								} else {
+									((TrkSegment) parse).points.add(wptPt);
+								}
 								parserState.push(wptPt);
 							}
 							if (tag.equals("csvattributes")) {
@@ -2645,10 +3092,14 @@ public class GPXUtilities {
 											WptPt wptPt = new WptPt();
 											wptPt.lon = Double.parseDouble(pointAttrs[0]);
 											wptPt.lat = Double.parseDouble(pointAttrs[1]);
-											((TrkSegment) parse).points.add(wptPt);
 											if (arrLength > 2) {
 												wptPt.ele = Double.parseDouble(pointAttrs[2]);
 											}
+											if (pointsListener != null) {
+												pointsListener.onTrackPoint(currentTrack, (TrkSegment) parse, wptPt);
+											} else {
+												((TrkSegment) parse).points.add(wptPt);
+											}
 										}
 									} catch (NumberFormatException e) {
 									}
@@ -2736,9 +3187,13 @@ public class GPXUtilities {
 						if (parse instanceof Bounds) {
 							parserState.pop();
 						}
-					} else if (tag.equals("trkpt")) {
+					} else if (tag.equals("trkpt") || tag.equals("rpt")) {
 						Object pop = parserState.pop();
 						assert pop instanceof WptPt;
+						if (pop == streamedPoint) {
+							pointsListener.onTrackPoint(currentTrack, streamedSegment, streamedPoint);
+							streamedPoint = null;
+						}
 					} else if (tag.equals("wpt")) {
 						Object pop = parserState.pop();
 						assert pop instanceof WptPt;
@@ -2764,9 +3219,6 @@ public class GPXUtilities {
 							}
 						}
 						assert pop instanceof TrkSegment;
-					} else if (tag.equals("rpt")) {
-						Object pop = parserState.pop();
-						assert pop instanceof WptPt;
 					}
 				}
 			}
@@ -2788,6 +3240,18 @@ public class GPXUtilities {
 		return gpxFile;
 	}
 
+	private static final GPXTrackPointsListener COLUMNAR_POINTS_LISTENER = new GPXTrackPointsListener() {
+		@Override
+		public void onTrackPoint(Track track, TrkSegment segment, WptPt point) {
+			if (!(segment.points instanceof ColumnarPoints)) {
+				ColumnarPoints points = new ColumnarPoints();
+				points.addAll(segment.points);
+				segment.points = points;
+			}
+			segment.points.add(point);
+		}
+	};
+
 	private static Reader getUTF8Reader(InputStream f) throws IOException {
 		BufferedInputStream bis = new BufferedInputStream(f);
 		assert bis.markSupported();
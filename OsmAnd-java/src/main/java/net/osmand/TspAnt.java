@@ -115,14 +115,26 @@ public class TspAnt {
         if (keepEndPoint) {
             l.add(end);
         }
-        n = l.size() ;
+        double[][] costs = new double[l.size()][l.size()];
+		for (int i = 0; i < l.size(); i++) {
+			for (int j = 0; j < l.size(); j++) {
+				costs[i][j] = MapUtils.getDistance(l.get(i), l.get(j));
+			}
+		}
+		return readGraph(costs, keepEndPoint);
+    }
+
+    // Read in graph from cost matrix (e.g. road distances or times of RouteMatrix),
+    // first town is start and last town is end if keepEndPoint is set.
+    public TspAnt readGraph(double[][] costs, boolean keepEndPoint) {
+        n = costs.length;
 //        System.out.println("Cost");
         graph = new double[n][n];
         double maxSum = 0;
 		for (int i = 0; i < n ; i++) {
 			double maxIWeight = 0;
 			for (int j = 1; j < n ; j++) {
-				double d = Math.rint(MapUtils.getDistance(l.get(i), l.get(j))) + 0.1;
+				double d = Math.rint(costs[i][j]) + 0.1;
 				maxIWeight = Math.max(d, maxIWeight);
 				graph[i][j] = d;
 			}
@@ -25,7 +25,18 @@ public class TspHeldKarp {
 
   /// OSMAND Modification
 	public TspHeldKarp readInput(List<LatLon> ls, boolean returnToInitialPoint) {
-		n = ls.size();
+		double[][] distances = new double[ls.size()][ls.size()];
+		for (int i = 0; i < ls.size(); i++) {
+			for (int j = 0; j < ls.size(); j++) {
+				distances[i][j] = MapUtils.getDistance(ls.get(i), ls.get(j));
+			}
+		}
+		return readInput(distances, returnToInitialPoint);
+	}
+
+	// cost matrix could be road distances or times (see RouteMatrix)
+	public TspHeldKarp readInput(double[][] distances, boolean returnToInitialPoint) {
+		n = distances.length;
 		order = new int[n];
 		cost = new double[n][n];
 		// TSPLIB distances are rounded to the nearest integer to avoid the sum of square roots problem
@@ -35,7 +46,7 @@ public class TspHeldKarp {
 				if (!returnToInitialPoint && (j == 0)) {
 					cost[i][j] = 0;
 				} else {
-					cost[i][j] = Math.rint(MapUtils.getDistance(ls.get(i), ls.get(j)));
+					cost[i][j] = Math.rint(distances[i][j]);
 				}
 			}
 			System.out.println(Arrays.toString(cost[i]));
@@ -5,6 +5,8 @@ public abstract class BinaryIndexPart {
 	String name;
 	int length;
 	int filePointer;
+	// name index cached in memory by reader (poi and address regions)
+	NameIndexTrie nameIndex;
 	
 	abstract public String getPartName();
 
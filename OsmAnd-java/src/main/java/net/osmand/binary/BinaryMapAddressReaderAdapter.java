@@ -12,6 +12,7 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
+import net.osmand.CollationKeyStringMatcher;
 import net.osmand.CollatorStringMatcher;
 import net.osmand.PlatformUtil;
 import net.osmand.StringMatcher;
@@ -602,9 +603,9 @@ public class BinaryMapAddressReaderAdapter {
 
 	public void searchAddressDataByName(AddressRegion reg, SearchRequest<MapObject> req, List<Integer> typeFilter) throws IOException {
 		TIntArrayList loffsets = new TIntArrayList();
-		CollatorStringMatcher stringMatcher = new CollatorStringMatcher(req.nameQuery, req.matcherMode);
+		CollatorStringMatcher stringMatcher = new CollationKeyStringMatcher(req.nameQuery, req.matcherMode);
 		String postcode = Postcode.normalize(req.nameQuery, map.getCountryName());
-		final CityMatcher postcodeMatcher = new DefaultCityMatcher(new CollatorStringMatcher(postcode, req.matcherMode));
+		final CityMatcher postcodeMatcher = new DefaultCityMatcher(new CollationKeyStringMatcher(postcode, req.matcherMode));
 		final CityMatcher cityMatcher = new DefaultCityMatcher(stringMatcher);
 		final CityMatcher cityPostcodeMatcher = new CityMatcher() {
 			@Override
@@ -630,7 +631,7 @@ public class BinaryMapAddressReaderAdapter {
 				// here offsets are sorted by distance
 				TIntArrayList charsList = new TIntArrayList();
 				charsList.add(0);
-				map.readIndexedStringTable(stringMatcher.getCollator(), Collections.singletonList(req.nameQuery), "", Collections.singletonList(loffsets), charsList);
+				map.searchIndexedStringTable(reg, stringMatcher.getCollator(), Collections.singletonList(req.nameQuery), Collections.singletonList(loffsets), charsList);
 				codedIS.popLimit(oldLimit);
 				break;
 			case OsmAndAddressNameIndexData.ATOM_FIELD_NUMBER:
@@ -16,6 +16,7 @@ import net.osmand.ResultMatcher;
 import net.osmand.StringMatcher;
 import net.osmand.binary.BinaryMapAddressReaderAdapter.AddressRegion;
 import net.osmand.binary.BinaryMapAddressReaderAdapter.CitiesBlock;
+import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiBox;
 import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiRegion;
 import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiSubType;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
@@ -48,9 +49,14 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -65,6 +71,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -102,6 +109,7 @@ public class BinaryMapIndexReader {
 	
 	
 	private final RandomAccessFile raf;
+	private final MappedIndexFile mappedFile;
 	protected final File file;
 	/*private*/ int version;
 	/*private*/ long dateCreated;
@@ -122,13 +130,25 @@ public class BinaryMapIndexReader {
 	private final BinaryMapAddressReaderAdapter addressAdapter;
 	private final BinaryMapRouteReaderAdapter routeAdapter;
 
+	// name indexes of poi and address regions are kept in memory and stored in file (optional)
+	private boolean nameIndexCacheEnabled;
+	private File nameIndexCacheFile;
+	private boolean nameIndexCacheLoaded;
+	// cache file has header of this map and only complete regions, so new regions are appended
+	private boolean nameIndexCacheValid;
+	private static final int NAME_INDEX_CACHE_VERSION = 2;
+
 	private static final String BASEMAP_NAME = "basemap";
 
+	// shared by all readers opened after it is set
+	private static IndexBlockCache blockCache;
+
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, File file) throws IOException {
 		this.raf = raf;
+		this.mappedFile = null;
 		this.file = file;
-		codedIS = CodedInputStream.newInstance(raf);
+		codedIS = newCodedInputStream(raf, file);
 		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
 		transportAdapter = new BinaryMapTransportReaderAdapter(this);
 		addressAdapter = new BinaryMapAddressReaderAdapter(this);
@@ -139,8 +159,27 @@ public class BinaryMapIndexReader {
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init) throws IOException {
 		this.raf = raf;
+		this.mappedFile = null;
 		this.file = file;
-		codedIS = CodedInputStream.newInstance(raf);
+		codedIS = newCodedInputStream(raf, file);
+		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
+		transportAdapter = new BinaryMapTransportReaderAdapter(this);
+		addressAdapter = new BinaryMapAddressReaderAdapter(this);
+		poiAdapter = new BinaryMapPoiReaderAdapter(this);
+		routeAdapter = new BinaryMapRouteReaderAdapter(this);
+		if (init) {
+			init();
+		}
+	}
+
+	/**
+	 * Reader over memory mapped file, seeks and skips don't require system calls
+	 */
+	public BinaryMapIndexReader(MappedIndexFile mappedFile, boolean init) throws IOException {
+		this.raf = null;
+		this.mappedFile = mappedFile;
+		this.file = mappedFile.getFile();
+		codedIS = mappedFile.newCodedInputStream();
 		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
 		transportAdapter = new BinaryMapTransportReaderAdapter(this);
 		addressAdapter = new BinaryMapAddressReaderAdapter(this);
@@ -152,9 +191,35 @@ public class BinaryMapIndexReader {
 	}
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, BinaryMapIndexReader referenceToSameFile) throws IOException {
+		this(raf, null, newCodedInputStream(raf, referenceToSameFile.file), referenceToSameFile);
+	}
+
+	/**
+	 * Readers opened after cache is set read files through it (readers of memory mapped files are not affected)
+	 * @param cache shared cache or null to read files directly
+	 */
+	public static void setBlockCache(IndexBlockCache cache) {
+		blockCache = cache;
+	}
+
+	public static IndexBlockCache getBlockCache() {
+		return blockCache;
+	}
+
+	private static CodedInputStream newCodedInputStream(RandomAccessFile raf, File file) {
+		IndexBlockCache cache = blockCache;
+		if (cache != null && file != null) {
+			return cache.newCodedInputStream(raf, file);
+		}
+		return CodedInputStream.newInstance(raf);
+	}
+
+	private BinaryMapIndexReader(RandomAccessFile raf, MappedIndexFile mappedFile, CodedInputStream codedIS,
+			BinaryMapIndexReader referenceToSameFile) {
 		this.raf = raf;
+		this.mappedFile = mappedFile;
 		this.file = referenceToSameFile.file;
-		codedIS = CodedInputStream.newInstance(raf);
+		this.codedIS = codedIS;
 		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
 		version = referenceToSameFile.version;
 		dateCreated = referenceToSameFile.dateCreated;
@@ -169,6 +234,10 @@ public class BinaryMapIndexReader {
 		routingIndexes = new ArrayList<RouteRegion>(referenceToSameFile.routingIndexes);
 		indexes = new ArrayList<BinaryIndexPart>(referenceToSameFile.indexes);
 		basemap = referenceToSameFile.basemap;
+		nameIndexCacheEnabled = referenceToSameFile.nameIndexCacheEnabled;
+		nameIndexCacheFile = referenceToSameFile.nameIndexCacheFile;
+		nameIndexCacheLoaded = referenceToSameFile.nameIndexCacheLoaded;
+		nameIndexCacheValid = referenceToSameFile.nameIndexCacheValid;
 		calculateCenterPointForRegions();
 	}
 
@@ -390,10 +459,28 @@ public class BinaryMapIndexReader {
 	}
 
 
+	/**
+	 * Creates reader of the same file with own position to be used by another thread.
+	 * Memory mapped reader shares mapping with the view, otherwise file is opened again.
+	 */
+	public BinaryMapIndexReader createThreadView() throws IOException {
+		if (mappedFile != null) {
+			return new BinaryMapIndexReader(null, mappedFile, mappedFile.newCodedInputStream(), this);
+		}
+		return new BinaryMapIndexReader(new RandomAccessFile(file, "r"), this);
+	}
+
+	/**
+	 * @return file or null if reader is memory mapped
+	 */
 	public RandomAccessFile getRaf() {
 		return raf;
 	}
 
+	public boolean isMemoryMapped() {
+		return mappedFile != null;
+	}
+
 	public File getFile() {
 		return file;
 	}
@@ -871,30 +958,109 @@ public class BinaryMapIndexReader {
 	}
 	
 	public List<BinaryMapDataObject> searchMapIndex(SearchRequest<BinaryMapDataObject> req, MapIndex filterMapIndex) throws IOException {
+		MapObjectsCursor cursor = searchMapIndexCursor(req, filterMapIndex);
+		while (cursor.hasNext()) {
+			req.searchResults.add(cursor.next());
+		}
+		return req.getSearchResults();
+	}
+
+	public MapObjectsCursor searchMapIndexCursor(SearchRequest<BinaryMapDataObject> req) {
+		return searchMapIndexCursor(req, null);
+	}
+
+	/**
+	 * Objects are read block by block while cursor is iterated, so only objects of one map data block are kept
+	 * in memory and not collected in search results of request. Cursor reads by codedIS of this reader,
+	 * reader could be used between calls of cursor (each block is read from its file pointer).
+	 */
+	public MapObjectsCursor searchMapIndexCursor(SearchRequest<BinaryMapDataObject> req, MapIndex filterMapIndex) {
 		req.numberOfVisitedObjects = 0;
 		req.numberOfAcceptedObjects = 0;
 		req.numberOfAcceptedSubtrees = 0;
 		req.numberOfReadSubtrees = 0;
-		List<MapTree> foundSubtrees = new ArrayList<MapTree>();
-		for (MapIndex mapIndex : mapIndexes) {
-			if(filterMapIndex != null && mapIndex != filterMapIndex) {
-				continue;
+		return new MapObjectsCursor(req, filterMapIndex);
+	}
+
+	public class MapObjectsCursor implements Closeable {
+		private final SearchRequest<BinaryMapDataObject> req;
+		private final MapIndex filterMapIndex;
+		private int mapIndexInd = -1;
+		private int rootInd;
+		private MapIndex mapIndex;
+		// subtrees of current root level sorted by position of data block
+		private final List<MapTree> foundSubtrees = new ArrayList<MapTree>();
+		private int subtreeInd;
+		private final List<BinaryMapDataObject> blockObjects = new ArrayList<BinaryMapDataObject>();
+		private int blockObjectInd;
+		private boolean finished;
+
+		private MapObjectsCursor(SearchRequest<BinaryMapDataObject> req, MapIndex filterMapIndex) {
+			this.req = req;
+			this.filterMapIndex = filterMapIndex;
+		}
+
+		public boolean hasNext() throws IOException {
+			while (blockObjectInd >= blockObjects.size()) {
+				blockObjects.clear();
+				blockObjectInd = 0;
+				if (finished || req.isCancelled()) {
+					finish();
+					return false;
+				}
+				if (subtreeInd < foundSubtrees.size()) {
+					readDataBlock(foundSubtrees.get(subtreeInd++));
+				} else if (!searchNextRoot()) {
+					finish();
+					return false;
+				}
 			}
-			// lazy initializing rules
-			if (mapIndex.encodingRules.isEmpty()) {
-				codedIS.seek(mapIndex.filePointer);
-				int oldLimit = codedIS.pushLimit(mapIndex.length);
-				readMapIndex(mapIndex, true);
-				codedIS.popLimit(oldLimit);
+			return true;
+		}
+
+		public BinaryMapDataObject next() throws IOException {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
 			}
-			for (MapRoot index : mapIndex.getRoots()) {
+			return blockObjects.get(blockObjectInd++);
+		}
+
+		/**
+		 * Stops iteration, objects which are not read yet are not read at all.
+		 */
+		@Override
+		public void close() {
+			finished = true;
+			blockObjects.clear();
+			blockObjectInd = 0;
+			foundSubtrees.clear();
+			subtreeInd = 0;
+		}
+
+		private void finish() {
+			if (!finished) {
+				close();
+				if (req.numberOfVisitedObjects > 0 && req.log) {
+					log.info("Search is done. Visit " + req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					log.info("Read " + req.numberOfReadSubtrees + " subtrees. Go through " + req.numberOfAcceptedSubtrees + " subtrees.");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
+				}
+			}
+		}
+
+		private boolean searchNextRoot() throws IOException {
+			foundSubtrees.clear();
+			subtreeInd = 0;
+			while (true) {
+				if (mapIndex == null || rootInd >= mapIndex.getRoots().size()) {
+					if (!nextMapIndex()) {
+						return false;
+					}
+				}
+				MapRoot index = mapIndex.getRoots().get(rootInd++);
 				if (index.minZoom <= req.zoom && index.maxZoom >= req.zoom) {
 					if (index.right < req.left || index.left > req.right || index.top > req.bottom || index.bottom < req.top) {
 						continue;
 					}
-
-
-
 					// lazy initializing trees
 					if (index.trees == null) {
 						index.trees = new ArrayList<MapTree>();
@@ -903,7 +1069,6 @@ public class BinaryMapIndexReader {
 						readMapLevel(index);
 						codedIS.popLimit(oldLimit);
 					}
-
 					for (MapTree tree : index.trees) {
 						if (tree.right < req.left || tree.left > req.right || tree.top > req.bottom || tree.bottom < req.top) {
 							continue;
@@ -913,53 +1078,70 @@ public class BinaryMapIndexReader {
 						searchMapTreeBounds(tree, index, req, foundSubtrees);
 						codedIS.popLimit(oldLimit);
 					}
-
 					Collections.sort(foundSubtrees, new Comparator<MapTree>() {
 						@Override
 						public int compare(MapTree o1, MapTree o2) {
 							return o1.mapDataBlock < o2.mapDataBlock ? -1 : (o1.mapDataBlock == o2.mapDataBlock ? 0 : 1);
 						}
 					});
-					for (MapTree tree : foundSubtrees) {
-						if (!req.isCancelled()) {
-							codedIS.seek(tree.mapDataBlock);
-							int length = codedIS.readRawVarint32();
-							int oldLimit = codedIS.pushLimit(length);
-							readMapDataBlocks(req, tree, mapIndex);
-							codedIS.popLimit(oldLimit);
-						}
-					}
-					foundSubtrees.clear();
+					return true;
 				}
+			}
+		}
 
+		private boolean nextMapIndex() throws IOException {
+			while (++mapIndexInd < mapIndexes.size()) {
+				MapIndex mi = mapIndexes.get(mapIndexInd);
+				if (filterMapIndex != null && mi != filterMapIndex) {
+					continue;
+				}
+				// lazy initializing rules
+				if (mi.encodingRules.isEmpty()) {
+					codedIS.seek(mi.filePointer);
+					int oldLimit = codedIS.pushLimit(mi.length);
+					readMapIndex(mi, true);
+					codedIS.popLimit(oldLimit);
+				}
+				mapIndex = mi;
+				rootInd = 0;
+				return true;
 			}
+			mapIndex = null;
+			return false;
 		}
-		if (req.numberOfVisitedObjects > 0 && req.log) {
-			log.info("Search is done. Visit " + req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-			log.info("Read " + req.numberOfReadSubtrees + " subtrees. Go through " + req.numberOfAcceptedSubtrees + " subtrees.");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
+
+		private void readDataBlock(MapTree tree) throws IOException {
+			List<BinaryMapDataObject> objects = new ArrayList<BinaryMapDataObject>();
+			codedIS.seek(tree.mapDataBlock);
+			int length = codedIS.readRawVarint32();
+			int oldLimit = codedIS.pushLimit(length);
+			boolean read = readMapDataBlock(req, tree, mapIndex, objects);
+			codedIS.popLimit(oldLimit);
+			if (read) {
+				for (BinaryMapDataObject obj : objects) {
+					if (req.accept(obj)) {
+						blockObjects.add(obj);
+					}
+				}
+			}
 		}
-		return req.getSearchResults();
 	}
 
-	
-
-	protected void readMapDataBlocks(SearchRequest<BinaryMapDataObject> req, MapTree tree, MapIndex root) throws IOException {
-		List<BinaryMapDataObject> tempResults = null;
+	/**
+	 * @return false if request was cancelled before block was read
+	 */
+	private boolean readMapDataBlock(SearchRequest<BinaryMapDataObject> req, MapTree tree, MapIndex root,
+			List<BinaryMapDataObject> tempResults) throws IOException {
 		long baseId = 0;
 		while (true) {
 			if (req.isCancelled()) {
-				return;
+				return false;
 			}
 			int t = codedIS.readTag();
 			int tag = WireFormat.getTagFieldNumber(t);
 			switch (tag) {
 			case 0:
-				if(tempResults != null) {
-					for(BinaryMapDataObject obj : tempResults) {
-						req.publish(obj);
-					}
-				}
-				return;
+				return true;
 			case MapDataBlock.BASEID_FIELD_NUMBER:
 				baseId = codedIS.readUInt64();
 				if(READ_STATS) {
@@ -979,9 +1161,6 @@ public class BinaryMapIndexReader {
 					if (READ_STATS) {
 						req.publish(mapObject);
 					}
-					if (tempResults == null) {
-						tempResults = new ArrayList<BinaryMapDataObject>();
-					}
 					tempResults.add(mapObject);
 				}
 				codedIS.popLimit(oldLimit);
@@ -993,7 +1172,7 @@ public class BinaryMapIndexReader {
 					req.stat.addBlockHeader(MapDataBlock.STRINGTABLE_FIELD_NUMBER, length);
 					req.stat.lastBlockStringTableSize += length;
 				}
-				if (tempResults != null) {
+				if (!tempResults.isEmpty()) {
 					List<String> stringTable = readStringTable();
 					for (int i = 0; i < tempResults.size(); i++) {
 						BinaryMapDataObject rs = tempResults.get(i);
@@ -1405,6 +1584,38 @@ public class BinaryMapIndexReader {
 		return req.getSearchResults();
 	}
 
+	/**
+	 * Searches k nearest amenities to center of request bbox (bbox limits search radius,
+	 * see {@link #buildSearchPoiRequest(LatLon, int, int, SearchPoiTypeFilter, ResultMatcher)}).
+	 * Data boxes of all poi regions are read in order of distance and search stops as soon as k-th found
+	 * amenity is closer than next box, results are sorted by distance.
+	 * Result matcher of request is applied while nearest amenities are collected (it could be called for
+	 * amenities which are replaced later by closer ones), raw data is collected only for final k amenities.
+	 */
+	public List<Amenity> searchPoiNearest(SearchRequest<Amenity> req, int k) throws IOException {
+		req.numberOfVisitedObjects = 0;
+		req.numberOfAcceptedObjects = 0;
+		req.numberOfAcceptedSubtrees = 0;
+		req.numberOfReadSubtrees = 0;
+		List<PoiBox> boxes = new ArrayList<PoiBox>();
+		for (PoiRegion poiIndex : poiIndexes) {
+			poiAdapter.initCategories(poiIndex);
+			codedIS.seek(poiIndex.filePointer);
+			int old = codedIS.pushLimit(poiIndex.length);
+			poiAdapter.searchPoiBoxes(req.left, req.right, req.top, req.bottom, req, poiIndex, boxes);
+			codedIS.popLimit(old);
+		}
+		int x31 = req.left / 2 + req.right / 2;
+		int y31 = req.top / 2 + req.bottom / 2;
+		// amenities are already accepted by result matcher
+		for (Amenity am : poiAdapter.searchNearestPoi(x31, y31, k, req, boxes)) {
+			req.collectRawData(am);
+			req.searchResults.add(am);
+		}
+		log.info("Search nearest poi is done. Visit " + req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		return req.getSearchResults();
+	}
+
 	public List<Amenity> searchPoi(PoiRegion poiIndex, SearchRequest<Amenity> req) throws IOException {
 		req.numberOfVisitedObjects = 0;
 		req.numberOfAcceptedObjects = 0;
@@ -1619,7 +1830,10 @@ public class BinaryMapIndexReader {
 
 	public void close() throws IOException {
 		if (codedIS != null) {
-			raf.close();
+			// mapping is released by GC when it is not referenced by any reader
+			if (raf != null) {
+				raf.close();
+			}
 			codedIS = null;
 			mapIndexes.clear();
 			addressIndexes.clear();
@@ -1753,13 +1967,17 @@ public class BinaryMapIndexReader {
 		}
 
 		public boolean publish(T obj) {
-			if (resultMatcher == null || resultMatcher.publish(obj)) {
+			if (accept(obj)) {
 				searchResults.add(obj);
 				return true;
 			}
 			return false;
 		}
 
+		boolean accept(T obj) {
+			return resultMatcher == null || resultMatcher.publish(obj);
+		}
+
 		public void collectRawData(T obj) {
 			if (rawDataCollector != null) {
 				rawDataCollector.publish(obj);
@@ -2402,6 +2620,202 @@ public class BinaryMapIndexReader {
 
 	}
 
+	/**
+	 * Keep name indexes of poi and address regions in memory after first search by name, so next searches
+	 * don't read and compare all keys of string tables on disk. 
+	 * @param cacheFile file to store name indexes (it is validated by size and creation date of map file), 
+	 * could be null to keep indexes only in memory 
+	 */
+	public void enableNameIndexCache(File cacheFile) {
+		nameIndexCacheEnabled = true;
+		nameIndexCacheFile = cacheFile;
+		nameIndexCacheLoaded = false;
+		nameIndexCacheValid = false;
+	}
+
+	public boolean isNameIndexCacheEnabled() {
+		return nameIndexCacheEnabled;
+	}
+
+	/**
+	 * Same as {@link #readIndexedStringTable} for name index of region (stream is limited by table),
+	 * uses cached name index of region if it is enabled.
+	 */
+	void searchIndexedStringTable(BinaryIndexPart region, Collator instance, List<String> queries,
+			List<TIntArrayList> listOffsets, TIntArrayList matchedCharacters) throws IOException {
+		if (!nameIndexCacheEnabled) {
+			readIndexedStringTable(instance, queries, "", listOffsets, matchedCharacters);
+			return;
+		}
+		if (!nameIndexCacheLoaded) {
+			nameIndexCacheLoaded = true;
+			loadNameIndexCache();
+		}
+		NameIndexTrie trie = region.nameIndex;
+		if (trie == null) {
+			long time = System.currentTimeMillis();
+			NameIndexTrie.Builder builder = new NameIndexTrie.Builder();
+			readNameIndexTrie(builder);
+			trie = builder.build();
+			region.nameIndex = trie;
+			if (log.isDebugEnabled()) {
+				log.debug("Name index of " + region.getName() + " " + trie.getKeysCount() + " keys is read in " 
+						+ (System.currentTimeMillis() - time) + " ms");
+			}
+			saveNameIndexCache(region);
+		} else {
+			codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+		}
+		trie.search(instance, queries, listOffsets, matchedCharacters);
+	}
+
+	private void readNameIndexTrie(NameIndexTrie.Builder builder) throws IOException {
+		String key = null;
+		int node = -1;
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				if (node != -1) {
+					builder.closeNode(node);
+				}
+				return;
+			case OsmandOdb.IndexedStringTable.KEY_FIELD_NUMBER :
+				key = codedIS.readString();
+				if (node != -1) {
+					builder.closeNode(node);
+				}
+				node = builder.addNode(key);
+				break;
+			case OsmandOdb.IndexedStringTable.VAL_FIELD_NUMBER :
+				int val = readInt();
+				if (node != -1) {
+					builder.addPosting(node, val);
+				}
+				break;
+			case OsmandOdb.IndexedStringTable.SUBTABLES_FIELD_NUMBER :
+				int len = codedIS.readRawVarint32();
+				int oldLim = codedIS.pushLimit(len);
+				if (key != null) {
+					readNameIndexTrie(builder);
+				} else {
+					codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+				}
+				codedIS.popLimit(oldLim);
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
+	private List<BinaryIndexPart> getNameIndexRegions() {
+		List<BinaryIndexPart> regions = new ArrayList<BinaryIndexPart>();
+		regions.addAll(poiIndexes);
+		regions.addAll(addressIndexes);
+		return regions;
+	}
+
+	private void loadNameIndexCache() {
+		if (nameIndexCacheFile == null || file == null || !nameIndexCacheFile.exists()) {
+			return;
+		}
+		// thread views of reader could append regions to same file
+		synchronized (NameIndexTrie.class) {
+			try {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(nameIndexCacheFile)));
+				try {
+					if (in.readInt() != NAME_INDEX_CACHE_VERSION || in.readLong() != file.length()
+							|| in.readLong() != dateCreated) {
+						return;
+					}
+					List<BinaryIndexPart> regions = getNameIndexRegions();
+					while (in.available() > 0) {
+						int fieldNumber = in.readInt();
+						int filePointer = in.readInt();
+						NameIndexTrie trie = NameIndexTrie.readFrom(in);
+						for (BinaryIndexPart region : regions) {
+							if (region.getFieldNumber() == fieldNumber && region.getFilePointer() == filePointer
+									&& region.nameIndex == null) {
+								region.nameIndex = trie;
+							}
+						}
+					}
+					nameIndexCacheValid = true;
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				log.warn("Name index cache " + nameIndexCacheFile.getName() + " is not read: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Appends name index of region to cache file, file is rewritten (with all regions read by reader) only if
+	 * it is not valid for this map
+	 */
+	private void saveNameIndexCache(BinaryIndexPart region) {
+		if (nameIndexCacheFile == null || file == null || !getNameIndexRegions().contains(region)) {
+			return;
+		}
+		synchronized (NameIndexTrie.class) {
+			if (nameIndexCacheValid && nameIndexCacheFile.exists()) {
+				try {
+					DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+							new FileOutputStream(nameIndexCacheFile, true)));
+					try {
+						writeNameIndexCacheRegion(out, region);
+					} finally {
+						out.close();
+					}
+				} catch (IOException e) {
+					log.warn("Name index cache " + nameIndexCacheFile.getName() + " is not saved: " + e.getMessage());
+					// region could be written partially
+					nameIndexCacheValid = false;
+					nameIndexCacheFile.delete();
+				}
+				return;
+			}
+			File tmp = new File(nameIndexCacheFile.getPath() + ".tmp");
+			try {
+				if (nameIndexCacheFile.getParentFile() != null) {
+					nameIndexCacheFile.getParentFile().mkdirs();
+				}
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+				try {
+					out.writeInt(NAME_INDEX_CACHE_VERSION);
+					out.writeLong(file.length());
+					out.writeLong(dateCreated);
+					for (BinaryIndexPart r : getNameIndexRegions()) {
+						if (r.nameIndex != null) {
+							writeNameIndexCacheRegion(out, r);
+						}
+					}
+				} finally {
+					out.close();
+				}
+				nameIndexCacheFile.delete();
+				if (tmp.renameTo(nameIndexCacheFile)) {
+					nameIndexCacheValid = true;
+				} else {
+					tmp.delete();
+				}
+			} catch (IOException e) {
+				log.warn("Name index cache " + nameIndexCacheFile.getName() + " is not saved: " + e.getMessage());
+				tmp.delete();
+			}
+		}
+	}
+
+	private void writeNameIndexCacheRegion(DataOutputStream out, BinaryIndexPart region) throws IOException {
+		out.writeInt(region.getFieldNumber());
+		out.writeInt(region.getFilePointer());
+		region.nameIndex.writeTo(out);
+	}
+
 	void readIndexedStringTable(Collator instance, List<String> queries, String prefix, List<TIntArrayList> listOffsets, TIntArrayList matchedCharacters) throws IOException {
 		String key = null;
 		boolean[] matched = new boolean[matchedCharacters.size()];
@@ -2712,6 +3126,22 @@ public class BinaryMapIndexReader {
 		return Collections.emptyList();
 	}
 
+	/**
+	 * Objects are loaded with types and id only, other data is decoded by {@link RouteDataObject#decodeLazyData()}
+	 */
+	public List<RouteDataObject> loadRouteIndexData(RouteSubregion rs, boolean lazy) throws IOException {
+		if (routeAdapter != null) {
+			return routeAdapter.loadRouteRegionData(rs, lazy);
+		}
+		return Collections.emptyList();
+	}
+
+	void readLazyRouteData(RouteDataObject o) throws IOException {
+		if (routeAdapter != null) {
+			routeAdapter.readLazyRouteData(o);
+		}
+	}
+
 	public void initRouteRegion(RouteRegion routeReg) throws IOException {
 		if (routeAdapter != null) {
 			routeAdapter.initRouteRegion(routeReg);
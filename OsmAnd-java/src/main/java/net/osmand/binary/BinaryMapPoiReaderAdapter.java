@@ -4,9 +4,11 @@ package net.osmand.binary;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.PriorityQueue;
 
 import org.apache.commons.logging.Log;
 
@@ -17,6 +19,7 @@ import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.hash.TIntLongHashMap;
 import gnu.trove.set.hash.TLongHashSet;
 import net.osmand.Collator;
+import net.osmand.CollationKeyStringMatcher;
 import net.osmand.CollatorStringMatcher;
 import net.osmand.CollatorStringMatcher.StringMatcherMode;
 import net.osmand.Location;
@@ -300,7 +303,7 @@ public class BinaryMapPoiReaderAdapter {
 	protected void searchPoiByName(PoiRegion region, SearchRequest<Amenity> req) throws IOException {
 		TIntLongHashMap offsets = new TIntLongHashMap();
 		String query = normalizeSearchPoiByNameQuery(req.nameQuery);
-		CollatorStringMatcher matcher = new CollatorStringMatcher(query,
+		CollatorStringMatcher matcher = new CollationKeyStringMatcher(query,
 				StringMatcherMode.CHECK_STARTS_FROM_SPACE);
 		long time = System.currentTimeMillis();
 		int indexOffset = codedIS.getTotalBytesRead();
@@ -317,7 +320,7 @@ public class BinaryMapPoiReaderAdapter {
 				int length = readInt();
 				int oldLimit = codedIS.pushLimit(length);
 				// here offsets are sorted by distance
-				offsets = readPoiNameIndex(matcher.getCollator(), query, req);
+				offsets = readPoiNameIndex(region, matcher.getCollator(), query, req);
 				codedIS.popLimit(oldLimit);
 				break;
 			case OsmandOdb.OsmAndPoiIndex.POIDATA_FIELD_NUMBER:
@@ -372,7 +375,7 @@ public class BinaryMapPoiReaderAdapter {
 		}
 	}
 
-	private TIntLongHashMap readPoiNameIndex(Collator instance, String query, SearchRequest<Amenity> req) throws IOException {
+	private TIntLongHashMap readPoiNameIndex(PoiRegion region, Collator instance, String query, SearchRequest<Amenity> req) throws IOException {
 		TIntLongHashMap offsets = new TIntLongHashMap();
 		List<TIntArrayList> listOffsets = null;
 		List<TIntLongHashMap> listOfSepOffsets = new ArrayList<TIntLongHashMap>();
@@ -394,7 +397,7 @@ public class BinaryMapPoiReaderAdapter {
 					charsList.add(0);
 					listOffsets.add(new TIntArrayList());
 				}
-				map.readIndexedStringTable(instance, queries, "", listOffsets, charsList);
+				map.searchIndexedStringTable(region, instance, queries, listOffsets, charsList);
 				codedIS.popLimit(oldLimit);
 				break;
 			}
@@ -518,7 +521,7 @@ public class BinaryMapPoiReaderAdapter {
 			case OsmandOdb.OsmAndPoiIndex.BOXES_FIELD_NUMBER:
 				length = readInt();
 				oldLimit = codedIS.pushLimit(length);
-				readBoxField(left31, right31, top31, bottom31, 0, 0, 0, offsetsMap, skipTiles, req, region);
+				readBoxField(left31, right31, top31, bottom31, 0, 0, 0, offsetsMap, skipTiles, req, region, null);
 				codedIS.popLimit(oldLimit);
 				break;
 			case OsmandOdb.OsmAndPoiIndex.POIDATA_FIELD_NUMBER:
@@ -545,7 +548,7 @@ public class BinaryMapPoiReaderAdapter {
 					int len = readInt();
 					int oldLim = codedIS.pushLimit(len);
 					boolean read = readPoiData(left31, right31, top31, bottom31, req, region, skipTiles,
-							req.zoom == -1 ? 31 : req.zoom + ZOOM_TO_SKIP_FILTER);
+							req.zoom == -1 ? 31 : req.zoom + ZOOM_TO_SKIP_FILTER, null);
 					if (read && skipVal != -1 && skipTiles != null) {
 						skipTiles.add(skipVal);
 					}
@@ -563,6 +566,129 @@ public class BinaryMapPoiReaderAdapter {
 		}
 	}
 
+	static class PoiBox {
+		final PoiRegion region;
+		// offset of data from start of poi region
+		final int offset;
+		final int left31;
+		final int top31;
+		final int right31;
+		final int bottom31;
+		double distance;
+
+		PoiBox(PoiRegion region, int offset, int left31, int top31, int right31, int bottom31) {
+			this.region = region;
+			this.offset = offset;
+			this.left31 = left31;
+			this.top31 = top31;
+			this.right31 = right31;
+			this.bottom31 = bottom31;
+		}
+	}
+
+	private static class NearestAmenity {
+		final Amenity amenity;
+		final double distance;
+
+		NearestAmenity(Amenity amenity, double distance) {
+			this.amenity = amenity;
+			this.distance = distance;
+		}
+	}
+
+	/**
+	 * Reads boxes tree of region (boxes are filtered by categories of request) and collects data boxes
+	 * without reading data
+	 */
+	protected void searchPoiBoxes(int left31, int right31, int top31, int bottom31,
+			SearchRequest<Amenity> req, PoiRegion region, List<PoiBox> boxes) throws IOException {
+		TIntLongHashMap offsetsMap = new TIntLongHashMap();
+		while (true) {
+			if (req.isCancelled()) {
+				return;
+			}
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case OsmandOdb.OsmAndPoiIndex.BOXES_FIELD_NUMBER:
+				int length = readInt();
+				int oldLimit = codedIS.pushLimit(length);
+				readBoxField(left31, right31, top31, bottom31, 0, 0, 0, offsetsMap, null, req, region, boxes);
+				codedIS.popLimit(oldLimit);
+				break;
+			case OsmandOdb.OsmAndPoiIndex.POIDATA_FIELD_NUMBER:
+				codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+				return;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Reads data boxes in order of distance to x31, y31 and keeps k nearest amenities in bounded heap,
+	 * boxes farther than k-th amenity are not read. Result matcher of request is checked only for amenities
+	 * which are closer than current k-th one, amenities are not added to search results of request.
+	 * @return amenities accepted by result matcher sorted by distance
+	 */
+	protected List<Amenity> searchNearestPoi(int x31, int y31, int k, SearchRequest<Amenity> req,
+			List<PoiBox> boxes) throws IOException {
+		for (PoiBox box : boxes) {
+			int x = Math.max(box.left31, Math.min(box.right31, x31));
+			int y = Math.max(box.top31, Math.min(box.bottom31, y31));
+			box.distance = MapUtils.squareRootDist31(x31, y31, x, y);
+		}
+		Collections.sort(boxes, new Comparator<PoiBox>() {
+			@Override
+			public int compare(PoiBox o1, PoiBox o2) {
+				return Double.compare(o1.distance, o2.distance);
+			}
+		});
+		PriorityQueue<NearestAmenity> heap = new PriorityQueue<NearestAmenity>(Math.max(1, k),
+				new Comparator<NearestAmenity>() {
+					@Override
+					public int compare(NearestAmenity o1, NearestAmenity o2) {
+						return -Double.compare(o1.distance, o2.distance);
+					}
+				});
+		List<Amenity> boxAmenities = new ArrayList<Amenity>();
+		for (PoiBox box : boxes) {
+			if (req.isCancelled() || k <= 0 || (heap.size() >= k && box.distance > heap.peek().distance)) {
+				break;
+			}
+			codedIS.seek(box.region.filePointer + box.offset);
+			int len = readInt();
+			int oldLim = codedIS.pushLimit(len);
+			readPoiData(req.left, req.right, req.top, req.bottom, req, box.region, null, 31, boxAmenities);
+			codedIS.popLimit(oldLim);
+			for (Amenity am : boxAmenities) {
+				LatLon l = am.getLocation();
+				double d = MapUtils.squareRootDist31(x31, y31, MapUtils.get31TileNumberX(l.getLongitude()),
+						MapUtils.get31TileNumberY(l.getLatitude()));
+				if (heap.size() >= k && d >= heap.peek().distance) {
+					continue;
+				}
+				// rejected amenities don't take place of k nearest ones
+				if (!req.accept(am)) {
+					continue;
+				}
+				if (heap.size() >= k) {
+					heap.poll();
+				}
+				heap.add(new NearestAmenity(am, d));
+			}
+			boxAmenities.clear();
+		}
+		Amenity[] res = new Amenity[heap.size()];
+		for (int i = res.length - 1; i >= 0; i--) {
+			res[i] = heap.poll().amenity;
+		}
+		return Arrays.asList(res);
+	}
+
 	private void readPoiData(CollatorStringMatcher matcher, SearchRequest<Amenity> req, PoiRegion region) throws IOException {
 		int x = 0;
 		int y = 0;
@@ -627,7 +753,8 @@ public class BinaryMapPoiReaderAdapter {
 	}
 
 	private boolean readPoiData(int left31, int right31, int top31, int bottom31,
-			SearchRequest<Amenity> req, PoiRegion region, TLongHashSet toSkip, int zSkip) throws IOException {
+			SearchRequest<Amenity> req, PoiRegion region, TLongHashSet toSkip, int zSkip,
+			List<Amenity> results) throws IOException {
 		int x = 0;
 		int y = 0;
 		int zoom = 0;
@@ -671,6 +798,10 @@ public class BinaryMapPoiReaderAdapter {
 							codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
 							return read;
 						}
+					} else if (results != null) {
+						// amenity is already filtered by types, raw data is collected by caller if it stays in results
+						results.add(am);
+						read = true;
 					} else {
 						req.collectRawData(am);
 						if (req.publish(am)) {
@@ -901,7 +1032,7 @@ public class BinaryMapPoiReaderAdapter {
 
 	private boolean readBoxField(int left31, int right31, int top31, int bottom31,
 			int px, int py, int pzoom, TIntLongHashMap offsetsMap, TLongHashSet skipTiles,
-			SearchRequest<Amenity> req, PoiRegion region) throws IOException {
+			SearchRequest<Amenity> req, PoiRegion region, List<PoiBox> boxes) throws IOException {
 		req.numberOfReadSubtrees++;
 		int zoomToSkip = req.zoom == -1 ? 31 : req.zoom + ZOOM_TO_SKIP_FILTER_READ;
 		boolean checkBox = true;
@@ -961,7 +1092,8 @@ public class BinaryMapPoiReaderAdapter {
 
 				int length = readInt();
 				int oldLimit = codedIS.pushLimit(length);
-				boolean exists = readBoxField(left31, right31, top31, bottom31, x, y, zoom, offsetsMap, skipTiles, req, region);
+				boolean exists = readBoxField(left31, right31, top31, bottom31, x, y, zoom, offsetsMap, skipTiles, req, region,
+						boxes);
 				codedIS.popLimit(oldLimit);
 
 				if (skipTiles != null && zoom >= zoomToSkip && exists) {
@@ -983,7 +1115,10 @@ public class BinaryMapPoiReaderAdapter {
 					read = req.tiles.contains((zx << SearchRequest.ZOOM_TO_SEARCH_POI) + zy);
 				}
 				int offset = readInt();
-				if (read) {
+				if (read && boxes != null) {
+					boxes.add(new PoiBox(region, offset, x << (31 - zoom), y << (31 - zoom),
+							((x + 1) << (31 - zoom)) - 1, ((y + 1) << (31 - zoom)) - 1));
+				} else if (read) {
 					if (skipTiles != null && zoom >= zoomToSkip) {
 						long valSkip = ((((long) x) >> (zoom - zoomToSkip)) << zoomToSkip)
 								| (((long) y) >> (zoom - zoomToSkip));
@@ -22,6 +22,7 @@ import org.apache.commons.logging.Log;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
@@ -290,6 +291,48 @@ public class BinaryMapRouteReaderAdapter {
 		}
 	}
 
+	private static class TypesCombinationIndex {
+		private int[][] keys = new int[64][];
+		private int[] ids = new int[64];
+		private int size;
+
+		int getOrCreate(int[] types) {
+			int mask = keys.length - 1;
+			int i = Arrays.hashCode(types) & mask;
+			while (keys[i] != null) {
+				if (Arrays.equals(keys[i], types)) {
+					return ids[i];
+				}
+				i = (i + 1) & mask;
+			}
+			int id = size++;
+			keys[i] = types.clone();
+			ids[i] = id;
+			if (size * 4 > keys.length * 3) {
+				rehash();
+			}
+			return id;
+		}
+
+		private void rehash() {
+			int[][] oldKeys = keys;
+			int[] oldIds = ids;
+			keys = new int[oldKeys.length * 2][];
+			ids = new int[oldKeys.length * 2];
+			int mask = keys.length - 1;
+			for (int k = 0; k < oldKeys.length; k++) {
+				if (oldKeys[k] != null) {
+					int i = Arrays.hashCode(oldKeys[k]) & mask;
+					while (keys[i] != null) {
+						i = (i + 1) & mask;
+					}
+					keys[i] = oldKeys[k];
+					ids[i] = oldIds[k];
+				}
+			}
+		}
+	}
+
 	public static class RouteRegion extends BinaryIndexPart {
 		public int regionsRead;
 		public List<RouteTypeRule> routeEncodingRules = new ArrayList<BinaryMapRouteReaderAdapter.RouteTypeRule>();
@@ -312,6 +355,7 @@ public class BinaryMapRouteReaderAdapter {
 		int destinationTypeRule = -1;
 		int destinationRefTypeRule = -1;
 		private RouteRegion referenceRouteRegion;
+		private TypesCombinationIndex typesCombinations;
 
 		public String getPartName() {
 			return "Routing";
@@ -321,6 +365,16 @@ public class BinaryMapRouteReaderAdapter {
 			return OsmandOdb.OsmAndStructure.ROUTINGINDEX_FIELD_NUMBER;
 		}
 		
+		/**
+		 * Dense id of types combination (equal arrays have same id), so evaluated values could be kept in arrays
+		 */
+		public synchronized int getTypesCombinationId(int[] types) {
+			if (typesCombinations == null) {
+				typesCombinations = new TypesCombinationIndex();
+			}
+			return typesCombinations.getOrCreate(types);
+		}
+
 		public int searchRouteEncodingRule(String tag, String value) {
 			if(decodingRules == null) {
 				decodingRules = new LinkedHashMap<String, Integer>();
@@ -688,21 +742,49 @@ public class BinaryMapRouteReaderAdapter {
 		}
 	}
 	
-	private RouteDataObject readRouteDataObject(RouteRegion reg, int pleftx, int ptopy) throws IOException {
+	private RouteDataObject readRouteDataObject(RouteRegion reg, int pleftx, int ptopy, boolean lazy) throws IOException {
 		RouteDataObject o = new RouteDataObject(reg);
-		TIntArrayList pointsX = new TIntArrayList();
-		TIntArrayList pointsY = new TIntArrayList();
-		TIntArrayList types = new TIntArrayList();
-		List<TIntArrayList> globalpointTypes = new ArrayList<TIntArrayList>();
-		List<TIntArrayList> globalpointNames = new ArrayList<TIntArrayList>();
+		if (lazy) {
+			// only id and types are needed to accept road, rest is read from file on demand
+			o.setLazyData(map, codedIS.getTotalBytesRead(), codedIS.getBytesUntilLimit(), pleftx, ptopy);
+			readRouteDataObject(codedIS, o, pleftx, ptopy, true, false);
+		} else {
+			readRouteDataObject(codedIS, o, pleftx, ptopy, true, true);
+		}
+		return o;
+	}
+
+	/**
+	 * Reads object of encoded lazy object (see {@link RouteDataObject#decodeLazyData()})
+	 */
+	void readLazyRouteData(RouteDataObject o) throws IOException {
+		codedIS.seek(o.lazyOffset);
+		int oldLimit = codedIS.pushLimit(o.lazyLength);
+		readRouteDataObject(codedIS, o, o.lazyLeft, o.lazyTop, false, true);
+		codedIS.popLimit(oldLimit);
+	}
+
+	static void readRouteDataObject(CodedInputStream codedIS, RouteDataObject o, int pleftx, int ptopy,
+			boolean readTypes, boolean readData) throws IOException {
+		// objects which are read lazily are checked by types only, so lists of data are not allocated for them
+		TIntArrayList types = readTypes ? new TIntArrayList() : null;
+		TIntArrayList pointsX = readData ? new TIntArrayList() : null;
+		TIntArrayList pointsY = readData ? new TIntArrayList() : null;
+		List<TIntArrayList> globalpointTypes = readData ? new ArrayList<TIntArrayList>() : null;
+		List<TIntArrayList> globalpointNames = readData ? new ArrayList<TIntArrayList>() : null;
 		while (true) {
 			int ts = codedIS.readTag();
 			int tags = WireFormat.getTagFieldNumber(ts);
 			switch (tags) {
 			case 0:
+				if (readTypes) {
+					o.types = types.toArray();
+				}
+				if (!readData) {
+					return;
+				}
 				o.pointsX = pointsX.toArray();
 				o.pointsY = pointsY.toArray();
-				o.types = types.toArray();
 				if (globalpointTypes.size() > 0) {
 					o.pointTypes = new int[globalpointTypes.size()][];
 					for (int k = 0; k < o.pointTypes.length; k++) {
@@ -727,8 +809,12 @@ public class BinaryMapRouteReaderAdapter {
 						}
 					}
 				}
-				return o;
+				return;
 			case RouteData.TYPES_FIELD_NUMBER:
+				if (!readTypes) {
+					skipUnknownField(codedIS, ts);
+					break;
+				}
 				int len = codedIS.readRawVarint32();
 				int oldLimit = codedIS.pushLimit(len);
 				while(codedIS.getBytesUntilLimit() > 0) {
@@ -737,6 +823,10 @@ public class BinaryMapRouteReaderAdapter {
 				codedIS.popLimit(oldLimit);
 				break;
 			case RouteData.STRINGNAMES_FIELD_NUMBER:
+				if (!readData) {
+					skipUnknownField(codedIS, ts);
+					break;
+				}
 				o.names = new TIntObjectHashMap<String>();
 				int sizeL = codedIS.readRawVarint32();
 				int old = codedIS.pushLimit(sizeL);
@@ -751,6 +841,10 @@ public class BinaryMapRouteReaderAdapter {
 				codedIS.popLimit(old);
 				break;
 			case RouteData.POINTS_FIELD_NUMBER:
+				if (!readData) {
+					skipUnknownField(codedIS, ts);
+					break;
+				}
 				len = codedIS.readRawVarint32();
 				oldLimit = codedIS.pushLimit(len);
 				int px = pleftx >> SHIFT_COORDINATES;
@@ -766,6 +860,10 @@ public class BinaryMapRouteReaderAdapter {
 				codedIS.popLimit(oldLimit);
 				break;
 			case RouteData.POINTNAMES_FIELD_NUMBER:
+				if (!readData) {
+					skipUnknownField(codedIS, ts);
+					break;
+				}
 				len = codedIS.readRawVarint32();
 				oldLimit = codedIS.pushLimit(len);
 				while (codedIS.getBytesUntilLimit() > 0) {
@@ -785,6 +883,10 @@ public class BinaryMapRouteReaderAdapter {
 				codedIS.popLimit(oldLimit);
 				break;
 			case RouteData.POINTTYPES_FIELD_NUMBER:
+				if (!readData) {
+					skipUnknownField(codedIS, ts);
+					break;
+				}
 				len = codedIS.readRawVarint32();
 				oldLimit = codedIS.pushLimit(len);
 				while (codedIS.getBytesUntilLimit() > 0) {
@@ -805,16 +907,49 @@ public class BinaryMapRouteReaderAdapter {
 				codedIS.popLimit(oldLimit);
 				break;
 			case RouteData.ROUTEID_FIELD_NUMBER:
+				if (!readTypes) {
+					skipUnknownField(codedIS, ts);
+					break;
+				}
 				o.id = codedIS.readInt32();
 				break;
 			default:
-				skipUnknownField(ts);
+				skipUnknownField(codedIS, ts);
 				break;
 			}
 		}
 	}
+
+	private static void skipUnknownField(CodedInputStream codedIS, int tag) throws IOException {
+		if (WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_FIXED32_LENGTH_DELIMITED) {
+			int length = ((codedIS.readRawByte() & 0xff) << 24) + ((codedIS.readRawByte() & 0xff) << 16)
+					+ ((codedIS.readRawByte() & 0xff) << 8) + (codedIS.readRawByte() & 0xff);
+			codedIS.skipRawBytes(length);
+		} else {
+			codedIS.skipField(tag);
+		}
+	}
+
+	static void resolveNames(RouteDataObject o, List<String> stringTable) {
+		if (o.names != null && stringTable != null) {
+			int[] keys = o.names.keys();
+			for (int j = 0; j < keys.length; j++) {
+				o.names.put(keys[j], stringTable.get(o.names.get(keys[j]).charAt(0)));
+			}
+		}
+		if (o.pointNames != null && stringTable != null) {
+			for (String[] ar : o.pointNames) {
+				if (ar != null) {
+					for (int j = 0; j < ar.length; j++) {
+						ar[j] = stringTable.get(ar[j].charAt(0));
+					}
+				}
+			}
+		}
+	}
+
 	private void readRouteTreeData(RouteSubregion routeTree,  TLongArrayList idTables,
-			TLongObjectHashMap<RestrictionInfo> restrictions) throws IOException {
+			TLongObjectHashMap<RestrictionInfo> restrictions, boolean lazy) throws IOException {
 		routeTree.dataObjects = new ArrayList<RouteDataObject>();
 		idTables.clear();
 		restrictions.clear();
@@ -848,20 +983,10 @@ public class BinaryMapRouteReaderAdapter {
 						if (o.id < idTables.size()) {
 							o.id = idTables.get((int) o.id);
 						}
-						if (o.names != null && stringTable != null) {
-							int[] keys = o.names.keys();
-							for (int j = 0; j < keys.length; j++) {
-								o.names.put(keys[j], stringTable.get(o.names.get(keys[j]).charAt(0)));
-							}
-						}
-						if (o.pointNames != null && stringTable != null) {
-							for(String[] ar : o.pointNames) {
-								if(ar != null) {
-									for(int j = 0; j < ar.length; j++) {
-										ar[j] = stringTable.get(ar[j].charAt(0));
-									}
-								}
-							}
+						if (lazy) {
+							o.lazyStringTable = stringTable;
+						} else {
+							resolveNames(o, stringTable);
 						}
 					}
 				}
@@ -869,7 +994,7 @@ public class BinaryMapRouteReaderAdapter {
 			case RouteDataBlock.DATAOBJECTS_FIELD_NUMBER :
 				int length = codedIS.readRawVarint32();
 				int oldLimit = codedIS.pushLimit(length);
-				RouteDataObject obj = readRouteDataObject(routeTree.routeReg, routeTree.left, routeTree.top);
+				RouteDataObject obj = readRouteDataObject(routeTree.routeReg, routeTree.left, routeTree.top, lazy);
 				while(obj.id >= routeTree.dataObjects.size()) {
 					routeTree.dataObjects.add(null);
 				}
@@ -1061,13 +1186,21 @@ public class BinaryMapRouteReaderAdapter {
 
 	
 	public List<RouteDataObject> loadRouteRegionData(RouteSubregion rs) throws IOException {
+		return loadRouteRegionData(rs, false);
+	}
+
+	/**
+	 * @param lazy - points, point types and names of objects are not decoded
+	 *             (see {@link RouteDataObject#decodeLazyData()})
+	 */
+	public List<RouteDataObject> loadRouteRegionData(RouteSubregion rs, boolean lazy) throws IOException {
 		TLongArrayList idMap = new TLongArrayList();
 		TLongObjectHashMap<RestrictionInfo> restrictionMap = new TLongObjectHashMap<RestrictionInfo>();
 		if (rs.dataObjects == null) {
 			codedIS.seek(rs.filePointer + rs.shiftToData);
 			int limit = codedIS.readRawVarint32();
 			int oldLimit = codedIS.pushLimit(limit);
-			readRouteTreeData(rs, idMap, restrictionMap);
+			readRouteTreeData(rs, idMap, restrictionMap, lazy);
 			codedIS.popLimit(oldLimit);
 		}
 		List<RouteDataObject> res = rs.dataObjects;
@@ -1091,7 +1224,7 @@ public class BinaryMapRouteReaderAdapter {
 				codedIS.seek(rs.filePointer + rs.shiftToData);
 				int limit = codedIS.readRawVarint32();
 				int oldLimit = codedIS.pushLimit(limit);
-				readRouteTreeData(rs, idMap, restrictionMap);
+				readRouteTreeData(rs, idMap, restrictionMap, false);
 				codedIS.popLimit(oldLimit);
 			}
 			for (RouteDataObject ro : rs.dataObjects) {
@@ -23,37 +23,93 @@ import net.osmand.binary.OsmandIndex.TransportPart;
 
 import org.apache.commons.logging.Log;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class CachedOsmandIndexes {
 
 	private OsmAndStoredIndex storedIndex;
 	private OsmAndStoredIndex.Builder storedIndexBuilder;
+	// file indexes of stored index by file name
+	private Map<String, FileIndex> storedFiles = new HashMap<String, FileIndex>();
 	private Log log = PlatformUtil.getLog(CachedOsmandIndexes.class);
 	private boolean hasChanged = false;
 	public static final String INDEXES_DEFAULT_FILENAME = "indexes.cache";
+	public static final String INDEXES_JOURNAL_DEFAULT_FILENAME = "indexes.journal";
+	public static final String NAME_INDEXES_DEFAULT_DIR = "name_indexes";
+	private File nameIndexesDir;
+
+	// journal is append only file of per file records (name, size, last modified, file index),
+	// last record of file is valid, so adding one map doesn't rewrite others
+	private Map<String, JournalRecord> journal = new HashMap<String, JournalRecord>();
+	private List<JournalRecord> notWrittenRecords = new ArrayList<JournalRecord>();
+	private int journalStaleRecords;
+	private long journalLength = -1;
 
 	public static final int VERSION = 2;
 
+	private static class JournalRecord {
+		final String fileName;
+		final long size;
+		final long lastModified;
+		final FileIndex fileIndex;
+
+		JournalRecord(String fileName, long size, long lastModified, FileIndex fileIndex) {
+			this.fileName = fileName;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.fileIndex = fileIndex;
+		}
+	}
+
 	public FileIndex addToCache(BinaryMapIndexReader reader, File f) {
+		FileIndex fi = createFileIndex(reader, f);
+		addFileIndex(f, fi);
+		return fi;
+	}
+
+	private synchronized void addFileIndex(File f, FileIndex fi) {
 		hasChanged = true;
 		if (storedIndexBuilder == null) {
 			storedIndexBuilder = OsmandIndex.OsmAndStoredIndex.newBuilder();
 			storedIndexBuilder.setVersion(VERSION);
 			storedIndexBuilder.setDateCreated(System.currentTimeMillis());
 			if (storedIndex != null) {
-				for (FileIndex ex : storedIndex.getFileIndexList()) {
-					if (!ex.getFileName().equals(f.getName())) {
-						storedIndexBuilder.addFileIndex(ex);
-					}
-				}
+				storedIndexBuilder.addAllFileIndex(storedIndex.getFileIndexList());
+			}
+		}
+		for (int i = storedIndexBuilder.getFileIndexCount() - 1; i >= 0; i--) {
+			if (storedIndexBuilder.getFileIndex(i).getFileName().equals(f.getName())) {
+				storedIndexBuilder.removeFileIndex(i);
 			}
 		}
+		storedIndexBuilder.addFileIndex(fi);
+		storedFiles.put(f.getName(), fi);
+		JournalRecord record = new JournalRecord(f.getName(), f.length(), f.lastModified(), fi);
+		if (journal.put(f.getName(), record) != null) {
+			journalStaleRecords++;
+		}
+		notWrittenRecords.add(record);
+	}
 
+	private FileIndex createFileIndex(BinaryMapIndexReader reader, File f) {
 		FileIndex.Builder fileIndex = OsmandIndex.FileIndex.newBuilder();
 		long d = reader.getDateCreated();
 		fileIndex.setDateModified(d == 0 ? f.lastModified() : d);
@@ -158,9 +214,7 @@ public class CachedOsmandIndexes {
 			fileIndex.addRoutingIndex(routing);
 		}
 
-		FileIndex fi = fileIndex.build();
-		storedIndexBuilder.addFileIndex(fi);
-		return fi;
+		return fileIndex.build();
 	}
 
 	private void addRouteSubregion(RoutingPart.Builder routing, RouteSubregion sub, boolean base) {
@@ -176,6 +230,18 @@ public class CachedOsmandIndexes {
 		routing.addSubregions(rpart);
 	}
 
+	/**
+	 * Readers created by cache keep name indexes of poi and address regions in memory and store them
+	 * in given directory (usually {@link #NAME_INDEXES_DEFAULT_DIR} next to indexes cache), null - disabled
+	 */
+	public void setNameIndexesDir(File nameIndexesDir) {
+		this.nameIndexesDir = nameIndexesDir;
+	}
+
+	public File getNameIndexesDir() {
+		return nameIndexesDir;
+	}
+
 	public BinaryMapIndexReader getReader(File f, boolean useStoredIndex) throws IOException {
 		FileIndex found = useStoredIndex ? getFileIndex(f, false) : null;
 		BinaryMapIndexReader reader = null;
@@ -190,22 +256,65 @@ public class CachedOsmandIndexes {
 		} else {
 			reader = initReaderFromFileIndex(found, mf, f);
 		}
+		if (nameIndexesDir != null) {
+			reader.enableNameIndexCache(new File(nameIndexesDir, f.getName() + ".names"));
+		}
 		return reader;
 	}
 
 
-	public FileIndex getFileIndex(File f, boolean init) throws IOException {
-		FileIndex found = null;
-		if (storedIndex != null) {
-			for (int i = 0; i < storedIndex.getFileIndexCount(); i++) {
-				FileIndex fi = storedIndex.getFileIndex(i);
-				if (f.length() == fi.getSize() && f.getName().equals(fi.getFileName())) {
-					// f.lastModified() == fi.getDateModified()
-					found = fi;
-					break;
+	/**
+	 * Opens readers of files in parallel, headers of files which are not cached are read concurrently.
+	 * @return readers in order of files, null if file could not be read
+	 */
+	public List<BinaryMapIndexReader> getReaders(List<File> files, final boolean useStoredIndex, int threads) {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+		try {
+			List<Future<BinaryMapIndexReader>> futures = new ArrayList<Future<BinaryMapIndexReader>>();
+			for (final File f : files) {
+				futures.add(executor.submit(new Callable<BinaryMapIndexReader>() {
+					@Override
+					public BinaryMapIndexReader call() throws Exception {
+						return getReader(f, useStoredIndex);
+					}
+				}));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				BinaryMapIndexReader reader = null;
+				try {
+					reader = futures.get(i).get();
+				} catch (ExecutionException e) {
+					log.error(String.format("File %s could not be read", files.get(i).getName()), e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					log.error(e.getMessage(), e);
 				}
+				readers.add(reader);
 			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return readers;
+	}
+
+	private synchronized FileIndex getCachedFileIndex(File f) {
+		JournalRecord record = journal.get(f.getName());
+		if (record != null) {
+			// stored index is older than journal record, so it is stale too
+			return record.size == f.length() && record.lastModified == f.lastModified() ? record.fileIndex : null;
 		}
+		FileIndex fi = storedFiles.get(f.getName());
+		// date of stored index is modification time only for files without creation date,
+		// other files are read again and then validated by journal
+		if (fi != null && f.length() == fi.getSize() && f.lastModified() == fi.getDateModified()) {
+			return fi;
+		}
+		return null;
+	}
+
+	public FileIndex getFileIndex(File f, boolean init) throws IOException {
+		FileIndex found = getCachedFileIndex(f);
 		if (found == null && init) {
 			RandomAccessFile mf = new RandomAccessFile(f.getPath(), "r");
 			long val = System.currentTimeMillis();
@@ -333,10 +442,18 @@ public class CachedOsmandIndexes {
 		long time = System.currentTimeMillis();
 		FileInputStream is = new FileInputStream(f);
 		try {
-			storedIndex = OsmandIndex.OsmAndStoredIndex.newBuilder().mergeFrom(is).build();
-			hasChanged = false;
-			if (storedIndex.getVersion() != version) {
-				storedIndex = null;
+			OsmAndStoredIndex stored = OsmandIndex.OsmAndStoredIndex.newBuilder().mergeFrom(is).build();
+			synchronized (this) {
+				storedIndex = stored;
+				hasChanged = false;
+				storedFiles.clear();
+				if (storedIndex.getVersion() != version) {
+					storedIndex = null;
+				} else {
+					for (FileIndex fi : storedIndex.getFileIndexList()) {
+						storedFiles.put(fi.getFileName(), fi);
+					}
+				}
 			}
 		} finally {
 			is.close();
@@ -344,7 +461,7 @@ public class CachedOsmandIndexes {
 		log.info("Initialize cache " + (System.currentTimeMillis() - time));
 	}
 
-	public void writeToFile(File f) throws IOException {
+	public synchronized void writeToFile(File f) throws IOException {
 		if (hasChanged) {
 			FileOutputStream outputStream = new FileOutputStream(f);
 			try {
@@ -355,6 +472,102 @@ public class CachedOsmandIndexes {
 		}
 	}
 
-	
+	/**
+	 * Reads journal written by {@link #writeToJournal}, records have priority over entries of indexes.cache
+	 * and are valid only if size and modification time of file are not changed.
+	 */
+	public void readFromJournal(File f) throws IOException {
+		long time = System.currentTimeMillis();
+		byte[] data = new byte[(int) f.length()];
+		FileInputStream is = new FileInputStream(f);
+		try {
+			new DataInputStream(is).readFully(data);
+		} finally {
+			is.close();
+		}
+		Map<String, JournalRecord> records = new HashMap<String, JournalRecord>();
+		int stale = 0;
+		long validLength = -1;
+		ByteArrayInputStream bis = new ByteArrayInputStream(data);
+		DataInputStream in = new DataInputStream(bis);
+		try {
+			if (in.readInt() == VERSION) {
+				validLength = data.length - bis.available();
+				while (bis.available() > 0) {
+					String fileName = in.readUTF();
+					long size = in.readLong();
+					long lastModified = in.readLong();
+					byte[] fileIndex = new byte[in.readInt()];
+					in.readFully(fileIndex);
+					JournalRecord record = new JournalRecord(fileName, size, lastModified, FileIndex.parseFrom(fileIndex));
+					if (records.put(fileName, record) != null) {
+						stale++;
+					}
+					validLength = data.length - bis.available();
+				}
+			}
+		} catch (EOFException e) {
+			// last record is not completely written, journal will be rewritten
+			log.warn("Indexes journal is truncated " + f.getName());
+		}
+		synchronized (this) {
+			journal = records;
+			journalStaleRecords = stale;
+			journalLength = validLength;
+			notWrittenRecords.clear();
+		}
+		log.info("Initialize journal " + records.size() + " files " + (System.currentTimeMillis() - time) + " ms");
+	}
+
+	/**
+	 * Appends records of files added to cache since journal was read. Journal is rewritten if it has more
+	 * stale records than valid or if it was changed by someone else.
+	 */
+	public synchronized void writeToJournal(File f) throws IOException {
+		boolean rewrite = journalLength < 0 || !f.exists() || f.length() != journalLength
+				|| journalStaleRecords > journal.size();
+		if (!rewrite && notWrittenRecords.isEmpty()) {
+			return;
+		}
+		if (rewrite) {
+			File tmp = new File(f.getParentFile(), f.getName() + ".tmp");
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				out.writeInt(VERSION);
+				for (JournalRecord record : journal.values()) {
+					writeJournalRecord(out, record);
+				}
+			} finally {
+				out.close();
+			}
+			if (!tmp.renameTo(f)) {
+				f.delete();
+				if (!tmp.renameTo(f)) {
+					throw new IOException("Journal could not be written " + f.getAbsolutePath());
+				}
+			}
+			journalStaleRecords = 0;
+		} else {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f, true)));
+			try {
+				for (JournalRecord record : notWrittenRecords) {
+					writeJournalRecord(out, record);
+				}
+			} finally {
+				out.close();
+			}
+		}
+		notWrittenRecords.clear();
+		journalLength = f.length();
+	}
+
+	private void writeJournalRecord(DataOutputStream out, JournalRecord record) throws IOException {
+		out.writeUTF(record.fileName);
+		out.writeLong(record.size);
+		out.writeLong(record.lastModified);
+		byte[] fileIndex = record.fileIndex.toByteArray();
+		out.writeInt(fileIndex.length);
+		out.write(fileIndex);
+	}
 
 }
@@ -0,0 +1,188 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedInputStream.BlockSource;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+/**
+ * Size bounded cache of aligned file blocks shared by readers (see {@link BinaryMapIndexReader#setBlockCache}).
+ * Blocks are keyed by file and block index and evicted by CLOCK (second chance) algorithm, so blocks which are
+ * read by every request (index roots, route subregions, poi boxes) stay in memory. Current block of each
+ * reader is its first level, blocks are never modified so evicted block stays valid for streams still reading it.
+ */
+public class IndexBlockCache {
+
+	public static final int DEFAULT_BLOCK_SIZE = 16 * 1024;
+
+	private final int blockSize;
+	private final Block[] slots;
+	private final TLongObjectHashMap<Block> blocks = new TLongObjectHashMap<Block>();
+	private final Map<String, Integer> fileIds = new HashMap<String, Integer>();
+	private int blocksCount;
+	private int clockHand;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	private static class Block {
+		final long key;
+		final byte[] data;
+		boolean referenced;
+
+		Block(long key, byte[] data) {
+			this.key = key;
+			this.data = data;
+		}
+	}
+
+	public IndexBlockCache(long maxSize) {
+		this(maxSize, DEFAULT_BLOCK_SIZE);
+	}
+
+	public IndexBlockCache(long maxSize, int blockSize) {
+		this.blockSize = blockSize;
+		this.slots = new Block[(int) Math.max(1, Math.min(Integer.MAX_VALUE, maxSize / blockSize))];
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	public long getMaxSize() {
+		return (long) slots.length * blockSize;
+	}
+
+	/**
+	 * Reads file through cache, stream could be used by single thread as raf.
+	 */
+	public CodedInputStream newCodedInputStream(RandomAccessFile raf, File file) {
+		return CodedInputStream.newInstance(raf, new FileBlocks(getFileId(file)));
+	}
+
+	/**
+	 * Same path, size and modification time give same id, so replaced file won't read old blocks.
+	 */
+	private synchronized int getFileId(File file) {
+		String key = file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+		Integer id = fileIds.get(key);
+		if (id == null) {
+			id = fileIds.size();
+			fileIds.put(key, id);
+		}
+		return id;
+	}
+
+	byte[] getBlock(int fileId, RandomAccessFile raf, int block) throws IOException {
+		long key = (((long) fileId) << 32) | block;
+		synchronized (this) {
+			Block b = blocks.get(key);
+			if (b != null) {
+				b.referenced = true;
+				hits++;
+				return b.data;
+			}
+			misses++;
+		}
+		// read without lock, block could be read by 2 threads at the same time
+		long start = (long) block * blockSize;
+		long length = raf.length();
+		if (start >= length) {
+			return null;
+		}
+		byte[] data = new byte[(int) Math.min(blockSize, length - start)];
+		raf.seek(start);
+		raf.readFully(data);
+		synchronized (this) {
+			Block b = blocks.get(key);
+			if (b != null) {
+				return b.data;
+			}
+			put(new Block(key, data));
+		}
+		return data;
+	}
+
+	private void put(Block b) {
+		if (blocksCount < slots.length) {
+			slots[blocksCount++] = b;
+		} else {
+			while (slots[clockHand].referenced) {
+				slots[clockHand].referenced = false;
+				clockHand = (clockHand + 1) % slots.length;
+			}
+			blocks.remove(slots[clockHand].key);
+			slots[clockHand] = b;
+			clockHand = (clockHand + 1) % slots.length;
+			evictions++;
+		}
+		blocks.put(b.key, b);
+	}
+
+	public synchronized void clear() {
+		for (int i = 0; i < blocksCount; i++) {
+			slots[i] = null;
+		}
+		blocks.clear();
+		blocksCount = 0;
+		clockHand = 0;
+	}
+
+	public synchronized int getBlocksCount() {
+		return blocksCount;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized double getHitRate() {
+		return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+	}
+
+	public synchronized void resetStatistics() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("Block cache %d / %d blocks of %d KB, hits %d, misses %d (hit rate %.1f%%), evictions %d",
+				blocksCount, slots.length, blockSize / 1024, hits, misses, getHitRate() * 100, evictions);
+	}
+
+	private class FileBlocks implements BlockSource {
+
+		private final int fileId;
+
+		FileBlocks(int fileId) {
+			this.fileId = fileId;
+		}
+
+		@Override
+		public int getBlockSize() {
+			return blockSize;
+		}
+
+		@Override
+		public byte[] getBlock(RandomAccessFile raf, int block) throws IOException {
+			return IndexBlockCache.this.getBlock(fileId, raf, block);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import com.google.protobuf.CodedInputStream;
+
+/**
+ * Read only memory mapping of index file. File is mapped in chunks (single mapping is limited by 2 GB),
+ * mapping stays valid after file channel is closed and is released by GC.
+ * Mapping is shared by readers, each reader has its own {@link CodedInputStream} over it
+ * (see {@link BinaryMapIndexReader#createThreadView()}).
+ */
+public class MappedIndexFile {
+
+	static final int CHUNK_SIZE = 1 << 30;
+
+	private final File file;
+	private final long length;
+	private final ByteBuffer[] chunks;
+
+	private MappedIndexFile(File file, long length, ByteBuffer[] chunks) {
+		this.file = file;
+		this.length = length;
+		this.chunks = chunks;
+	}
+
+	public static MappedIndexFile map(File file) throws IOException {
+		return map(file, CHUNK_SIZE);
+	}
+
+	static MappedIndexFile map(File file, int chunkSize) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long length = channel.size();
+			int count = (int) ((length + chunkSize - 1) / chunkSize);
+			ByteBuffer[] chunks = new ByteBuffer[count];
+			for (int i = 0; i < count; i++) {
+				long start = (long) i * chunkSize;
+				chunks[i] = channel.map(MapMode.READ_ONLY, start, Math.min(chunkSize, length - start));
+			}
+			return new MappedIndexFile(file, length, chunks);
+		} finally {
+			raf.close();
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public long length() {
+		return length;
+	}
+
+	public CodedInputStream newCodedInputStream() {
+		int chunkSize = chunks.length > 1 ? chunks[0].capacity() : CHUNK_SIZE;
+		return CodedInputStream.newInstance(chunks, chunkSize, length);
+	}
+}
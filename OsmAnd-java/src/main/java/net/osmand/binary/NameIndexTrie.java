@@ -0,0 +1,197 @@
+package net.osmand.binary;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import gnu.trove.list.array.TIntArrayList;
+import net.osmand.Collator;
+import net.osmand.CollatorStringMatcher;
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+
+/**
+ * In memory copy of name index (IndexedStringTable) of poi or address region. Table is a prefix tree
+ * of name keys, nodes are stored in pre-order in arrays: children of node are next nodes till end of
+ * its subtree and postings are offsets (relative to table) of name index data.
+ * Keys are stored as in table (without prefix of parent), full key is built while tree is walked.
+ * Search gives same offsets as {@link BinaryMapIndexReader#readIndexedStringTable} without reading file.
+ */
+public class NameIndexTrie {
+
+	// keys without parent prefixes
+	private final String[] keys;
+	private final int[] subtreeEnd;
+	// postings of node i are postings[postingsStart[i]..postingsStart[i + 1]), so postings of subtree are
+	// postings[postingsStart[i]..postingsStart[subtreeEnd[i]])
+	private final int[] postingsStart;
+	private final int[] postings;
+
+	private NameIndexTrie(String[] keys, int[] subtreeEnd, int[] postingsStart, int[] postings) {
+		this.keys = keys;
+		this.subtreeEnd = subtreeEnd;
+		this.postingsStart = postingsStart;
+		this.postings = postings;
+	}
+
+	public int getKeysCount() {
+		return keys.length;
+	}
+
+	public int getPostingsCount() {
+		return postings.length;
+	}
+
+	public void search(Collator instance, List<String> queries, List<TIntArrayList> listOffsets,
+			TIntArrayList matchedCharacters) {
+		search(instance, queries, "", 0, keys.length, listOffsets, matchedCharacters);
+	}
+
+	private void search(Collator instance, List<String> queries, String prefix, int from, int to,
+			List<TIntArrayList> listOffsets, TIntArrayList matchedCharacters) {
+		boolean[] matched = new boolean[matchedCharacters.size()];
+		boolean[] matchedSubtree = new boolean[matchedCharacters.size()];
+		for (int node = from; node < to; node = subtreeEnd[node]) {
+			String key = prefix.length() > 0 ? prefix + keys[node] : keys[node];
+			boolean shouldWeReadSubtable = false;
+			for (int i = 0; i < queries.size(); i++) {
+				int charMatches = matchedCharacters.get(i);
+				String query = queries.get(i);
+				matched[i] = false;
+				matchedSubtree[i] = false;
+				if (query == null) {
+					continue;
+				}
+				// check query is part of key (the best matching)
+				if (CollatorStringMatcher.cmatches(instance, key, query, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
+					if (query.length() >= charMatches) {
+						if (query.length() > charMatches) {
+							matchedCharacters.set(i, query.length());
+							listOffsets.get(i).clear();
+						}
+						matched[i] = true;
+						// keys of subtree start with key, so they match query with same characters
+						matchedSubtree[i] = true;
+					}
+					// check key is part of query
+				} else if (CollatorStringMatcher.cmatches(instance, query, key, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
+					if (key.length() >= charMatches) {
+						if (key.length() > charMatches) {
+							matchedCharacters.set(i, key.length());
+							listOffsets.get(i).clear();
+						}
+						matched[i] = true;
+						shouldWeReadSubtable = true;
+					}
+				}
+			}
+			for (int i = 0; i < queries.size(); i++) {
+				if (matchedSubtree[i]) {
+					// subtree is not walked for query
+					listOffsets.get(i).add(postings, postingsStart[node],
+							postingsStart[subtreeEnd[node]] - postingsStart[node]);
+				} else if (matched[i]) {
+					listOffsets.get(i).add(postings, postingsStart[node], postingsStart[node + 1] - postingsStart[node]);
+				}
+			}
+			if (shouldWeReadSubtable && node + 1 < subtreeEnd[node]) {
+				List<String> subqueries = new ArrayList<>(queries);
+				// reset query so we don't search what was not matched or what is matched by whole subtree
+				for (int i = 0; i < queries.size(); i++) {
+					if (!matched[i] || matchedSubtree[i]) {
+						subqueries.set(i, null);
+					}
+				}
+				search(instance, subqueries, key, node + 1, subtreeEnd[node], listOffsets, matchedCharacters);
+			}
+		}
+	}
+
+	public long getEstimatedSize() {
+		long sz = 16 * 4 + subtreeEnd.length * 4l + postingsStart.length * 4l + postings.length * 4l;
+		for (String k : keys) {
+			sz += 40 + k.length() * 2;
+		}
+		return sz;
+	}
+
+	void writeTo(DataOutputStream out) throws IOException {
+		out.writeInt(keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			out.writeUTF(keys[i]);
+			out.writeInt(subtreeEnd[i]);
+			out.writeInt(postingsStart[i + 1] - postingsStart[i]);
+		}
+		out.writeInt(postings.length);
+		for (int p : postings) {
+			out.writeInt(p);
+		}
+	}
+
+	static NameIndexTrie readFrom(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		String[] keys = new String[size];
+		int[] subtreeEnd = new int[size];
+		int[] postingsStart = new int[size + 1];
+		for (int i = 0; i < size; i++) {
+			keys[i] = in.readUTF();
+			subtreeEnd[i] = in.readInt();
+			postingsStart[i + 1] = postingsStart[i] + in.readInt();
+		}
+		int[] postings = new int[in.readInt()];
+		if (postings.length != postingsStart[size]) {
+			throw new IOException("Corrupted name index");
+		}
+		for (int i = 0; i < postings.length; i++) {
+			postings[i] = in.readInt();
+		}
+		return new NameIndexTrie(keys, subtreeEnd, postingsStart, postings);
+	}
+
+	/**
+	 * Nodes should be added in order they are stored in table (pre-order)
+	 */
+	static class Builder {
+		private final List<String> keys = new ArrayList<String>();
+		private final TIntArrayList subtreeEnd = new TIntArrayList();
+		private final TIntArrayList postingNodes = new TIntArrayList();
+		private final TIntArrayList postingValues = new TIntArrayList();
+
+		int addNode(String key) {
+			keys.add(key);
+			subtreeEnd.add(keys.size());
+			return keys.size() - 1;
+		}
+
+		/**
+		 * Subtree of node contains all nodes added after it till now
+		 */
+		void closeNode(int node) {
+			subtreeEnd.set(node, keys.size());
+		}
+
+		void addPosting(int node, int value) {
+			postingNodes.add(node);
+			postingValues.add(value);
+		}
+
+		NameIndexTrie build() {
+			int size = keys.size();
+			int[] postingsStart = new int[size + 1];
+			for (int i = 0; i < postingNodes.size(); i++) {
+				postingsStart[postingNodes.get(i) + 1]++;
+			}
+			for (int i = 0; i < size; i++) {
+				postingsStart[i + 1] += postingsStart[i];
+			}
+			int[] pos = new int[size];
+			int[] postings = new int[postingValues.size()];
+			for (int i = 0; i < postingNodes.size(); i++) {
+				int node = postingNodes.get(i);
+				postings[postingsStart[node] + pos[node]++] = postingValues.get(i);
+			}
+			return new NameIndexTrie(keys.toArray(new String[size]), subtreeEnd.toArray(), postingsStart, postings);
+		}
+	}
+}
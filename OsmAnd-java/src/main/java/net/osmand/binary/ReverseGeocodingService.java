@@ -0,0 +1,264 @@
+package net.osmand.binary;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+
+import net.osmand.PlatformUtil;
+import net.osmand.ResultMatcher;
+import net.osmand.data.LatLon;
+import net.osmand.data.Street;
+import net.osmand.router.RoutingContext;
+import net.osmand.util.MapUtils;
+
+/**
+ * Long lived reverse geocoding of batches of points. Points of batch are processed in spatial (Z-order) order
+ * split between threads, each thread uses own routing context (and readers) which is kept between batches,
+ * so loaded routing tiles are reused by near points. Streets found by name (with their buildings once loaded)
+ * are kept in bounded LRU cache by file, street name and tile of location.
+ */
+public class ReverseGeocodingService extends GeocodingUtilities {
+
+	private static final Log log = PlatformUtil.getLog(ReverseGeocodingService.class);
+
+	public static final int DEFAULT_STREETS_CACHE_SIZE = 10000;
+	// streets are searched by name around center of tile (~10 km)
+	private static final int STREETS_CACHE_ZOOM = 12;
+
+	public interface RoutingContextFactory {
+
+		/**
+		 * @return context with own readers (which contain address data), context is used only by one thread
+		 */
+		RoutingContext createRoutingContext() throws IOException;
+	}
+
+	private final RoutingContextFactory factory;
+	private final int threads;
+	private final ExecutorService executor;
+	private final LinkedList<RoutingContext> contexts = new LinkedList<RoutingContext>();
+	private final Map<String, List<Street>> streetsCache;
+	// cached streets with loaded buildings (street instances, same street could be read from several files)
+	private final Set<Street> loadedStreets = Collections.newSetFromMap(new IdentityHashMap<Street, Boolean>());
+	private long streetsCacheHits;
+	private long streetsCacheMisses;
+
+	public ReverseGeocodingService(RoutingContextFactory factory, int threads) {
+		this(factory, threads, DEFAULT_STREETS_CACHE_SIZE);
+	}
+
+	public ReverseGeocodingService(RoutingContextFactory factory, int threads, final int streetsCacheSize) {
+		this.factory = factory;
+		this.threads = Math.max(1, threads);
+		this.executor = Executors.newFixedThreadPool(this.threads, new ThreadFactory() {
+			private final AtomicInteger number = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "ReverseGeocoding-" + number.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.streetsCache = new LinkedHashMap<String, List<Street>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, List<Street>> eldest) {
+				if (size() > streetsCacheSize) {
+					for (Street s : eldest.getValue()) {
+						loadedStreets.remove(s);
+					}
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @return results for each point in order of points (sorted as {@link #sortGeocodingResults}),
+	 * null if point failed
+	 */
+	public List<List<GeocodingResult>> reverseGeocoding(final List<LatLon> points) throws IOException {
+		Integer[] order = new Integer[points.size()];
+		final long[] keys = new long[points.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+			LatLon l = points.get(i);
+			keys[i] = zOrder(MapUtils.get31TileNumberX(l.getLongitude()), MapUtils.get31TileNumberY(l.getLatitude()));
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Long.compare(keys[o1], keys[o2]);
+			}
+		});
+		final List<List<GeocodingResult>> results = new ArrayList<List<GeocodingResult>>(
+				Collections.<List<GeocodingResult>>nCopies(points.size(), null));
+		// contiguous parts of sorted points, so each thread works in own area
+		int partSize = (order.length + threads - 1) / threads;
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int start = 0; start < order.length; start += partSize) {
+			final List<Integer> part = Arrays.asList(order).subList(start, Math.min(order.length, start + partSize));
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					RoutingContext ctx = acquireContext();
+					try {
+						for (int ind : part) {
+							LatLon l = points.get(ind);
+							try {
+								// different indexes are set, results are visible after Future.get
+								results.set(ind, reverseGeocoding(ctx, l.getLatitude(), l.getLongitude()));
+							} catch (IOException e) {
+								log.error("Reverse geocoding failed for " + l, e);
+							}
+						}
+					} finally {
+						releaseContext(ctx);
+					}
+					return null;
+				}
+			}));
+		}
+		for (Future<Void> f : futures) {
+			try {
+				f.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Nearest roads justified by address data of context readers
+	 */
+	public List<GeocodingResult> reverseGeocoding(RoutingContext ctx, double lat, double lon) throws IOException {
+		List<GeocodingResult> roads = reverseGeocodingSearch(ctx, lat, lon, false);
+		return sortGeocodingResults(Arrays.asList(ctx.getMaps()), roads);
+	}
+
+	private RoutingContext acquireContext() throws IOException {
+		synchronized (contexts) {
+			if (!contexts.isEmpty()) {
+				return contexts.poll();
+			}
+		}
+		return factory.createRoutingContext();
+	}
+
+	private void releaseContext(RoutingContext ctx) {
+		synchronized (contexts) {
+			contexts.push(ctx);
+		}
+	}
+
+	@Override
+	protected List<Street> searchStreetsByName(BinaryMapIndexReader reader, String mainWord, List<String> streetNames,
+			boolean addCommonWords, LatLon location, int radius, ResultMatcher<GeocodingResult> result)
+			throws IOException {
+		int tx = (int) MapUtils.getTileNumberX(STREETS_CACHE_ZOOM, location.getLongitude());
+		int ty = (int) MapUtils.getTileNumberY(STREETS_CACHE_ZOOM, location.getLatitude());
+		String key = reader.getFile().getAbsolutePath() + ":" + tx + ":" + ty + ":" + radius + ":" + addCommonWords
+				+ ":" + streetNames;
+		List<Street> streets;
+		synchronized (streetsCache) {
+			streets = streetsCache.get(key);
+			if (streets != null) {
+				streetsCacheHits++;
+				return streets;
+			}
+			streetsCacheMisses++;
+		}
+		// search around tile center with radius covering any location of tile
+		LatLon center = new LatLon(MapUtils.getLatitudeFromTile(STREETS_CACHE_ZOOM, ty + 0.5),
+				MapUtils.getLongitudeFromTile(STREETS_CACHE_ZOOM, tx + 0.5));
+		double halfDiagonal = MapUtils.getDistance(center, MapUtils.getLatitudeFromTile(STREETS_CACHE_ZOOM, ty),
+				MapUtils.getLongitudeFromTile(STREETS_CACHE_ZOOM, tx));
+		streets = super.searchStreetsByName(reader, mainWord, streetNames, addCommonWords, center,
+				radius + (int) Math.ceil(halfDiagonal), result);
+		if (result == null || !result.isCancelled()) {
+			streets = Collections.unmodifiableList(streets);
+			synchronized (streetsCache) {
+				streetsCache.put(key, streets);
+			}
+		}
+		return streets;
+	}
+
+	@Override
+	protected void preloadStreetBuildings(BinaryMapIndexReader reader, Street street) throws IOException {
+		// cached streets are shared between threads, buildings are loaded once
+		synchronized (street) {
+			synchronized (streetsCache) {
+				if (loadedStreets.contains(street)) {
+					return;
+				}
+			}
+			super.preloadStreetBuildings(reader, street);
+			synchronized (streetsCache) {
+				loadedStreets.add(street);
+			}
+		}
+	}
+
+	public void clearCache() {
+		synchronized (streetsCache) {
+			streetsCache.clear();
+			loadedStreets.clear();
+		}
+	}
+
+	public String getCacheStatistics() {
+		synchronized (streetsCache) {
+			return String.format("Streets cache %d entries, hits %d, misses %d", streetsCache.size(),
+					streetsCacheHits, streetsCacheMisses);
+		}
+	}
+
+	/**
+	 * Stops threads and unloads data of contexts, readers of contexts are not closed
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+		synchronized (contexts) {
+			for (RoutingContext ctx : contexts) {
+				ctx.unloadAllData();
+			}
+			contexts.clear();
+		}
+	}
+
+	static long zOrder(int x31, int y31) {
+		long key = 0;
+		for (int i = 30; i >= 0; i--) {
+			key = (key << 2) | (((x31 >> i) & 1) << 1) | ((y31 >> i) & 1);
+		}
+		return key;
+	}
+}
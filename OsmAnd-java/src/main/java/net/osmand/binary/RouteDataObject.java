@@ -1,6 +1,8 @@
 package net.osmand.binary;
 
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 
 import gnu.trove.map.hash.TIntObjectHashMap;
 import net.osmand.Location;
@@ -36,6 +38,20 @@ public class RouteDataObject {
 	// mixed array [0, height, cumulative_distance height, cumulative_distance, height, ...] - length is length(points)*2
 	public float[] heightDistanceArray = null;
 	public float heightByCurrentLocation = Float.NaN;
+	// dense id of types combination in region, valid while types array is the same (see getTypesCombinationId)
+	private int typesCombinationId = -1;
+	private int[] typesCombinationSource;
+	// ids of point types combinations + 1 (0 - not calculated), valid while pointTypes array is the same
+	private int[] pointTypesCombinationIds;
+	private int[][] pointTypesCombinationSource;
+	// reader of file with encoded object (points, point types and names) which is not decoded yet
+	BinaryMapIndexReader lazyReader;
+	int lazyOffset;
+	int lazyLength;
+	int lazyLeft;
+	int lazyTop;
+	List<String> lazyStringTable;
+	private long lazyConditionalTime;
 	private static final Log LOG = PlatformUtil.getLog(RouteDataObject.class);
 
 	public RouteDataObject(RouteRegion region) {
@@ -68,6 +84,43 @@ public class RouteDataObject {
 		this.id = copy.id;
 	}
 
+	void setLazyData(BinaryMapIndexReader reader, int offset, int length, int pleftx, int ptopy) {
+		this.lazyReader = reader;
+		this.lazyOffset = offset;
+		this.lazyLength = length;
+		this.lazyLeft = pleftx;
+		this.lazyTop = ptopy;
+	}
+
+	public boolean isLazy() {
+		return lazyReader != null;
+	}
+
+	/**
+	 * Decodes points, point types and names of object loaded lazily, does nothing for decoded objects.
+	 * Lazy object has only id and types, so it should be decoded before any other access
+	 * (object is read from file of reader, so reader should be open).
+	 */
+	public void decodeLazyData() {
+		if (lazyReader == null) {
+			return;
+		}
+		try {
+			synchronized (lazyReader) {
+				lazyReader.readLazyRouteData(this);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Illegal routing object: " + id, e);
+		}
+		BinaryMapRouteReaderAdapter.resolveNames(this, lazyStringTable);
+		lazyReader = null;
+		lazyStringTable = null;
+		if (lazyConditionalTime != 0) {
+			processConditionalPointTypes(lazyConditionalTime);
+			lazyConditionalTime = 0;
+		}
+	}
+
 	public boolean compareRoute(RouteDataObject thatObj) {
 		if (this.id == thatObj.id
 				&& Arrays.equals(this.pointsX, thatObj.pointsX)
@@ -510,6 +563,24 @@ public class RouteDataObject {
 		}
 		return pointTypes[ind];
 	}
+
+	/**
+	 * @return id of types combination of point (same for points with equal types in region)
+	 */
+	public int getPointTypesCombinationId(int ind) {
+		int[] ids = pointTypesCombinationIds;
+		if (ids == null || pointTypesCombinationSource != pointTypes) {
+			ids = new int[pointTypes.length];
+			pointTypesCombinationIds = ids;
+			pointTypesCombinationSource = pointTypes;
+		}
+		int id = ids[ind] - 1;
+		if (id < 0) {
+			id = region.getTypesCombinationId(pointTypes[ind]);
+			ids[ind] = id + 1;
+		}
+		return id;
+	}
 	
 	public void removePointType(int ind, int type) {
 		if (pointTypes != null || ind < pointTypes.length) {
@@ -522,6 +593,7 @@ public class RouteDataObject {
 					if (typesArr.length != i) {
 						System.arraycopy(typesArr, i + 1, result, i, typesArr.length - 1 - i);
 						pointTypes[ind] = result;
+						pointTypesCombinationIds = null;
 						break;
 					}
 				}
@@ -533,7 +605,22 @@ public class RouteDataObject {
 		return types;
 	}
 
+	/**
+	 * @return id of types combination (same for roads with equal types in region)
+	 */
+	public int getTypesCombinationId() {
+		int id = typesCombinationId;
+		if (id < 0 || typesCombinationSource != types) {
+			id = region.getTypesCombinationId(types);
+			typesCombinationId = id;
+			typesCombinationSource = types;
+		}
+		return id;
+	}
+
 	public void processConditionalTags(long conditionalTime) {
+		// types could be modified in place
+		typesCombinationId = -1;
 		int sz = types.length;
 		for (int i = 0; i < sz; i++) {
 			RouteTypeRule r = region.quickGetEncodingRule(types[i]);
@@ -559,6 +646,17 @@ public class RouteDataObject {
 			}
 		}
 
+		if (lazyReader != null) {
+			// point types are processed after decoding
+			lazyConditionalTime = conditionalTime;
+		} else {
+			processConditionalPointTypes(conditionalTime);
+		}
+	}
+
+	private void processConditionalPointTypes(long conditionalTime) {
+		// point types could be modified in place
+		pointTypesCombinationIds = null;
 		if (pointTypes != null) {
 			for (int i = 0; i < pointTypes.length; i++) {
 				if (pointTypes[i] != null) {
@@ -1139,6 +1237,7 @@ public class RouteDataObject {
 			pointTypes = npointTypes;
 		}
 		pointTypes[pntInd] = array;
+		pointTypesCombinationIds = null;
 	}
 
 	public boolean hasPointType(int pntId, int type) {
@@ -0,0 +1,410 @@
+package net.osmand.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.osmand.util.MapUtils;
+
+/**
+ * Alternative to {@link DataTileManager} for large sets of points. Objects are kept in arrays sorted by Hilbert
+ * key of their 31 coordinates, so each quad tree cell is a contiguous range of arrays. Rectangle is covered by
+ * few cells (cells smaller than 1/8 of rectangle are not subdivided) and each cell is found by binary search
+ * and scanned. Registered objects are collected and sorted at once on next query (bulk loading), so registration
+ * of many objects costs one sort. Queries are not synchronized and could be run concurrently only after
+ * {@link #build()}.
+ *
+ * @param <T> - object to store in that manager
+ */
+public class HilbertDataTileManager<T> {
+
+	private static final int ORDER = 31;
+	private static final int MAX_COORDINATE = (1 << ORDER) - 1;
+	private static final int SUBDIVIDE_LEVELS = 3;
+	// radius to start nearest search (zoom 16 tile)
+	private static final int NEAREST_START_RADIUS = 1 << (31 - 16);
+
+	private long[] keys = new long[0];
+	private int[] xs = new int[0];
+	private int[] ys = new int[0];
+	private Object[] objects = new Object[0];
+	private int size;
+	private int removed;
+
+	private long[] pendingKeys = new long[16];
+	private int[] pendingXs = new int[16];
+	private int[] pendingYs = new int[16];
+	private Object[] pendingObjects = new Object[16];
+	private int pendingSize;
+
+	public void registerObjectXY(int x31, int y31, T object) {
+		if (pendingSize == pendingKeys.length) {
+			int capacity = pendingSize * 2;
+			pendingKeys = Arrays.copyOf(pendingKeys, capacity);
+			pendingXs = Arrays.copyOf(pendingXs, capacity);
+			pendingYs = Arrays.copyOf(pendingYs, capacity);
+			pendingObjects = Arrays.copyOf(pendingObjects, capacity);
+		}
+		pendingKeys[pendingSize] = hilbertKey(x31, y31);
+		pendingXs[pendingSize] = x31;
+		pendingYs[pendingSize] = y31;
+		pendingObjects[pendingSize] = object;
+		pendingSize++;
+	}
+
+	public void registerObject(double latitude, double longitude, T object) {
+		registerObjectXY(MapUtils.get31TileNumberX(longitude), MapUtils.get31TileNumberY(latitude), object);
+	}
+
+	public boolean unregisterObjectXY(int x31, int y31, T object) {
+		build();
+		long key = hilbertKey(x31, y31);
+		for (int i = lowerBound(key); i < size && keys[i] == key; i++) {
+			if (objects[i] != null && objects[i].equals(object)) {
+				objects[i] = null;
+				removed++;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean unregisterObject(double latitude, double longitude, T object) {
+		return unregisterObjectXY(MapUtils.get31TileNumberX(longitude), MapUtils.get31TileNumberY(latitude), object);
+	}
+
+	/**
+	 * Sorts registered objects and merges them with sorted arrays, removes unregistered objects
+	 */
+	public void build() {
+		if (pendingSize == 0 && removed * 2 <= size) {
+			return;
+		}
+		sort(pendingKeys, pendingXs, pendingYs, pendingObjects, 0, pendingSize - 1);
+		int n = size - removed + pendingSize;
+		long[] nkeys = new long[n];
+		int[] nxs = new int[n];
+		int[] nys = new int[n];
+		Object[] nobjects = new Object[n];
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while (k < n) {
+			if (i < size && objects[i] == null) {
+				i++;
+			} else if (j >= pendingSize || (i < size && keys[i] <= pendingKeys[j])) {
+				nkeys[k] = keys[i];
+				nxs[k] = xs[i];
+				nys[k] = ys[i];
+				nobjects[k++] = objects[i++];
+			} else {
+				nkeys[k] = pendingKeys[j];
+				nxs[k] = pendingXs[j];
+				nys[k] = pendingYs[j];
+				nobjects[k++] = pendingObjects[j++];
+			}
+		}
+		keys = nkeys;
+		xs = nxs;
+		ys = nys;
+		objects = nobjects;
+		size = n;
+		removed = 0;
+		Arrays.fill(pendingObjects, 0, pendingSize, null);
+		pendingSize = 0;
+	}
+
+	public boolean isEmpty() {
+		return getObjectsCount() == 0;
+	}
+
+	public int getObjectsCount() {
+		return size - removed + pendingSize;
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<T> getAllObjects() {
+		build();
+		List<T> l = new ArrayList<T>(size - removed);
+		for (int i = 0; i < size; i++) {
+			// unregistered objects are kept as null until arrays are compacted
+			if (objects[i] != null) {
+				l.add((T) objects[i]);
+			}
+		}
+		return l;
+	}
+
+	public List<T> getObjects(double latitudeUp, double longitudeUp, double latitudeDown, double longitudeDown) {
+		return getObjects(MapUtils.get31TileNumberX(longitudeUp), MapUtils.get31TileNumberY(latitudeUp),
+				MapUtils.get31TileNumberX(longitudeDown), MapUtils.get31TileNumberY(latitudeDown));
+	}
+
+	public List<T> getObjects(int leftX31, int topY31, int rightX31, int bottomY31) {
+		return getObjects(leftX31, topY31, rightX31, bottomY31, new ArrayList<T>());
+	}
+
+	/**
+	 * @return objects inside rectangle (borders included) in order of Hilbert keys
+	 */
+	public List<T> getObjects(int leftX31, int topY31, int rightX31, int bottomY31, final List<T> result) {
+		build();
+		new RangeScan() {
+			@SuppressWarnings("unchecked")
+			@Override
+			protected void visit(int ind) {
+				result.add((T) objects[ind]);
+			}
+		}.scan(leftX31, topY31, rightX31, bottomY31);
+		return result;
+	}
+
+	/**
+	 * @return k closest objects sorted by distance
+	 */
+	public List<T> getClosestObjects(double latitude, double longitude, int k) {
+		return newNearestSearch(k).search(MapUtils.get31TileNumberX(longitude), MapUtils.get31TileNumberY(latitude),
+				new ArrayList<T>(k));
+	}
+
+	/**
+	 * Search is reused for queries without allocations, each thread should use own search.
+	 */
+	public NearestSearch newNearestSearch(int k) {
+		build();
+		return new NearestSearch(k);
+	}
+
+	public void clear() {
+		keys = new long[0];
+		xs = new int[0];
+		ys = new int[0];
+		objects = new Object[0];
+		size = 0;
+		removed = 0;
+		Arrays.fill(pendingObjects, 0, pendingSize, null);
+		pendingSize = 0;
+	}
+
+	private abstract class RangeScan {
+		private int left;
+		private int top;
+		private int right;
+		private int bottom;
+		private long minSide;
+
+		protected abstract void visit(int ind);
+
+		void scan(int leftX31, int topY31, int rightX31, int bottomY31) {
+			left = Math.max(0, Math.min(leftX31, rightX31));
+			right = Math.min(MAX_COORDINATE, Math.max(leftX31, rightX31));
+			top = Math.max(0, Math.min(topY31, bottomY31));
+			bottom = Math.min(MAX_COORDINATE, Math.max(topY31, bottomY31));
+			if (left > right || top > bottom || size == 0) {
+				return;
+			}
+			minSide = Math.max(1, ((long) Math.max(right - left, bottom - top) + 1) >> SUBDIVIDE_LEVELS);
+			scanCell(0, 0, 0);
+		}
+
+		private void scanCell(int level, long cx, long cy) {
+			long side = 1L << (ORDER - level);
+			long cr = cx + side - 1;
+			long cb = cy + side - 1;
+			if (cx > right || cr < left || cy > bottom || cb < top) {
+				return;
+			}
+			boolean inside = cx >= left && cr <= right && cy >= top && cb <= bottom;
+			if (inside || side <= minSide) {
+				long cellKeys = 1L << (2 * (ORDER - level));
+				long start = hilbertKey((int) cx, (int) cy) & ~(cellKeys - 1);
+				long end = start + cellKeys;
+				for (int i = lowerBound(start); i < size && keys[i] < end; i++) {
+					if (objects[i] != null
+							&& (inside || (xs[i] >= left && xs[i] <= right && ys[i] >= top && ys[i] <= bottom))) {
+						visit(i);
+					}
+				}
+				return;
+			}
+			long half = side >> 1;
+			scanCell(level + 1, cx, cy);
+			scanCell(level + 1, cx + half, cy);
+			scanCell(level + 1, cx, cy + half);
+			scanCell(level + 1, cx + half, cy + half);
+		}
+	}
+
+	public class NearestSearch extends RangeScan {
+		private final int k;
+		// max heap by distance
+		private final double[] dist;
+		private final int[] inds;
+		private int count;
+		private int x31;
+		private int y31;
+		private double xScale;
+
+		private NearestSearch(int k) {
+			this.k = k;
+			this.dist = new double[k];
+			this.inds = new int[k];
+		}
+
+		/**
+		 * Distance is measured in 31 coordinates with x scaled by cos of latitude of point,
+		 * search box is expanded until k-th object is inside of it.
+		 * @return k closest objects sorted by distance (added to result)
+		 */
+		@SuppressWarnings("unchecked")
+		public List<T> search(int x31, int y31, List<T> result) {
+			count = 0;
+			if (k <= 0) {
+				return result;
+			}
+			this.x31 = x31;
+			this.y31 = y31;
+			this.xScale = Math.max(0.01, Math.cos(Math.toRadians(MapUtils.get31LatitudeY(y31))));
+			long radius = NEAREST_START_RADIUS;
+			while (true) {
+				count = 0;
+				long dx = (long) (radius / xScale);
+				scan((int) Math.max(0, x31 - dx), (int) Math.max(0, y31 - radius),
+						(int) Math.min(MAX_COORDINATE, x31 + dx), (int) Math.min(MAX_COORDINATE, y31 + radius));
+				boolean all = x31 - dx <= 0 && x31 + dx >= MAX_COORDINATE && y31 - radius <= 0
+						&& y31 + radius >= MAX_COORDINATE;
+				if (all || (count == k && dist[0] <= (double) radius * radius)) {
+					break;
+				}
+				radius *= 2;
+			}
+			// heap sort, farthest objects are moved to the end
+			int n = count;
+			for (int last = n - 1; last > 0; last--) {
+				swap(0, last);
+				siftDown(0, last);
+			}
+			for (int i = 0; i < n; i++) {
+				result.add((T) objects[inds[i]]);
+			}
+			return result;
+		}
+
+		@Override
+		protected void visit(int ind) {
+			double dx = (xs[ind] - x31) * xScale;
+			double dy = ys[ind] - y31;
+			double d = dx * dx + dy * dy;
+			if (count < k) {
+				dist[count] = d;
+				inds[count] = ind;
+				int i = count++;
+				while (i > 0 && dist[(i - 1) / 2] < dist[i]) {
+					swap(i, (i - 1) / 2);
+					i = (i - 1) / 2;
+				}
+			} else if (d < dist[0]) {
+				dist[0] = d;
+				inds[0] = ind;
+				siftDown(0, count);
+			}
+		}
+
+		private void siftDown(int i, int n) {
+			while (true) {
+				int l = 2 * i + 1;
+				if (l >= n) {
+					return;
+				}
+				int m = l + 1 < n && dist[l + 1] > dist[l] ? l + 1 : l;
+				if (dist[m] <= dist[i]) {
+					return;
+				}
+				swap(i, m);
+				i = m;
+			}
+		}
+
+		private void swap(int i, int j) {
+			double d = dist[i];
+			dist[i] = dist[j];
+			dist[j] = d;
+			int t = inds[i];
+			inds[i] = inds[j];
+			inds[j] = t;
+		}
+	}
+
+	private int lowerBound(long key) {
+		int lo = 0;
+		int hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (keys[mid] < key) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private static void sort(long[] keys, int[] xs, int[] ys, Object[] objects, int lo, int hi) {
+		while (lo < hi) {
+			long pivot = keys[(lo + hi) >>> 1];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (keys[i] < pivot) {
+					i++;
+				}
+				while (keys[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					long k = keys[i];
+					keys[i] = keys[j];
+					keys[j] = k;
+					int t = xs[i];
+					xs[i] = xs[j];
+					xs[j] = t;
+					t = ys[i];
+					ys[i] = ys[j];
+					ys[j] = t;
+					Object o = objects[i];
+					objects[i] = objects[j];
+					objects[j] = o;
+					i++;
+					j--;
+				}
+			}
+			// recursion for smaller part
+			if (j - lo < hi - i) {
+				sort(keys, xs, ys, objects, lo, j);
+				lo = i;
+			} else {
+				sort(keys, xs, ys, objects, i, hi);
+				hi = j;
+			}
+		}
+	}
+
+	static long hilbertKey(int x, int y) {
+		long d = 0;
+		for (int s = 1 << (ORDER - 1); s > 0; s >>>= 1) {
+			int rx = (x & s) != 0 ? 1 : 0;
+			int ry = (y & s) != 0 ? 1 : 0;
+			d += (long) s * s * ((3 * rx) ^ ry);
+			if (ry == 0) {
+				if (rx == 1) {
+					x = MAX_COORDINATE - x;
+					y = MAX_COORDINATE - y;
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return d;
+	}
+}
@@ -1,19 +1,29 @@
 package net.osmand.router;
 
-import gnu.trove.map.hash.TLongObjectHashMap;
-
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
 
 import net.osmand.PlatformUtil;
 import net.osmand.binary.RouteDataObject;
 import net.osmand.data.LatLon;
 import net.osmand.osm.MapRenderingTypes;
 import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RouteSegmentStore.ConcurrentVisitedSegments;
+import net.osmand.router.RouteSegmentStore.SegmentsQueue;
+import net.osmand.router.RouteSegmentStore.VisitedSnapshot;
+import net.osmand.router.RouteSegmentStore.VisitedSegments;
 import net.osmand.util.MapUtils;
 
 import org.apache.commons.logging.Log;
@@ -71,35 +81,63 @@ public class BinaryRoutePlanner {
 	 */
 	FinalRouteSegment searchRouteInternal(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
 			RouteSegment recalculationEnd ) throws InterruptedException, IOException {
+		if (ctx.config.parallelBidirectionalSearch && !ctx.config.reuseReverseSearchTree && ctx.planRouteIn2Directions()
+				&& ctx.visitor == null && ctx.precalculatedRouteDirection == null && ctx.config.getDirectionPoints() == null) {
+			return searchRouteInternalParallel(ctx, start, end, recalculationEnd);
+		}
 		// measure time
 		ctx.memoryOverhead = 1000;
 
 		// Initializing priority queue to visit way segments 
 		Comparator<RouteSegment> nonHeuristicSegmentsComparator = new NonHeuristicSegmentsComparator();
-		PriorityQueue<RouteSegment> graphDirectSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
-		PriorityQueue<RouteSegment> graphReverseSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
+		SegmentsQueue graphDirectSegments = RouteSegmentStore.createQueue(ctx, new SegmentsComparator(ctx));
+		SegmentsQueue graphReverseSegments;
 
 		// Set to not visit one segment twice (stores road.id << X + segmentStart)
-		TLongObjectHashMap<RouteSegment> visitedDirectSegments = new TLongObjectHashMap<RouteSegment>();
-		TLongObjectHashMap<RouteSegment> visitedOppositeSegments = new TLongObjectHashMap<RouteSegment>();
-
-		initQueuesWithStartEnd(ctx, start, end, recalculationEnd, graphDirectSegments, graphReverseSegments, 
-				visitedDirectSegments, visitedOppositeSegments);
+		VisitedSegments visitedDirectSegments = RouteSegmentStore.createVisitedSegments(ctx);
+		VisitedSegments visitedOppositeSegments;
+		boolean measuredMemory = ctx.config.usePrimitiveSegmentStore;
+
+		ReverseSearchTree reverseTree = recalculationEnd == null && canReuseReverseSearchTree(ctx, end) ? 
+				ctx.reverseSearchTree : null;
+		ctx.reverseSearchTree = null;
+		if (reverseTree != null) {
+			// reverse search is continued from retained frontier, only start segments are new
+			graphReverseSegments = reverseTree.queue;
+			visitedOppositeSegments = reverseTree.visited;
+			ctx.resetDirectSearchSegments();
+			initQueuesWithStartEnd(ctx, start, end, recalculationEnd, graphDirectSegments, null,
+					visitedDirectSegments, visitedOppositeSegments);
+			reverseTree.updateHeuristic(ctx);
+		} else {
+			graphReverseSegments = RouteSegmentStore.createQueue(ctx, new SegmentsComparator(ctx));
+			visitedOppositeSegments = RouteSegmentStore.createVisitedSegments(ctx);
+			initQueuesWithStartEnd(ctx, start, end, recalculationEnd, graphDirectSegments, graphReverseSegments,
+					visitedDirectSegments, visitedOppositeSegments);
+		}
 
 		// Extract & analyze segment with min(f(x)) from queue while final segment is not found
 		boolean forwardSearch = true;
 
-		PriorityQueue<RouteSegment> graphSegments = graphDirectSegments;
+		SegmentsQueue graphSegments = graphDirectSegments;
 
 		FinalRouteSegment finalSegment = null;
 		boolean onlyBackward = ctx.getPlanRoadDirection() < 0;
 		boolean onlyForward = ctx.getPlanRoadDirection() > 0;
 		while (!graphSegments.isEmpty()) {
 			RouteSegment segment = graphSegments.poll();
-			// use accumulative approach
-			ctx.memoryOverhead = (visitedDirectSegments.size() + visitedOppositeSegments.size()) * STANDARD_ROAD_VISITED_OVERHEAD +
-					(graphDirectSegments.size() +
-					graphReverseSegments.size()) * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+			if (measuredMemory) {
+				// primitive storages measure arrays and referenced segments
+				ctx.memoryOverhead = (int) (RouteSegmentStore.getMemoryUsage(visitedDirectSegments)
+						+ RouteSegmentStore.getMemoryUsage(visitedOppositeSegments)
+						+ RouteSegmentStore.getMemoryUsage(graphDirectSegments)
+						+ RouteSegmentStore.getMemoryUsage(graphReverseSegments));
+			} else {
+				// use accumulative approach
+				ctx.memoryOverhead = (visitedDirectSegments.size() + visitedOppositeSegments.size()) * STANDARD_ROAD_VISITED_OVERHEAD +
+						(graphDirectSegments.size() +
+						graphReverseSegments.size()) * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+			}
 			
 			if (TRACE_ROUTING) {
 				printRoad(">", segment, !forwardSearch);
@@ -179,11 +217,283 @@ public class BinaryRoutePlanner {
 																					// graphDirectSegments.size());
 			ctx.calculationProgress.oppositeQueueSize += graphReverseSegments.size();
 		}
+		if (ctx.config.reuseReverseSearchTree && recalculationEnd == null && ctx.planRouteIn2Directions()) {
+			ctx.reverseSearchTree = new ReverseSearchTree(ctx, end, graphReverseSegments, visitedOppositeSegments);
+		}
 		return finalSegment;
 	}
 
+	/**
+	 * Reverse search tree retained by previous calculation could be continued if route is calculated 
+	 * to the same target point with the same settings (heuristic of queue is updated for new start point). 
+	 */
+	static boolean canReuseReverseSearchTree(RoutingContext ctx, RouteSegmentPoint end) {
+		ReverseSearchTree tree = ctx.reverseSearchTree;
+		if (tree == null || !ctx.config.reuseReverseSearchTree || ctx.nativeLib != null || !ctx.planRouteIn2Directions()
+				|| ctx.precalculatedRouteDirection != null || tree.config != ctx.config) {
+			return false;
+		}
+		if (tree.targetRoadId != end.getRoad().getId() || tree.targetSegment != end.getSegmentStart()
+				|| tree.targetX != end.preciseX || tree.targetY != end.preciseY || tree.queue.isEmpty()) {
+			return false;
+		}
+		// retained tree shouldn't take more than half of memory limit
+		long memory = ctx.config.usePrimitiveSegmentStore ? 
+				RouteSegmentStore.getMemoryUsage(tree.queue) + RouteSegmentStore.getMemoryUsage(tree.visited) : 
+				(long) tree.visited.size() * STANDARD_ROAD_VISITED_OVERHEAD + (long) tree.queue.size() * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+		return memory < ctx.config.memoryLimitation / 2;
+	}
+
+	/**
+	 * Same as {@link #searchRouteInternal} but direct and reverse searches run in 2 threads. Reverse search uses own
+	 * routing context (tiles and router caches are not thread safe), searches see each other only through snapshots
+	 * of visited segments. Found final segments don't stop search: every direction stops when its queue can't improve
+	 * best final segment, so route is the best meeting of both searches. Memory limit is shared by both directions.
+	 */
+	private FinalRouteSegment searchRouteInternalParallel(final RoutingContext ctx, RouteSegmentPoint start,
+			final RouteSegmentPoint end, RouteSegment recalculationEnd) throws InterruptedException, IOException {
+		ctx.memoryOverhead = 1000;
+		final ParallelSearchState state = new ParallelSearchState();
+		SegmentsQueue graphDirectSegments = new ParallelSearchQueue(
+				RouteSegmentStore.createQueue(ctx, new SegmentsComparator(ctx)), state);
+		final SegmentsQueue graphReverseSegments = new ParallelSearchQueue(
+				RouteSegmentStore.createQueue(ctx, new SegmentsComparator(ctx)), state);
+		Object visitedLock = new Object();
+		final ConcurrentVisitedSegments visitedDirectSegments = RouteSegmentStore.createConcurrentVisitedSegments(visitedLock);
+		final ConcurrentVisitedSegments visitedOppositeSegments = RouteSegmentStore.createConcurrentVisitedSegments(visitedLock);
+		initQueuesWithStartEnd(ctx, start, end, recalculationEnd, graphDirectSegments, graphReverseSegments,
+				visitedDirectSegments, visitedOppositeSegments);
+
+		final RoutingContext reverseCtx = ctx.copy(ctx.config.copy(ctx.config.router.copyWithOwnCaches()));
+		// progress is updated only by search thread of main context
+		reverseCtx.calculationProgress = null;
+		reverseCtx.startX = ctx.startX;
+		reverseCtx.startY = ctx.startY;
+		reverseCtx.targetX = ctx.targetX;
+		reverseCtx.targetY = ctx.targetY;
+		// initial segments are partial, so meeting with initial segment of opposite direction is correct only if
+		// it's checked by search which reaches it (initial segments are processed first as in 1 thread search)
+		int visited = processInitialSegments(ctx, false, graphDirectSegments, visitedDirectSegments,
+				visitedOppositeSegments);
+		visited += processInitialSegments(reverseCtx, true, graphReverseSegments, visitedOppositeSegments,
+				visitedDirectSegments);
+		Future<Integer> reverseSearch = getParallelSearchExecutor().submit(new Callable<Integer>() {
+
+			@Override
+			public Integer call() throws Exception {
+				try {
+					return searchDirection(reverseCtx, ctx, true, graphReverseSegments, visitedOppositeSegments,
+							visitedDirectSegments, end, state);
+				} catch (Exception e) {
+					state.stop = true;
+					throw e;
+				} finally {
+					reverseCtx.unloadAllData();
+				}
+			}
+		});
+		try {
+			visited += searchDirection(ctx, ctx, false, graphDirectSegments, visitedDirectSegments,
+					visitedOppositeSegments, start, state);
+		} catch (InterruptedException e) {
+			state.stop = true;
+			throw e;
+		} catch (RuntimeException e) {
+			state.stop = true;
+			throw e;
+		} finally {
+			// main search could finish earlier, reverse search is finished before routing context is used
+			while (true) {
+				try {
+					visited += reverseSearch.get();
+					break;
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (state.stop && state.finalSegment.get() == null && cause instanceof InterruptedException) {
+						throw (InterruptedException) cause;
+					} else if (cause instanceof IOException) {
+						throw (IOException) cause;
+					} else if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					}
+					throw new IllegalStateException(cause);
+				} catch (InterruptedException e) {
+					state.stop = true;
+				}
+			}
+		}
+		ctx.alertFasterRoadToVisitedSegments += reverseCtx.alertFasterRoadToVisitedSegments;
+		ctx.alertSlowerSegmentedWasVisitedEarlier += reverseCtx.alertSlowerSegmentedWasVisitedEarlier;
+		if (ctx.calculationProgress != null) {
+			ctx.calculationProgress.visitedSegments += visited;
+			ctx.calculationProgress.visitedDirectSegments += visitedDirectSegments.size();
+			ctx.calculationProgress.visitedOppositeSegments += visitedOppositeSegments.size();
+			ctx.calculationProgress.directQueueSize += graphDirectSegments.size();
+			ctx.calculationProgress.oppositeQueueSize += graphReverseSegments.size();
+		}
+		return state.finalSegment.get();
+	}
+
+	private int processInitialSegments(RoutingContext ctx, boolean reverseWaySearch, SegmentsQueue graphSegments,
+			ConcurrentVisitedSegments visitedSegments, ConcurrentVisitedSegments oppositeSegments) {
+		int visited = 0;
+		while (!graphSegments.isEmpty() && graphSegments.peek().getParentRoute() == RouteSegment.NULL) {
+			processRouteSegment(ctx, reverseWaySearch, graphSegments, visitedSegments, graphSegments.poll(),
+					oppositeSegments, false);
+			visited++;
+		}
+		return visited;
+	}
+
+	/**
+	 * State shared by search threads of both directions
+	 */
+	private static class ParallelSearchState {
+		// best final segment found by both directions
+		final AtomicReference<FinalRouteSegment> finalSegment = new AtomicReference<FinalRouteSegment>();
+		// search is cancelled or failed
+		volatile boolean stop;
+		// memory of search and loaded tiles of direct (0) and reverse (1) direction
+		final AtomicIntegerArray memory = new AtomicIntegerArray(2);
+		// progress of reverse search
+		volatile float distanceFromEnd;
+
+		void offer(FinalRouteSegment segment) {
+			while (true) {
+				FinalRouteSegment best = finalSegment.get();
+				if (best != null && best.distanceFromStart <= segment.distanceFromStart) {
+					return;
+				}
+				if (finalSegment.compareAndSet(best, segment)) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Queue of one direction: final segments are not queued but offered to state shared by both directions
+	 * (priority of queued segment could be decreased while it's in queue, so final segment could be polled after
+	 * worse one)
+	 */
+	private static class ParallelSearchQueue implements SegmentsQueue {
+		private final SegmentsQueue queue;
+		private final ParallelSearchState state;
+
+		ParallelSearchQueue(SegmentsQueue queue, ParallelSearchState state) {
+			this.queue = queue;
+			this.state = state;
+		}
+
+		@Override
+		public boolean add(RouteSegment segment) {
+			if (segment instanceof FinalRouteSegment) {
+				state.offer((FinalRouteSegment) segment);
+				return true;
+			}
+			return queue.add(segment);
+		}
+
+		@Override
+		public RouteSegment poll() {
+			return queue.poll();
+		}
+
+		@Override
+		public RouteSegment peek() {
+			return queue.peek();
+		}
+
+		@Override
+		public int size() {
+			return queue.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return queue.isEmpty();
+		}
+
+		@Override
+		public void updateHeuristicToStart(RoutingContext ctx) {
+			queue.updateHeuristicToStart(ctx);
+		}
+	}
+
+	private int searchDirection(RoutingContext ctx, RoutingContext mainCtx, boolean reverseWaySearch,
+			SegmentsQueue graphSegments, ConcurrentVisitedSegments visitedSegments,
+			ConcurrentVisitedSegments oppositeSegments, RouteSegmentPoint pnt, ParallelSearchState state)
+			throws InterruptedException {
+		int visited = 0;
+		int direction = reverseWaySearch ? 1 : 0;
+		while (!state.stop) {
+			checkIfGraphIsEmpty(ctx, true, reverseWaySearch, graphSegments, pnt, visitedSegments,
+					reverseWaySearch ? "Route is not found to selected target point." : "Route is not found from selected start point.");
+			if (graphSegments.isEmpty()) {
+				// all segments reachable by direction are visited and published, opposite direction
+				// still could meet them (its queue is empty too if route doesn't exist)
+				break;
+			}
+			RouteSegment peek = graphSegments.peek();
+			FinalRouteSegment best = state.finalSegment.get();
+			if (best != null && ctx.roadPriorityComparator(peek.distanceFromStart, peek.distanceToEnd,
+					best.distanceFromStart, 0) >= 0) {
+				// best final segment can't be improved by this direction (queue of direction is not changed by
+				// opposite one), search is finished when both directions reach it
+				break;
+			}
+			RouteSegment segment = graphSegments.poll();
+			int searchMemory = visitedSegments.size() * STANDARD_ROAD_VISITED_OVERHEAD
+					+ graphSegments.size() * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+			state.memory.set(direction, searchMemory + ctx.getCurrentEstimatedSize());
+			// tiles are loaded within memory left by searches of both directions and tiles of opposite direction
+			ctx.memoryOverhead = searchMemory + state.memory.get(1 - direction);
+			if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+				throw new IllegalStateException("There is not enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
+			}
+			visited++;
+			processRouteSegment(ctx, reverseWaySearch, graphSegments, visitedSegments, segment, oppositeSegments, false);
+			if (mainCtx.calculationProgress != null) {
+				if (mainCtx.calculationProgress.isCancelled) {
+					throw new InterruptedException("Route calculation interrupted");
+				}
+				peek = graphSegments.peek();
+				if (reverseWaySearch) {
+					if (peek != null) {
+						state.distanceFromEnd = Math.max(peek.distanceFromStart + peek.distanceToEnd,
+								state.distanceFromEnd);
+					}
+				} else {
+					if (peek != null) {
+						mainCtx.calculationProgress.distanceFromBegin = Math.max(peek.distanceFromStart,
+								mainCtx.calculationProgress.distanceFromBegin);
+					}
+					mainCtx.calculationProgress.distanceFromEnd = state.distanceFromEnd;
+				}
+			}
+		}
+		return visited;
+	}
+
+	private static ExecutorService parallelSearchExecutor;
+
+	private static synchronized ExecutorService getParallelSearchExecutor() {
+		if (parallelSearchExecutor == null) {
+			parallelSearchExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "Reverse route search");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return parallelSearchExecutor;
+	}
+
 	protected void checkIfGraphIsEmpty(final RoutingContext ctx, boolean allowDirection,
-			boolean reverseWaySearch, PriorityQueue<RouteSegment> graphSegments, RouteSegmentPoint pnt, TLongObjectHashMap<RouteSegment> visited,
+			boolean reverseWaySearch, SegmentsQueue graphSegments, RouteSegmentPoint pnt, VisitedSegments visited,
 			String msg) {
 		if (allowDirection && graphSegments.isEmpty()) {
 			if (pnt.others != null) {
@@ -253,8 +563,8 @@ public class BinaryRoutePlanner {
 
 
 	private void initQueuesWithStartEnd(final RoutingContext ctx, RouteSegment start, RouteSegment end,
-			RouteSegment recalculationEnd, PriorityQueue<RouteSegment> graphDirectSegments, PriorityQueue<RouteSegment> graphReverseSegments, 
-			TLongObjectHashMap<RouteSegment> visitedDirectSegments, TLongObjectHashMap<RouteSegment> visitedOppositeSegments) {
+			RouteSegment recalculationEnd, SegmentsQueue graphDirectSegments, SegmentsQueue graphReverseSegments, 
+			VisitedSegments visitedDirectSegments, VisitedSegments visitedOppositeSegments) {
 		RouteSegment startPos = initRouteSegment(ctx, start, true, false);
 		RouteSegment startNeg = initRouteSegment(ctx, start, false, false);
 		RouteSegment endPos = initRouteSegment(ctx, end, true, true);
@@ -291,7 +601,9 @@ public class BinaryRoutePlanner {
 			startNeg.distanceToEnd = estimatedDistance;
 			graphDirectSegments.add(startNeg);
 		}
-		if (recalculationEnd != null) {
+		if (graphReverseSegments == null) {
+			// reverse search tree is restored
+		} else if (recalculationEnd != null) {
 			graphReverseSegments.add(recalculationEnd);
 		} else {
 			if (endPos != null && checkMovementAllowed(ctx, true, endPos)) {
@@ -319,8 +631,8 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private void updateCalculationProgress(final RoutingContext ctx, PriorityQueue<RouteSegment> graphDirectSegments,
-			PriorityQueue<RouteSegment> graphReverseSegments) {
+	private void updateCalculationProgress(final RoutingContext ctx, SegmentsQueue graphDirectSegments,
+			SegmentsQueue graphReverseSegments) {
 		if (ctx.calculationProgress != null) {
 			ctx.calculationProgress.reverseSegmentQueueSize = graphReverseSegments.size();
 			ctx.calculationProgress.directSegmentQueueSize = graphDirectSegments.size();
@@ -417,8 +729,8 @@ public class BinaryRoutePlanner {
 
 	@SuppressWarnings("unused")
 	private void processRouteSegment(final RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegment> graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments, 
-            RouteSegment startSegment, TLongObjectHashMap<RouteSegment> oppositeSegments, boolean doNotAddIntersections) {
+			SegmentsQueue graphSegments, VisitedSegments visitedSegments, 
+            RouteSegment startSegment, VisitedSegments oppositeSegments, boolean doNotAddIntersections) {
 		if (ASSERT_CHECKS && !checkMovementAllowed(ctx, reverseWaySearch, startSegment)) {
 			throw new IllegalStateException();
 		}
@@ -448,7 +760,7 @@ public class BinaryRoutePlanner {
 			// We check before we calculate segmentTime (to not calculate it twice with opposite and calculate turns
 			// onto each segment).
 			boolean alreadyVisited = checkIfOppositeSegmentWasVisited(reverseWaySearch, graphSegments, currentSegment,
-					oppositeSegments);
+					distFromStartPlusSegmentTime, visitedSegments, oppositeSegments);
  			if (alreadyVisited) {
  				// we don't stop here in order to allow improve found *potential* final segment - test case on short route
 				// directionAllowed = false;
@@ -513,12 +825,12 @@ public class BinaryRoutePlanner {
 
 
 
-	private boolean checkViaRestrictions(RouteSegment from, RouteSegment to) {
+	private boolean checkViaRestrictions(RouteDataObject from, RouteDataObject to) {
 		if (from != null && to != null) {
-			long fid = to.getRoad().getId();
-			for (int i = 0; i < from.getRoad().getRestrictionLength(); i++) {
-				long id = from.getRoad().getRestrictionId(i);
-				int tp = from.getRoad().getRestrictionType(i);
+			long fid = to.getId();
+			for (int i = 0; i < from.getRestrictionLength(); i++) {
+				long id = from.getRestrictionId(i);
+				int tp = from.getRestrictionType(i);
 				if (fid == id) {
 					if (tp == MapRenderingTypes.RESTRICTION_NO_LEFT_TURN
 							|| tp == MapRenderingTypes.RESTRICTION_NO_RIGHT_TURN
@@ -536,30 +848,54 @@ public class BinaryRoutePlanner {
 		return true;
 	}
 
-	private RouteSegment getParentDiffId(RouteSegment s) {
+	static RouteSegment getParentDiffId(RouteSegment s) {
 		while (s.getParentRoute() != null && s.getParentRoute().getRoad().getId() == s.getRoad().getId()) {
 			s = s.getParentRoute();
 		}
 		return s.getParentRoute();
 	}
 
-	private boolean checkIfOppositeSegmentWasVisited(boolean reverseWaySearch,
-			PriorityQueue<RouteSegment> graphSegments, RouteSegment currentSegment, TLongObjectHashMap<RouteSegment> oppositeSegments) {
+	private boolean checkIfOppositeSegmentWasVisited(boolean reverseWaySearch, SegmentsQueue graphSegments,
+			RouteSegment currentSegment, float distFromStartPlusSegmentTime, VisitedSegments visitedSegments,
+			VisitedSegments oppositeSegments) {
 		// check inverse direction for opposite
 		long currPoint = calculateRoutePointInternalId(currentSegment.getRoad(), 
 				currentSegment.getSegmentEnd(), currentSegment.getSegmentStart());
-		if (oppositeSegments.containsKey(currPoint)) {
-			RouteSegment opposite = oppositeSegments.get(currPoint);
-			RouteSegment curParent = getParentDiffId(currentSegment);
-			RouteSegment oppParent = getParentDiffId(opposite);
-			RouteSegment to = reverseWaySearch ? curParent : oppParent;
-			RouteSegment from = !reverseWaySearch ? curParent : oppParent;
+		RouteSegment opposite;
+		float oppositeDistance;
+		RouteDataObject oppParent;
+		if (oppositeSegments instanceof ConcurrentVisitedSegments) {
+			// opposite direction is searched by another thread, so only published state of segment is read
+			// (segment could be changed later if faster path to it is found, so its state is published now)
+			VisitedSnapshot snapshot = ((ConcurrentVisitedSegments) visitedSegments).publish(
+					calculateRoutePointId(currentSegment), new VisitedSnapshot(currentSegment,
+							distFromStartPlusSegmentTime, getParentDiffId(currentSegment)),
+					(ConcurrentVisitedSegments) oppositeSegments, currPoint);
+			if (snapshot == null) {
+				return false;
+			}
+			opposite = snapshot.segment;
+			oppositeDistance = snapshot.distanceFromStart;
+			oppParent = snapshot.parentRoad;
+		} else if (oppositeSegments.containsKey(currPoint)) {
+			opposite = oppositeSegments.get(currPoint);
+			oppositeDistance = opposite.distanceFromStart;
+			RouteSegment parent = getParentDiffId(opposite);
+			oppParent = parent == null ? null : parent.getRoad();
+		} else {
+			return false;
+		}
+		{
+			RouteSegment parent = getParentDiffId(currentSegment);
+			RouteDataObject curParent = parent == null ? null : parent.getRoad();
+			RouteDataObject to = reverseWaySearch ? curParent : oppParent;
+			RouteDataObject from = !reverseWaySearch ? curParent : oppParent;
 			if (checkViaRestrictions(from, to)) {
 				FinalRouteSegment frs = new FinalRouteSegment(currentSegment.getRoad(),
 						currentSegment.getSegmentStart(), currentSegment.getSegmentEnd());
 				frs.setParentRoute(currentSegment.getParentRoute());
 				frs.reverseWaySearch = reverseWaySearch;
-				frs.distanceFromStart = opposite.distanceFromStart + currentSegment.distanceFromStart;
+				frs.distanceFromStart = oppositeDistance + currentSegment.distanceFromStart;
 				frs.distanceToEnd = 0;
 				frs.opposite = opposite;
 				graphSegments.add(frs);
@@ -572,7 +908,7 @@ public class BinaryRoutePlanner {
 		return false;
 	}
 
-	private long calculateRoutePointInternalId(final RouteDataObject road, int pntId, int nextPntId) {
+	private static long calculateRoutePointInternalId(final RouteDataObject road, int pntId, int nextPntId) {
 		int positive = nextPntId - pntId;
 		int pntLen = road.getPointsLength();
 		if (pntId < 0 || nextPntId < 0 || pntId >= pntLen || nextPntId >= pntLen || (positive != -1 && positive != 1)) {
@@ -582,7 +918,7 @@ public class BinaryRoutePlanner {
 		return (road.getId() << ROUTE_POINTS) + (pntId << 1) + (positive > 0 ? 1 : 0);
 	}
 
-	private long calculateRoutePointId(RouteSegment segm) {
+	static long calculateRoutePointId(RouteSegment segm) {
 		return calculateRoutePointInternalId(segm.getRoad(), segm.getSegmentStart(), 
 				segm.isPositive() ? segm.getSegmentStart() + 1 : segm.getSegmentStart() - 1);
 		// return calculateRoutePointInternalId(segm.getRoad(), segm.getSegmentStart(), segm.getSegmentEnd()); 
@@ -700,8 +1036,8 @@ public class BinaryRoutePlanner {
 		}
 	}
 
-	private RouteSegment processIntersections(RoutingContext ctx, PriorityQueue<RouteSegment> graphSegments,
-			TLongObjectHashMap<RouteSegment> visitedSegments,  RouteSegment currentSegment,
+	private RouteSegment processIntersections(RoutingContext ctx, SegmentsQueue graphSegments,
+			VisitedSegments visitedSegments,  RouteSegment currentSegment,
 			boolean reverseWaySearch, boolean doNotAddIntersections) {
 		RouteSegment nextCurrentSegment = null;
 		int targetEndX = reverseWaySearch ? ctx.startX : ctx.targetX;
@@ -803,8 +1139,8 @@ public class BinaryRoutePlanner {
 		return nextCurrentSegment;
 	}
 
-	private boolean processOneRoadIntersection(RoutingContext ctx, boolean reverseWaySearch, PriorityQueue<RouteSegment> graphSegments,
-			TLongObjectHashMap<RouteSegment> visitedSegments, RouteSegment segment, RouteSegment next) {
+	private boolean processOneRoadIntersection(RoutingContext ctx, boolean reverseWaySearch, SegmentsQueue graphSegments,
+			VisitedSegments visitedSegments, RouteSegment segment, RouteSegment next) {
 		if (next != null) {
 			if (!checkMovementAllowed(ctx, reverseWaySearch, next)) {
 				return false;
@@ -977,6 +1313,21 @@ public class BinaryRoutePlanner {
 			this(road, segmentStart, segmentStart < road.getPointsLength() - 1 ? segmentStart + 1 : segmentStart - 1);
 		}
 
+		/**
+		 * Resets state of direct search of cached segment and its opposite direction
+		 * (segments of reverse search are separate objects, see {@link #reverseSearch})
+		 */
+		void resetDirectSearch() {
+			parentRoute = null;
+			distanceFromStart = 0;
+			distanceToEnd = 0;
+			if (oppositeDirection != null) {
+				oppositeDirection.parentRoute = null;
+				oppositeDirection.distanceFromStart = 0;
+				oppositeDirection.distanceToEnd = 0;
+			}
+		}
+
 		public RouteSegment initRouteSegment(boolean positiveDirection) {
 			if (segStart == 0 && !positiveDirection) {
 				return null;
@@ -1081,6 +1432,37 @@ public class BinaryRoutePlanner {
 		}
 	}
 
+	/**
+	 * Queue and visited segments of reverse (from target) search kept in routing context between calculations, 
+	 * segments visited in reverse direction store time to target so they don't depend on start point.
+	 * Segments are cached by context, so segments of direct search are reset before next search
+	 * (see {@link RoutingContext#resetDirectSearchSegments()}).
+	 */
+	static class ReverseSearchTree {
+		final RoutingConfiguration config;
+		final long targetRoadId;
+		final int targetSegment;
+		final int targetX;
+		final int targetY;
+		final SegmentsQueue queue;
+		final VisitedSegments visited;
+
+		ReverseSearchTree(RoutingContext ctx, RouteSegmentPoint end, SegmentsQueue queue, VisitedSegments visited) {
+			this.config = ctx.config;
+			this.targetRoadId = end.getRoad().getId();
+			this.targetSegment = end.getSegmentStart();
+			this.targetX = end.preciseX;
+			this.targetY = end.preciseY;
+			this.queue = queue;
+			this.visited = visited;
+		}
+
+		void updateHeuristic(RoutingContext ctx) {
+			// final segments were found with previous direct search
+			queue.updateHeuristicToStart(ctx);
+		}
+	}
+
 	static class FinalRouteSegment extends RouteSegment {
 
 		boolean reverseWaySearch;
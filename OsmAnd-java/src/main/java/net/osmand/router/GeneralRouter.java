@@ -81,7 +81,10 @@ public class GeneralRouter implements VehicleRouter {
 	
 	private GeneralRouterProfile profile;
 	
-	Map<RouteRegion, Map<IntHolder, Float>>[] evalCache;	
+	// evaluated values per attribute: region -> value by types combination id (NaN - not evaluated yet)
+	Map<RouteRegion, float[]>[] evalCache;
+	private RouteRegion[] lastCacheRegion;
+	private float[][] lastCacheTable;
 	
 	public enum RouteDataObjectAttribute {
 		ROAD_SPEED("speed"),
@@ -165,6 +168,35 @@ public class GeneralRouter implements VehicleRouter {
 		initCaches();
 	}
 	
+	private GeneralRouter(GeneralRouter copy) {
+		this.profile = copy.profile;
+		this.attributes = copy.attributes;
+		universalRules = copy.universalRules;
+		universalRulesById = copy.universalRulesById;
+		tagRuleMask = copy.tagRuleMask;
+		ruleToValue = copy.ruleToValue;
+		parameters = copy.parameters;
+		objectAttributes = new RouteAttributeContext[copy.objectAttributes.length];
+		for (int i = 0; i < objectAttributes.length; i++) {
+			objectAttributes[i] = new RouteAttributeContext(copy.objectAttributes[i]);
+		}
+		shortestRoute = copy.shortestRoute;
+		heightObstacles = copy.heightObstacles;
+		allowPrivate = copy.allowPrivate;
+		filename = copy.filename;
+		profileName = copy.profileName;
+		restrictionsAware = copy.restrictionsAware;
+		sharpTurn = copy.sharpTurn;
+		roundaboutTurn = copy.roundaboutTurn;
+		slightTurn = copy.slightTurn;
+		minSpeed = copy.minSpeed;
+		defaultSpeed = copy.defaultSpeed;
+		maxSpeed = copy.maxSpeed;
+		maxVehicleSpeed = copy.maxVehicleSpeed;
+		impassableRoads = copy.impassableRoads;
+		initCaches();
+	}
+	
 	public GeneralRouter(GeneralRouterProfile profile, Map<String, String> attributes) {
 		this.profile = profile;
 		this.attributes = new LinkedHashMap<String, String>();
@@ -194,6 +226,8 @@ public class GeneralRouter implements VehicleRouter {
 		for (int i = 0; i < l; i++) {
 			evalCache[i] = new HashMap<>();
 		}
+		lastCacheRegion = new RouteRegion[l];
+		lastCacheTable = new float[l][];
 	}
 
 	public String getFilename() {
@@ -274,8 +308,8 @@ public class GeneralRouter implements VehicleRouter {
 
 	@Override
 	public boolean acceptLine(RouteDataObject way) {
-		Float res = getCache(RouteDataObjectAttribute.ACCESS, way);
-		if (res == null) {
+		float res = getCache(RouteDataObjectAttribute.ACCESS, way);
+		if (Float.isNaN(res)) {
 			res = (float) getObjContext(RouteDataObjectAttribute.ACCESS).evaluateInt(way, 0);
 			putCache(RouteDataObjectAttribute.ACCESS, way, res);
 		}
@@ -297,6 +331,13 @@ public class GeneralRouter implements VehicleRouter {
 	}
 	
 	public int registerTagValueAttribute(String tag, String value) {
+		// tables are shared between routers built from same parent
+		synchronized (universalRules) {
+			return registerTagValueAttributeImpl(tag, value);
+		}
+	}
+
+	private int registerTagValueAttributeImpl(String tag, String value) {
 		String key = tag +"$"+value;
 		if(universalRules.containsKey(key)) {
 			return universalRules.get(key);
@@ -334,7 +375,19 @@ public class GeneralRouter implements VehicleRouter {
 		return vl;
 	}
 	
+	private BitSet getTagRuleMask(String tag) {
+		synchronized (universalRules) {
+			return tagRuleMask.get(tag);
+		}
+	}
+
 	private Object parseValueFromTag(int id, String type) {
+		synchronized (universalRules) {
+			return parseValueFromTagImpl(id, type);
+		}
+	}
+
+	private Object parseValueFromTagImpl(int id, String type) {
 		while (ruleToValue.size() <= id) {
 			ruleToValue.add(null);
 		}
@@ -359,6 +412,14 @@ public class GeneralRouter implements VehicleRouter {
 		return new GeneralRouter(this, params);
 	}
 
+	/**
+	 * Router with same rules and parameters but with own evaluation caches,
+	 * so it could be used by another thread in parallel with this router
+	 */
+	public GeneralRouter copyWithOwnCaches() {
+		return new GeneralRouter(this);
+	}
+
 	@Override
 	public boolean restrictionsAware() {
 		return restrictionsAware;
@@ -368,11 +429,12 @@ public class GeneralRouter implements VehicleRouter {
 	public float defineObstacle(RouteDataObject road, int point, boolean dir) {
 		int[] pointTypes = road.getPointTypes(point);
 		if(pointTypes != null) {
-			Float obst = getCache(RouteDataObjectAttribute.OBSTACLES, road.region, pointTypes, dir);
-			if(obst == null) {
+			int combinationId = road.getPointTypesCombinationId(point);
+			float obst = getCache(RouteDataObjectAttribute.OBSTACLES, road.region, combinationId, dir);
+			if (Float.isNaN(obst)) {
 				int[] filteredPointTypes = filterDirectionTags(road, pointTypes, dir);
 				obst = getObjContext(RouteDataObjectAttribute.OBSTACLES).evaluateFloat(road.region, filteredPointTypes, 0);
-				putCache(RouteDataObjectAttribute.OBSTACLES, road.region, pointTypes, obst, dir);
+				putCache(RouteDataObjectAttribute.OBSTACLES, road.region, combinationId, obst, dir);
 			}
 			return obst;
 		}
@@ -385,11 +447,12 @@ public class GeneralRouter implements VehicleRouter {
 	public float defineRoutingObstacle(RouteDataObject road, int point, boolean dir) {
 		int[] pointTypes = road.getPointTypes(point);
 		if(pointTypes != null) {
-			Float obst = getCache(RouteDataObjectAttribute.ROUTING_OBSTACLES, road.region, pointTypes, dir);
-			if(obst == null) {
+			int combinationId = road.getPointTypesCombinationId(point);
+			float obst = getCache(RouteDataObjectAttribute.ROUTING_OBSTACLES, road.region, combinationId, dir);
+			if (Float.isNaN(obst)) {
 				int[] filteredPointTypes = filterDirectionTags(road, pointTypes, dir);
 				obst = getObjContext(RouteDataObjectAttribute.ROUTING_OBSTACLES).evaluateFloat(road.region, filteredPointTypes, 0);
-				putCache(RouteDataObjectAttribute.ROUTING_OBSTACLES, road.region, pointTypes, obst, dir);
+				putCache(RouteDataObjectAttribute.ROUTING_OBSTACLES, road.region, combinationId, obst, dir);
 			}
 			return obst;
 		}
@@ -463,12 +526,12 @@ public class GeneralRouter implements VehicleRouter {
 	
 	@Override
 	public int isOneWay(RouteDataObject road) {
-		Float res = getCache(RouteDataObjectAttribute.ONEWAY, road);
-		if(res == null) {
+		float res = getCache(RouteDataObjectAttribute.ONEWAY, road);
+		if (Float.isNaN(res)) {
 			res = (float) getObjContext(RouteDataObjectAttribute.ONEWAY).evaluateInt(road, 0);
 			putCache(RouteDataObjectAttribute.ONEWAY, road, res);
 		}
-		return res.intValue();
+		return (int) res;
 	}
 	
 	@Override
@@ -478,8 +541,8 @@ public class GeneralRouter implements VehicleRouter {
 	
 	@Override
 	public float getPenaltyTransition(RouteDataObject road) {
-		Float vl = getCache(RouteDataObjectAttribute.PENALTY_TRANSITION, road);
-		if (vl == null) {
+		float vl = getCache(RouteDataObjectAttribute.PENALTY_TRANSITION, road);
+		if (Float.isNaN(vl)) {
 			vl = (float) getObjContext(RouteDataObjectAttribute.PENALTY_TRANSITION).evaluateInt(road, 0);
 			putCache(RouteDataObjectAttribute.PENALTY_TRANSITION, road, vl);
 		}
@@ -488,8 +551,8 @@ public class GeneralRouter implements VehicleRouter {
 
 	@Override
 	public float defineRoutingSpeed(RouteDataObject road) {
-		Float definedSpd = getCache(RouteDataObjectAttribute.ROAD_SPEED, road);
-		if (definedSpd == null) {
+		float definedSpd = getCache(RouteDataObjectAttribute.ROAD_SPEED, road);
+		if (Float.isNaN(definedSpd)) {
 			float spd = getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(road, defaultSpeed);
 			definedSpd = Math.max(Math.min(spd, maxSpeed), minSpeed);
 			putCache(RouteDataObjectAttribute.ROAD_SPEED, road, definedSpd);
@@ -504,8 +567,8 @@ public class GeneralRouter implements VehicleRouter {
 			float spd = getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(road, defaultSpeed);
 			return Math.max(Math.min(spd, maxVehicleSpeed), minSpeed);
 		}
-		Float sp = getCache(RouteDataObjectAttribute.ROAD_SPEED, road);
-		if (sp == null) {
+		float sp = getCache(RouteDataObjectAttribute.ROAD_SPEED, road);
+		if (Float.isNaN(sp)) {
 			float spd = getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(road, defaultSpeed);
 			sp = Math.max(Math.min(spd, maxVehicleSpeed), minSpeed);
 			putCache(RouteDataObjectAttribute.ROAD_SPEED, road, sp);
@@ -515,85 +578,75 @@ public class GeneralRouter implements VehicleRouter {
 	
 	@Override
 	public float defineSpeedPriority(RouteDataObject road) {
-		Float sp = getCache(RouteDataObjectAttribute.ROAD_PRIORITIES, road);
-		if(sp == null) {
+		float sp = getCache(RouteDataObjectAttribute.ROAD_PRIORITIES, road);
+		if (Float.isNaN(sp)) {
 			sp = getObjContext(RouteDataObjectAttribute.ROAD_PRIORITIES).evaluateFloat(road, 1f);
 			putCache(RouteDataObjectAttribute.ROAD_PRIORITIES, road, sp, false);
 		}
 		return sp;
 	}
 
-	private void putCache(RouteDataObjectAttribute attr, RouteDataObject road, Float val) {
-		putCache(attr, road.region, road.types, val, false);
+	private void putCache(RouteDataObjectAttribute attr, RouteDataObject road, float val) {
+		putCache(attr, road, val, false);
 	}
 	
-	private void putCache(RouteDataObjectAttribute attr, RouteDataObject road, Float val, boolean extra) {
-		putCache(attr, road.region, road.types, val, extra);
+	private void putCache(RouteDataObjectAttribute attr, RouteDataObject road, float val, boolean extra) {
+		if (road.region != null) {
+			putCache(attr, road.region, road.getTypesCombinationId(), val, extra);
+		}
 	}
 	
-	private void putCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types, Float val, boolean extra) {
-//		TIMER -= System.nanoTime();
-		Map<RouteRegion, Map<IntHolder, Float>> ch = evalCache[attr.ordinal()];
-		if (USE_CACHE) {
-			Map<IntHolder, Float> rM = ch.get(reg);
-			if (rM == null) {
-				rM = new HashMap<IntHolder, Float>();
-				ch.put(reg, rM);
+	private void putCache(RouteDataObjectAttribute attr, RouteRegion reg, int combinationId, float val, boolean extra) {
+		if (!USE_CACHE || reg == null || Float.isNaN(val)) {
+			return;
+		}
+		int ind = (combinationId << 1) + (extra ? 1 : 0);
+		float[] table = getCacheTable(attr.ordinal(), reg);
+		if (table == null || ind >= table.length) {
+			int l = table == null ? 0 : table.length;
+			float[] ntable = new float[Math.max(ind + 1, Math.max(64, l * 2))];
+			Arrays.fill(ntable, l, ntable.length, Float.NaN);
+			if (table != null) {
+				System.arraycopy(table, 0, ntable, 0, l);
 			}
-			rM.put(new IntHolder(types, extra), val);
+			table = ntable;
+			evalCache[attr.ordinal()].put(reg, table);
+			lastCacheRegion[attr.ordinal()] = reg;
+			lastCacheTable[attr.ordinal()] = table;
 		}
-//		TIMER += System.nanoTime();
+		table[ind] = val;
 	}
-	
-	class IntHolder {
-		private final int[] array;
-		private final boolean extra;
 
-		IntHolder(int[] ts, boolean extra) {
-			array = ts;
-			this.extra = extra;
+	private float getCache(RouteDataObjectAttribute attr, RouteDataObject road) {
+		if (road.region == null) {
+			return Float.NaN;
 		}
-
-		@Override
-		public int hashCode() {
-			return Arrays.hashCode(array) + (extra ? 1 : 0);
+		return getCache(attr, road.region, road.getTypesCombinationId(), false);
+	}
+	
+	private float getCache(RouteDataObjectAttribute attr, RouteRegion reg, int combinationId, boolean extra) {
+		if (!USE_CACHE || reg == null) {
+			return Float.NaN;
 		}
-
-		@Override
-		public boolean equals(Object other) {
-			if (array == other) {
-				return true;
-			}
-			if (!(other instanceof IntHolder)) {
-				return false;
-			}
-			if (((IntHolder) other).extra != this.extra) {
-				return false;
-			}
-			// noinspection unchecked
-			return Arrays.equals(array, ((IntHolder) other).array);
+		float[] table = getCacheTable(attr.ordinal(), reg);
+		int ind = (combinationId << 1) + (extra ? 1 : 0);
+		if (table == null || ind >= table.length) {
+			return Float.NaN;
 		}
+		return table[ind];
 	}
 
-	private Float getCache(RouteDataObjectAttribute attr, RouteDataObject road) {
-		return getCache(attr, road.region, road.types, false);
-	}
-	
-	private Float getCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types, boolean extra) {
-		Map<RouteRegion, Map<IntHolder, Float>> ch = evalCache[attr.ordinal()];
-//		TIMER -= System.nanoTime();
-		if (USE_CACHE) {
-			Map<IntHolder, Float> rM = ch.get(reg);
-			if (rM == null) {
-				return null;
-			}
-			Float vl = rM.get(new IntHolder(types, extra));
-			if(vl != null) {
-//				TIMER += System.nanoTime();
-				return vl;
-			}
+	private float[] getCacheTable(int attr, RouteRegion reg) {
+		// roads are mostly loaded from one region, so avoid hash lookup
+		if (lastCacheRegion[attr] == reg) {
+			return lastCacheTable[attr];
+		}
+		float[] table = evalCache[attr].get(reg);
+		if (table != null) {
+			lastCacheRegion[attr] = reg;
+			lastCacheTable[attr] = table;
 		}
-		return null;
+		return table;
 	}
 
 	@Override
@@ -751,6 +804,15 @@ public class GeneralRouter implements VehicleRouter {
 		
 		public RouteAttributeContext(){
 		}
+
+		// copy with same rules and parameters but own parameter state
+		RouteAttributeContext(RouteAttributeContext original) {
+			if (original.paramContext != null) {
+				paramContext = new ParameterContext();
+				paramContext.vars = original.paramContext.vars;
+			}
+			rules.addAll(original.rules);
+		}
 		public RouteAttributeContext(RouteAttributeContext original, Map<String, String> params){
 			if (params != null) {
 				paramContext = new ParameterContext();
@@ -953,7 +1015,7 @@ public class GeneralRouter implements VehicleRouter {
 			}
 			Object o = null;
 			if (value instanceof String && value.toString().startsWith("$")) {
-				BitSet mask = tagRuleMask.get(value.toString().substring(1));
+				BitSet mask = getTagRuleMask(value.toString().substring(1));
 				if (mask != null && mask.intersects(types)) {
 					BitSet findBit = new BitSet(mask.length());
 					findBit.or(mask);
@@ -1116,7 +1178,7 @@ public class GeneralRouter implements VehicleRouter {
 
 		protected Object calcSelectValue(BitSet types, ParameterContext paramContext) {
 			if (selectValue instanceof String && selectValue.toString().startsWith("$")) {
-				BitSet mask = tagRuleMask.get(selectValue.toString().substring(1));
+				BitSet mask = getTagRuleMask(selectValue.toString().substring(1));
 				if (mask != null && mask.intersects(types)) {
 					BitSet findBit = new BitSet(mask.length());
 					findBit.or(mask);
@@ -1165,7 +1227,7 @@ public class GeneralRouter implements VehicleRouter {
 
 		private boolean checkFreeTags(BitSet types) {
 			for (String ts : onlyTags) {
-				BitSet b = tagRuleMask.get(ts);
+				BitSet b = getTagRuleMask(ts);
 				if (b == null || !b.intersects(types)) {
 					return false;
 				}
@@ -1175,7 +1237,7 @@ public class GeneralRouter implements VehicleRouter {
 		
 		private boolean checkNotFreeTags(BitSet types) {
 			for (String ts : onlyNotTags) {
-				BitSet b = tagRuleMask.get(ts);
+				BitSet b = getTagRuleMask(ts);
 				if (b != null && b.intersects(types)) {
 					return false;
 				}
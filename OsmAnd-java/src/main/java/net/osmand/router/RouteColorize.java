@@ -1,5 +1,6 @@
 package net.osmand.router;
 
+import net.osmand.GPXUtilities.ColumnarPoints;
 import net.osmand.GPXUtilities.GPXFile;
 import net.osmand.GPXUtilities.GPXTrackAnalysis;
 import net.osmand.GPXUtilities.Track;
@@ -121,9 +122,17 @@ public class RouteColorize {
                     continue;
                 }
 
-                for (WptPt p : ts.points) {
-                    latList.add(p.lat);
-                    lonList.add(p.lon);
+                // columnar points are read without creating point objects
+                ColumnarPoints columnar = ts.points instanceof ColumnarPoints ? (ColumnarPoints) ts.points : null;
+                for (int i = 0; i < ts.points.size(); i++) {
+                    if (columnar != null) {
+                        latList.add(columnar.getLatitude(i));
+                        lonList.add(columnar.getLongitude(i));
+                    } else {
+                        WptPt p = ts.points.get(i);
+                        latList.add(p.lat);
+                        lonList.add(p.lon);
+                    }
                     if (type == ColorizationType.SPEED) {
                         valList.add((double) analysis.speedData.get(wptIdx).speed);
                     } else {
@@ -0,0 +1,1015 @@
+package net.osmand.router;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.logging.Log;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+import net.osmand.PlatformUtil;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.osm.MapRenderingTypes;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.GeneralRouter.RouteAttributeContext;
+import net.osmand.router.GeneralRouter.RouteDataObjectAttribute;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+
+/**
+ * Contraction hierarchy built offline over the road graph of OBF route sections for one routing profile.
+ * Graph nodes are road junctions (points shared by several roads and road ends), edges are pieces of roads
+ * between junctions weighted with the same segment time as A* (without turn penalties).
+ * Turn restrictions are not part of the graph, found route is checked by {@link #checkRestrictions(List)} which
+ * treats every only_* restriction of road as exclusive for all outgoing edges of the road (at any junction).
+ * Hierarchy is used by {@link RoutePlannerFrontEnd} when profile parameters match, otherwise A* is used.
+ */
+public class RouteContractionHierarchy {
+
+	private static final Log log = PlatformUtil.getLog(RouteContractionHierarchy.class);
+
+	private static final int VERSION = 1;
+	private static final int NO_EDGE = -1;
+	// limit of settled nodes to look for a witness path during contraction
+	private static final int WITNESS_SETTLED_LIMIT = 500;
+
+	private final String profileKey;
+	// junction nodes sorted by (x31 << 31) + y31
+	private long[] nodeKeys;
+	private int[] levels;
+
+	private int edgesCount;
+	private int[] edgeFrom;
+	private int[] edgeTo;
+	private float[] edgeCost;
+	private long[] edgeRoad;
+	private int[] edgeRoadStart;
+	private int[] edgeRoadEnd;
+	// shortcut edges: ids of 2 contracted edges, original edges have NO_EDGE
+	private int[] edgeChild1;
+	private int[] edgeChild2;
+
+	// upward graph (compressed rows) : edges from node to higher level node
+	private int[] upStart;
+	private int[] upEdges;
+	// downward graph (compressed rows) : edges to node from higher level node
+	private int[] downStart;
+	private int[] downEdges;
+
+	private RouteContractionHierarchy(String profileKey) {
+		this.profileKey = profileKey;
+	}
+
+	public String getProfileKey() {
+		return profileKey;
+	}
+
+	public int getNodesCount() {
+		return nodeKeys.length;
+	}
+
+	public int getEdgesCount() {
+		return edgesCount;
+	}
+
+	public static String getProfileKey(RoutingConfiguration config) {
+		StringBuilder key = new StringBuilder();
+		GeneralRouter router = config.router;
+		key.append(config.routerName).append('|').append(router.getProfile());
+		RouteAttributeContext access = router.getObjContext(RouteDataObjectAttribute.ACCESS);
+		String[] keys = access.getParamKeys();
+		String[] values = access.getParamValues();
+		Map<String, String> params = new TreeMap<String, String>();
+		for (int i = 0; i < keys.length; i++) {
+			params.put(keys[i], values[i]);
+		}
+		key.append('|').append(params);
+		long[] impassable = router.getImpassableRoadIds();
+		Arrays.sort(impassable);
+		key.append('|').append(Arrays.toString(impassable));
+		return key.toString();
+	}
+
+	/**
+	 * Hierarchy doesn't contain conditional restrictions, direction points and turn penalties,
+	 * so it is used only when route is requested with exactly same profile and without those tweaks.
+	 */
+	public boolean isApplicable(RoutingContext ctx) {
+		return ctx.nativeLib == null && ctx.calculationMode != RouteCalculationMode.BASE
+				&& ctx.config.routeCalculationTime == 0 && ctx.config.getDirectionPoints() == null
+				&& profileKey.equals(getProfileKey(ctx.config));
+	}
+
+	//////////////////////////////////////// Preprocessing ////////////////////////////////////////
+
+	public static RouteContractionHierarchy build(final RoutingConfiguration config,
+			final BinaryMapIndexReader[] readers) throws IOException {
+		return build(config, new RoadsSource() {
+
+			@Override
+			public void iterate(ResultMatcher<RouteDataObject> matcher) throws IOException {
+				iterateRoads(config, readers, matcher);
+			}
+		});
+	}
+
+	/**
+	 * Hierarchy of roads which are already loaded (roads are filtered by router as roads of index files)
+	 */
+	static RouteContractionHierarchy build(final RoutingConfiguration config, final List<RouteDataObject> roads)
+			throws IOException {
+		return build(config, new RoadsSource() {
+
+			@Override
+			public void iterate(ResultMatcher<RouteDataObject> matcher) throws IOException {
+				TLongHashSet visitedRoads = new TLongHashSet();
+				for (RouteDataObject ro : roads) {
+					if (ro.getPointsLength() > 1 && config.router.acceptLine(ro) && visitedRoads.add(ro.getId())) {
+						matcher.publish(ro);
+					}
+				}
+			}
+		});
+	}
+
+	private interface RoadsSource {
+
+		void iterate(ResultMatcher<RouteDataObject> matcher) throws IOException;
+	}
+
+	private static RouteContractionHierarchy build(RoutingConfiguration config, RoadsSource roads)
+			throws IOException {
+		long time = System.currentTimeMillis();
+		final RouteContractionHierarchy ch = new RouteContractionHierarchy(getProfileKey(config));
+		final VehicleRouter router = config.router;
+		// 1. find junctions
+		final TLongHashSet points = new TLongHashSet();
+		final TLongHashSet junctions = new TLongHashSet();
+		roads.iterate(new ResultMatcher<RouteDataObject>() {
+
+			@Override
+			public boolean publish(RouteDataObject ro) {
+				int len = ro.getPointsLength();
+				for (int i = 0; i < len; i++) {
+					long key = calcNodeKey(ro.getPoint31XTile(i), ro.getPoint31YTile(i));
+					if (!points.add(key) || i == 0 || i == len - 1) {
+						junctions.add(key);
+					}
+				}
+				return false;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		});
+		points.clear();
+		ch.nodeKeys = junctions.toArray();
+		junctions.clear();
+		Arrays.sort(ch.nodeKeys);
+		ch.initEdges(ch.nodeKeys.length * 3);
+		// 2. create edges between junctions
+		roads.iterate(new ResultMatcher<RouteDataObject>() {
+
+			@Override
+			public boolean publish(RouteDataObject ro) {
+				ch.addRoadEdges(router, ro);
+				return false;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		});
+		log.info(String.format("Contraction hierarchy graph: %d nodes, %d edges", ch.nodeKeys.length, ch.edgesCount));
+		// 3. contract
+		ch.contract();
+		ch.buildSearchGraph();
+		log.info(String.format("Contraction hierarchy built in %d ms: %d edges with shortcuts",
+				System.currentTimeMillis() - time, ch.edgesCount));
+		return ch;
+	}
+
+	private static void iterateRoads(RoutingConfiguration config, BinaryMapIndexReader[] readers,
+			final ResultMatcher<RouteDataObject> matcher) throws IOException {
+		final TLongHashSet visitedRoads = new TLongHashSet();
+		final VehicleRouter router = config.router;
+		for (BinaryMapIndexReader reader : readers) {
+			for (RouteRegion reg : reader.getRoutingIndexes()) {
+				List<RouteSubregion> subregions = new ArrayList<RouteSubregion>();
+				for (RouteSubregion rs : reg.getSubregions()) {
+					subregions.add(new RouteSubregion(rs));
+				}
+				SearchRequest<RouteDataObject> request = BinaryMapIndexReader.buildSearchRouteRequest(0,
+						Integer.MAX_VALUE, 0, Integer.MAX_VALUE, null);
+				List<RouteSubregion> toLoad = reader.searchRouteIndexTree(request, subregions);
+				reader.loadRouteIndexData(toLoad, new ResultMatcher<RouteDataObject>() {
+
+					@Override
+					public boolean publish(RouteDataObject ro) {
+						if (ro.getPointsLength() > 1 && router.acceptLine(ro) && visitedRoads.add(ro.getId())) {
+							matcher.publish(ro);
+						}
+						return false;
+					}
+
+					@Override
+					public boolean isCancelled() {
+						return false;
+					}
+				});
+			}
+		}
+	}
+
+	private void addRoadEdges(VehicleRouter router, RouteDataObject ro) {
+		int oneway = router.isOneWay(ro);
+		int prevNode = getNode(ro.getPoint31XTile(0), ro.getPoint31YTile(0));
+		int prevInd = 0;
+		double forward = 0;
+		double backward = 0;
+		for (int i = 1; i < ro.getPointsLength(); i++) {
+			if (forward >= 0) {
+				double t = segmentTime(router, ro, i - 1, i);
+				forward = t < 0 ? -1 : forward + t;
+			}
+			if (backward >= 0) {
+				double t = segmentTime(router, ro, i, i - 1);
+				backward = t < 0 ? -1 : backward + t;
+			}
+			int node = getNode(ro.getPoint31XTile(i), ro.getPoint31YTile(i));
+			if (node >= 0) {
+				if (node != prevNode) {
+					if (oneway >= 0 && forward >= 0) {
+						addEdge(prevNode, node, (float) forward, ro.getId(), prevInd, i, NO_EDGE, NO_EDGE);
+					}
+					if (oneway <= 0 && backward >= 0) {
+						addEdge(node, prevNode, (float) backward, ro.getId(), i, prevInd, NO_EDGE, NO_EDGE);
+					}
+				}
+				prevNode = node;
+				prevInd = i;
+				forward = 0;
+				backward = 0;
+			}
+		}
+	}
+
+	/**
+	 * Same time estimation as {@link BinaryRoutePlanner} uses for visited segment
+	 */
+	static double segmentTime(VehicleRouter router, RouteDataObject road, int from, int to) {
+		double distOnRoadToPass = BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(from),
+				road.getPoint31YTile(from), road.getPoint31XTile(to), road.getPoint31YTile(to));
+		float priority = router.defineSpeedPriority(road);
+		float speed = router.defineRoutingSpeed(road) * priority;
+		if (speed == 0) {
+			speed = router.getDefaultSpeed() * priority;
+		}
+		if (speed > router.getMaxSpeed()) {
+			speed = router.getMaxSpeed();
+		}
+		double obstacle = router.defineRoutingObstacle(road, from, to > from);
+		if (obstacle < 0) {
+			return -1;
+		}
+		double heightObstacle = router.defineHeightObstacle(road, (short) from, (short) to);
+		if (heightObstacle < 0) {
+			return -1;
+		}
+		return obstacle + heightObstacle + distOnRoadToPass / speed;
+	}
+
+	private static long calcNodeKey(int x31, int y31) {
+		return (((long) x31) << 31) + (long) y31;
+	}
+
+	private int getNode(int x31, int y31) {
+		int ind = Arrays.binarySearch(nodeKeys, calcNodeKey(x31, y31));
+		return ind < 0 ? -1 : ind;
+	}
+
+	private int getNodeX(int node) {
+		return (int) (nodeKeys[node] >> 31);
+	}
+
+	private int getNodeY(int node) {
+		return (int) (nodeKeys[node] & Integer.MAX_VALUE);
+	}
+
+	private void initEdges(int capacity) {
+		capacity = Math.max(capacity, 16);
+		edgeFrom = new int[capacity];
+		edgeTo = new int[capacity];
+		edgeCost = new float[capacity];
+		edgeRoad = new long[capacity];
+		edgeRoadStart = new int[capacity];
+		edgeRoadEnd = new int[capacity];
+		edgeChild1 = new int[capacity];
+		edgeChild2 = new int[capacity];
+	}
+
+	private int addEdge(int from, int to, float cost, long road, int roadStart, int roadEnd, int child1, int child2) {
+		if (edgesCount == edgeFrom.length) {
+			int capacity = edgesCount * 3 / 2 + 1;
+			edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+			edgeTo = Arrays.copyOf(edgeTo, capacity);
+			edgeCost = Arrays.copyOf(edgeCost, capacity);
+			edgeRoad = Arrays.copyOf(edgeRoad, capacity);
+			edgeRoadStart = Arrays.copyOf(edgeRoadStart, capacity);
+			edgeRoadEnd = Arrays.copyOf(edgeRoadEnd, capacity);
+			edgeChild1 = Arrays.copyOf(edgeChild1, capacity);
+			edgeChild2 = Arrays.copyOf(edgeChild2, capacity);
+		}
+		int e = edgesCount++;
+		edgeFrom[e] = from;
+		edgeTo[e] = to;
+		edgeCost[e] = cost;
+		edgeRoad[e] = road;
+		edgeRoadStart[e] = roadStart;
+		edgeRoadEnd[e] = roadEnd;
+		edgeChild1[e] = child1;
+		edgeChild2[e] = child2;
+		return e;
+	}
+
+	private void contract() {
+		int n = nodeKeys.length;
+		TIntArrayList[] out = new TIntArrayList[n];
+		TIntArrayList[] in = new TIntArrayList[n];
+		for (int i = 0; i < n; i++) {
+			out[i] = new TIntArrayList(2);
+			in[i] = new TIntArrayList(2);
+		}
+		for (int e = 0; e < edgesCount; e++) {
+			out[edgeFrom[e]].add(e);
+			in[edgeTo[e]].add(e);
+		}
+		levels = new int[n];
+		boolean[] contracted = new boolean[n];
+		int[] deletedNeighbours = new int[n];
+		WitnessSearch witness = new WitnessSearch(n);
+		NodeHeap queue = new NodeHeap(n);
+		for (int v = 0; v < n; v++) {
+			queue.push(v, contractNode(v, out, in, contracted, deletedNeighbours, witness, false));
+		}
+		int level = 0;
+		while (!queue.isEmpty()) {
+			int v = queue.pollNode();
+			// lazy update of priority
+			float priority = contractNode(v, out, in, contracted, deletedNeighbours, witness, false);
+			if (!queue.isEmpty() && priority > queue.peekPriority()) {
+				queue.push(v, priority);
+				continue;
+			}
+			contractNode(v, out, in, contracted, deletedNeighbours, witness, true);
+			contracted[v] = true;
+			levels[v] = level++;
+			TIntArrayList nbs = new TIntArrayList();
+			collectNeighbours(v, out, in, contracted, nbs);
+			for (int i = 0; i < nbs.size(); i++) {
+				deletedNeighbours[nbs.get(i)]++;
+			}
+			if (level % 100000 == 0) {
+				log.info(String.format("Contracted %d of %d nodes, %d edges", level, n, edgesCount));
+			}
+		}
+	}
+
+	private void collectNeighbours(int v, TIntArrayList[] out, TIntArrayList[] in, boolean[] contracted,
+			TIntArrayList nbs) {
+		for (int i = 0; i < out[v].size(); i++) {
+			int w = edgeTo[out[v].get(i)];
+			if (!contracted[w] && !nbs.contains(w)) {
+				nbs.add(w);
+			}
+		}
+		for (int i = 0; i < in[v].size(); i++) {
+			int u = edgeFrom[in[v].get(i)];
+			if (!contracted[u] && !nbs.contains(u)) {
+				nbs.add(u);
+			}
+		}
+	}
+
+	/**
+	 * Calculates priority of node contraction (edge difference + deleted neighbours)
+	 * and adds shortcuts if needed
+	 */
+	private float contractNode(int v, TIntArrayList[] out, TIntArrayList[] in, boolean[] contracted,
+			int[] deletedNeighbours, WitnessSearch witness, boolean addShortcuts) {
+		int removedEdges = 0;
+		int shortcuts = 0;
+		TIntArrayList vin = in[v];
+		TIntArrayList vout = out[v];
+		for (int i = 0; i < vout.size(); i++) {
+			if (!contracted[edgeTo[vout.get(i)]]) {
+				removedEdges++;
+			}
+		}
+		for (int i = 0; i < vin.size(); i++) {
+			int e1 = vin.get(i);
+			int u = edgeFrom[e1];
+			if (contracted[u]) {
+				continue;
+			}
+			removedEdges++;
+			float maxCost = 0;
+			for (int j = 0; j < vout.size(); j++) {
+				int e2 = vout.get(j);
+				int w = edgeTo[e2];
+				if (!contracted[w] && w != u) {
+					maxCost = Math.max(maxCost, edgeCost[e1] + edgeCost[e2]);
+				}
+			}
+			if (maxCost == 0) {
+				continue;
+			}
+			witness.search(this, u, v, maxCost, out, contracted);
+			for (int j = 0; j < vout.size(); j++) {
+				int e2 = vout.get(j);
+				int w = edgeTo[e2];
+				if (contracted[w] || w == u) {
+					continue;
+				}
+				float cost = edgeCost[e1] + edgeCost[e2];
+				if (witness.getDistance(w) > cost) {
+					shortcuts++;
+					if (addShortcuts) {
+						int e = addEdge(u, w, cost, 0, 0, 0, e1, e2);
+						out[u].add(e);
+						in[w].add(e);
+						// keep witness distance to not create duplicate shortcuts from same node
+						witness.update(w, cost);
+					}
+				}
+			}
+		}
+		return shortcuts - removedEdges + deletedNeighbours[v];
+	}
+
+	private void buildSearchGraph() {
+		int n = nodeKeys.length;
+		upStart = new int[n + 1];
+		downStart = new int[n + 1];
+		for (int e = 0; e < edgesCount; e++) {
+			if (levels[edgeFrom[e]] < levels[edgeTo[e]]) {
+				upStart[edgeFrom[e] + 1]++;
+			} else {
+				downStart[edgeTo[e] + 1]++;
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			upStart[i + 1] += upStart[i];
+			downStart[i + 1] += downStart[i];
+		}
+		upEdges = new int[upStart[n]];
+		downEdges = new int[downStart[n]];
+		int[] upFill = Arrays.copyOf(upStart, n);
+		int[] downFill = Arrays.copyOf(downStart, n);
+		for (int e = 0; e < edgesCount; e++) {
+			if (levels[edgeFrom[e]] < levels[edgeTo[e]]) {
+				upEdges[upFill[edgeFrom[e]]++] = e;
+			} else {
+				downEdges[downFill[edgeTo[e]]++] = e;
+			}
+		}
+	}
+
+	//////////////////////////////////////// Query ////////////////////////////////////////
+
+	/**
+	 * @return route between start and end (not prepared) or null if route couldn't be found with hierarchy
+	 */
+	public List<RouteSegmentResult> searchRoute(RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end)
+			throws IOException, InterruptedException {
+		if (start.getRoad().getId() == end.getRoad().getId()) {
+			// same road, route with hierarchy doesn't make sense
+			return null;
+		}
+		VehicleRouter router = ctx.getRouter();
+		SearchSpace forward = new SearchSpace();
+		SearchSpace backward = new SearchSpace();
+		initEndpoint(router, start, true, forward, true);
+		initEndpoint(router, start, false, forward, true);
+		initEndpoint(router, end, true, backward, false);
+		initEndpoint(router, end, false, backward, false);
+		if (forward.queue.isEmpty() || backward.queue.isEmpty()) {
+			return null;
+		}
+		float best = Float.POSITIVE_INFINITY;
+		int meetingNode = -1;
+		boolean forwardStep = true;
+		while ((!forward.queue.isEmpty() && forward.queue.peekPriority() < best)
+				|| (!backward.queue.isEmpty() && backward.queue.peekPriority() < best)) {
+			if (forward.queue.isEmpty() || forward.queue.peekPriority() >= best) {
+				forwardStep = false;
+			} else if (backward.queue.isEmpty() || backward.queue.peekPriority() >= best) {
+				forwardStep = true;
+			}
+			SearchSpace current = forwardStep ? forward : backward;
+			SearchSpace opposite = forwardStep ? backward : forward;
+			int node = current.settleNext();
+			if (node >= 0) {
+				if (ctx.calculationProgress != null) {
+					ctx.calculationProgress.visitedSegments++;
+					if (forwardStep) {
+						ctx.calculationProgress.visitedDirectSegments++;
+					} else {
+						ctx.calculationProgress.visitedOppositeSegments++;
+					}
+				}
+				float dist = current.getDistance(node);
+				float oppositeDist = opposite.getDistance(node);
+				if (dist + oppositeDist < best) {
+					best = dist + oppositeDist;
+					meetingNode = node;
+				}
+				relaxEdges(node, dist, current, forwardStep);
+			}
+			if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+				throw new InterruptedException("Route calculation interrupted");
+			}
+			forwardStep = !forwardStep;
+		}
+		if (meetingNode == -1) {
+			return null;
+		}
+		return unpackRoute(ctx, forward, backward, meetingNode);
+	}
+
+	private void relaxEdges(int node, float dist, SearchSpace space, boolean forward) {
+		int[] starts = forward ? upStart : downStart;
+		int[] edges = forward ? upEdges : downEdges;
+		for (int i = starts[node]; i < starts[node + 1]; i++) {
+			int e = edges[i];
+			int next = forward ? edgeTo[e] : edgeFrom[e];
+			space.relax(next, dist + edgeCost[e], e);
+		}
+	}
+
+	private void initEndpoint(VehicleRouter router, RouteSegmentPoint pnt, boolean positive, SearchSpace space,
+			boolean start) {
+		RouteDataObject road = pnt.getRoad();
+		int oneway = router.isOneWay(road);
+		// moving in positive direction means for start (point -> node) and for end (node -> point)
+		boolean allowed = positive ? oneway >= 0 : oneway <= 0;
+		if (!allowed) {
+			return;
+		}
+		int segStart = pnt.getSegmentStart();
+		// point is located between segStart - 1 and segStart
+		int ind = (start == positive) ? segStart : segStart - 1;
+		int prevX = pnt.preciseX;
+		int prevY = pnt.preciseY;
+		double time = 0;
+		int step = positive == start ? 1 : -1;
+		while (ind >= 0 && ind < road.getPointsLength()) {
+			int x = road.getPoint31XTile(ind);
+			int y = road.getPoint31YTile(ind);
+			double t = pieceTime(router, road, prevX, prevY, x, y, ind, ind - step, start);
+			if (t < 0) {
+				return;
+			}
+			time += t;
+			int node = getNode(x, y);
+			if (node >= 0) {
+				RouteSegmentResult piece;
+				if (start) {
+					piece = new RouteSegmentResult(road, positive ? segStart - 1 : segStart, ind);
+				} else {
+					piece = new RouteSegmentResult(road, ind, positive ? segStart : segStart - 1);
+				}
+				space.initSource(node, (float) time, piece);
+				return;
+			}
+			prevX = x;
+			prevY = y;
+			ind += step;
+		}
+	}
+
+	private double pieceTime(VehicleRouter router, RouteDataObject road, int x1, int y1, int x2, int y2,
+			int ind, int prevInd, boolean start) {
+		if (prevInd < 0 || prevInd >= road.getPointsLength()) {
+			return 0;
+		}
+		double full = BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(prevInd),
+				road.getPoint31YTile(prevInd), road.getPoint31XTile(ind), road.getPoint31YTile(ind));
+		double t = start ? segmentTime(router, road, prevInd, ind) : segmentTime(router, road, ind, prevInd);
+		if (t < 0 || full == 0) {
+			return t;
+		}
+		return t * BinaryRoutePlanner.squareRootDist(x1, y1, x2, y2) / full;
+	}
+
+	private List<RouteSegmentResult> unpackRoute(RoutingContext ctx, SearchSpace forward, SearchSpace backward,
+			int meetingNode) {
+		TIntArrayList path = new TIntArrayList();
+		int node = meetingNode;
+		int e;
+		while ((e = forward.getParentEdge(node)) != NO_EDGE) {
+			path.add(e);
+			node = edgeFrom[e];
+		}
+		RouteSegmentResult startPiece = forward.getSourcePiece(node);
+		path.reverse();
+		node = meetingNode;
+		while ((e = backward.getParentEdge(node)) != NO_EDGE) {
+			path.add(e);
+			node = edgeTo[e];
+		}
+		RouteSegmentResult endPiece = backward.getSourcePiece(node);
+		TIntArrayList originalEdges = new TIntArrayList();
+		for (int i = 0; i < path.size(); i++) {
+			unpackEdge(path.get(i), originalEdges);
+		}
+		List<RouteSegmentResult> res = new ArrayList<RouteSegmentResult>();
+		addPiece(res, startPiece);
+		for (int i = 0; i < originalEdges.size(); i++) {
+			int oe = originalEdges.get(i);
+			RouteDataObject road = loadRoad(ctx, getNodeX(edgeFrom[oe]), getNodeY(edgeFrom[oe]), edgeRoad[oe]);
+			if (road == null) {
+				return null;
+			}
+			addPiece(res, new RouteSegmentResult(road, edgeRoadStart[oe], edgeRoadEnd[oe]));
+		}
+		addPiece(res, endPiece);
+		return res;
+	}
+
+	private void addPiece(List<RouteSegmentResult> res, RouteSegmentResult piece) {
+		if (piece.getStartPointIndex() == piece.getEndPointIndex()) {
+			return;
+		}
+		if (!res.isEmpty()) {
+			RouteSegmentResult last = res.get(res.size() - 1);
+			boolean lastPositive = last.getEndPointIndex() > last.getStartPointIndex();
+			boolean piecePositive = piece.getEndPointIndex() > piece.getStartPointIndex();
+			if (last.getObject().getId() == piece.getObject().getId() && lastPositive == piecePositive
+					&& last.getEndPointIndex() == piece.getStartPointIndex()) {
+				last.setEndPointIndex(piece.getEndPointIndex());
+				return;
+			}
+		}
+		res.add(piece);
+	}
+
+	private void unpackEdge(int e, TIntArrayList originalEdges) {
+		if (edgeChild1[e] == NO_EDGE) {
+			originalEdges.add(e);
+		} else {
+			unpackEdge(edgeChild1[e], originalEdges);
+			unpackEdge(edgeChild2[e], originalEdges);
+		}
+	}
+
+	private RouteDataObject loadRoad(RoutingContext ctx, int x31, int y31, long roadId) {
+		RouteSegment s = ctx.loadRouteSegment(x31, y31, 0);
+		while (s != null) {
+			if (s.getRoad().getId() == roadId) {
+				return s.getRoad();
+			}
+			s = s.getNext();
+		}
+		return null;
+	}
+
+	/**
+	 * Hierarchy is node based, so turn restrictions between roads are checked on the unpacked route.
+	 * Any only_* restriction of road forbids leaving it by other roads at every junction (not only at restriction
+	 * junction), so some valid routes are rejected and calculated by A* instead.
+	 */
+	public static boolean checkRestrictions(List<RouteSegmentResult> route) {
+		for (int i = 0; i < route.size() - 1; i++) {
+			RouteDataObject from = route.get(i).getObject();
+			RouteDataObject to = route.get(i + 1).getObject();
+			if (from.getId() == to.getId()) {
+				continue;
+			}
+			int type = -1;
+			boolean exclusiveRestriction = false;
+			for (int k = 0; k < from.getRestrictionLength(); k++) {
+				if (from.getRestrictionVia(k) != 0) {
+					continue;
+				}
+				int tp = from.getRestrictionType(k);
+				if (from.getRestrictionId(k) == to.getId()) {
+					type = tp;
+				} else if (isOnlyRestriction(tp)) {
+					exclusiveRestriction = true;
+				}
+			}
+			if (type == MapRenderingTypes.RESTRICTION_NO_LEFT_TURN
+					|| type == MapRenderingTypes.RESTRICTION_NO_RIGHT_TURN
+					|| type == MapRenderingTypes.RESTRICTION_NO_STRAIGHT_ON
+					|| type == MapRenderingTypes.RESTRICTION_NO_U_TURN) {
+				return false;
+			}
+			// as in BinaryRoutePlanner only road of only_* restriction could be used to leave road
+			if (exclusiveRestriction && !isOnlyRestriction(type)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isOnlyRestriction(int type) {
+		return type == MapRenderingTypes.RESTRICTION_ONLY_LEFT_TURN
+				|| type == MapRenderingTypes.RESTRICTION_ONLY_RIGHT_TURN
+				|| type == MapRenderingTypes.RESTRICTION_ONLY_STRAIGHT_ON;
+	}
+
+	//////////////////////////////////////// Persistence ////////////////////////////////////////
+
+	public void writeToFile(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(VERSION);
+			out.writeUTF(profileKey);
+			out.writeInt(nodeKeys.length);
+			for (int i = 0; i < nodeKeys.length; i++) {
+				out.writeLong(nodeKeys[i]);
+				out.writeInt(levels[i]);
+			}
+			out.writeInt(edgesCount);
+			for (int e = 0; e < edgesCount; e++) {
+				out.writeInt(edgeFrom[e]);
+				out.writeInt(edgeTo[e]);
+				out.writeFloat(edgeCost[e]);
+				out.writeInt(edgeChild1[e]);
+				if (edgeChild1[e] == NO_EDGE) {
+					out.writeLong(edgeRoad[e]);
+					out.writeInt(edgeRoadStart[e]);
+					out.writeInt(edgeRoadEnd[e]);
+				} else {
+					out.writeInt(edgeChild2[e]);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	public static RouteContractionHierarchy readFromFile(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		try {
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported contraction hierarchy version " + version);
+			}
+			RouteContractionHierarchy ch = new RouteContractionHierarchy(in.readUTF());
+			int n = in.readInt();
+			ch.nodeKeys = new long[n];
+			ch.levels = new int[n];
+			for (int i = 0; i < n; i++) {
+				ch.nodeKeys[i] = in.readLong();
+				ch.levels[i] = in.readInt();
+			}
+			int edges = in.readInt();
+			ch.initEdges(edges);
+			for (int e = 0; e < edges; e++) {
+				int from = in.readInt();
+				int to = in.readInt();
+				float cost = in.readFloat();
+				int child1 = in.readInt();
+				if (child1 == NO_EDGE) {
+					ch.addEdge(from, to, cost, in.readLong(), in.readInt(), in.readInt(), NO_EDGE, NO_EDGE);
+				} else {
+					ch.addEdge(from, to, cost, 0, 0, 0, child1, in.readInt());
+				}
+			}
+			ch.buildSearchGraph();
+			return ch;
+		} finally {
+			in.close();
+		}
+	}
+
+	//////////////////////////////////////// Helper structures ////////////////////////////////////////
+
+	/**
+	 * Binary heap of nodes ordered by priority (node could be pushed several times)
+	 */
+	static class NodeHeap {
+		private int[] nodes;
+		private float[] priorities;
+		private int size;
+
+		NodeHeap(int capacity) {
+			capacity = Math.max(capacity, 16);
+			nodes = new int[capacity];
+			priorities = new float[capacity];
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		int size() {
+			return size;
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		float peekPriority() {
+			return priorities[0];
+		}
+
+		void push(int node, float priority) {
+			if (size == nodes.length) {
+				nodes = Arrays.copyOf(nodes, size * 2);
+				priorities = Arrays.copyOf(priorities, size * 2);
+			}
+			int i = size++;
+			while (i > 0) {
+				int parent = (i - 1) >> 1;
+				if (priorities[parent] <= priority) {
+					break;
+				}
+				nodes[i] = nodes[parent];
+				priorities[i] = priorities[parent];
+				i = parent;
+			}
+			nodes[i] = node;
+			priorities[i] = priority;
+		}
+
+		int pollNode() {
+			int res = nodes[0];
+			size--;
+			int node = nodes[size];
+			float priority = priorities[size];
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && priorities[child + 1] < priorities[child]) {
+					child++;
+				}
+				if (priority <= priorities[child]) {
+					break;
+				}
+				nodes[i] = nodes[child];
+				priorities[i] = priorities[child];
+				i = child;
+			}
+			nodes[i] = node;
+			priorities[i] = priority;
+			return res;
+		}
+	}
+
+	/**
+	 * Local Dijkstra search used during contraction to find paths that don't need shortcuts
+	 */
+	private static class WitnessSearch {
+		private final float[] dist;
+		private final TIntArrayList touched = new TIntArrayList();
+		private final NodeHeap heap = new NodeHeap(64);
+
+		WitnessSearch(int n) {
+			dist = new float[n];
+			Arrays.fill(dist, Float.POSITIVE_INFINITY);
+		}
+
+		float getDistance(int node) {
+			return dist[node];
+		}
+
+		void update(int node, float d) {
+			if (d < dist[node]) {
+				if (dist[node] == Float.POSITIVE_INFINITY) {
+					touched.add(node);
+				}
+				dist[node] = d;
+			}
+		}
+
+		void search(RouteContractionHierarchy ch, int source, int excluded, float maxCost, TIntArrayList[] out,
+				boolean[] contracted) {
+			for (int i = 0; i < touched.size(); i++) {
+				dist[touched.get(i)] = Float.POSITIVE_INFINITY;
+			}
+			touched.clear();
+			heap.clear();
+			update(source, 0);
+			heap.push(source, 0);
+			int settled = 0;
+			while (!heap.isEmpty() && settled < WITNESS_SETTLED_LIMIT) {
+				float d = heap.peekPriority();
+				int node = heap.pollNode();
+				if (d > dist[node]) {
+					continue;
+				}
+				if (d > maxCost) {
+					break;
+				}
+				settled++;
+				TIntArrayList edges = out[node];
+				for (int i = 0; i < edges.size(); i++) {
+					int e = edges.get(i);
+					int next = ch.edgeTo[e];
+					if (next == excluded || contracted[next]) {
+						continue;
+					}
+					float nd = d + ch.edgeCost[e];
+					if (nd < dist[next]) {
+						update(next, nd);
+						heap.push(next, nd);
+					}
+				}
+			}
+		}
+	}
+
+	private static class NodeLabel {
+		float dist;
+		int parentEdge = NO_EDGE;
+		boolean settled;
+		RouteSegmentResult sourcePiece;
+	}
+
+	/**
+	 * Search space of one direction of query (usually small, so labels are stored in hash map)
+	 */
+	private static class SearchSpace {
+		private final TIntObjectHashMap<NodeLabel> labels = new TIntObjectHashMap<NodeLabel>();
+		private final NodeHeap queue = new NodeHeap(64);
+
+		void initSource(int node, float dist, RouteSegmentResult piece) {
+			NodeLabel l = labels.get(node);
+			if (l == null || l.dist > dist) {
+				if (l == null) {
+					l = new NodeLabel();
+					labels.put(node, l);
+				}
+				l.dist = dist;
+				l.sourcePiece = piece;
+				queue.push(node, dist);
+			}
+		}
+
+		void relax(int node, float dist, int edge) {
+			NodeLabel l = labels.get(node);
+			if (l == null) {
+				l = new NodeLabel();
+				labels.put(node, l);
+			} else if (l.dist <= dist) {
+				return;
+			}
+			l.dist = dist;
+			l.parentEdge = edge;
+			l.sourcePiece = null;
+			queue.push(node, dist);
+		}
+
+		int settleNext() {
+			float d = queue.peekPriority();
+			int node = queue.pollNode();
+			NodeLabel l = labels.get(node);
+			if (l.settled || d > l.dist) {
+				return -1;
+			}
+			l.settled = true;
+			return node;
+		}
+
+		float getDistance(int node) {
+			NodeLabel l = labels.get(node);
+			return l == null ? Float.POSITIVE_INFINITY : l.dist;
+		}
+
+		int getParentEdge(int node) {
+			return labels.get(node).parentEdge;
+		}
+
+		RouteSegmentResult getSourcePiece(int node) {
+			return labels.get(node).sourcePiece;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package net.osmand.router;
+
+/**
+ * Travel times (seconds) and distances (meters) between route points calculated by
+ * {@link RoutePlannerFrontEnd#searchRouteMatrix}. Unreachable pairs have negative values.
+ */
+public class RouteMatrix {
+
+	public static final float UNREACHABLE = -1;
+
+	private final float[][] times;
+	private final float[][] distances;
+
+	RouteMatrix(int sources, int targets) {
+		times = new float[sources][targets];
+		distances = new float[sources][targets];
+		for (int i = 0; i < sources; i++) {
+			for (int j = 0; j < targets; j++) {
+				times[i][j] = UNREACHABLE;
+				distances[i][j] = UNREACHABLE;
+			}
+		}
+	}
+
+	void set(int source, int target, float time, float distance) {
+		times[source][target] = time;
+		distances[source][target] = distance;
+	}
+
+	public int getSourcesCount() {
+		return times.length;
+	}
+
+	public int getTargetsCount() {
+		return times.length == 0 ? 0 : times[0].length;
+	}
+
+	public float getTime(int source, int target) {
+		return times[source][target];
+	}
+
+	public float getDistance(int source, int target) {
+		return distances[source][target];
+	}
+
+	public boolean isReachable(int source, int target) {
+		return times[source][target] >= 0;
+	}
+
+	/**
+	 * Cost matrix for TSP solvers ({@link net.osmand.TspAnt}, {@link net.osmand.TspHeldKarp})
+	 * @param byTime use time instead of distance
+	 * @param unreachableCost cost of unreachable pairs
+	 */
+	public double[][] getCosts(boolean byTime, double unreachableCost) {
+		double[][] res = new double[getSourcesCount()][getTargetsCount()];
+		for (int i = 0; i < res.length; i++) {
+			for (int j = 0; j < res[i].length; j++) {
+				res[i][j] = isReachable(i, j) ? (byTime ? times[i][j] : distances[i][j]) : unreachableCost;
+			}
+		}
+		return res;
+	}
+}
@@ -0,0 +1,321 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+import java.util.List;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RouteContractionHierarchy.NodeHeap;
+import net.osmand.router.RouteSegmentStore.LongHandleIndex;
+
+/**
+ * One-to-many Dijkstra searches over road points, all searches share one routing context so tiles
+ * loaded by the first source are reused by the others. Segment times are the same as in
+ * {@link BinaryRoutePlanner} (speed, priority, obstacles), turn restrictions and turn penalties
+ * are not taken into account, so matrix is intended for planning (e.g. TSP) rather than navigation.
+ * Every search is bounded by time: given max time or time derived from distance to the farthest target.
+ */
+class RouteMatrixSearch {
+
+	private static final int NO_HANDLE = -1;
+	// derived time bound: route is not longer than straight line * ratio and not slower than min speed
+	private static final float ROUTE_TO_STRAIGHT_LINE_MAX_RATIO = 3;
+	private static final float MIN_DERIVED_MAX_TIME = 300;
+
+	private final RoutingContext ctx;
+	private final VehicleRouter router;
+
+	// search state by node handle
+	private LongHandleIndex index;
+	private int[] nodeX = new int[64];
+	private int[] nodeY = new int[64];
+	private float[] nodeTime = new float[64];
+	private float[] nodeDist = new float[64];
+	private boolean[] settled = new boolean[64];
+	private int nodes;
+	private final NodeHeap heap = new NodeHeap(64);
+
+	// targets: node key -> (target << 1) + side, side 0 - target is reached from segment start point, 1 - from end
+	private TLongObjectHashMap<TIntArrayList> targetNodes;
+	private float[][] targetTime;
+	private float[][] targetDist;
+	private float[] bestTime;
+	private float[] bestDist;
+	// targets which are not reached in time are unreachable (infinite - bound is derived for every source)
+	private final float maxTime;
+
+	RouteMatrixSearch(RoutingContext ctx) {
+		this(ctx, Float.POSITIVE_INFINITY);
+	}
+
+	RouteMatrixSearch(RoutingContext ctx, float maxTime) {
+		if (!(maxTime > 0)) {
+			throw new IllegalArgumentException("Max time should be positive: " + maxTime);
+		}
+		this.ctx = ctx;
+		this.router = ctx.getRouter();
+		this.maxTime = maxTime;
+	}
+
+	/**
+	 * @throws InterruptedException if calculation is cancelled by progress of context
+	 */
+	RouteMatrix search(List<RouteSegmentPoint> sources, List<RouteSegmentPoint> targets) throws InterruptedException {
+		RouteMatrix matrix = new RouteMatrix(sources.size(), targets.size());
+		initTargets(targets);
+		bestTime = new float[targets.size()];
+		bestDist = new float[targets.size()];
+		for (int i = 0; i < sources.size(); i++) {
+			checkCancelled();
+			RouteSegmentPoint source = sources.get(i);
+			if (source == null) {
+				continue;
+			}
+			float timeLimit = Float.isInfinite(maxTime) ? deriveMaxTime(source, targets) : maxTime;
+			searchFromSource(source, targets, timeLimit);
+			for (int j = 0; j < targets.size(); j++) {
+				if (bestTime[j] != Float.POSITIVE_INFINITY) {
+					matrix.set(i, j, bestTime[j], bestDist[j]);
+				}
+			}
+		}
+		return matrix;
+	}
+
+	private float deriveMaxTime(RouteSegmentPoint source, List<RouteSegmentPoint> targets) {
+		double maxDist = 0;
+		for (RouteSegmentPoint t : targets) {
+			if (t != null) {
+				maxDist = Math.max(maxDist,
+						BinaryRoutePlanner.squareRootDist(source.preciseX, source.preciseY, t.preciseX, t.preciseY));
+			}
+		}
+		float time = (float) (maxDist * ROUTE_TO_STRAIGHT_LINE_MAX_RATIO / router.getMinSpeed());
+		return Math.max(time, MIN_DERIVED_MAX_TIME);
+	}
+
+	private void initTargets(List<RouteSegmentPoint> targets) {
+		targetNodes = new TLongObjectHashMap<TIntArrayList>();
+		targetTime = new float[targets.size()][2];
+		targetDist = new float[targets.size()][2];
+		for (int j = 0; j < targets.size(); j++) {
+			RouteSegmentPoint t = targets.get(j);
+			if (t == null) {
+				continue;
+			}
+			RouteDataObject road = t.getRoad();
+			int oneway = router.isOneWay(road);
+			int end = t.getSegmentStart();
+			int start = end - 1;
+			if (oneway >= 0) {
+				// move in positive direction from start point to target
+				addTargetNode(road, start, end, t, j, 0);
+			}
+			if (oneway <= 0) {
+				addTargetNode(road, end, start, t, j, 1);
+			}
+		}
+	}
+
+	private void addTargetNode(RouteDataObject road, int from, int to, RouteSegmentPoint t, int target, int side) {
+		int x = road.getPoint31XTile(from);
+		int y = road.getPoint31YTile(from);
+		double tm = pieceTime(road, from, to, x, y, t.preciseX, t.preciseY);
+		if (tm < 0) {
+			return;
+		}
+		targetTime[target][side] = (float) tm;
+		targetDist[target][side] = (float) BinaryRoutePlanner.squareRootDist(x, y, t.preciseX, t.preciseY);
+		long key = calcNodeKey(x, y);
+		TIntArrayList l = targetNodes.get(key);
+		if (l == null) {
+			l = new TIntArrayList(2);
+			targetNodes.put(key, l);
+		}
+		l.add((target << 1) + side);
+	}
+
+	private void checkCancelled() throws InterruptedException {
+		if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+			throw new InterruptedException("Route matrix calculation interrupted");
+		}
+	}
+
+	private void searchFromSource(RouteSegmentPoint source, List<RouteSegmentPoint> targets, float timeLimit)
+			throws InterruptedException {
+		index = new LongHandleIndex();
+		nodes = 0;
+		heap.clear();
+		Arrays.fill(bestTime, Float.POSITIVE_INFINITY);
+		Arrays.fill(bestDist, Float.POSITIVE_INFINITY);
+		int targetsWithoutRoute = 0;
+		for (int j = 0; j < targets.size(); j++) {
+			if (targets.get(j) != null) {
+				targetsWithoutRoute++;
+			}
+		}
+		int endpointsToSettle = countTargetEndpoints();
+		float maxBestTime = 0;
+		RouteDataObject road = source.getRoad();
+		int oneway = router.isOneWay(road);
+		int end = source.getSegmentStart();
+		int start = end - 1;
+		// source and target on the same segment
+		for (int j = 0; j < targets.size(); j++) {
+			RouteSegmentPoint t = targets.get(j);
+			if (t != null && t.getRoad().getId() == road.getId() && t.getSegmentStart() == end) {
+				double ds = BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(start), road.getPoint31YTile(start),
+						source.preciseX, source.preciseY);
+				double dt = BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(start), road.getPoint31YTile(start),
+						t.preciseX, t.preciseY);
+				if (ds <= dt ? oneway >= 0 : oneway <= 0) {
+					int from = ds <= dt ? start : end;
+					int to = ds <= dt ? end : start;
+					double tm = pieceTime(road, from, to, source.preciseX, source.preciseY, t.preciseX, t.preciseY);
+					if (tm >= 0) {
+						bestTime[j] = (float) tm;
+						bestDist[j] = (float) Math.abs(dt - ds);
+						targetsWithoutRoute--;
+						maxBestTime = Math.max(maxBestTime, bestTime[j]);
+					}
+				}
+			}
+		}
+		if (oneway >= 0) {
+			initSource(road, start, end, source);
+		}
+		if (oneway <= 0) {
+			initSource(road, end, start, source);
+		}
+		while (!heap.isEmpty()) {
+			checkCancelled();
+			float priority = heap.peekPriority();
+			int node = heap.pollNode();
+			if (settled[node] || priority > nodeTime[node]) {
+				continue;
+			}
+			if (endpointsToSettle == 0 || (targetsWithoutRoute == 0 && priority >= maxBestTime) || priority > timeLimit) {
+				break;
+			}
+			ctx.memoryOverhead = nodes * BinaryRoutePlanner.STANDARD_ROAD_VISITED_OVERHEAD
+					+ heap.size() * BinaryRoutePlanner.STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+			if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+				throw new IllegalStateException("There is not enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
+			}
+			settled[node] = true;
+			if (ctx.calculationProgress != null) {
+				ctx.calculationProgress.visitedSegments++;
+			}
+			float time = nodeTime[node];
+			float dist = nodeDist[node];
+			TIntArrayList reached = targetNodes.get(calcNodeKey(nodeX[node], nodeY[node]));
+			if (reached != null) {
+				for (int k = 0; k < reached.size(); k++) {
+					int target = reached.get(k) >> 1;
+					int side = reached.get(k) & 1;
+					endpointsToSettle--;
+					float tm = time + targetTime[target][side];
+					if (tm < bestTime[target]) {
+						if (bestTime[target] == Float.POSITIVE_INFINITY) {
+							targetsWithoutRoute--;
+						}
+						bestTime[target] = tm;
+						bestDist[target] = dist + targetDist[target][side];
+						maxBestTime = Math.max(maxBestTime, tm);
+					}
+				}
+			}
+			expand(nodeX[node], nodeY[node], time, dist);
+		}
+	}
+
+	private int countTargetEndpoints() {
+		int cnt = 0;
+		for (TIntArrayList l : targetNodes.valueCollection()) {
+			cnt += l.size();
+		}
+		return cnt;
+	}
+
+	private void initSource(RouteDataObject road, int from, int to, RouteSegmentPoint source) {
+		int x = road.getPoint31XTile(to);
+		int y = road.getPoint31YTile(to);
+		double tm = pieceTime(road, from, to, source.preciseX, source.preciseY, x, y);
+		if (tm >= 0) {
+			relax(x, y, (float) tm, (float) BinaryRoutePlanner.squareRootDist(source.preciseX, source.preciseY, x, y));
+		}
+	}
+
+	private void expand(int x, int y, float time, float dist) {
+		// tiles are unloaded when memory limit is reached (search keeps only coordinates of nodes)
+		RouteSegment s = ctx.loadRouteSegment(x, y, ctx.config.memoryLimitation - ctx.memoryOverhead);
+		while (s != null) {
+			RouteDataObject road = s.getRoad();
+			int ind = s.getSegmentStart();
+			int oneway = router.isOneWay(road);
+			if (oneway >= 0 && ind + 1 < road.getPointsLength()) {
+				relaxSegment(road, ind, ind + 1, time, dist);
+			}
+			if (oneway <= 0 && ind > 0) {
+				relaxSegment(road, ind, ind - 1, time, dist);
+			}
+			s = s.getNext();
+		}
+	}
+
+	private void relaxSegment(RouteDataObject road, int from, int to, float time, float dist) {
+		double tm = RouteContractionHierarchy.segmentTime(router, road, from, to);
+		if (tm < 0) {
+			return;
+		}
+		int x = road.getPoint31XTile(to);
+		int y = road.getPoint31YTile(to);
+		relax(x, y, time + (float) tm, dist + (float) BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(from),
+				road.getPoint31YTile(from), x, y));
+	}
+
+	private void relax(int x, int y, float time, float dist) {
+		long key = calcNodeKey(x, y);
+		int node = index.get(key);
+		if (node == NO_HANDLE) {
+			node = nodes++;
+			if (node == nodeX.length) {
+				int capacity = node * 2;
+				nodeX = Arrays.copyOf(nodeX, capacity);
+				nodeY = Arrays.copyOf(nodeY, capacity);
+				nodeTime = Arrays.copyOf(nodeTime, capacity);
+				nodeDist = Arrays.copyOf(nodeDist, capacity);
+				settled = Arrays.copyOf(settled, capacity);
+			}
+			index.put(key, node);
+			nodeX[node] = x;
+			nodeY[node] = y;
+			settled[node] = false;
+		} else if (settled[node] || nodeTime[node] <= time) {
+			return;
+		}
+		nodeTime[node] = time;
+		nodeDist[node] = dist;
+		heap.push(node, time);
+	}
+
+	/**
+	 * Time of piece (x1, y1) - (x2, y2) of segment from - to
+	 */
+	private double pieceTime(RouteDataObject road, int from, int to, int x1, int y1, int x2, int y2) {
+		double t = RouteContractionHierarchy.segmentTime(router, road, from, to);
+		double full = BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(from), road.getPoint31YTile(from),
+				road.getPoint31XTile(to), road.getPoint31YTile(to));
+		if (t < 0 || full == 0) {
+			return t;
+		}
+		return t * BinaryRoutePlanner.squareRootDist(x1, y1, x2, y2) / full;
+	}
+
+	private static long calcNodeKey(int x31, int y31) {
+		return (((long) x31) << 31) + (long) y31;
+	}
+}
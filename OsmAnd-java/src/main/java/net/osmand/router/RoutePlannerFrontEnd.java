@@ -32,6 +32,7 @@ public class RoutePlannerFrontEnd {
 	protected static final double GPS_POSSIBLE_ERROR = 7;
 	public boolean useSmartRouteRecalculation = true;
 	public boolean useNativeApproximation = true;
+	private RouteContractionHierarchy contractionHierarchy;
 
 	
 	public RoutePlannerFrontEnd() {
@@ -143,45 +144,26 @@ public class RoutePlannerFrontEnd {
 		long now = System.nanoTime();
 		int px = MapUtils.get31TileNumberX(lon);
 		int py = MapUtils.get31TileNumberY(lat);
-		ArrayList<RouteDataObject> dataObjects = new ArrayList<RouteDataObject>();
-		ctx.loadTileData(px, py, 17, dataObjects, allowDuplications);
-		if (dataObjects.isEmpty()) {
-			ctx.loadTileData(px, py, 15, dataObjects, allowDuplications);
-		}
-		if (dataObjects.isEmpty()) {
-			ctx.loadTileData(px, py, 14, dataObjects, allowDuplications);
-		}
 		if (list == null) {
 			list = new ArrayList<BinaryRoutePlanner.RouteSegmentPoint>();
 		}
-		for (RouteDataObject r : dataObjects) {
-			if (r.getPointsLength() > 1) {
-				RouteSegmentPoint road = null;
-				for (int j = 1; j < r.getPointsLength(); j++) {
-					QuadPoint pr = MapUtils.getProjectionPoint31(px, py, r.getPoint31XTile(j - 1),
-							r.getPoint31YTile(j - 1), r.getPoint31XTile(j), r.getPoint31YTile(j));
-					double currentsDistSquare = squareDist((int) pr.x, (int) pr.y, px, py);
-					if (road == null || currentsDistSquare < road.distSquare) {
-						RouteDataObject ro = new RouteDataObject(r);
-						
-						road = new RouteSegmentPoint(ro, j, currentsDistSquare);
-						road.preciseX = (int) pr.x;
-						road.preciseY = (int) pr.y;
-					}
-				}
-				if (road != null) {
-					if(!transportStop) {
-						float prio = Math.max(ctx.getRouter().defineSpeedPriority(road.road), 0.3f);
-						if (prio > 0) {
-							road.distSquare = (road.distSquare + GPS_POSSIBLE_ERROR * GPS_POSSIBLE_ERROR)
-									/ (prio * prio);
-							list.add(road);
-						}
-					} else {
-						list.add(road);
-					}
-					
+		// duplicates are requested to get all roads around point
+		List<RouteSegmentPoint> roads;
+		if (ctx.config.nearestRoadsLimit > 0 && !allowDuplications) {
+			roads = findNearestRoads(px, py, ctx, ctx.config.nearestRoadsLimit);
+		} else {
+			roads = findAllRoads(px, py, ctx, allowDuplications);
+		}
+		for (RouteSegmentPoint road : roads) {
+			if (!transportStop) {
+				float prio = Math.max(ctx.getRouter().defineSpeedPriority(road.road), 0.3f);
+				if (prio > 0) {
+					road.distSquare = (road.distSquare + GPS_POSSIBLE_ERROR * GPS_POSSIBLE_ERROR)
+							/ (prio * prio);
+					list.add(road);
 				}
+			} else {
+				list.add(road);
 			}
 		}
 		Collections.sort(list, new Comparator<RouteSegmentPoint>() {
@@ -221,6 +203,61 @@ public class RoutePlannerFrontEnd {
 		return null;
 	}
 
+	private List<RouteSegmentPoint> findAllRoads(int px, int py, RoutingContext ctx, boolean allowDuplications) {
+		ArrayList<RouteDataObject> dataObjects = new ArrayList<RouteDataObject>();
+		ctx.loadTileData(px, py, 17, dataObjects, allowDuplications);
+		if (dataObjects.isEmpty()) {
+			ctx.loadTileData(px, py, 15, dataObjects, allowDuplications);
+		}
+		if (dataObjects.isEmpty()) {
+			ctx.loadTileData(px, py, 14, dataObjects, allowDuplications);
+		}
+		List<RouteSegmentPoint> roads = new ArrayList<RouteSegmentPoint>(dataObjects.size());
+		for (RouteDataObject r : dataObjects) {
+			RouteSegmentPoint road = null;
+			for (int j = 1; j < r.getPointsLength(); j++) {
+				QuadPoint pr = MapUtils.getProjectionPoint31(px, py, r.getPoint31XTile(j - 1),
+						r.getPoint31YTile(j - 1), r.getPoint31XTile(j), r.getPoint31YTile(j));
+				double currentsDistSquare = squareDist((int) pr.x, (int) pr.y, px, py);
+				if (road == null || currentsDistSquare < road.distSquare) {
+					RouteDataObject ro = new RouteDataObject(r);
+					
+					road = new RouteSegmentPoint(ro, j, currentsDistSquare);
+					road.preciseX = (int) pr.x;
+					road.preciseY = (int) pr.y;
+				}
+			}
+			if (road != null) {
+				roads.add(road);
+			}
+		}
+		return roads;
+	}
+
+	private List<RouteSegmentPoint> findNearestRoads(int px, int py, RoutingContext ctx, int k) {
+		RouteSegmentIndex.NearestRoads nearest = new RouteSegmentIndex.NearestRoads(px, py, k);
+		ctx.loadNearestRoads(px, py, 17, nearest);
+		if (nearest.size() == 0) {
+			ctx.loadNearestRoads(px, py, 15, nearest);
+		}
+		if (nearest.size() == 0) {
+			ctx.loadNearestRoads(px, py, 14, nearest);
+		}
+		List<RouteSegmentPoint> roads = new ArrayList<RouteSegmentPoint>(nearest.size());
+		for (int i = 0; i < nearest.size(); i++) {
+			RouteDataObject r = nearest.getRoad(i);
+			int j = nearest.getSegment(i);
+			QuadPoint pr = MapUtils.getProjectionPoint31(px, py, r.getPoint31XTile(j - 1),
+					r.getPoint31YTile(j - 1), r.getPoint31XTile(j), r.getPoint31YTile(j));
+			RouteSegmentPoint road = new RouteSegmentPoint(new RouteDataObject(r), j,
+					squareDist((int) pr.x, (int) pr.y, px, py));
+			road.preciseX = (int) pr.x;
+			road.preciseY = (int) pr.y;
+			roads.add(road);
+		}
+		return roads;
+	}
+
 	public List<RouteSegmentResult> searchRoute(final RoutingContext ctx, LatLon start, LatLon end, List<LatLon> intermediates) throws IOException, InterruptedException {
 		return searchRoute(ctx, start, end, intermediates, null);
 	}
@@ -233,6 +270,22 @@ public class RoutePlannerFrontEnd {
 		this.useNativeApproximation = useNativeApproximation;
 	}
 
+	public RouteContractionHierarchy getContractionHierarchy() {
+		return contractionHierarchy;
+	}
+
+	/**
+	 * Hierarchy is used instead of A* only for routing contexts with matching profile
+	 * (see {@link RouteContractionHierarchy#isApplicable(RoutingContext)})
+	 */
+	public void setContractionHierarchy(RouteContractionHierarchy contractionHierarchy) {
+		this.contractionHierarchy = contractionHierarchy;
+	}
+
+	private boolean useContractionHierarchy(RoutingContext ctx) {
+		return contractionHierarchy != null && contractionHierarchy.isApplicable(ctx);
+	}
+
 	public GpxRouteApproximation searchGpxRoute(GpxRouteApproximation gctx, List<GpxPoint> gpxPoints, ResultMatcher<GpxRouteApproximation> resultMatcher) throws IOException, InterruptedException {
 		long timeToCalculate = System.nanoTime();
 		NativeLibrary nativeLib = gctx.ctx.nativeLib;
@@ -724,6 +777,41 @@ public class RoutePlannerFrontEnd {
 		return res;
 	}
 
+	/**
+	 * Travel times and distances from all sources to all targets (e.g. to feed TSP solvers). One-to-many searches
+	 * share the routing context and no route results are built (see {@link RouteMatrixSearch}). Searches are bounded
+	 * by time derived from distance to the farthest target.
+	 * @return matrix (unreachable or not found on roads points have negative values)
+	 * @throws InterruptedException if calculation is cancelled by ctx.calculationProgress (as {@link #searchRoute})
+	 */
+	public RouteMatrix searchRouteMatrix(final RoutingContext ctx, List<LatLon> sources, List<LatLon> targets)
+			throws IOException, InterruptedException {
+		return searchRouteMatrix(ctx, sources, targets, Float.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * @param maxTime targets which can't be reached in maxTime seconds are unreachable (positive, infinite - derived bound)
+	 */
+	public RouteMatrix searchRouteMatrix(final RoutingContext ctx, List<LatLon> sources, List<LatLon> targets,
+			float maxTime) throws IOException, InterruptedException {
+		long timeToCalculate = System.nanoTime();
+		if (ctx.calculationProgress == null) {
+			ctx.calculationProgress = new RouteCalculationProgress();
+		}
+		List<RouteSegmentPoint> sourcePoints = new ArrayList<RouteSegmentPoint>(sources.size());
+		for (LatLon l : sources) {
+			sourcePoints.add(findRouteSegment(l.getLatitude(), l.getLongitude(), ctx, null));
+		}
+		List<RouteSegmentPoint> targetPoints = new ArrayList<RouteSegmentPoint>(targets.size());
+		for (LatLon l : targets) {
+			targetPoints.add(findRouteSegment(l.getLatitude(), l.getLongitude(), ctx, null));
+		}
+		RouteMatrix matrix = new RouteMatrixSearch(ctx, maxTime).search(sourcePoints, targetPoints);
+		log.info(String.format("Route matrix %dx%d calculated in %.1f ms, visited segments %d", sources.size(),
+				targets.size(), (System.nanoTime() - timeToCalculate) / 1e6, ctx.getVisitedSegments()));
+		return matrix;
+	}
+
 	public List<RouteSegmentResult> searchRoute(final RoutingContext ctx, LatLon start, LatLon end, List<LatLon> intermediates,
 	                                            PrecalculatedRouteDirection routeDirection) throws IOException, InterruptedException {
 		long timeToCalculate = System.nanoTime();
@@ -748,7 +836,7 @@ public class RoutePlannerFrontEnd {
 			}
 		}
 		if (ctx.calculationMode == RouteCalculationMode.COMPLEX && routeDirection == null
-				&& maxDistance > RoutingConfiguration.DEVIATION_RADIUS * 6) {
+				&& maxDistance > RoutingConfiguration.DEVIATION_RADIUS * 6 && !useContractionHierarchy(ctx)) {
 			ctx.calculationProgress.totalIterations++;
 			RoutingContext nctx = buildRoutingContext(ctx.config, ctx.nativeLib, ctx.getMaps(), RouteCalculationMode.BASE);
 			nctx.calculationProgress = ctx.calculationProgress;
@@ -896,7 +984,9 @@ public class RoutePlannerFrontEnd {
 
 	private List<RouteSegmentResult> searchRouteInternalPrepare(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
 	                                                            PrecalculatedRouteDirection routeDirection) throws IOException, InterruptedException {
-		RouteSegment recalculationEnd = getRecalculationEnd(ctx);
+		// retained reverse search already covers the rest of previous route
+		boolean reuseReverseSearch = routeDirection == null && BinaryRoutePlanner.canReuseReverseSearchTree(ctx, end);
+		RouteSegment recalculationEnd = reuseReverseSearch ? null : getRecalculationEnd(ctx);
 		if (recalculationEnd != null) {
 			ctx.initStartAndTargetPoints(start, recalculationEnd);
 		} else {
@@ -917,6 +1007,20 @@ public class RoutePlannerFrontEnd {
 			return runNativeRouting(ctx, recalculationEnd);
 		} else {
 			refreshProgressDistance(ctx);
+			if (recalculationEnd == null && !reuseReverseSearch && useContractionHierarchy(ctx)) {
+				List<RouteSegmentResult> res = contractionHierarchy.searchRoute(ctx, start, end);
+				if (res != null && RouteContractionHierarchy.checkRestrictions(res)) {
+					return new RouteResultPreparation().prepareResult(ctx, res, false);
+				} else if (res != null) {
+					// hierarchy doesn't know turn restrictions, so use its route only as a guide for A*
+					RouteResultPreparation.calculateTimeSpeed(ctx, res);
+					ctx.precalculatedRouteDirection = PrecalculatedRouteDirection.build(res,
+							RoutingConfiguration.DEVIATION_RADIUS, ctx.getRouter().getMaxSpeed()).adopt(ctx);
+					log.info("Contraction hierarchy route doesn't pass restrictions check, it is used as a guide for A*");
+				} else {
+					log.info("Contraction hierarchy route is not found, fallback to A*");
+				}
+			}
 			// Split into 2 methods to let GC work in between
 			ctx.finalRouteSegment = new BinaryRoutePlanner().searchRouteInternal(ctx, start, end, recalculationEnd);
 			// 4. Route is found : collect all segments and prepare result
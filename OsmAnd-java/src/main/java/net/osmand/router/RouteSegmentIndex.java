@@ -0,0 +1,321 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.osmand.binary.RouteDataObject;
+import net.osmand.util.MapUtils;
+
+/**
+ * Packed R-tree over segments of roads of one routing tile (sort-tile-recursive bulk load).
+ * Index is built once on first nearest roads query for the tile and answers k nearest roads
+ * queries with best-first search, so only segments close to the point are projected.
+ */
+class RouteSegmentIndex {
+
+	private static final int NODE_SIZE = 16;
+
+	private final RouteDataObject[] objects;
+	// leaf entries: object and end point of segment [segment - 1, segment]
+	private final int[] entryObject;
+	private final int[] entrySegment;
+	// bounds (minX, minY, maxX, maxY) of nodes by level, level 0 contains entries, last level is root
+	private final int[][] bounds;
+
+	RouteSegmentIndex(List<RouteDataObject> roads) {
+		objects = roads.toArray(new RouteDataObject[roads.size()]);
+		int size = 0;
+		for (RouteDataObject o : objects) {
+			if (o.getPointsLength() > 1) {
+				size += o.getPointsLength() - 1;
+			}
+		}
+		int[] eo = new int[size];
+		int[] es = new int[size];
+		int[] cx = new int[size];
+		int[] cy = new int[size];
+		int e = 0;
+		for (int i = 0; i < objects.length; i++) {
+			RouteDataObject o = objects[i];
+			for (int j = 1; j < o.getPointsLength(); j++) {
+				eo[e] = i;
+				es[e] = j;
+				cx[e] = (int) (((long) o.getPoint31XTile(j - 1) + o.getPoint31XTile(j)) >> 1);
+				cy[e] = (int) (((long) o.getPoint31YTile(j - 1) + o.getPoint31YTile(j)) >> 1);
+				e++;
+			}
+		}
+		// sort by x, then split into vertical slices and sort slices by y (coordinates are positive)
+		long[] keys = new long[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = (((long) cx[i]) << 32) | i;
+		}
+		Arrays.sort(keys);
+		int leaves = (size + NODE_SIZE - 1) / NODE_SIZE;
+		int sliceSize = (int) Math.ceil(Math.sqrt(leaves)) * NODE_SIZE;
+		for (int s = 0; s < size; s += sliceSize) {
+			int end = Math.min(s + sliceSize, size);
+			for (int i = s; i < end; i++) {
+				int ind = (int) keys[i];
+				keys[i] = (((long) cy[ind]) << 32) | ind;
+			}
+			Arrays.sort(keys, s, end);
+		}
+		entryObject = new int[size];
+		entrySegment = new int[size];
+		int[] level = new int[size * 4];
+		for (int i = 0; i < size; i++) {
+			int ind = (int) keys[i];
+			entryObject[i] = eo[ind];
+			entrySegment[i] = es[ind];
+			RouteDataObject o = objects[eo[ind]];
+			int x1 = o.getPoint31XTile(es[ind] - 1);
+			int x2 = o.getPoint31XTile(es[ind]);
+			int y1 = o.getPoint31YTile(es[ind] - 1);
+			int y2 = o.getPoint31YTile(es[ind]);
+			level[4 * i] = Math.min(x1, x2);
+			level[4 * i + 1] = Math.min(y1, y2);
+			level[4 * i + 2] = Math.max(x1, x2);
+			level[4 * i + 3] = Math.max(y1, y2);
+		}
+		List<int[]> levels = new ArrayList<int[]>();
+		levels.add(level);
+		int count = size;
+		while (count > 1) {
+			int parents = (count + NODE_SIZE - 1) / NODE_SIZE;
+			int[] parent = new int[parents * 4];
+			for (int p = 0; p < parents; p++) {
+				int from = p * NODE_SIZE;
+				int to = Math.min(from + NODE_SIZE, count);
+				int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+				for (int c = from; c < to; c++) {
+					minX = Math.min(minX, level[4 * c]);
+					minY = Math.min(minY, level[4 * c + 1]);
+					maxX = Math.max(maxX, level[4 * c + 2]);
+					maxY = Math.max(maxY, level[4 * c + 3]);
+				}
+				parent[4 * p] = minX;
+				parent[4 * p + 1] = minY;
+				parent[4 * p + 2] = maxX;
+				parent[4 * p + 3] = maxY;
+			}
+			levels.add(parent);
+			level = parent;
+			count = parents;
+		}
+		bounds = levels.toArray(new int[levels.size()][]);
+	}
+
+	int getSegmentsCount() {
+		return entryObject.length;
+	}
+
+	long getEstimatedSize() {
+		long sz = 16 + objects.length * 4l + entryObject.length * 8l;
+		for (int[] l : bounds) {
+			sz += 16 + l.length * 4l;
+		}
+		return sz;
+	}
+
+	/**
+	 * Best-first search of nearest segments, found roads are offered to (shared between tiles) result
+	 */
+	void search(NearestRoads nearest) {
+		if (entryObject.length == 0) {
+			return;
+		}
+		nearest.clearQueue();
+		int top = bounds.length - 1;
+		for (int i = 0; i < bounds[top].length / 4; i++) {
+			nearest.push(boxDist(nearest, bounds[top], i), top, i);
+		}
+		while (nearest.queueSize > 0) {
+			double dist = nearest.queueDist[0];
+			if (dist >= nearest.getBound()) {
+				break;
+			}
+			long item = nearest.pop();
+			int lvl = (int) (item >> 32) - 1;
+			int ind = (int) item;
+			if (lvl < 0) {
+				nearest.offer(objects[entryObject[ind]], entrySegment[ind], dist);
+			} else if (lvl == 0) {
+				nearest.push(segmentDist(nearest, ind), -1, ind);
+			} else {
+				int[] children = bounds[lvl - 1];
+				int from = ind * NODE_SIZE;
+				int to = Math.min(from + NODE_SIZE, children.length / 4);
+				for (int c = from; c < to; c++) {
+					double cd = boxDist(nearest, children, c);
+					if (cd < nearest.getBound()) {
+						nearest.push(cd, lvl - 1, c);
+					}
+				}
+			}
+		}
+	}
+
+	private static double boxDist(NearestRoads n, int[] level, int i) {
+		double dx = 0;
+		if (n.x < level[4 * i]) {
+			dx = (level[4 * i] - (long) n.x) * n.scaleX;
+		} else if (n.x > level[4 * i + 2]) {
+			dx = (n.x - (long) level[4 * i + 2]) * n.scaleX;
+		}
+		double dy = 0;
+		if (n.y < level[4 * i + 1]) {
+			dy = (level[4 * i + 1] - (long) n.y) * n.scaleY;
+		} else if (n.y > level[4 * i + 3]) {
+			dy = (n.y - (long) level[4 * i + 3]) * n.scaleY;
+		}
+		return dx * dx + dy * dy;
+	}
+
+	private double segmentDist(NearestRoads n, int entry) {
+		RouteDataObject o = objects[entryObject[entry]];
+		int j = entrySegment[entry];
+		double ax = (o.getPoint31XTile(j - 1) - (long) n.x) * n.scaleX;
+		double ay = (o.getPoint31YTile(j - 1) - (long) n.y) * n.scaleY;
+		double dx = (o.getPoint31XTile(j) - (long) n.x) * n.scaleX - ax;
+		double dy = (o.getPoint31YTile(j) - (long) n.y) * n.scaleY - ay;
+		double l = dx * dx + dy * dy;
+		double t = l == 0 ? 0 : -(ax * dx + ay * dy) / l;
+		t = Math.max(0, Math.min(1, t));
+		double qx = ax + t * dx;
+		double qy = ay + t * dy;
+		return qx * qx + qy * qy;
+	}
+
+	/**
+	 * K nearest distinct roads (by closest segment) to the point collected from several tiles.
+	 * Distances are squared meters in local plane around the point.
+	 */
+	static class NearestRoads {
+		final int x;
+		final int y;
+		final int k;
+		final double scaleX;
+		final double scaleY;
+		private final RouteDataObject[] roads;
+		private final int[] segments;
+		private final double[] dists;
+		private int size;
+		// search queue shared by tiles
+		private double[] queueDist = new double[64];
+		private long[] queueItem = new long[64];
+		private int queueSize;
+
+		NearestRoads(int x31, int y31, int k) {
+			this.x = x31;
+			this.y = y31;
+			this.k = k;
+			int d = 1 << 16;
+			scaleX = Math.abs(MapUtils.convert31XToMeters(x31, x31 + d, y31)) / d;
+			scaleY = Math.abs(MapUtils.convert31YToMeters(y31, y31 + d, x31)) / d;
+			roads = new RouteDataObject[k];
+			segments = new int[k];
+			dists = new double[k];
+		}
+
+		int size() {
+			return size;
+		}
+
+		RouteDataObject getRoad(int i) {
+			return roads[i];
+		}
+
+		int getSegment(int i) {
+			return segments[i];
+		}
+
+		double getBound() {
+			return size < k ? Double.POSITIVE_INFINITY : dists[size - 1];
+		}
+
+		void offer(RouteDataObject road, int segment, double dist) {
+			for (int i = 0; i < size; i++) {
+				if (roads[i].id == road.id) {
+					if (dist >= dists[i]) {
+						return;
+					}
+					// closer segment of same road found in another tile
+					System.arraycopy(roads, i + 1, roads, i, size - i - 1);
+					System.arraycopy(segments, i + 1, segments, i, size - i - 1);
+					System.arraycopy(dists, i + 1, dists, i, size - i - 1);
+					size--;
+					break;
+				}
+			}
+			if (size == k) {
+				if (dist >= dists[k - 1]) {
+					return;
+				}
+				size--;
+			}
+			int pos = size;
+			while (pos > 0 && dists[pos - 1] > dist) {
+				roads[pos] = roads[pos - 1];
+				segments[pos] = segments[pos - 1];
+				dists[pos] = dists[pos - 1];
+				pos--;
+			}
+			roads[pos] = road;
+			segments[pos] = segment;
+			dists[pos] = dist;
+			size++;
+		}
+
+		private void clearQueue() {
+			queueSize = 0;
+		}
+
+		private void push(double dist, int level, int ind) {
+			if (queueSize == queueDist.length) {
+				queueDist = Arrays.copyOf(queueDist, queueSize * 2);
+				queueItem = Arrays.copyOf(queueItem, queueSize * 2);
+			}
+			long item = (((long) (level + 1)) << 32) | (ind & 0xffffffffl);
+			int pos = queueSize++;
+			while (pos > 0) {
+				int parent = (pos - 1) >> 1;
+				if (queueDist[parent] <= dist) {
+					break;
+				}
+				queueDist[pos] = queueDist[parent];
+				queueItem[pos] = queueItem[parent];
+				pos = parent;
+			}
+			queueDist[pos] = dist;
+			queueItem[pos] = item;
+		}
+
+		private long pop() {
+			long res = queueItem[0];
+			queueSize--;
+			double dist = queueDist[queueSize];
+			long item = queueItem[queueSize];
+			int pos = 0;
+			while (true) {
+				int child = 2 * pos + 1;
+				if (child >= queueSize) {
+					break;
+				}
+				if (child + 1 < queueSize && queueDist[child + 1] < queueDist[child]) {
+					child++;
+				}
+				if (dist <= queueDist[child]) {
+					break;
+				}
+				queueDist[pos] = queueDist[child];
+				queueItem[pos] = queueItem[child];
+				pos = child;
+			}
+			queueDist[pos] = dist;
+			queueItem[pos] = item;
+			return res;
+		}
+	}
+}
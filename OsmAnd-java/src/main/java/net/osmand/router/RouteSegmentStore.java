@@ -0,0 +1,565 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+/**
+ * Storages of A* search state (queue of segments to visit and visited segments).
+ * Object based storages are used by default, primitive ones (see {@link RoutingConfiguration#usePrimitiveSegmentStore})
+ * keep search state in parallel arrays indexed by segment handle and measure memory by size of arrays.
+ * Primitive storages still reference one {@link RouteSegment} object per entry, so size of segment objects is
+ * added to measured memory.
+ */
+public class RouteSegmentStore {
+
+	// reference size used to measure arrays of objects
+	private static final int REFERENCE_SIZE = 8;
+	// object header, 6 references, 2 floats and 2 shorts of RouteSegment (aligned to 8 bytes)
+	static final int ROUTE_SEGMENT_SIZE = 80;
+	private static final long FREE_KEY = Long.MIN_VALUE;
+	private static final int NO_HANDLE = -1;
+
+	interface SegmentsQueue {
+
+		boolean add(RouteSegment segment);
+
+		RouteSegment poll();
+
+		RouteSegment peek();
+
+		int size();
+
+		boolean isEmpty();
+
+		/**
+		 * Recalculates heuristic of queued segments to start point of context (queue of reverse search)
+		 * and restores order in linear time, final segments are removed.
+		 */
+		void updateHeuristicToStart(RoutingContext ctx);
+	}
+
+	interface VisitedSegments {
+
+		RouteSegment get(long pointId);
+
+		RouteSegment put(long pointId, RouteSegment segment);
+
+		boolean containsKey(long pointId);
+
+		int size();
+	}
+
+	static SegmentsQueue createQueue(RoutingContext ctx, Comparator<RouteSegment> comparator) {
+		if (ctx.config.usePrimitiveSegmentStore) {
+			return new PrimitiveSegmentsQueue(ctx.config.heuristicCoefficient);
+		}
+		return new ObjectSegmentsQueue(comparator);
+	}
+
+	static VisitedSegments createVisitedSegments(RoutingContext ctx) {
+		if (ctx.config.usePrimitiveSegmentStore) {
+			return new PrimitiveVisitedSegments();
+		}
+		return new ObjectVisitedSegments();
+	}
+
+	static ConcurrentVisitedSegments createConcurrentVisitedSegments(Object lock) {
+		return new ConcurrentVisitedSegments(lock);
+	}
+
+	/**
+	 * @return size of storage arrays and segments in bytes or -1 if storage is object based
+	 */
+	static long getMemoryUsage(SegmentsQueue queue) {
+		if (queue instanceof PrimitiveSegmentsQueue) {
+			return ((PrimitiveSegmentsQueue) queue).getMemoryUsage();
+		}
+		return -1;
+	}
+
+	/**
+	 * @return size of storage arrays and segments in bytes or -1 if storage is object based
+	 */
+	static long getMemoryUsage(VisitedSegments visited) {
+		if (visited instanceof PrimitiveVisitedSegments) {
+			return ((PrimitiveVisitedSegments) visited).getMemoryUsage();
+		}
+		return -1;
+	}
+
+	/**
+	 * @return false if segment is final and should be removed from queue
+	 */
+	private static boolean updateHeuristicToStart(RoutingContext ctx, RouteSegment s) {
+		if (s instanceof FinalRouteSegment) {
+			return false;
+		}
+		RouteDataObject road = s.getRoad();
+		s.distanceToEnd = BinaryRoutePlanner.h(ctx, road.getPoint31XTile(s.getSegmentStart()),
+				road.getPoint31YTile(s.getSegmentStart()), ctx.startX, ctx.startY);
+		return true;
+	}
+
+	static class ObjectSegmentsQueue extends PriorityQueue<RouteSegment> implements SegmentsQueue {
+
+		private static final long serialVersionUID = 1L;
+		private final Comparator<RouteSegment> comparator;
+
+		ObjectSegmentsQueue(Comparator<RouteSegment> comparator) {
+			super(50, comparator);
+			this.comparator = comparator;
+		}
+
+		@Override
+		public void updateHeuristicToStart(RoutingContext ctx) {
+			RouteSegment[] heap = new RouteSegment[size()];
+			int size = 0;
+			for (RouteSegment s : this) {
+				if (RouteSegmentStore.updateHeuristicToStart(ctx, s)) {
+					heap[size++] = s;
+				}
+			}
+			for (int pos = size / 2 - 1; pos >= 0; pos--) {
+				siftDown(heap, size, pos);
+			}
+			// segments are added in heap order, so every add stops at first comparison with parent
+			clear();
+			for (int i = 0; i < size; i++) {
+				add(heap[i]);
+			}
+		}
+
+		private void siftDown(RouteSegment[] heap, int size, int pos) {
+			RouteSegment segment = heap[pos];
+			while (true) {
+				int child = 2 * pos + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && comparator.compare(heap[child + 1], heap[child]) < 0) {
+					child++;
+				}
+				if (comparator.compare(segment, heap[child]) <= 0) {
+					break;
+				}
+				heap[pos] = heap[child];
+				pos = child;
+			}
+			heap[pos] = segment;
+		}
+	}
+
+	static class ObjectVisitedSegments extends TLongObjectHashMap<RouteSegment> implements VisitedSegments {
+
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * State of visited segment published for search thread of opposite direction (segment itself is changed
+	 * by its search thread, so it could be read by opposite direction only after both searches are finished)
+	 */
+	static final class VisitedSnapshot {
+		final RouteSegment segment;
+		final float distanceFromStart;
+		// road of first parent segment of another road (null if there is no parent)
+		final RouteDataObject parentRoad;
+
+		VisitedSnapshot(RouteSegment segment, float distanceFromStart, RouteSegment parentDiffId) {
+			this.segment = segment;
+			this.distanceFromStart = distanceFromStart;
+			this.parentRoad = parentDiffId == null ? null : parentDiffId.getRoad();
+		}
+	}
+
+	/**
+	 * Visited segments of search thread of one direction: segments are read and written only by own search thread,
+	 * snapshots of visited segments are published for search thread of opposite direction
+	 */
+	static class ConcurrentVisitedSegments implements VisitedSegments {
+
+		private final TLongObjectHashMap<RouteSegment> segments = new TLongObjectHashMap<RouteSegment>();
+		// guarded by lock which is common for both directions
+		private final TLongObjectHashMap<VisitedSnapshot> published = new TLongObjectHashMap<VisitedSnapshot>();
+		private final Object lock;
+
+		ConcurrentVisitedSegments(Object lock) {
+			this.lock = lock;
+		}
+
+		@Override
+		public RouteSegment get(long pointId) {
+			return segments.get(pointId);
+		}
+
+		@Override
+		public RouteSegment put(long pointId, RouteSegment segment) {
+			return segments.put(pointId, segment);
+		}
+
+		@Override
+		public boolean containsKey(long pointId) {
+			return segments.containsKey(pointId);
+		}
+
+		@Override
+		public int size() {
+			return segments.size();
+		}
+
+		/**
+		 * Called by own search thread: publishes state of visited segment (if it's better than published one)
+		 * and returns published state of opposite segment. Both are done under common lock, so if searches visit
+		 * the same segment at the same time, at least one of them finds the other.
+		 */
+		VisitedSnapshot publish(long pointId, VisitedSnapshot snapshot, ConcurrentVisitedSegments opposite,
+				long oppositePointId) {
+			synchronized (lock) {
+				VisitedSnapshot p = published.get(pointId);
+				if (p == null || p.distanceFromStart > snapshot.distanceFromStart) {
+					published.put(pointId, snapshot);
+				}
+				return opposite.published.get(oppositePointId);
+			}
+		}
+	}
+
+	/**
+	 * Open addressing hash index: point id -> handle
+	 */
+	static class LongHandleIndex {
+		private long[] keys;
+		private int[] handles;
+		private int size;
+
+		LongHandleIndex() {
+			keys = new long[64];
+			handles = new int[64];
+			Arrays.fill(keys, FREE_KEY);
+		}
+
+		int size() {
+			return size;
+		}
+
+		int get(long key) {
+			int mask = keys.length - 1;
+			int i = mix(key) & mask;
+			while (keys[i] != FREE_KEY) {
+				if (keys[i] == key) {
+					return handles[i];
+				}
+				i = (i + 1) & mask;
+			}
+			return NO_HANDLE;
+		}
+
+		void put(long key, int handle) {
+			if ((size + 1) * 4 > keys.length * 3) {
+				rehash(keys.length * 2);
+			}
+			int mask = keys.length - 1;
+			int i = mix(key) & mask;
+			while (keys[i] != FREE_KEY) {
+				if (keys[i] == key) {
+					handles[i] = handle;
+					return;
+				}
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			handles[i] = handle;
+			size++;
+		}
+
+		void remove(long key) {
+			int mask = keys.length - 1;
+			int i = mix(key) & mask;
+			while (keys[i] != FREE_KEY) {
+				if (keys[i] == key) {
+					break;
+				}
+				i = (i + 1) & mask;
+			}
+			if (keys[i] == FREE_KEY) {
+				return;
+			}
+			keys[i] = FREE_KEY;
+			size--;
+			// shift following entries of the cluster (no tombstones)
+			int j = i;
+			while (true) {
+				j = (j + 1) & mask;
+				if (keys[j] == FREE_KEY) {
+					break;
+				}
+				int ideal = mix(keys[j]) & mask;
+				boolean move = i <= j ? (ideal <= i || ideal > j) : (ideal <= i && ideal > j);
+				if (move) {
+					keys[i] = keys[j];
+					handles[i] = handles[j];
+					keys[j] = FREE_KEY;
+					i = j;
+				}
+			}
+		}
+
+		private void rehash(int capacity) {
+			long[] oldKeys = keys;
+			int[] oldHandles = handles;
+			keys = new long[capacity];
+			handles = new int[capacity];
+			Arrays.fill(keys, FREE_KEY);
+			size = 0;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != FREE_KEY) {
+					put(oldKeys[i], oldHandles[i]);
+				}
+			}
+		}
+
+		long getMemoryUsage() {
+			return keys.length * 8l + handles.length * 4l;
+		}
+
+		private static int mix(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+	}
+
+	/**
+	 * Indexed binary heap keyed by segment handle. Segment state (priority, point id, position in heap)
+	 * is stored in parallel arrays, same point added twice decreases priority instead of duplicating entry.
+	 */
+	static class PrimitiveSegmentsQueue implements SegmentsQueue {
+
+		private final double heuristicCoefficient;
+		private final LongHandleIndex index = new LongHandleIndex();
+		// pool of handles
+		private RouteSegment[] segments = new RouteSegment[64];
+		private double[] priorities = new double[64];
+		private long[] pointIds = new long[64];
+		private int[] heapPositions = new int[64];
+		private int[] freeHandles = new int[64];
+		private int freeSize;
+		private int handlesSize;
+		// heap of handles
+		private int[] heap = new int[64];
+		private int size;
+
+		PrimitiveSegmentsQueue(double heuristicCoefficient) {
+			this.heuristicCoefficient = heuristicCoefficient;
+		}
+
+		@Override
+		public boolean add(RouteSegment segment) {
+			double priority = segment.distanceFromStart + heuristicCoefficient * segment.distanceToEnd;
+			long pointId = FREE_KEY;
+			if (!(segment instanceof FinalRouteSegment)) {
+				pointId = BinaryRoutePlanner.calculateRoutePointId(segment);
+				int existing = index.get(pointId);
+				if (existing != NO_HANDLE) {
+					if (segments[existing] == segment || priority < priorities[existing]) {
+						// decrease key (or refresh priority of same segment which was modified)
+						segments[existing] = segment;
+						priorities[existing] = priority;
+						siftUp(heapPositions[existing]);
+						siftDown(heapPositions[existing]);
+						return true;
+					}
+					// slower path to the same point would be rejected as visited
+					return false;
+				}
+			}
+			int handle = allocateHandle();
+			segments[handle] = segment;
+			priorities[handle] = priority;
+			pointIds[handle] = pointId;
+			if (pointId != FREE_KEY) {
+				index.put(pointId, handle);
+			}
+			if (size == heap.length) {
+				heap = Arrays.copyOf(heap, size * 2);
+			}
+			heap[size] = handle;
+			heapPositions[handle] = size;
+			siftUp(size++);
+			return true;
+		}
+
+		@Override
+		public RouteSegment poll() {
+			if (size == 0) {
+				return null;
+			}
+			int handle = heap[0];
+			size--;
+			if (size > 0) {
+				heap[0] = heap[size];
+				heapPositions[heap[0]] = 0;
+				siftDown(0);
+			}
+			RouteSegment segment = segments[handle];
+			releaseHandle(handle);
+			return segment;
+		}
+
+		@Override
+		public RouteSegment peek() {
+			return size == 0 ? null : segments[heap[0]];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size == 0;
+		}
+
+		@Override
+		public void updateHeuristicToStart(RoutingContext ctx) {
+			int newSize = 0;
+			for (int pos = 0; pos < size; pos++) {
+				int handle = heap[pos];
+				RouteSegment segment = segments[handle];
+				if (RouteSegmentStore.updateHeuristicToStart(ctx, segment)) {
+					priorities[handle] = segment.distanceFromStart + heuristicCoefficient * segment.distanceToEnd;
+					heap[newSize] = handle;
+					heapPositions[handle] = newSize++;
+				} else {
+					releaseHandle(handle);
+				}
+			}
+			size = newSize;
+			for (int pos = size / 2 - 1; pos >= 0; pos--) {
+				siftDown(pos);
+			}
+		}
+
+		long getMemoryUsage() {
+			return segments.length * (long) REFERENCE_SIZE + priorities.length * 8l + pointIds.length * 8l
+					+ heapPositions.length * 4l + freeHandles.length * 4l + heap.length * 4l + index.getMemoryUsage()
+					+ size * (long) ROUTE_SEGMENT_SIZE;
+		}
+
+		private int allocateHandle() {
+			if (freeSize > 0) {
+				return freeHandles[--freeSize];
+			}
+			if (handlesSize == segments.length) {
+				int capacity = handlesSize * 2;
+				segments = Arrays.copyOf(segments, capacity);
+				priorities = Arrays.copyOf(priorities, capacity);
+				pointIds = Arrays.copyOf(pointIds, capacity);
+				heapPositions = Arrays.copyOf(heapPositions, capacity);
+			}
+			return handlesSize++;
+		}
+
+		private void releaseHandle(int handle) {
+			if (pointIds[handle] != FREE_KEY) {
+				index.remove(pointIds[handle]);
+			}
+			segments[handle] = null;
+			if (freeSize == freeHandles.length) {
+				freeHandles = Arrays.copyOf(freeHandles, freeSize * 2);
+			}
+			freeHandles[freeSize++] = handle;
+		}
+
+		private void siftUp(int pos) {
+			int handle = heap[pos];
+			double priority = priorities[handle];
+			while (pos > 0) {
+				int parent = (pos - 1) >> 1;
+				int ph = heap[parent];
+				if (priorities[ph] <= priority) {
+					break;
+				}
+				heap[pos] = ph;
+				heapPositions[ph] = pos;
+				pos = parent;
+			}
+			heap[pos] = handle;
+			heapPositions[handle] = pos;
+		}
+
+		private void siftDown(int pos) {
+			int handle = heap[pos];
+			double priority = priorities[handle];
+			while (true) {
+				int child = 2 * pos + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && priorities[heap[child + 1]] < priorities[heap[child]]) {
+					child++;
+				}
+				int ch = heap[child];
+				if (priority <= priorities[ch]) {
+					break;
+				}
+				heap[pos] = ch;
+				heapPositions[ch] = pos;
+				pos = child;
+			}
+			heap[pos] = handle;
+			heapPositions[handle] = pos;
+		}
+	}
+
+	/**
+	 * Visited segments stored by handle: point id index + array of segments
+	 */
+	static class PrimitiveVisitedSegments implements VisitedSegments {
+
+		private final LongHandleIndex index = new LongHandleIndex();
+		private RouteSegment[] segments = new RouteSegment[64];
+		private int size;
+
+		@Override
+		public RouteSegment get(long pointId) {
+			int handle = index.get(pointId);
+			return handle == NO_HANDLE ? null : segments[handle];
+		}
+
+		@Override
+		public RouteSegment put(long pointId, RouteSegment segment) {
+			int handle = index.get(pointId);
+			if (handle != NO_HANDLE) {
+				RouteSegment prev = segments[handle];
+				segments[handle] = segment;
+				return prev;
+			}
+			if (size == segments.length) {
+				segments = Arrays.copyOf(segments, size * 2);
+			}
+			segments[size] = segment;
+			index.put(pointId, size++);
+			return null;
+		}
+
+		@Override
+		public boolean containsKey(long pointId) {
+			return index.get(pointId) != NO_HANDLE;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		long getMemoryUsage() {
+			return segments.length * (long) REFERENCE_SIZE + index.getMemoryUsage() + size * (long) ROUTE_SEGMENT_SIZE;
+		}
+	}
+}
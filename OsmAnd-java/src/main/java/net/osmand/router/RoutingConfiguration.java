@@ -61,6 +61,20 @@ public class RoutingConfiguration {
 	// 1.6 Time to calculate all access restrictions based on conditions
 	public long routeCalculationTime = 0;
 
+	// 1.7 Keep A* queue and visited segments in primitive arrays (memory is measured by arrays and segments, not estimated)
+	public boolean usePrimitiveSegmentStore = false;
+
+	// 1.8 Run direct and reverse A* search in 2 threads (each direction loads its own tiles)
+	public boolean parallelBidirectionalSearch = false;
+
+	// 1.9 Find only k nearest roads to route points with segment index of tiles (0 - check all roads around point)
+	public int nearestRoadsLimit = 0;
+
+	// 1.10 Keep reverse A* search in routing context to continue it when route to the same target is recalculated
+	// (only routes without intermediate points, tree is released by RoutingContext.unloadAllData),
+	// search stops on first meeting with retained tree, so route could differ from route of new calculation
+	public boolean reuseReverseSearchTree = false;
+
 
 	// extra points to be inserted in ways (quad tree is based on 31 coords)
 	private QuadTree<DirectionPoint> directionPoints;
@@ -83,6 +97,32 @@ public class RoutingConfiguration {
 		return directionPoints;
 	}
 
+	RoutingConfiguration copy(GeneralRouter router) {
+		RoutingConfiguration c = new RoutingConfiguration();
+		c.attributes = attributes;
+		c.heuristicCoefficient = heuristicCoefficient;
+		c.ZOOM_TO_LOAD_TILES = ZOOM_TO_LOAD_TILES;
+		c.memoryLimitation = memoryLimitation;
+		c.nativeMemoryLimitation = nativeMemoryLimitation;
+		c.planRoadDirection = planRoadDirection;
+		c.router = router;
+		c.routerName = routerName;
+		c.initialDirection = initialDirection;
+		c.recalculateDistance = recalculateDistance;
+		c.routeCalculationTime = routeCalculationTime;
+		c.usePrimitiveSegmentStore = usePrimitiveSegmentStore;
+		c.parallelBidirectionalSearch = parallelBidirectionalSearch;
+		c.nearestRoadsLimit = nearestRoadsLimit;
+		c.reuseReverseSearchTree = reuseReverseSearchTree;
+		c.directionPoints = directionPoints;
+		c.directionPointsRadius = directionPointsRadius;
+		c.minPointApproximation = minPointApproximation;
+		c.minStepApproximation = minStepApproximation;
+		c.maxStepApproximation = maxStepApproximation;
+		c.smoothenPointsNoRoute = smoothenPointsNoRoute;
+		return c;
+	}
+
 	public static class DirectionPoint extends Node {
 		private static final long serialVersionUID = -7496599771204656505L;
 		public double distance = Double.MAX_VALUE;
@@ -203,6 +243,10 @@ public class RoutingConfiguration {
 				i.nativeMemoryLimitation = memoryLimits.nativeMemoryLimitMb * (1l << 20);
 			}
 			i.planRoadDirection = parseSilentInt(getAttribute(i.router, "planRoadDirection"), i.planRoadDirection);
+			i.usePrimitiveSegmentStore = parseSilentBoolean(getAttribute(i.router, "usePrimitiveSegmentStore"), i.usePrimitiveSegmentStore);
+			i.parallelBidirectionalSearch = parseSilentBoolean(getAttribute(i.router, "parallelBidirectionalSearch"), i.parallelBidirectionalSearch);
+			i.nearestRoadsLimit = parseSilentInt(getAttribute(i.router, "nearestRoadsLimit"), i.nearestRoadsLimit);
+			i.reuseReverseSearchTree = parseSilentBoolean(getAttribute(i.router, "reuseReverseSearchTree"), i.reuseReverseSearchTree);
 			if (directionPointsBuilder != null) {
 				QuadRect rect = new QuadRect(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
 				List<net.osmand.osm.edit.Node> lst = directionPointsBuilder.queryInBox(rect, new ArrayList<Node>());
@@ -288,6 +332,13 @@ public class RoutingConfiguration {
 		return Float.parseFloat(t);
 	}
 
+	public static boolean parseSilentBoolean(String t, boolean v) {
+		if (t == null || t.length() == 0) {
+			return v;
+		}
+		return Boolean.parseBoolean(t);
+	}
+
 	
 	private static RoutingConfiguration.Builder DEFAULT;
 
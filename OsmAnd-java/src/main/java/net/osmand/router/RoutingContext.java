@@ -30,6 +30,7 @@ import net.osmand.binary.RouteDataObject;
 import net.osmand.data.QuadPoint;
 import net.osmand.data.QuadRect;
 import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.ReverseSearchTree;
 import net.osmand.router.BinaryRoutePlanner.RouteSegment;
 import net.osmand.router.BinaryRoutePlanner.RouteSegmentVisitor;
 import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
@@ -84,10 +85,17 @@ public class RoutingContext {
 	// Needs to be a sorted array list . Another option to use hashmap but it will be more memory expensive
 	List<RoutingSubregionTile> subregionTiles = new ArrayList<RoutingSubregionTile>();
 	
+	// shared between contexts cache of decoded tiles (optional)
+	RoutingTileCache tileCache;
+	
 	// 3. Warm object caches
 	ArrayList<RouteSegment> segmentsToVisitPrescripted = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
 	ArrayList<RouteSegment> segmentsToVisitNotForbidden = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
 	
+	// 4. Reverse search of last calculation (kept only if config.reuseReverseSearchTree is set and route has no
+	// intermediate points, legs of such route are calculated with own contexts and data is unloaded after all)
+	ReverseSearchTree reverseSearchTree;
+	
 	
 	// 5. debug information (package accessor)
 	public TileStatistics global = new TileStatistics();
@@ -106,7 +114,11 @@ public class RoutingContext {
 	
 	
 	RoutingContext(RoutingContext cp) {
-		this.config = cp.config;
+		this(cp, cp.config);
+	}
+
+	RoutingContext(RoutingContext cp, RoutingConfiguration config) {
+		this.config = config;
 		this.map.putAll(cp.map);
 		this.calculationMode = cp.calculationMode;
 		this.leftSideNavigation = cp.leftSideNavigation;
@@ -114,8 +126,16 @@ public class RoutingContext {
 		this.nativeLib = cp.nativeLib;
 		this.visitor = cp.visitor;
 		this.calculationProgress = cp.calculationProgress;
+		this.tileCache = cp.tileCache;
 	}
 	
+	/**
+	 * Context with the same maps and own loaded tiles (used by search in another thread)
+	 */
+	RoutingContext copy(RoutingConfiguration config) {
+		return new RoutingContext(this, config);
+	}
+
 	RoutingContext(RoutingConfiguration config, NativeLibrary nativeLibrary, BinaryMapIndexReader[] map, RouteCalculationMode calcMode) {
 		this.calculationMode = calcMode;
 		for (BinaryMapIndexReader mr : map) {
@@ -159,6 +179,17 @@ public class RoutingContext {
 		this.visitor = visitor;
 	}
 
+	public RoutingTileCache getTileCache() {
+		return tileCache;
+	}
+
+	/**
+	 * Attach shared tile cache, tiles loaded by context are released in {@link #unloadAllData()}
+	 */
+	public void setTileCache(RoutingTileCache tileCache) {
+		this.tileCache = tileCache;
+	}
+
 	public void setRouter(GeneralRouter router) {
 		config.router = router;
 	}
@@ -200,6 +231,30 @@ public class RoutingContext {
 		targetSegmentInd = end.getSegmentStart();
 	}
 	
+	/**
+	 * Release reverse search tree retained for recalculations (i.e. target point is changed)
+	 */
+	public void clearReverseSearchTree() {
+		reverseSearchTree = null;
+	}
+	
+	/**
+	 * Resets state of previous direct search in cached segments of loaded tiles, so direct search could be
+	 * calculated again with retained reverse search (segments of reverse search are not changed)
+	 */
+	void resetDirectSearchSegments() {
+		for (RoutingSubregionTile tl : subregionTiles) {
+			if (tl.isLoaded() && tl.routes != null) {
+				for (RouteSegment s : tl.routes.valueCollection()) {
+					while (s != null) {
+						s.resetDirectSearch();
+						s = s.nextLoaded;
+					}
+				}
+			}
+		}
+	}
+
 	public void unloadAllData() {
 		unloadAllData(null);
 	}
@@ -218,6 +273,8 @@ public class RoutingContext {
 		}
 		subregionTiles.clear();
 		indexedSubregions.clear();
+		// segments of retained search reference roads of unloaded tiles
+		reverseSearchTree = null;
 	}
 	
 	private int searchSubregionTile(RouteSubregion subregion){
@@ -290,7 +347,16 @@ public class RoutingContext {
 			try {
 				BinaryMapIndexReader reader = reverseMap.get(ts.subregion.routeReg);
 				ts.setLoadedNonNative();
-				List<RouteDataObject> res = reader.loadRouteIndexData(ts.subregion);
+				List<RouteDataObject> res;
+				synchronized (reader) {
+					if (tileCache != null && config.routeCalculationTime == 0 && points.isEmpty()) {
+						// shared objects are not modified in that case
+						res = ts.loadShared(tileCache, reader);
+					} else {
+						// most of roads could be rejected by router, so they are decoded after acceptLine
+						res = reader.loadRouteIndexData(ts.subregion, toLoad == null);
+					}
+				}
 				
 				if (toLoad != null) {
 					toLoad.addAll(res);
@@ -301,6 +367,7 @@ public class RoutingContext {
 								ro.processConditionalTags(config.routeCalculationTime);
 							}
 							if (config.router.acceptLine(ro)) {
+								ro.decodeLazyData();
 								if (excludeNotAllowed != null && !excludeNotAllowed.contains(ro.getId())) {
 									// don't attach point for route precalculation
 									if (!config.router.attributes.containsKey(GeneralRouter.CHECK_ALLOW_PRIVATE_NEEDED)) {
@@ -387,7 +454,11 @@ public class RoutingContext {
 //					long now = System.nanoTime();
 					// int rg = r.getValue().get(0).routeReg.regionsRead;
 					
-					List<RouteSubregion> subregs = r.getKey().searchRouteIndexTree(request, r.getValue());
+					List<RouteSubregion> subregs;
+					// reader could be shared with context of parallel search
+					synchronized (r.getKey()) {
+						subregs = r.getKey().searchRouteIndexTree(request, r.getValue());
+					}
 //					if (calculationProgress != null) {
 //						calculationProgress.timeToLoadHeaders += (System.nanoTime() - now);
 //					}
@@ -424,6 +495,41 @@ public class RoutingContext {
 	}
 	
 	public void loadTileData(int x31, int y31, int zoomAround, final List<RouteDataObject> toFillIn, boolean allowDuplications) {
+		TLongIterator it = getTilesAround(x31, y31, zoomAround).iterator();
+		TLongObjectHashMap<RouteDataObject> excludeDuplications = new TLongObjectHashMap<RouteDataObject>();
+		while (it.hasNext()) {
+			getAllObjects(it.next(), toFillIn, excludeDuplications);
+			if (allowDuplications) {
+				excludeDuplications.clear();
+			}
+		}
+	}
+
+	/**
+	 * Loads same tiles as {@link #loadTileData(int, int, int, List)} and finds k roads nearest to the point
+	 * using segment index of tiles (built once per loaded tile)
+	 */
+	void loadNearestRoads(int x31, int y31, int zoomAround, RouteSegmentIndex.NearestRoads nearest) {
+		TLongIterator it = getTilesAround(x31, y31, zoomAround).iterator();
+		while (it.hasNext()) {
+			List<RoutingSubregionTile> subregions = indexedSubregions.get(it.next());
+			if (subregions != null) {
+				for (RoutingSubregionTile rs : subregions) {
+					if (rs.segmentIndex == null) {
+						List<RouteDataObject> roads = new ArrayList<RouteDataObject>();
+						rs.loadAllObjects(roads, this, new TLongObjectHashMap<RouteDataObject>());
+						rs.segmentIndex = new RouteSegmentIndex(roads);
+						int sz = (int) rs.segmentIndex.getEstimatedSize();
+						rs.tileStatistics.size += sz;
+						global.size += sz;
+					}
+					rs.segmentIndex.search(nearest);
+				}
+			}
+		}
+	}
+
+	private TLongHashSet getTilesAround(int x31, int y31, int zoomAround) {
 		int t =  config.ZOOM_TO_LOAD_TILES - zoomAround;
 		int coordinatesShift = (1 << (31 - config.ZOOM_TO_LOAD_TILES));
 		if(t <= 0) {
@@ -439,14 +545,7 @@ public class RoutingContext {
 				ts.add(getRoutingTile(x31 +i*coordinatesShift, y31 + j*coordinatesShift, 0));		
 			}
 		}
-		TLongIterator it = ts.iterator();
-		TLongObjectHashMap<RouteDataObject> excludeDuplications = new TLongObjectHashMap<RouteDataObject>();
-		while (it.hasNext()) {
-			getAllObjects(it.next(), toFillIn, excludeDuplications);
-			if (allowDuplications) {
-				excludeDuplications.clear();
-			}
-		}
+		return ts;
 	}
 	
 	@SuppressWarnings("unused")
@@ -738,6 +837,9 @@ public class RoutingContext {
 		private int isLoaded = 0;
 		private TLongObjectMap<RouteSegment> routes = null;
 		private TLongHashSet excludedIds = null;
+		private RoutingTileCache sharedCache = null;
+		private RoutingTileCache.TileKey sharedKey = null;
+		private RouteSegmentIndex segmentIndex = null;
 
 		public RoutingSubregionTile(RouteSubregion subregion) {
 			this.subregion = subregion;
@@ -843,16 +945,37 @@ public class RoutingContext {
 			searchResult = null;
 			routes = null;
 			excludedIds = null;
+			segmentIndex = null;
+			releaseShared();
+		}
+
+		private List<RouteDataObject> loadShared(RoutingTileCache cache, BinaryMapIndexReader reader) throws IOException {
+			releaseShared();
+			RoutingTileCache.TileKey key = new RoutingTileCache.TileKey(reader, subregion);
+			List<RouteDataObject> res = cache.acquire(reader, subregion, key);
+			sharedCache = cache;
+			sharedKey = key;
+			return res;
+		}
+
+		private void releaseShared() {
+			if (sharedCache != null) {
+				sharedCache.release(sharedKey);
+				sharedCache = null;
+				sharedKey = null;
+			}
 		}
 		
 		public void setLoadedNonNative(){
 			isLoaded = Math.abs(isLoaded) + 1;
+			segmentIndex = null;
 			routes = new TLongObjectHashMap<BinaryRoutePlanner.RouteSegment>();
 			tileStatistics = new TileStatistics();
 		}
 		
 		public void add(RouteDataObject ro) {
 			tileStatistics.addObject(ro);
+			segmentIndex = null;
 			for (int i = 0; i < ro.pointsX.length; i++) {
 				int x31 = ro.getPoint31XTile(i);
 				int y31 = ro.getPoint31YTile(i);
@@ -872,6 +995,7 @@ public class RoutingContext {
 		
 		public void setLoadedNative(NativeRouteSearchResult r, RoutingContext ctx) {
 			isLoaded = Math.abs(isLoaded) + 1;
+			segmentIndex = null;
 			tileStatistics = new TileStatistics();
 			if (r.objects != null) {
 				searchResult = null;
@@ -0,0 +1,178 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+
+/**
+ * Process wide cache of decoded routing tiles (route objects of {@link RouteSubregion}) shared between
+ * {@link RoutingContext}s. Cached objects are read-only, so routing contexts which modify objects
+ * (conditional tags, direction points) load tiles directly.
+ * Tiles are reference counted by contexts which loaded them and unreferenced tiles are evicted (LRU)
+ * when estimated size exceeds the byte budget.
+ */
+public class RoutingTileCache {
+
+	private static final Log log = PlatformUtil.getLog(RoutingTileCache.class);
+
+	private final long maxSize;
+	private final Map<TileKey, TileEntry> tiles = new LinkedHashMap<TileKey, TileEntry>(64, 0.75f, true);
+	private long size;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public RoutingTileCache(long maxSizeBytes) {
+		this.maxSize = maxSizeBytes;
+	}
+
+	static class TileKey {
+		private final String file;
+		private final long filePointer;
+
+		TileKey(BinaryMapIndexReader reader, RouteSubregion subregion) {
+			this.file = reader.getFile().getAbsolutePath();
+			this.filePointer = subregion.filePointer;
+		}
+
+		@Override
+		public int hashCode() {
+			return file.hashCode() * 31 + (int) (filePointer ^ (filePointer >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			TileKey other = (TileKey) obj;
+			return filePointer == other.filePointer && file.equals(other.file);
+		}
+
+		@Override
+		public String toString() {
+			return file + ":" + filePointer;
+		}
+	}
+
+	private static class TileEntry {
+		final List<RouteDataObject> objects;
+		final long size;
+		int references;
+
+		TileEntry(List<RouteDataObject> objects, long size) {
+			this.objects = objects;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Returns decoded objects of subregion and increments reference of tile. Each call should be
+	 * followed by {@link #release(TileKey)} when tile is unloaded from routing context.
+	 */
+	List<RouteDataObject> acquire(BinaryMapIndexReader reader, RouteSubregion subregion, TileKey key) throws IOException {
+		synchronized (this) {
+			TileEntry e = tiles.get(key);
+			if (e != null) {
+				hits++;
+				e.references++;
+				return e.objects;
+			}
+			misses++;
+		}
+		// decode outside of lock, reader belongs to calling context
+		List<RouteDataObject> objects = Collections.unmodifiableList(reader.loadRouteIndexData(subregion));
+		long sz = 0;
+		for (RouteDataObject ro : objects) {
+			if (ro != null) {
+				sz += RoutingContext.getEstimatedSize(ro);
+			}
+		}
+		synchronized (this) {
+			TileEntry e = tiles.get(key);
+			if (e == null) {
+				e = new TileEntry(objects, sz);
+				tiles.put(key, e);
+				size += sz;
+			}
+			e.references++;
+			evict();
+			return e.objects;
+		}
+	}
+
+	synchronized void release(TileKey key) {
+		TileEntry e = tiles.get(key);
+		if (e != null && e.references > 0) {
+			e.references--;
+			if (e.references == 0) {
+				evict();
+			}
+		}
+	}
+
+	private void evict() {
+		Iterator<TileEntry> it = tiles.values().iterator();
+		while (size > maxSize && it.hasNext()) {
+			TileEntry e = it.next();
+			if (e.references == 0) {
+				it.remove();
+				size -= e.size;
+				evictions++;
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		Iterator<TileEntry> it = tiles.values().iterator();
+		while (it.hasNext()) {
+			TileEntry e = it.next();
+			if (e.references == 0) {
+				it.remove();
+				size -= e.size;
+			}
+		}
+	}
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	public synchronized long getSize() {
+		return size;
+	}
+
+	public synchronized int getTilesCount() {
+		return tiles.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized void logStatistics() {
+		log.info(String.format("Routing tile cache: %d tiles, %.1f MB, hits %d, misses %d, evictions %d",
+				tiles.size(), size / (float) (1 << 20), hits, misses, evictions));
+	}
+}
@@ -0,0 +1,688 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.commons.logging.Log;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import net.osmand.PlatformUtil;
+import net.osmand.data.LatLon;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportSchedule;
+import net.osmand.data.TransportStop;
+import net.osmand.router.TransportRoutePlanner.TransportRouteResultSegment;
+import net.osmand.router.TransportRoutePlanner.TransportRouteSegment;
+import net.osmand.util.MapUtils;
+
+/**
+ * Round based (RAPTOR like) public transport planner. Routes and stops loaded by context are flattened into
+ * primitive arrays (stop sequences of routes with cumulative travel times, routes of stops and walking transfers
+ * which are looked up once per stop), round k finds best arrivals using k vehicles by linear scans of routes
+ * touched by stops improved in previous round. Result contains journeys faster than any journey with less
+ * changes (Pareto optimal by arrival time and number of changes).
+ */
+public class TransportRaptorPlanner {
+
+	private static final Log log = PlatformUtil.getLog(TransportRaptorPlanner.class);
+	private static final double INF = Double.POSITIVE_INFINITY;
+
+	public List<TransportRouteResult> buildRoute(TransportRoutingContext ctx, LatLon start, LatLon end)
+			throws IOException, InterruptedException {
+		ctx.startCalcTime = System.currentTimeMillis();
+		double totalDistance = MapUtils.getDistance(start, end);
+		TransportNetwork network = new TransportNetwork(ctx);
+		List<TransportRouteSegment> startStops = ctx.getTransportStops(start);
+		if (startStops.size() == 0) {
+			return Collections.emptyList();
+		}
+		network.registerSegments(startStops);
+		List<TransportRouteSegment> endStops = ctx.getTransportStops(end);
+		network.registerSegments(endStops);
+
+		double finishTime = ctx.cfg.maxRouteTime;
+		ctx.finishTimeSeconds = ctx.cfg.finishTimeSeconds;
+		if (totalDistance > ctx.cfg.maxRouteDistance && ctx.cfg.maxRouteIncreaseSpeed > 0) {
+			int increaseTime = (int) ((totalDistance - ctx.cfg.maxRouteDistance)
+					* 3.6 / ctx.cfg.maxRouteIncreaseSpeed);
+			finishTime += increaseTime;
+			ctx.finishTimeSeconds += increaseTime / 6;
+		}
+		double maxTravelTimeCmpToWalk = totalDistance / ctx.cfg.walkSpeed - ctx.cfg.changeTime / 2;
+		if (ctx.calculationProgress != null) {
+			ctx.calculationProgress.distanceFromEnd = 0;
+			ctx.calculationProgress.reverseSegmentQueueSize = 0;
+			ctx.calculationProgress.directSegmentQueueSize = 0;
+			float speed = ctx.cfg.defaultTravelSpeed + 1; // assume
+			ctx.calculationProgress.totalEstimatedDistance = (float) (totalDistance / speed);
+		}
+
+		RaptorSearch search = new RaptorSearch(ctx, network, ctx.cfg.maxNumberOfChanges + 1,
+				finishTime + ctx.finishTimeSeconds);
+		for (TransportRouteSegment s : startStops) {
+			int stop = network.getStopIndex(s.getStop(s.segStart));
+			search.setStart(stop, MapUtils.getDistance(s.getLocation(), start));
+		}
+		for (TransportRouteSegment s : endStops) {
+			int stop = network.getStopIndex(s.getStop(s.segStart));
+			double distToEnd = MapUtils.getDistance(s.getLocation(), end);
+			if (distToEnd < ctx.cfg.walkRadius) {
+				search.setEnd(stop, distToEnd);
+			}
+		}
+		if (!search.search()) {
+			return null;
+		}
+		return prepareResults(ctx, search, maxTravelTimeCmpToWalk);
+	}
+
+	private List<TransportRouteResult> prepareResults(TransportRoutingContext ctx, RaptorSearch search,
+			double maxTravelTimeCmpToWalk) {
+		TransportNetwork network = search.network;
+		List<TransportRouteResult> lst = new ArrayList<TransportRouteResult>();
+		double bestTime = INF;
+		for (int k = 1; k <= search.rounds; k++) {
+			bestTime = Math.min(bestTime, search.finishTime[k]);
+		}
+		double best = INF;
+		for (int k = 1; k <= search.rounds; k++) {
+			double time = search.finishTime[k];
+			// journeys with more changes are only taken if they are faster
+			if (time >= best) {
+				continue;
+			}
+			best = time;
+			if (time > bestTime + ctx.finishTimeSeconds || (time >= maxTravelTimeCmpToWalk && time > bestTime)) {
+				continue;
+			}
+			TransportRouteResult route = new TransportRouteResult(ctx);
+			route.routeTime = time;
+			route.finishWalkDist = search.finishWalkDist[k];
+			int stop = search.finishStop[k];
+			for (int j = k; j > 0; j--) {
+				int r = search.alightRoute[j][stop];
+				int boardPos = search.alightBoardPos[j][stop];
+				int pos = search.alightPos[j][stop];
+				int boardStop = network.getRouteStop(r, boardPos);
+				TransportRouteResultSegment sg = new TransportRouteResultSegment();
+				sg.route = network.routes.get(r);
+				sg.start = boardPos;
+				sg.end = pos;
+				sg.walkDist = search.boardWalkDist[j - 1][boardStop];
+				sg.walkTime = search.boardWalkTime[j - 1][boardStop];
+				sg.depTime = search.alightDepTime[j][stop];
+				sg.travelDistApproximate = network.getRouteDist(r, pos) - network.getRouteDist(r, boardPos);
+				sg.travelTime = network.getRouteTime(r, pos) - network.getRouteTime(r, boardPos);
+				route.segments.add(0, sg);
+				stop = search.boardParent[j - 1][boardStop];
+			}
+			lst.add(route);
+		}
+		Collections.sort(lst, new Comparator<TransportRouteResult>() {
+			@Override
+			public int compare(TransportRouteResult o1, TransportRouteResult o2) {
+				return Double.compare(o1.routeTime, o2.routeTime);
+			}
+		});
+		log.info(String.format(Locale.US, "Calculated %.1f seconds, found %d results, visited %d routes / %d stops, %d stops / %d routes flattened, loaded %d tiles (%d ms read, %d ms total)",
+				(System.currentTimeMillis() - ctx.startCalcTime) / 1000.0, lst.size(),
+				ctx.visitedRoutesCount, ctx.visitedStops, network.stopsCount, network.routes.size(),
+				ctx.quadTree.size(), ctx.readTime / (1000 * 1000), ctx.loadTime / (1000 * 1000)));
+		if (log.isDebugEnabled()) {
+			for (TransportRouteResult r : lst) {
+				log.debug(r.toString());
+			}
+		}
+		return lst;
+	}
+
+	/**
+	 * Flattened routes, stops and transfers. Network grows while search reaches new stops,
+	 * transfers (and routes of transfer stops) are looked up in context once per stop.
+	 */
+	static class TransportNetwork {
+
+		final TransportRoutingContext ctx;
+
+		// stops
+		final TLongObjectHashMap<Integer> stopIndexes = new TLongObjectHashMap<Integer>();
+		final List<TransportStop> stops = new ArrayList<TransportStop>();
+		int stopsCount;
+		int[] stopX = new int[256];
+		int[] stopY = new int[256];
+		// routes passing stop: linked list of (route, position in route) entries, complete after first lookup
+		int[] stopRoutesHead = new int[256];
+		int[] stopRoutesLookup = new int[256];
+		final TIntArrayList entryRoute = new TIntArrayList();
+		final TIntArrayList entryPos = new TIntArrayList();
+		final TIntArrayList entryNext = new TIntArrayList();
+		// transfers of stop: [start, start + count) of transferStops / transferDist / transferTime,
+		// start -1 if not looked up
+		int[] transfersStart = new int[256];
+		int[] transfersCount = new int[256];
+		final TIntArrayList transferStops = new TIntArrayList();
+		double[] transferDist = new double[1024];
+		double[] transferTime = new double[1024];
+		int[] stopMark = new int[256];
+		int lookupId;
+
+		// routes
+		final TLongObjectHashMap<Integer> routeIndexes = new TLongObjectHashMap<Integer>();
+		final List<TransportRoute> routes = new ArrayList<TransportRoute>();
+		// stop sequence of route is [start, start + count) of routeStops / routeTimes / routeDists,
+		// count is 0 for routes which can't be used
+		int[] routeStopsStart = new int[64];
+		int[] routeStopsCount = new int[64];
+		final TIntArrayList routeStops = new TIntArrayList();
+		// cumulative travel time (seconds) and distance from first stop of route
+		double[] routeTimes = new double[1024];
+		double[] routeDists = new double[1024];
+		// trip start times at first stop (10 seconds based, ascending) for schedule
+		int[] routeTripsStart = new int[64];
+		int[] routeTripsCount = new int[64];
+		final TIntArrayList tripStarts = new TIntArrayList();
+
+		TransportNetwork(TransportRoutingContext ctx) {
+			this.ctx = ctx;
+		}
+
+		int getStopIndex(TransportStop stop) {
+			Integer ind = stopIndexes.get(stop.getId());
+			if (ind != null) {
+				return ind;
+			}
+			int s = stopsCount++;
+			if (s == stopX.length) {
+				int l = s * 2;
+				stopX = Arrays.copyOf(stopX, l);
+				stopY = Arrays.copyOf(stopY, l);
+				stopRoutesHead = Arrays.copyOf(stopRoutesHead, l);
+				stopRoutesLookup = Arrays.copyOf(stopRoutesLookup, l);
+				transfersStart = Arrays.copyOf(transfersStart, l);
+				transfersCount = Arrays.copyOf(transfersCount, l);
+				stopMark = Arrays.copyOf(stopMark, l);
+			}
+			stopIndexes.put(stop.getId(), s);
+			stops.add(stop);
+			stopX[s] = stop.x31;
+			stopY[s] = stop.y31;
+			stopRoutesHead[s] = -1;
+			stopRoutesLookup[s] = 0;
+			transfersStart[s] = -1;
+			transfersCount[s] = 0;
+			stopMark[s] = 0;
+			return s;
+		}
+
+		int getRouteIndex(TransportRoute route) {
+			Integer ind = routeIndexes.get(route.getId());
+			if (ind != null) {
+				return ind;
+			}
+			int r = routes.size();
+			if (r == routeStopsStart.length) {
+				int l = r * 2;
+				routeStopsStart = Arrays.copyOf(routeStopsStart, l);
+				routeStopsCount = Arrays.copyOf(routeStopsCount, l);
+				routeTripsStart = Arrays.copyOf(routeTripsStart, l);
+				routeTripsCount = Arrays.copyOf(routeTripsCount, l);
+			}
+			routeIndexes.put(route.getId(), r);
+			routes.add(route);
+			List<TransportStop> forwardStops = route.getForwardStops();
+			TransportSchedule schedule = route.getSchedule();
+			float speed = ctx.cfg.getSpeedByRouteType(route.getType());
+			boolean useSchedule = ctx.cfg.useSchedule;
+			routeStopsStart[r] = routeStops.size();
+			routeTripsStart[r] = tripStarts.size();
+			routeTripsCount[r] = 0;
+			if (speed == 0 || (useSchedule && schedule == null)) {
+				routeStopsCount[r] = 0;
+				return r;
+			}
+			int n = forwardStops.size();
+			routeStopsCount[r] = n;
+			int st = routeStops.size();
+			if (st + n > routeTimes.length) {
+				int l = Math.max(routeTimes.length * 2, st + n);
+				routeTimes = Arrays.copyOf(routeTimes, l);
+				routeDists = Arrays.copyOf(routeDists, l);
+			}
+			double time = 0;
+			double dist = 0;
+			TransportStop prevStop = null;
+			for (int i = 0; i < n; i++) {
+				TransportStop stop = forwardStops.get(i);
+				if (prevStop != null) {
+					double segmentDist = MapUtils.getDistance(prevStop.getLocation(), stop.getLocation());
+					dist += segmentDist;
+					if (useSchedule && schedule.avgStopIntervals.size() >= i) {
+						time += schedule.avgStopIntervals.get(i - 1) * 10;
+					} else {
+						time += ctx.cfg.stopTime + segmentDist / speed;
+					}
+				}
+				routeTimes[st + i] = time;
+				routeDists[st + i] = dist;
+				prevStop = stop;
+			}
+			for (int i = 0; i < n; i++) {
+				routeStops.add(getStopIndex(forwardStops.get(i)));
+			}
+			if (useSchedule) {
+				TIntArrayList ti = schedule.tripIntervals;
+				int t = 0;
+				for (int i = 0; i < ti.size(); i++) {
+					t += ti.getQuick(i);
+					tripStarts.add(t);
+				}
+				routeTripsCount[r] = ti.size();
+			}
+			return r;
+		}
+
+		/**
+		 * Registers stops and routes of segments, segments returned by one lookup contain all routes of their stops
+		 */
+		int registerSegments(List<TransportRouteSegment> segments) {
+			int lookup = ++lookupId;
+			for (TransportRouteSegment s : segments) {
+				int r = getRouteIndex(s.road);
+				int stop = getStopIndex(s.getStop(s.segStart));
+				if (stopRoutesLookup[stop] == 0) {
+					stopRoutesLookup[stop] = lookup;
+				}
+				if (stopRoutesLookup[stop] == lookup) {
+					entryRoute.add(r);
+					entryPos.add(s.segStart);
+					entryNext.add(stopRoutesHead[stop]);
+					stopRoutesHead[stop] = entryRoute.size() - 1;
+				}
+			}
+			return lookup;
+		}
+
+		void loadTransfers(int stop) throws IOException, InterruptedException {
+			if (transfersStart[stop] != -1) {
+				return;
+			}
+			if (ctx.transferGraph != null) {
+				loadGraphTransfers(stop);
+				return;
+			}
+			List<TransportRouteSegment> sgms = ctx.getTransportStops(stopX[stop], stopY[stop], true,
+					new ArrayList<TransportRouteSegment>());
+			int lookup = registerSegments(sgms);
+			LatLon location = stops.get(stop).getLocation();
+			int start = transferStops.size();
+			for (TransportRouteSegment s : sgms) {
+				int t = getStopIndex(s.getStop(s.segStart));
+				if (stopMark[t] != lookup) {
+					stopMark[t] = lookup;
+					double dist = t == stop ? 0 : MapUtils.getDistance(location, s.getLocation());
+					// stops are looked up in square, so stops in corners are further than radius
+					if (dist <= ctx.cfg.walkChangeRadius) {
+						addTransfer(t, dist, dist / ctx.cfg.walkSpeed);
+					}
+				}
+			}
+			transfersStart[stop] = start;
+			transfersCount[stop] = transferStops.size() - start;
+		}
+
+		private void loadGraphTransfers(int stop) throws IOException, InterruptedException {
+			TransportTransferGraph.StopTransfers transfers = ctx.transferGraph.getTransfers(ctx, stops.get(stop));
+			int lookup = ++lookupId;
+			int start = transferStops.size();
+			for (int i = 0; i < transfers.size(); i++) {
+				List<TransportRouteSegment> sgms = ctx.getTransportStopSegments(transfers.getStopId(i),
+						transfers.getX31(i), transfers.getY31(i));
+				if (sgms.isEmpty()) {
+					continue;
+				}
+				registerSegments(sgms);
+				int t = getStopIndex(sgms.get(0).getStop(sgms.get(0).segStart));
+				if (stopMark[t] != lookup) {
+					stopMark[t] = lookup;
+					addTransfer(t, transfers.getWalkDist(i), transfers.getWalkTime(i));
+				}
+			}
+			transfersStart[stop] = start;
+			transfersCount[stop] = transferStops.size() - start;
+		}
+
+		private void addTransfer(int stop, double dist, double time) {
+			int ind = transferStops.size();
+			if (ind == transferDist.length) {
+				transferDist = Arrays.copyOf(transferDist, ind * 2);
+				transferTime = Arrays.copyOf(transferTime, ind * 2);
+			}
+			transferStops.add(stop);
+			transferDist[ind] = dist;
+			transferTime[ind] = time;
+		}
+
+		int getRouteStop(int route, int pos) {
+			return routeStops.getQuick(routeStopsStart[route] + pos);
+		}
+
+		double getRouteTime(int route, int pos) {
+			return routeTimes[routeStopsStart[route] + pos];
+		}
+
+		double getRouteDist(int route, int pos) {
+			return routeDists[routeStopsStart[route] + pos];
+		}
+	}
+
+	/**
+	 * Labels of rounds: boardTime[k] - time to be ready to board at stop after k vehicles,
+	 * alightTime[k] - arrival to stop by k-th vehicle. Times are seconds from start.
+	 */
+	static class RaptorSearch {
+
+		final TransportRoutingContext ctx;
+		final TransportNetwork network;
+		final int rounds;
+		final double limit;
+		int capacity;
+
+		double[][] boardTime;
+		int[][] boardParent;
+		double[][] boardWalkDist;
+		double[][] boardWalkTime;
+		double[][] alightTime;
+		int[][] alightRoute;
+		int[][] alightBoardPos;
+		int[][] alightPos;
+		int[][] alightDepTime;
+		double[] bestArrival;
+		double[] endWalkDist;
+		// round of last mark to avoid duplicates in marked lists
+		int[] alightMark;
+		int[] boardMark;
+
+		final double[] finishTime;
+		final double[] finishWalkDist;
+		final int[] finishStop;
+		double bestFinishTime = INF;
+
+		TIntArrayList marked = new TIntArrayList();
+		TIntArrayList improved = new TIntArrayList();
+		final TIntArrayList queuedRoutes = new TIntArrayList();
+		int[] routeQueuePos = new int[0];
+
+		RaptorSearch(TransportRoutingContext ctx, TransportNetwork network, int rounds, double limit) {
+			this.ctx = ctx;
+			this.network = network;
+			this.rounds = rounds;
+			this.limit = limit;
+			boardTime = new double[rounds + 1][0];
+			boardParent = new int[rounds + 1][0];
+			boardWalkDist = new double[rounds + 1][0];
+			boardWalkTime = new double[rounds + 1][0];
+			alightTime = new double[rounds + 1][0];
+			alightRoute = new int[rounds + 1][0];
+			alightBoardPos = new int[rounds + 1][0];
+			alightPos = new int[rounds + 1][0];
+			alightDepTime = new int[rounds + 1][0];
+			finishTime = new double[rounds + 1];
+			finishWalkDist = new double[rounds + 1];
+			finishStop = new int[rounds + 1];
+			Arrays.fill(finishTime, INF);
+			ensureCapacity();
+		}
+
+		void ensureCapacity() {
+			int n = network.stopsCount;
+			if (n <= capacity) {
+				return;
+			}
+			int l = Math.max(n, capacity * 2);
+			for (int k = 0; k <= rounds; k++) {
+				boardTime[k] = grow(boardTime[k], l);
+				boardParent[k] = Arrays.copyOf(boardParent[k], l);
+				boardWalkDist[k] = Arrays.copyOf(boardWalkDist[k], l);
+				boardWalkTime[k] = Arrays.copyOf(boardWalkTime[k], l);
+				alightTime[k] = grow(alightTime[k], l);
+				alightRoute[k] = Arrays.copyOf(alightRoute[k], l);
+				alightBoardPos[k] = Arrays.copyOf(alightBoardPos[k], l);
+				alightPos[k] = Arrays.copyOf(alightPos[k], l);
+				alightDepTime[k] = Arrays.copyOf(alightDepTime[k], l);
+			}
+			bestArrival = grow(bestArrival, l);
+			endWalkDist = grow(endWalkDist, l);
+			alightMark = grow(alightMark, l);
+			boardMark = grow(boardMark, l);
+			capacity = l;
+		}
+
+		private double[] grow(double[] a, int l) {
+			int p = a == null ? 0 : a.length;
+			double[] n = a == null ? new double[l] : Arrays.copyOf(a, l);
+			Arrays.fill(n, p, l, INF);
+			return n;
+		}
+
+		private int[] grow(int[] a, int l) {
+			int p = a == null ? 0 : a.length;
+			int[] n = a == null ? new int[l] : Arrays.copyOf(a, l);
+			Arrays.fill(n, p, l, -1);
+			return n;
+		}
+
+		void setStart(int stop, double walkDist) {
+			ensureCapacity();
+			double time = walkDist / ctx.cfg.walkSpeed;
+			if (time < boardTime[0][stop]) {
+				boardTime[0][stop] = time;
+				boardParent[0][stop] = -1;
+				boardWalkDist[0][stop] = walkDist;
+				boardWalkTime[0][stop] = time;
+				if (boardMark[stop] != 0) {
+					boardMark[stop] = 0;
+					marked.add(stop);
+				}
+			}
+		}
+
+		void setEnd(int stop, double walkDist) {
+			ensureCapacity();
+			endWalkDist[stop] = Math.min(endWalkDist[stop], walkDist);
+		}
+
+		boolean search() throws IOException, InterruptedException {
+			for (int k = 1; k <= rounds && !marked.isEmpty(); k++) {
+				if (isCancelled()) {
+					return false;
+				}
+				queueRoutes();
+				improved.clear();
+				for (int i = 0; i < queuedRoutes.size(); i++) {
+					int r = queuedRoutes.getQuick(i);
+					scanRoute(k, r, routeQueuePos[r]);
+					routeQueuePos[r] = -1;
+				}
+				if (isCancelled()) {
+					return false;
+				}
+				TIntArrayList t = marked;
+				marked = improved;
+				improved = t;
+				improved.clear();
+				for (int i = 0; i < marked.size(); i++) {
+					int s = marked.getQuick(i);
+					double walk = endWalkDist[s];
+					if (walk != INF) {
+						double time = alightTime[k][s] + walk / ctx.cfg.walkSpeed;
+						if (time < finishTime[k]) {
+							finishTime[k] = time;
+							finishWalkDist[k] = walk;
+							finishStop[k] = s;
+						}
+					}
+				}
+				bestFinishTime = Math.min(bestFinishTime, finishTime[k]);
+				if (k < rounds) {
+					transfer(k);
+				} else {
+					marked.clear();
+				}
+				if (ctx.calculationProgress != null) {
+					ctx.calculationProgress.directSegmentQueueSize = marked.size();
+				}
+			}
+			return true;
+		}
+
+		private boolean isCancelled() {
+			return ctx.calculationProgress != null && ctx.calculationProgress.isCancelled;
+		}
+
+		// routes passing marked stops with first marked position
+		private void queueRoutes() {
+			if (routeQueuePos.length < network.routes.size()) {
+				int p = routeQueuePos.length;
+				routeQueuePos = Arrays.copyOf(routeQueuePos, Math.max(network.routes.size(), p * 2));
+				Arrays.fill(routeQueuePos, p, routeQueuePos.length, -1);
+			}
+			queuedRoutes.clear();
+			for (int i = 0; i < marked.size(); i++) {
+				int s = marked.getQuick(i);
+				for (int e = network.stopRoutesHead[s]; e != -1; e = network.entryNext.getQuick(e)) {
+					int r = network.entryRoute.getQuick(e);
+					int pos = network.entryPos.getQuick(e);
+					if (network.routeStopsCount[r] == 0) {
+						continue;
+					}
+					if (routeQueuePos[r] == -1) {
+						routeQueuePos[r] = pos;
+						queuedRoutes.add(r);
+					} else if (pos < routeQueuePos[r]) {
+						routeQueuePos[r] = pos;
+					}
+				}
+			}
+		}
+
+		private void scanRoute(int k, int r, int startPos) {
+			ctx.visitedRoutesCount++;
+			TransportNetwork n = network;
+			int off = n.routeStopsStart[r];
+			int cnt = n.routeStopsCount[r];
+			double[] times = n.routeTimes;
+			double[] prevBoard = boardTime[k - 1];
+			double[] alight = alightTime[k];
+			boolean schedule = ctx.cfg.useSchedule;
+			int boardPos = -1;
+			// departure from boarding stop
+			double depTime = INF;
+			int tripStart = -1;
+			double bound = Math.min(limit, bestFinishTime);
+			for (int p = startPos; p < cnt; p++) {
+				int s = n.routeStops.getQuick(off + p);
+				ctx.visitedStops++;
+				if (boardPos != -1) {
+					double arrival = depTime + times[off + p] - times[off + boardPos];
+					if (arrival < bestArrival[s] && arrival < bound) {
+						alight[s] = arrival;
+						bestArrival[s] = arrival;
+						alightRoute[k][s] = r;
+						alightBoardPos[k][s] = boardPos;
+						alightPos[k][s] = p;
+						alightDepTime[k][s] = tripStart == -1 ? -1 : tripStart + (int) (times[off + boardPos] / 10);
+						if (alightMark[s] != k) {
+							alightMark[s] = k;
+							improved.add(s);
+						}
+					}
+				}
+				double ready = prevBoard[s];
+				if (ready == INF) {
+					continue;
+				}
+				if (!schedule) {
+					if (boardPos == -1 || ready < depTime + times[off + p] - times[off + boardPos]) {
+						boardPos = p;
+						depTime = ready;
+					}
+				} else {
+					int trip = findTrip(r, times[off + p], ready);
+					if (trip != -1) {
+						double dep = (trip - ctx.cfg.scheduleTimeOfDay) * 10 + times[off + p];
+						if (boardPos == -1 || dep < depTime + times[off + p] - times[off + boardPos]) {
+							boardPos = p;
+							depTime = dep;
+							tripStart = trip;
+						}
+					}
+				}
+			}
+		}
+
+		// earliest trip start (10 seconds based) departing from stop after ready time
+		private int findTrip(int r, double stopTime, double ready) {
+			int st = network.routeTripsStart[r];
+			int cnt = network.routeTripsCount[r];
+			for (int i = 0; i < cnt; i++) {
+				int trip = network.tripStarts.getQuick(st + i);
+				double dep = (trip - ctx.cfg.scheduleTimeOfDay) * 10 + stopTime;
+				if (dep > ctx.cfg.scheduleMaxTime * 10) {
+					break;
+				}
+				if (dep >= ready && dep >= 0) {
+					return trip;
+				}
+			}
+			return -1;
+		}
+
+		private void transfer(int k) throws IOException, InterruptedException {
+			double changeTime = ctx.cfg.getChangeTime() + ctx.cfg.getBoardingTime();
+			double bound = Math.min(limit, bestFinishTime);
+			for (int i = 0; i < marked.size(); i++) {
+				int s = marked.getQuick(i);
+				network.loadTransfers(s);
+				// transfers could register new stops
+				ensureCapacity();
+				double[] board = boardTime[k];
+				double arrival = alightTime[k][s];
+				int st = network.transfersStart[s];
+				int cnt = network.transfersCount[s];
+				for (int j = st; j < st + cnt; j++) {
+					int t = network.transferStops.getQuick(j);
+					double walkTime = network.transferTime[j];
+					double time = arrival + walkTime + changeTime;
+					if (time < board[t] && time < bound) {
+						board[t] = time;
+						boardParent[k][t] = s;
+						boardWalkDist[k][t] = network.transferDist[j];
+						boardWalkTime[k][t] = walkTime;
+						if (boardMark[t] != k) {
+							boardMark[t] = k;
+							improved.add(t);
+						}
+					}
+				}
+				if (isCancelled()) {
+					return;
+				}
+			}
+			TIntArrayList t = marked;
+			marked = improved;
+			improved = t;
+			improved.clear();
+			if (ctx.calculationProgress != null) {
+				ctx.calculationProgress.distanceFromBegin = (float) Math.max(ctx.calculationProgress.distanceFromBegin,
+						bestFinishTime == INF ? 0 : bestFinishTime);
+			}
+		}
+	}
+}
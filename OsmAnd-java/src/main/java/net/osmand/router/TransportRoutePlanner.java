@@ -31,6 +31,9 @@ public class TransportRoutePlanner {
 	public static final long STOPS_WAY_ID = -2;
 
 	public List<TransportRouteResult> buildRoute(TransportRoutingContext ctx, LatLon start, LatLon end) throws IOException, InterruptedException {
+		if (ctx.cfg.useRaptor) {
+			return new TransportRaptorPlanner().buildRoute(ctx, start, end);
+		}
 		ctx.startCalcTime = System.currentTimeMillis();
 		double totalDistance = MapUtils.getDistance(start, end);
 		List<TransportRouteSegment> startStops = ctx.getTransportStops(start);
@@ -46,7 +49,8 @@ public class TransportRoutePlanner {
 		PriorityQueue<TransportRouteSegment> queue = new PriorityQueue<TransportRouteSegment>(startStops.size(), new SegmentsComparator(ctx));
 		for(TransportRouteSegment r : startStops){
 			r.walkDist = (float) MapUtils.getDistance(r.getLocation(), start);
-			r.distFromStart = r.walkDist / ctx.cfg.walkSpeed;
+			r.walkTime = r.walkDist / ctx.cfg.walkSpeed;
+			r.distFromStart = r.walkTime;
 			queue.add(r);
 		}
 		
@@ -116,7 +120,11 @@ public class TransportRoutePlanner {
 					break;
 				}
 				sgms.clear();
-				sgms = ctx.getTransportStops(stop.x31, stop.y31, true, sgms);
+				if (ctx.transferGraph != null) {
+					sgms = ctx.getTransferSegments(stop, sgms);
+				} else {
+					sgms = ctx.getTransportStops(stop.x31, stop.y31, true, sgms);
+				}
 				ctx.visitedStops++;
 				for (TransportRouteSegment sgm : sgms) {
 					if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
@@ -128,11 +136,16 @@ public class TransportRoutePlanner {
 					TransportRouteSegment nextSegment = new TransportRouteSegment(sgm);
 					nextSegment.parentRoute = segment;
 					nextSegment.parentStop = ind;
-					nextSegment.walkDist = MapUtils.getDistance(nextSegment.getLocation(), stop.getLocation());
+					if (ctx.transferGraph != null) {
+						nextSegment.walkDist = sgm.walkDist;
+						nextSegment.walkTime = sgm.walkTime;
+					} else {
+						nextSegment.walkDist = MapUtils.getDistance(nextSegment.getLocation(), stop.getLocation());
+						nextSegment.walkTime = nextSegment.walkDist / ctx.cfg.walkSpeed;
+					}
 					nextSegment.parentTravelTime = travelTime;
 					nextSegment.parentTravelDist = travelDist;
-					double walkTime = nextSegment.walkDist / ctx.cfg.walkSpeed
-							+ ctx.cfg.getChangeTime() + ctx.cfg.getBoardingTime();
+					double walkTime = nextSegment.walkTime + ctx.cfg.getChangeTime() + ctx.cfg.getBoardingTime();
 					nextSegment.distFromStart = segment.distFromStart + travelTime + walkTime;
 					if(ctx.cfg.useSchedule) {
 						int tm = (sgm.departureTime - ctx.cfg.scheduleTimeOfDay) * 10;
@@ -236,7 +249,7 @@ public class TransportRoutePlanner {
 					sg.start = p.parentRoute.segStart;
 					sg.end = p.parentStop;
 					sg.walkDist = p.parentRoute.walkDist;
-					sg.walkTime = sg.walkDist / ctx.cfg.walkSpeed;
+					sg.walkTime = p.parentRoute.walkTime;
 					sg.depTime = p.departureTime;
 					sg.travelDistApproximate = p.parentTravelDist;
 					sg.travelTime = p.parentTravelTime;
@@ -493,6 +506,7 @@ public class TransportRoutePlanner {
 		double parentTravelDist; // travel distance for parent route (inaccurate) 
 		// walk distance to start route location (or finish in case last segment)
 		double walkDist = 0;
+		double walkTime = 0;
 		// main field accumulated all time spent from beginning of journey
 		double distFromStart = 0;
 		
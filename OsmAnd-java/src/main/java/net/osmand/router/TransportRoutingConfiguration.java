@@ -24,6 +24,8 @@ public class TransportRoutingConfiguration {
 	public int maxRouteDistance = 0; // distance for maxRouteTime
 	public int maxRouteIncreaseSpeed = 30; // speed to increase route time
 
+	// round based search over flattened routes (TransportRaptorPlanner) instead of segments dijkstra
+	public boolean useRaptor = false;
 
 
 	public GeneralRouter router;
@@ -92,6 +94,10 @@ public class TransportRoutingConfiguration {
 			finishTimeSeconds =  router.getIntAttribute("delayForAlternativesRoutes", finishTimeSeconds);
 			String mn = params.get("max_num_changes");
 			maxNumberOfChanges = (int) RoutingConfiguration.parseSilentFloat(mn, maxNumberOfChanges);
+			useRaptor = Boolean.parseBoolean(router.getAttribute("useRaptor"));
+			if (params.containsKey("use_raptor")) {
+				useRaptor = Boolean.parseBoolean(params.get("use_raptor"));
+			}
 			
 			walkSpeed = router.getFloatAttribute("minDefaultSpeed", this.walkSpeed * 3.6f) / 3.6f;
 			defaultTravelSpeed = router.getFloatAttribute("maxDefaultSpeed", this.defaultTravelSpeed * 3.6f) / 3.6f;
@@ -12,6 +12,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -30,6 +31,10 @@ public class TransportRoutingContext {
 	public Map<TransportStop, List<TransportRoute>> missingStopsCache = new HashMap<TransportStop, List<TransportRoute>>();
 
 	public TLongObjectHashMap<List<TransportRouteSegment>> quadTree;
+	// segments of loaded tiles by id of route stop
+	public TLongObjectHashMap<List<TransportRouteSegment>> stopSegments = new TLongObjectHashMap<List<TransportRouteSegment>>();
+	// walking transfers shared between contexts (could be null)
+	public TransportTransferGraph transferGraph;
 	// Here we don't limit files by bbox, so it could be an issue while searching for multiple unused files
 	// Incomplete routes usually don't need more files than around Max-BBOX of start/end,
 	// so here an improvement could be introduced
@@ -64,27 +69,82 @@ public class TransportRoutingContext {
 	}
 
 	public List<TransportRouteSegment> getTransportStops(int x, int y, boolean change, List<TransportRouteSegment> res) throws IOException {
-		return loadNativeTransportStops(x, y, change, res);
+		return loadNativeTransportStops(x, y, change ? walkChangeRadiusIn31 : walkRadiusIn31, walkRadiusIn31, res);
 	}
 
-	private List<TransportRouteSegment> loadNativeTransportStops(int sx, int sy, boolean change, List<TransportRouteSegment> res) throws IOException {
+	/**
+	 * Segments of stops in square around x, y with given radius in meters (not bounded by walk radius of config)
+	 */
+	public List<TransportRouteSegment> getTransportStops(int x, int y, double radius, List<TransportRouteSegment> res) throws IOException {
+		// 31 tile width at latitude of location (mercator scale is the same by x and y)
+		int tile = 1 << 16;
+		int radiusIn31 = (int) Math.ceil(radius * tile / MapUtils.measuredDist31(x, y, x + tile, y));
+		return loadNativeTransportStops(x, y, radiusIn31, radiusIn31, res);
+	}
+
+	/**
+	 * Segments of routes passing stop (stop id of route stops), tile of stop location is loaded if needed
+	 */
+	public List<TransportRouteSegment> getTransportStopSegments(long stopId, int x31, int y31) throws IOException {
+		getTileSegments(x31 >> (31 - cfg.ZOOM_TO_LOAD_TILES), y31 >> (31 - cfg.ZOOM_TO_LOAD_TILES));
+		List<TransportRouteSegment> lst = stopSegments.get(stopId);
+		return lst == null ? Collections.<TransportRouteSegment>emptyList() : lst;
+	}
+
+	/**
+	 * Segments of routes passing stops of tile with ZOOM_TO_LOAD_TILES zoom
+	 */
+	public List<TransportRouteSegment> getTileSegments(int x, int y) throws IOException {
+		long tileId = (((long)x) << (cfg.ZOOM_TO_LOAD_TILES + 1)) + y;
+		List<TransportRouteSegment> list = quadTree.get(tileId);
+		if (list == null) {
+			list = loadTile(x, y);
+			quadTree.put(tileId, list);
+			for (TransportRouteSegment r : list) {
+				long stopId = r.getStop(r.segStart).getId();
+				List<TransportRouteSegment> sl = stopSegments.get(stopId);
+				if (sl == null) {
+					sl = new ArrayList<TransportRouteSegment>(2);
+					stopSegments.put(stopId, sl);
+				}
+				sl.add(r);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Segments reachable by walking from stop by transfer graph (walk distance and time are set),
+	 * returned segments are new objects
+	 */
+	public List<TransportRouteSegment> getTransferSegments(TransportStop stop, List<TransportRouteSegment> res)
+			throws IOException, InterruptedException {
+		TransportTransferGraph.StopTransfers transfers = transferGraph.getTransfers(this, stop);
+		for (int i = 0; i < transfers.size(); i++) {
+			for (TransportRouteSegment r : getTransportStopSegments(transfers.getStopId(i), transfers.getX31(i),
+					transfers.getY31(i))) {
+				TransportRouteSegment s = new TransportRouteSegment(r);
+				s.walkDist = transfers.getWalkDist(i);
+				s.walkTime = transfers.getWalkTime(i);
+				res.add(s);
+			}
+		}
+		return res;
+	}
+
+	private List<TransportRouteSegment> loadNativeTransportStops(int sx, int sy, int d, int maxDistIn31,
+			List<TransportRouteSegment> res) throws IOException {
 		long nanoTime = System.nanoTime();
-		int d = change ? walkChangeRadiusIn31 : walkRadiusIn31;
 		int lx = (sx - d ) >> (31 - cfg.ZOOM_TO_LOAD_TILES);
 		int rx = (sx + d ) >> (31 - cfg.ZOOM_TO_LOAD_TILES);
 		int ty = (sy - d ) >> (31 - cfg.ZOOM_TO_LOAD_TILES);
 		int by = (sy + d ) >> (31 - cfg.ZOOM_TO_LOAD_TILES);
 		for(int x = lx; x <= rx; x++) {
 			for(int y = ty; y <= by; y++) {
-				long tileId = (((long)x) << (cfg.ZOOM_TO_LOAD_TILES + 1)) + y;
-				List<TransportRouteSegment> list = quadTree.get(tileId);
-				if(list == null) {
-					list = loadTile(x, y);
-					quadTree.put(tileId, list);
-				}
+				List<TransportRouteSegment> list = getTileSegments(x, y);
 				for(TransportRouteSegment r : list) {
 					TransportStop st = r.getStop(r.segStart);
-					if (Math.abs(st.x31 - sx) > walkRadiusIn31 || Math.abs(st.y31 - sy) > walkRadiusIn31) {
+					if (Math.abs(st.x31 - sx) > maxDistIn31 || Math.abs(st.y31 - sy) > maxDistIn31) {
 						wrongLoadedWays++;
 					} else {
 						loadedWays++;
@@ -98,7 +158,7 @@ public class TransportRoutingContext {
 	}
 
 
-	private List<TransportRouteSegment> loadTile(int x, int y) throws IOException {
+	protected List<TransportRouteSegment> loadTile(int x, int y) throws IOException {
 		long nanoTime = System.nanoTime();
 		List<TransportRouteSegment> lst = new ArrayList<TransportRouteSegment>();
 		int pz = (31 - cfg.ZOOM_TO_LOAD_TILES);
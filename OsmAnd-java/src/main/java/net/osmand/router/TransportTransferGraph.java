@@ -0,0 +1,283 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import net.osmand.PlatformUtil;
+import net.osmand.data.LatLon;
+import net.osmand.data.TransportStop;
+import net.osmand.router.TransportRoutePlanner.TransportRouteSegment;
+import net.osmand.util.MapUtils;
+
+/**
+ * Walking transfers between transport stops: for each stop nearby stops within radius of graph (not walk radius of
+ * transport config) with walking distance and time. Times are calculated by route matrix of walking context
+ * ({@link RouteMatrixSearch}: node based Dijkstra without turn restrictions, not the walking route of
+ * {@link RoutePlannerFrontEnd#searchRoute}) or by straight line if walking contexts are not set or stop is not
+ * reachable by roads. Transfers are built for all stops of tile at once
+ * and kept in LRU cache of tiles, so graph is shared by transport routing contexts of same map files
+ * (not thread safe contexts could use graph from different threads). Tiles are built without lock, every build
+ * takes own walking context from pool and unloads its road tiles after matrix search.
+ */
+public class TransportTransferGraph {
+
+	private static final Log log = PlatformUtil.getLog(TransportTransferGraph.class);
+
+	public static final int DEFAULT_MAX_TILES = 2000;
+	// walking route could be longer than straight line
+	private static final float MAX_DETOUR = 2;
+
+	private final int radius;
+	private final float walkSpeed;
+	private final WalkingContextFactory walkingContextFactory;
+	private final List<RoutingContext> idleWalkingContexts = new ArrayList<RoutingContext>();
+	private final Map<Long, TLongObjectHashMap<StopTransfers>> tiles;
+	private final RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+
+	public static class StopTransfers {
+		private final long stopId;
+		private final long[] stopIds;
+		private final int[] x31;
+		private final int[] y31;
+		private final float[] walkDist;
+		private final float[] walkTime;
+
+		StopTransfers(long stopId, int size) {
+			this.stopId = stopId;
+			stopIds = new long[size];
+			x31 = new int[size];
+			y31 = new int[size];
+			walkDist = new float[size];
+			walkTime = new float[size];
+		}
+
+		public long getStopId() {
+			return stopId;
+		}
+
+		public int size() {
+			return stopIds.length;
+		}
+
+		public long getStopId(int i) {
+			return stopIds[i];
+		}
+
+		public int getX31(int i) {
+			return x31[i];
+		}
+
+		public int getY31(int i) {
+			return y31[i];
+		}
+
+		public float getWalkDist(int i) {
+			return walkDist[i];
+		}
+
+		public float getWalkTime(int i) {
+			return walkTime[i];
+		}
+	}
+
+	public interface WalkingContextFactory {
+
+		/**
+		 * @return context with pedestrian router and own readers of map files, context is used only by one thread
+		 */
+		RoutingContext createWalkingContext() throws IOException;
+	}
+
+	/**
+	 * @param walkingContextFactory factory of contexts with pedestrian router (could be null)
+	 */
+	public TransportTransferGraph(int radius, float walkSpeed, WalkingContextFactory walkingContextFactory) {
+		this(radius, walkSpeed, walkingContextFactory, DEFAULT_MAX_TILES);
+	}
+
+	public TransportTransferGraph(int radius, float walkSpeed, WalkingContextFactory walkingContextFactory,
+			final int maxTiles) {
+		this.radius = radius;
+		this.walkSpeed = walkSpeed;
+		this.walkingContextFactory = walkingContextFactory;
+		this.tiles = new LinkedHashMap<Long, TLongObjectHashMap<StopTransfers>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, TLongObjectHashMap<StopTransfers>> eldest) {
+				return size() > maxTiles;
+			}
+		};
+	}
+
+	public int getRadius() {
+		return radius;
+	}
+
+	/**
+	 * Transfers of stop (stop itself is included with 0 walking distance), stops of routes of context are used
+	 * @throws InterruptedException if walking context is cancelled, then tile is not built
+	 */
+	public StopTransfers getTransfers(TransportRoutingContext ctx, TransportStop stop)
+			throws IOException, InterruptedException {
+		int z = ctx.cfg.ZOOM_TO_LOAD_TILES;
+		int tx = stop.x31 >> (31 - z);
+		int ty = stop.y31 >> (31 - z);
+		long tileId = (((long) z) << 60) + (((long) tx) << 30) + ty;
+		TLongObjectHashMap<StopTransfers> tile;
+		synchronized (this) {
+			tile = tiles.get(tileId);
+			if (tile != null && tile.containsKey(stop.getId())) {
+				return tile.get(stop.getId());
+			}
+		}
+		// tile could be built by several threads at once, then transfers of last one are kept
+		if (tile == null) {
+			List<TransportStop> stops = new ArrayList<TransportStop>();
+			TLongObjectHashMap<TransportStop> tileStops = new TLongObjectHashMap<TransportStop>();
+			for (TransportRouteSegment s : ctx.getTileSegments(tx, ty)) {
+				TransportStop st = s.getStop(s.segStart);
+				if (!tileStops.containsKey(st.getId()) && (st.x31 >> (31 - z)) == tx && (st.y31 >> (31 - z)) == ty) {
+					tileStops.put(st.getId(), st);
+					stops.add(st);
+				}
+			}
+			tile = new TLongObjectHashMap<StopTransfers>();
+			buildTransfers(ctx, stops, tile);
+			synchronized (this) {
+				tiles.put(tileId, tile);
+				if (tile.containsKey(stop.getId())) {
+					return tile.get(stop.getId());
+				}
+			}
+		}
+		// stop of route which is not indexed in tile (e.g. matched with another stop)
+		List<TransportStop> stops = new ArrayList<TransportStop>(1);
+		stops.add(stop);
+		TLongObjectHashMap<StopTransfers> stopTile = new TLongObjectHashMap<StopTransfers>();
+		buildTransfers(ctx, stops, stopTile);
+		StopTransfers transfers = stopTile.get(stop.getId());
+		synchronized (this) {
+			tile.put(stop.getId(), transfers);
+		}
+		return transfers;
+	}
+
+	public synchronized int getTilesCount() {
+		return tiles.size();
+	}
+
+	public synchronized void clear() {
+		tiles.clear();
+		synchronized (idleWalkingContexts) {
+			idleWalkingContexts.clear();
+		}
+	}
+
+	private RoutingContext takeWalkingContext() throws IOException {
+		synchronized (idleWalkingContexts) {
+			if (!idleWalkingContexts.isEmpty()) {
+				return idleWalkingContexts.remove(idleWalkingContexts.size() - 1);
+			}
+		}
+		return walkingContextFactory.createWalkingContext();
+	}
+
+	private void releaseWalkingContext(RoutingContext walkingContext) {
+		// road tiles are not kept between builds, so memory of idle context is small
+		walkingContext.unloadAllData();
+		if (walkingContext.calculationProgress != null && walkingContext.calculationProgress.isCancelled) {
+			// next matrix search would be interrupted
+			return;
+		}
+		synchronized (idleWalkingContexts) {
+			idleWalkingContexts.add(walkingContext);
+		}
+	}
+
+	private void buildTransfers(TransportRoutingContext ctx, List<TransportStop> sources,
+			TLongObjectHashMap<StopTransfers> tile) throws IOException, InterruptedException {
+		long nanoTime = System.nanoTime();
+		// targets of all sources, so walking times are calculated by one matrix
+		List<TransportStop> targets = new ArrayList<TransportStop>();
+		TLongObjectHashMap<Integer> targetIndexes = new TLongObjectHashMap<Integer>();
+		List<List<TransportStop>> sourceTargets = new ArrayList<List<TransportStop>>();
+		List<TransportRouteSegment> sgms = new ArrayList<TransportRouteSegment>();
+		for (TransportStop source : sources) {
+			sgms.clear();
+			ctx.getTransportStops(source.x31, source.y31, (double) radius, sgms);
+			TLongObjectHashMap<TransportStop> nearby = new TLongObjectHashMap<TransportStop>();
+			nearby.put(source.getId(), source);
+			for (TransportRouteSegment s : sgms) {
+				TransportStop st = s.getStop(s.segStart);
+				if (!nearby.containsKey(st.getId())
+						&& MapUtils.getDistance(source.getLocation(), st.getLocation()) <= radius) {
+					nearby.put(st.getId(), st);
+				}
+			}
+			List<TransportStop> lst = new ArrayList<TransportStop>(nearby.valueCollection());
+			for (TransportStop st : lst) {
+				if (!targetIndexes.containsKey(st.getId())) {
+					targetIndexes.put(st.getId(), targets.size());
+					targets.add(st);
+				}
+			}
+			sourceTargets.add(lst);
+		}
+		RouteMatrix matrix = null;
+		if (walkingContextFactory != null && !sources.isEmpty()) {
+			List<LatLon> sourcePoints = new ArrayList<LatLon>(sources.size());
+			for (TransportStop s : sources) {
+				sourcePoints.add(s.getLocation());
+			}
+			List<LatLon> targetPoints = new ArrayList<LatLon>(targets.size());
+			for (TransportStop s : targets) {
+				targetPoints.add(s.getLocation());
+			}
+			RoutingContext walkingContext = takeWalkingContext();
+			try {
+				matrix = frontEnd.searchRouteMatrix(walkingContext, sourcePoints, targetPoints,
+						MAX_DETOUR * radius / walkSpeed);
+			} finally {
+				releaseWalkingContext(walkingContext);
+			}
+		}
+		for (int i = 0; i < sources.size(); i++) {
+			TransportStop source = sources.get(i);
+			List<TransportStop> lst = sourceTargets.get(i);
+			StopTransfers transfers = new StopTransfers(source.getId(), lst.size());
+			for (int j = 0; j < lst.size(); j++) {
+				TransportStop target = lst.get(j);
+				transfers.stopIds[j] = target.getId();
+				transfers.x31[j] = target.x31;
+				transfers.y31[j] = target.y31;
+				if (target == source) {
+					continue;
+				}
+				float dist = (float) MapUtils.getDistance(source.getLocation(), target.getLocation());
+				float time = dist / walkSpeed;
+				if (matrix != null) {
+					int t = targetIndexes.get(target.getId());
+					if (matrix.getTime(i, t) != RouteMatrix.UNREACHABLE) {
+						dist = matrix.getDistance(i, t);
+						time = matrix.getTime(i, t);
+					}
+				}
+				transfers.walkDist[j] = dist;
+				transfers.walkTime[j] = time;
+			}
+			tile.put(source.getId(), transfers);
+		}
+		if (log.isDebugEnabled()) {
+			log.debug(String.format("Transfers of %d stops (%d targets) built in %.1f ms", sources.size(),
+					targets.size(), (System.nanoTime() - nanoTime) / 1e6));
+		}
+	}
+}
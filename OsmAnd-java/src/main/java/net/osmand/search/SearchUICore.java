@@ -43,7 +43,9 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -59,6 +61,9 @@ public class SearchUICore {
 
 	private ThreadPoolExecutor singleThreadedExecutor;
 	private LinkedBlockingQueue<Runnable> taskQueue;
+	// optional workers to search several regions (files) at once
+	private ThreadPoolExecutor regionsSearchExecutor;
+	private int regionsSearchThreads = 1;
 	private Runnable onSearchStart = null;
 	private Runnable onResultsComplete = null;
 	private AtomicInteger requestNumber = new AtomicInteger();
@@ -299,6 +304,45 @@ public class SearchUICore {
 		this.totalLimit = totalLimit;
 	}
 
+	public int getRegionsSearchThreads() {
+		return regionsSearchThreads;
+	}
+
+	/**
+	 * Search regions (files) by name with given number of worker threads, 1 - search regions one by one
+	 * in search thread (default).
+	 */
+	public void setRegionsSearchThreads(int threads) {
+		threads = Math.max(1, threads);
+		if (threads == regionsSearchThreads) {
+			return;
+		}
+		if (regionsSearchExecutor != null) {
+			regionsSearchExecutor.shutdown();
+			regionsSearchExecutor = null;
+		}
+		regionsSearchThreads = threads;
+		if (threads > 1) {
+			regionsSearchExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						private final AtomicInteger number = new AtomicInteger();
+
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "SearchRegions-" + number.incrementAndGet());
+							t.setDaemon(true);
+							return t;
+						}
+					});
+		}
+	}
+
+	private void setRegionsSearchExecutor(SearchResultMatcher rm) {
+		if (regionsSearchExecutor != null) {
+			rm.setRegionsSearchExecutor(regionsSearchExecutor, regionsSearchThreads);
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	public <T> T getApiByClass(Class<T> cl) {
 		for (SearchCoreAPI a : apis) {
@@ -326,6 +370,7 @@ public class SearchUICore {
 			preparePhrase(sphrase);
 			AtomicInteger ai = new AtomicInteger();
 			SearchResultMatcher rm = new SearchResultMatcher(matcher, sphrase, ai.get(), ai, totalLimit);
+			setRegionsSearchExecutor(rm);
 			api.search(sphrase, rm);
 
 			SearchResultCollection collection = new SearchResultCollection(
@@ -445,6 +490,7 @@ public class SearchUICore {
 		searchSettings = searchSettings.setOriginalLocation(loc);
 		final SearchPhrase phrase = this.phrase.generateNewPhrase(text, searchSettings);
 		final SearchResultMatcher rm = new SearchResultMatcher(null, phrase, requestNumber.get(), requestNumber, totalLimit);
+		setRegionsSearchExecutor(rm);
 		searchInternal(phrase, rm);
 		SearchResultCollection collection = new SearchResultCollection(phrase);
 		collection.addSearchResults(rm.getRequestResults(), true, true);
@@ -471,6 +517,7 @@ public class SearchUICore {
 						onSearchStart.run();
 					}
 					final SearchResultMatcher rm = new SearchResultMatcher(matcher, phrase, request, requestNumber, totalLimit);
+					setRegionsSearchExecutor(rm);
 					if (debugMode) {
 						LOG.info("Starting search <" + phrase.toString() + ">");
 					}
@@ -682,6 +729,8 @@ public class SearchUICore {
 		private SearchPhrase phrase;
 		private List<MapObject> exportedObjects;
 		private List<City> exportedCities;
+		private ExecutorService regionsSearchExecutor;
+		private int regionsSearchThreads = 1;
 
 		public SearchResultMatcher(ResultMatcher<SearchResult> matcher, SearchPhrase phrase, int request,
 								   AtomicInteger requestNumber, int totalLimit) {
@@ -710,6 +759,26 @@ public class SearchUICore {
 			return requestResults.size();
 		}
 
+		public boolean isTotalLimitReached() {
+			return totalLimit != -1 && count >= totalLimit;
+		}
+
+		/**
+		 * Executor to search regions concurrently, null if regions are searched one by one
+		 */
+		public ExecutorService getRegionsSearchExecutor() {
+			return regionsSearchExecutor;
+		}
+
+		public int getRegionsSearchThreads() {
+			return regionsSearchThreads;
+		}
+
+		public void setRegionsSearchExecutor(ExecutorService executor, int threads) {
+			this.regionsSearchExecutor = executor;
+			this.regionsSearchThreads = threads;
+		}
+
 		public void searchStarted(SearchPhrase phrase) {
 			if (matcher != null) {
 				SearchResult sr = new SearchResult(phrase);
@@ -805,7 +874,7 @@ public class SearchUICore {
 			return exportedCities;
 		}
 
-		public void exportObject(SearchPhrase phrase, MapObject object) {
+		public synchronized void exportObject(SearchPhrase phrase, MapObject object) {
 			double maxDistance = phrase.getSettings().getExportSettings().getMaxDistance();
 			if (maxDistance > 0) {
 				double distance = MapUtils.getDistance(phrase.getSettings().getOriginalLocation(), object.getLocation());
@@ -819,7 +888,7 @@ public class SearchUICore {
 			exportedObjects.add(object);
 		}
 
-		public void exportCity(SearchPhrase phrase, City city) {
+		public synchronized void exportCity(SearchPhrase phrase, City city) {
 			double maxDistance = phrase.getSettings().getExportSettings().getMaxDistance();
 			if (maxDistance > 0) {
 				double distance = MapUtils.getDistance(phrase.getSettings().getOriginalLocation(), city.getLocation());
@@ -48,12 +48,22 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import gnu.trove.list.array.TIntArrayList;
 
 
 public class SearchCoreFactory {
@@ -92,6 +102,9 @@ public class SearchCoreFactory {
 
 	public static abstract class SearchBaseAPI implements SearchCoreAPI {
 
+		// how often search thread checks result matcher for cancellation while regions are searched concurrently
+		private static final long CANCEL_CHECK_INTERVAL_MS = 50;
+
 		private ObjectType[] searchTypes;
 
 		protected SearchBaseAPI(ObjectType... searchTypes) {
@@ -222,12 +235,179 @@ public class SearchCoreFactory {
 
 		}
 
+		/**
+		 * Searches regions one by one or (if result matcher has regions executor) concurrently in worker threads.
+		 * Results are published in search thread in the same order as by sequential search, search stops
+		 * when it is cancelled or total limit of results is reached. Worker threads don't access result matcher:
+		 * it is checked for cancellation by search thread only. Method returns after all workers finished,
+		 * so readers are not read by stopped search when they are searched by next one.
+		 */
+		protected <T> void searchRegions(SearchPhrase phrase, SearchResultMatcher resultMatcher,
+				Iterator<BinaryMapIndexReader> regions, final RegionSearch<T> search) throws IOException {
+			ExecutorService executor = resultMatcher.getRegionsSearchExecutor();
+			final AtomicBoolean cancelled = new AtomicBoolean();
+			if (executor == null) {
+				while (regions.hasNext() && !resultMatcher.isCancelled()) {
+					BinaryMapIndexReader r = regions.next();
+					RegionResults<T> res = new RegionResults<T>(r, cancelled, resultMatcher);
+					search.searchRegion(r, res);
+					publishRegion(phrase, resultMatcher, search, res);
+				}
+				return;
+			}
+			// regions in search order, so results are published in the same order as by sequential search
+			LinkedList<Future<RegionResults<T>>> running = new LinkedList<Future<RegionResults<T>>>();
+			try {
+				while (true) {
+					// don't queue more regions than workers, so cancelled search doesn't occupy them
+					while (running.size() < resultMatcher.getRegionsSearchThreads() && regions.hasNext()) {
+						final BinaryMapIndexReader r = regions.next();
+						running.add(executor.submit(new Callable<RegionResults<T>>() {
+							@Override
+							public RegionResults<T> call() throws Exception {
+								RegionResults<T> res = new RegionResults<T>(r, cancelled, null);
+								search.searchRegion(r, res);
+								return res;
+							}
+						}));
+					}
+					if (running.isEmpty() || resultMatcher.isCancelled()) {
+						break;
+					}
+					RegionResults<T> res;
+					try {
+						res = running.getFirst().get(CANCEL_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+					} catch (TimeoutException e) {
+						continue;
+					}
+					running.removeFirst();
+					if (resultMatcher.isCancelled()) {
+						break;
+					}
+					publishRegion(phrase, resultMatcher, search, res);
+					if (resultMatcher.isTotalLimitReached()) {
+						break;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				} else if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IOException(e.getCause());
+			} finally {
+				// let running workers finish quickly, their results are not needed
+				cancelled.set(true);
+				awaitRegions(running);
+			}
+		}
+
+		private <T> void awaitRegions(List<Future<RegionResults<T>>> running) {
+			boolean interrupted = false;
+			for (Future<RegionResults<T>> f : running) {
+				while (true) {
+					try {
+						f.get();
+						break;
+					} catch (InterruptedException e) {
+						interrupted = true;
+					} catch (ExecutionException e) {
+						// error of region which results are not needed
+						break;
+					}
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private <T> void publishRegion(SearchPhrase phrase, SearchResultMatcher resultMatcher, RegionSearch<T> search,
+				RegionResults<T> res) throws IOException {
+			for (MapObject o : res.exportedObjects) {
+				resultMatcher.exportObject(phrase, o);
+			}
+			search.publishRegion(res);
+			resultMatcher.apiSearchRegionFinished(this, res.region, phrase);
+		}
+
 		@Override
 		public String toString() {
 			return getClass().getSimpleName();
 		}
 	}
 
+	/**
+	 * Search of one region by {@link SearchBaseAPI#searchRegions}
+	 */
+	protected interface RegionSearch<T> {
+
+		/**
+		 * Could be called from worker thread: it should only read region and collect found and exported objects
+		 * to region results (phrase matchers used here should be created before search).
+		 */
+		void searchRegion(BinaryMapIndexReader r, RegionResults<T> res) throws IOException;
+
+		/**
+		 * Called from search thread in order regions are searched
+		 */
+		void publishRegion(RegionResults<T> res) throws IOException;
+	}
+
+	/**
+	 * Objects collected by search of one region, they are published and exported by search thread.
+	 * Objects counted by limit of search are counted per region, so regions could be searched concurrently and
+	 * limit is applied when regions are published (with counters of previous regions) as by sequential search.
+	 */
+	protected static class RegionResults<T> {
+		final BinaryMapIndexReader region;
+		final List<T> results = new ArrayList<T>();
+		final List<MapObject> exportedObjects = new ArrayList<MapObject>();
+		// value of counter when result was added
+		private final TIntArrayList resultCounters = new TIntArrayList();
+		private int counter;
+		private final AtomicBoolean cancelled;
+		// null if region is searched in worker thread
+		private final SearchResultMatcher resultMatcher;
+
+		RegionResults(BinaryMapIndexReader region, AtomicBoolean cancelled, SearchResultMatcher resultMatcher) {
+			this.region = region;
+			this.cancelled = cancelled;
+			this.resultMatcher = resultMatcher;
+		}
+
+		public void add(T result) {
+			results.add(result);
+			resultCounters.add(counter);
+		}
+
+		/**
+		 * @return number of objects counted in region before this one
+		 */
+		public int count() {
+			return counter++;
+		}
+
+		public int getCounter() {
+			return counter;
+		}
+
+		public int getCounter(int resultIndex) {
+			return resultCounters.get(resultIndex);
+		}
+
+		public void export(MapObject object) {
+			exportedObjects.add(object);
+		}
+
+		public boolean isCancelled() {
+			return cancelled.get() || (resultMatcher != null && resultMatcher.isCancelled());
+		}
+	}
+
 	public static class SearchRegionByNameAPI extends SearchBaseAPI {
 
 		public SearchRegionByNameAPI() {
@@ -393,154 +573,175 @@ public class SearchCoreFactory {
 			if (phrase.getRadiusLevel() > 1 || phrase.getUnknownWordToSearch().length() > 3 ||
 					phrase.hasMoreThanOneUnknownSearchWord()|| phrase.isSearchTypeAllowed(ObjectType.POSTCODE, true)) {
 				final boolean locSpecified = phrase.getLastTokenLocation() != null;
-				LatLon loc = phrase.getLastTokenLocation();
-				final List<SearchResult> immediateResults = new ArrayList<>();
+				final LatLon loc = phrase.getLastTokenLocation();
 				final QuadRect streetBbox = phrase.getRadiusBBoxToSearch(DEFAULT_ADDRESS_BBOX_RADIUS);
 				final QuadRect postcodeBbox = phrase.getRadiusBBoxToSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5);
 				final QuadRect villagesBbox = phrase.getRadiusBBoxToSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 3);
 				final QuadRect cityBbox = phrase.getRadiusBBoxToSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5); // covered by separate search before
 				final int priority = phrase.isNoSelectedType() ?
 						SEARCH_ADDRESS_BY_NAME_PRIORITY : SEARCH_ADDRESS_BY_NAME_PRIORITY_RADIUS2;
-				final BinaryMapIndexReader[] currentFile = new BinaryMapIndexReader[1];
+				// matchers are created before regions could be searched in worker threads
+				final NameStringMatcher buildingNameMatcher = phrase.getUnknownWordToSearchBuildingNameMatcher();
+				final int limit = LIMIT * phrase.getRadiusLevel();
+
+				final boolean exportObjects = phrase.getSettings().isExportObjects();
+
+				final String wordToSearch = phrase.getUnknownWordToSearch();
+				if (wordToSearch.length() == 0) {
+					return;
+				}
+				Iterator<BinaryMapIndexReader> offlineIterator = phrase.getRadiusOfflineIndexes(DEFAULT_ADDRESS_BBOX_RADIUS * 5,
+						SearchPhraseDataType.ADDRESS);
+				searchRegions(phrase, resultMatcher, offlineIterator, new RegionSearch<SearchResult>() {
+					// results counted in published regions
+					int counted;
 
-				ResultMatcher<MapObject> rm = new ResultMatcher<MapObject>() {
-					int limit = 0;
 					@Override
-					public boolean publish(MapObject object) {
-						if (isCancelled()) {
-							return false;
+					public void searchRegion(BinaryMapIndexReader r, RegionResults<SearchResult> res) throws IOException {
+						SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(
+								createAddressMatcher(r, res), exportObjects ? createExportCollector(res) : null,
+								wordToSearch.toLowerCase(),
+								phrase.isMainUnknownSearchWordComplete() ? StringMatcherMode.CHECK_EQUALS_FROM_SPACE
+										: StringMatcherMode.CHECK_STARTS_FROM_SPACE);
+						if (locSpecified) {
+							req.setBBoxRadius(loc.getLatitude(), loc.getLongitude(),
+									phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5));
 						}
-						SearchResult sr = new SearchResult(phrase);
-						sr.object = object;
-						sr.file = currentFile[0];
-						sr.localeName = object.getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
-						sr.otherNames = object.getOtherNames(true);
-						sr.localeRelatedObjectName = sr.file.getRegionName();
-						sr.relatedObject = sr.file;
-						sr.location = object.getLocation();
-						sr.priorityDistance = 1;
-						sr.priority = priority;
-						int y = MapUtils.get31TileNumberY(object.getLocation().getLatitude());
-						int x = MapUtils.get31TileNumberX(object.getLocation().getLongitude());
-						List<City> closestCities = null;
-						if (object instanceof Street) {
-							// remove limitation by location
-							if (  //(locSpecified && !streetBbox.contains(x, y, x, y)) || 
-								!phrase.isSearchTypeAllowed(ObjectType.STREET)) {
-								return false;
-							}
-							if (object.getName().startsWith("<")) {
-								return false;
-							}
+						r.searchAddressDataByName(req);
+					}
 
-							if (!phrase.getUnknownWordToSearchBuildingNameMatcher().matches(stripBraces(sr.localeName))) {
-								sr.priorityDistance = 5;
+					@Override
+					public void publishRegion(RegionResults<SearchResult> regionResults) throws IOException {
+						for (int i = 0; i < regionResults.results.size(); i++) {
+							// result is counted after it is added, it is not accepted after limit results of all regions
+							if (counted + regionResults.getCounter(i) > limit) {
+								break;
 							}
-							sr.objectType = ObjectType.STREET;
-							sr.localeRelatedObjectName = ((Street)object).getCity().getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
-							sr.relatedObject = ((Street)object).getCity();
-						} else if (object instanceof City) {
-							CityType type = ((City)object).getType();
-							if (type == CityType.CITY || type == CityType.TOWN) {
-								if (phrase.isNoSelectedType()) {
-									// ignore city/town
-									return false;
-								}
-								if ((locSpecified && !cityBbox.contains(x, y, x, y))
-										|| !phrase.isSearchTypeAllowed(ObjectType.CITY)) {
-									return false;
-								}
-								sr.objectType = ObjectType.CITY;
-								sr.priorityDistance = 0.1;
-							} else if (((City)object).isPostcode()) {
-								if ((locSpecified && !postcodeBbox.contains(x, y, x, y))
-										|| !phrase.isSearchTypeAllowed(ObjectType.POSTCODE)) {
-									return false;
-								}
-								sr.objectType = ObjectType.POSTCODE;
-								sr.priorityDistance = 0;
+							SearchResult res = regionResults.results.get(i);
+							if (res.objectType == ObjectType.STREET) {
+								subSearchApiOrPublish(phrase, resultMatcher, res, streetsApi);
 							} else {
-								if ((locSpecified && !villagesBbox.contains(x, y, x, y))
-										|| !phrase.isSearchTypeAllowed(ObjectType.VILLAGE)) {
-									return false;
-								}
-								City c = null;
-								if (closestCities == null) {
-									closestCities = townCitiesQR.queryInBox(villagesBbox, new ArrayList<City>());
-								}
-								double minDist = -1;
-								double pDist = -1;
-								for (City s : closestCities) {
-									double ll = MapUtils.getDistance(s.getLocation(), object.getLocation());
-									double pd = s.getType() == CityType.CITY ? ll : ll * 10;
-									if(minDist == -1 || pd < pDist) {
-										c = s;
-										minDist = ll;
-										pDist = pd ;
-									}
-								}
-								if (c != null) {
-									sr.localeRelatedObjectName = c.getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
-									sr.relatedObject = c;
-									sr.distRelatedObjectName = minDist;
-								}
-								sr.objectType = ObjectType.VILLAGE;
+								subSearchApiOrPublish(phrase, resultMatcher, res, cityApi);
 							}
-						} else {
-							return false;
 						}
-						limit ++;
-						immediateResults.add(sr);
-						return false;
+						counted += regionResults.getCounter();
 					}
 
-					@Override
-					public boolean isCancelled() {
-						return limit > LIMIT * phrase.getRadiusLevel() ||
-								resultMatcher.isCancelled();
+					private ResultMatcher<MapObject> createExportCollector(final RegionResults<SearchResult> res) {
+						return new ResultMatcher<MapObject>() {
+							@Override
+							public boolean publish(MapObject object) {
+								res.export(object);
+								return true;
+							}
+
+							@Override
+							public boolean isCancelled() {
+								return false;
+							}
+						};
 					}
-				};
 
-				ResultMatcher<MapObject> rawDataCollector = null;
-				if (phrase.getSettings().isExportObjects()) {
-					rawDataCollector = new ResultMatcher<MapObject>() {
-						@Override
-						public boolean publish(MapObject object) {
-							resultMatcher.exportObject(phrase, object);
-							return true;
-						}
+					private ResultMatcher<MapObject> createAddressMatcher(final BinaryMapIndexReader file,
+							final RegionResults<SearchResult> res) {
+						return new ResultMatcher<MapObject>() {
+							@Override
+							public boolean publish(MapObject object) {
+								if (isCancelled()) {
+									return false;
+								}
+								SearchResult sr = new SearchResult(phrase);
+								sr.object = object;
+								sr.file = file;
+								sr.localeName = object.getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
+								sr.otherNames = object.getOtherNames(true);
+								sr.localeRelatedObjectName = sr.file.getRegionName();
+								sr.relatedObject = sr.file;
+								sr.location = object.getLocation();
+								sr.priorityDistance = 1;
+								sr.priority = priority;
+								int y = MapUtils.get31TileNumberY(object.getLocation().getLatitude());
+								int x = MapUtils.get31TileNumberX(object.getLocation().getLongitude());
+								List<City> closestCities = null;
+								if (object instanceof Street) {
+									// remove limitation by location
+									if (  //(locSpecified && !streetBbox.contains(x, y, x, y)) || 
+										!phrase.isSearchTypeAllowed(ObjectType.STREET)) {
+										return false;
+									}
+									if (object.getName().startsWith("<")) {
+										return false;
+									}
 
-						@Override
-						public boolean isCancelled() {
-							return false;
-						}
-					};
-				}
+									if (!buildingNameMatcher.matches(stripBraces(sr.localeName))) {
+										sr.priorityDistance = 5;
+									}
+									sr.objectType = ObjectType.STREET;
+									sr.localeRelatedObjectName = ((Street)object).getCity().getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
+									sr.relatedObject = ((Street)object).getCity();
+								} else if (object instanceof City) {
+									CityType type = ((City)object).getType();
+									if (type == CityType.CITY || type == CityType.TOWN) {
+										if (phrase.isNoSelectedType()) {
+											// ignore city/town
+											return false;
+										}
+										if ((locSpecified && !cityBbox.contains(x, y, x, y))
+												|| !phrase.isSearchTypeAllowed(ObjectType.CITY)) {
+											return false;
+										}
+										sr.objectType = ObjectType.CITY;
+										sr.priorityDistance = 0.1;
+									} else if (((City)object).isPostcode()) {
+										if ((locSpecified && !postcodeBbox.contains(x, y, x, y))
+												|| !phrase.isSearchTypeAllowed(ObjectType.POSTCODE)) {
+											return false;
+										}
+										sr.objectType = ObjectType.POSTCODE;
+										sr.priorityDistance = 0;
+									} else {
+										if ((locSpecified && !villagesBbox.contains(x, y, x, y))
+												|| !phrase.isSearchTypeAllowed(ObjectType.VILLAGE)) {
+											return false;
+										}
+										City c = null;
+										if (closestCities == null) {
+											closestCities = townCitiesQR.queryInBox(villagesBbox, new ArrayList<City>());
+										}
+										double minDist = -1;
+										double pDist = -1;
+										for (City s : closestCities) {
+											double ll = MapUtils.getDistance(s.getLocation(), object.getLocation());
+											double pd = s.getType() == CityType.CITY ? ll : ll * 10;
+											if(minDist == -1 || pd < pDist) {
+												c = s;
+												minDist = ll;
+												pDist = pd ;
+											}
+										}
+										if (c != null) {
+											sr.localeRelatedObjectName = c.getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
+											sr.relatedObject = c;
+											sr.distRelatedObjectName = minDist;
+										}
+										sr.objectType = ObjectType.VILLAGE;
+									}
+								} else {
+									return false;
+								}
+								res.add(sr);
+								res.count();
+								return false;
+							}
 
-				Iterator<BinaryMapIndexReader> offlineIterator = phrase.getRadiusOfflineIndexes(DEFAULT_ADDRESS_BBOX_RADIUS * 5,
-						SearchPhraseDataType.ADDRESS);
-				String wordToSearch = phrase.getUnknownWordToSearch();
-				while (offlineIterator.hasNext() && wordToSearch.length() > 0) {
-					BinaryMapIndexReader r = offlineIterator.next();
-					currentFile[0] = r;
-					immediateResults.clear();
-					SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(rm, rawDataCollector, wordToSearch.toLowerCase(),
-							phrase.isMainUnknownSearchWordComplete() ? StringMatcherMode.CHECK_EQUALS_FROM_SPACE
-									: StringMatcherMode.CHECK_STARTS_FROM_SPACE);
-					if (locSpecified) {
-						req.setBBoxRadius(loc.getLatitude(), loc.getLongitude(),
-								phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5));
-					}
-					r.searchAddressDataByName(req);
-					for (SearchResult res : immediateResults) {
-						if (res.objectType == ObjectType.STREET) {
-							subSearchApiOrPublish(phrase, resultMatcher, res, streetsApi);
-						} else {
-							subSearchApiOrPublish(phrase, resultMatcher, res, cityApi);
-						}
+							@Override
+							public boolean isCancelled() {
+								// limit is exceeded by results of region, so it is exceeded for all regions
+								return res.getCounter() > limit || res.isCancelled();
+							}
+						};
 					}
-					resultMatcher.apiSearchRegionFinished(this, r, phrase);
-				}
+				});
 			}
 		}
 	}
@@ -567,84 +768,97 @@ public class SearchCoreFactory {
 			// Take into account POI [bar] - 'Hospital 512'
 			// BEFORE: it was searching exact match of whole phrase.getUnknownSearchPhrase() [ Check feedback ] 
 
-			final BinaryMapIndexReader[] currentFile = new BinaryMapIndexReader[1];
 			Iterator<BinaryMapIndexReader> offlineIterator = phrase.getRadiusOfflineIndexes(BBOX_RADIUS,
 					SearchPhraseDataType.POI);
-			String searchWord = phrase.getUnknownWordToSearch();
+			final String searchWord = phrase.getUnknownWordToSearch();
 			final NameStringMatcher nm = phrase.getMainUnknownNameStringMatcher();
-			QuadRect bbox = phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
+			final QuadRect bbox = phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
 			final Set<String> ids = new HashSet<String>();
 
-			ResultMatcher<Amenity> rawDataCollector = null;
-			if (phrase.getSettings().isExportObjects()) {
-				rawDataCollector = new ResultMatcher<Amenity>() {
-					@Override
-					public boolean publish(Amenity object) {
-						resultMatcher.exportObject(phrase, object);
-						return true;
-					}
+			final boolean exportObjects = phrase.getSettings().isExportObjects();
+			searchRegions(phrase, resultMatcher, offlineIterator, new RegionSearch<SearchResult>() {
+				// amenities counted in published regions
+				int counted;
 
-					@Override
-					public boolean isCancelled() {
-						return false;
-					}
-				};
-			}
-			SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.centerX(),
-					(int) bbox.centerY(), searchWord, (int) bbox.left, (int) bbox.right, (int) bbox.top,
-					(int) bbox.bottom, new ResultMatcher<Amenity>() {
-						int limit = 0;
-
-						@Override
-						public boolean publish(Amenity object) {
-							if (limit++ > LIMIT) {
-								return false;
-							}
-							String poiID = object.getType().getKeyName() + "_" + object.getId();
-							if (ids.contains(poiID)) {
-								return false;
+				@Override
+				public void searchRegion(final BinaryMapIndexReader r, final RegionResults<SearchResult> res)
+						throws IOException {
+					ResultMatcher<Amenity> rawDataCollector = null;
+					if (exportObjects) {
+						rawDataCollector = new ResultMatcher<Amenity>() {
+							@Override
+							public boolean publish(Amenity object) {
+								res.export(object);
+								return true;
 							}
-							SearchResult sr = new SearchResult(phrase);
-							sr.otherNames = object.getOtherNames(true);
-							sr.localeName = object.getName(phrase.getSettings().getLang(),
-									phrase.getSettings().isTransliterate());
-							if (!nm.matches(sr.localeName) && !nm.matches(sr.otherNames)
-									&& !nm.matches(object.getAdditionalInfoValues(false))) {
+
+							@Override
+							public boolean isCancelled() {
 								return false;
 							}
-							sr.object = object;
-							sr.preferredZoom = 17;
-							sr.file = currentFile[0];
-							sr.location = object.getLocation();
-							if (object.getSubType().equals("city") || object.getSubType().equals("country")) {
-								sr.priorityDistance = SEARCH_AMENITY_BY_NAME_CITY_PRIORITY_DISTANCE;
-								sr.preferredZoom = object.getSubType().equals("country") ? 7 : 13;
-							} else if (object.getSubType().equals("town")) {
-								sr.priorityDistance = SEARCH_AMENITY_BY_NAME_TOWN_PRIORITY_DISTANCE;
-							} else {
-								sr.priorityDistance = 1;
-							}
-							sr.priority = SEARCH_AMENITY_BY_NAME_PRIORITY;
-							phrase.countUnknownWordsMatchMainResult(sr);
-							sr.objectType = ObjectType.POI;
-							resultMatcher.publish(sr);
-							ids.add(poiID);
-							return false;
-						}
+						};
+					}
+					SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.centerX(),
+							(int) bbox.centerY(), searchWord, (int) bbox.left, (int) bbox.right, (int) bbox.top,
+							(int) bbox.bottom, new ResultMatcher<Amenity>() {
 
-						@Override
-						public boolean isCancelled() {
-							return resultMatcher.isCancelled() && (limit < LIMIT);
-						}
-					}, rawDataCollector);
+								@Override
+								public boolean publish(Amenity object) {
+									if (res.count() > LIMIT) {
+										return false;
+									}
+									SearchResult sr = new SearchResult(phrase);
+									sr.otherNames = object.getOtherNames(true);
+									sr.localeName = object.getName(phrase.getSettings().getLang(),
+											phrase.getSettings().isTransliterate());
+									if (!nm.matches(sr.localeName) && !nm.matches(sr.otherNames)
+											&& !nm.matches(object.getAdditionalInfoValues(false))) {
+										return false;
+									}
+									sr.object = object;
+									sr.preferredZoom = 17;
+									sr.file = r;
+									sr.location = object.getLocation();
+									if (object.getSubType().equals("city") || object.getSubType().equals("country")) {
+										sr.priorityDistance = SEARCH_AMENITY_BY_NAME_CITY_PRIORITY_DISTANCE;
+										sr.preferredZoom = object.getSubType().equals("country") ? 7 : 13;
+									} else if (object.getSubType().equals("town")) {
+										sr.priorityDistance = SEARCH_AMENITY_BY_NAME_TOWN_PRIORITY_DISTANCE;
+									} else {
+										sr.priorityDistance = 1;
+									}
+									sr.priority = SEARCH_AMENITY_BY_NAME_PRIORITY;
+									sr.objectType = ObjectType.POI;
+									res.add(sr);
+									return false;
+								}
 
-			while (offlineIterator.hasNext()) {
-				BinaryMapIndexReader r = offlineIterator.next();
-				currentFile[0] = r;
-				r.searchPoiByName(req);
+								@Override
+								public boolean isCancelled() {
+									return res.isCancelled() && (res.getCounter() < LIMIT);
+								}
+							}, rawDataCollector);
+					r.searchPoiByName(req);
+				}
 
-				resultMatcher.apiSearchRegionFinished(this, r, phrase);
-			}
+				@Override
+				public void publishRegion(RegionResults<SearchResult> res) {
+					for (int i = 0; i < res.results.size(); i++) {
+						// amenity is counted before it is added, it is not accepted after LIMIT amenities of all regions
+						if (counted + res.getCounter(i) - 1 > LIMIT) {
+							break;
+						}
+						SearchResult sr = res.results.get(i);
+						Amenity object = (Amenity) sr.object;
+						// same poi could be stored in several regions
+						if (ids.add(object.getType().getKeyName() + "_" + object.getId())) {
+							phrase.countUnknownWordsMatchMainResult(sr);
+							resultMatcher.publish(sr);
+						}
+					}
+					counted += res.getCounter();
+				}
+			});
 			return true;
 		}
 
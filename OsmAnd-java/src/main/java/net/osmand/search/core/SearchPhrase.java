@@ -4,7 +4,7 @@ import java.util.*;
 import java.util.regex.Pattern;
 
 import net.osmand.Collator;
-import net.osmand.CollatorStringMatcher;
+import net.osmand.CollationKeyStringMatcher;
 import net.osmand.CollatorStringMatcher.StringMatcherMode;
 import net.osmand.OsmAndCollator;
 import net.osmand.StringMatcher;
@@ -759,10 +759,10 @@ public class SearchPhrase {
 
 	public static class NameStringMatcher implements StringMatcher {
 
-		private CollatorStringMatcher sm;
+		private CollationKeyStringMatcher sm;
 
 		public NameStringMatcher(String namePart, StringMatcherMode mode) {
-			sm = new CollatorStringMatcher(namePart, mode);
+			sm = new CollationKeyStringMatcher(namePart, mode);
 		}
 		
 		public boolean matches(Collection<String> map) {
@@ -0,0 +1,208 @@
+package net.osmand;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.GPXUtilities.ColumnarPoints;
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+import net.osmand.data.QuadRect;
+
+public class BinaryTrackFileTest {
+
+	private static GPXFile createGpx() {
+		Random rnd = new Random(5);
+		GPXFile gpx = new GPXFile("test");
+		gpx.metadata.desc = "Binary track";
+		WptPt wpt = new WptPt(52.5, 13.4, 0, Double.NaN, 0, Double.NaN);
+		wpt.name = "Waypoint";
+		gpx.addPoint(wpt);
+		double lat = 52.5;
+		double lon = 13.4;
+		long time = 1600000000000L;
+		for (int t = 0; t < 2; t++) {
+			Track track = new Track();
+			track.name = "Track " + t;
+			gpx.tracks.add(track);
+			for (int s = 0; s < 3; s++) {
+				TrkSegment segment = new TrkSegment();
+				track.segments.add(segment);
+				// last segment is empty
+				for (int i = 0; s < 2 && i < 1000; i++) {
+					lat += (rnd.nextDouble() - 0.3) * 1e-4;
+					lon += (rnd.nextDouble() - 0.3) * 1e-4;
+					time += 1000 + rnd.nextInt(3000);
+					WptPt p = new WptPt(lat, lon, time, i % 50 == 7 ? Double.NaN : rnd.nextDouble() * 100 + 10,
+							rnd.nextDouble() * 10, i % 3 == 0 ? Double.NaN : rnd.nextDouble() * 8);
+					if (i % 4 == 0) {
+						p.heading = rnd.nextInt(360);
+					}
+					if (i % 97 == 0) {
+						p.name = "Point " + i;
+						p.desc = "Описание";
+						p.getExtensionsToWrite().put("address", "Street " + i);
+					}
+					segment.points.add(p);
+				}
+			}
+		}
+		return gpx;
+	}
+
+	@Test
+	public void testRoundTripWithGpx() throws IOException {
+		GPXFile gpx = createGpx();
+		String xml = GPXUtilities.asString(gpx);
+		File file = File.createTempFile("track", BinaryTrackFile.BINARY_TRACK_EXT);
+		file.deleteOnExit();
+		BinaryTrackFile.writeTrackFile(file, gpx, 100);
+		GPXFile loaded = BinaryTrackFile.loadGPXFile(file);
+		Assert.assertEquals(xml, GPXUtilities.asString(loaded));
+		Assert.assertTrue(loaded.tracks.get(1).segments.get(0).points instanceof ColumnarPoints);
+
+		// gpx loaded from text and written again is the same
+		GPXFile parsed = GPXUtilities.loadGPXFile(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+		BinaryTrackFile.writeTrackFile(file, parsed);
+		loaded = BinaryTrackFile.loadGPXFile(file);
+		Assert.assertEquals(xml, GPXUtilities.asString(loaded));
+		Assert.assertEquals(parsed.getAnalysis(0).totalDistance, loaded.getAnalysis(0).totalDistance, 1e-3);
+		Assert.assertEquals(parsed.getAnalysis(0).diffElevationUp, loaded.getAnalysis(0).diffElevationUp, 1e-3);
+	}
+
+	@Test
+	public void testRandomAccess() throws IOException {
+		GPXFile gpx = createGpx();
+		File file = File.createTempFile("track", BinaryTrackFile.BINARY_TRACK_EXT);
+		file.deleteOnExit();
+		BinaryTrackFile.writeTrackFile(file, gpx, 64);
+		BinaryTrackFile track = BinaryTrackFile.open(file);
+		Assert.assertEquals(6, track.getSegmentsCount());
+		Assert.assertEquals(1000, track.getPointsCount(4));
+		Assert.assertEquals(0, track.readSegment(5).size());
+
+		List<WptPt> points = gpx.tracks.get(1).segments.get(1).points;
+		long from = points.get(100).time;
+		long to = points.get(420).time;
+		ColumnarPoints byTime = track.readPointsByTime(4, from, to);
+		Assert.assertEquals(321, byTime.size());
+		Assert.assertEquals(from, byTime.getTime(0));
+		Assert.assertEquals(to, byTime.getTime(320));
+		Assert.assertEquals("Point 194", byTime.get(94).name);
+		Assert.assertEquals("Street 194", byTime.get(94).getAddress());
+
+		QuadRect bounds = GPXUtilities.calculateBounds(points.subList(200, 300));
+		// coordinates are rounded to 7 digits
+		bounds.left -= 1e-6;
+		bounds.right += 1e-6;
+		bounds.top += 1e-6;
+		bounds.bottom -= 1e-6;
+		List<WptPt> expected = new ArrayList<>();
+		for (WptPt p : points) {
+			if (p.lon >= bounds.left && p.lon <= bounds.right && p.lat >= bounds.bottom && p.lat <= bounds.top) {
+				expected.add(p);
+			}
+		}
+		ColumnarPoints inBounds = track.readPointsInBounds(4, bounds);
+		Assert.assertEquals(expected.size(), inBounds.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(expected.get(i).lat, inBounds.getLatitude(i), 1e-7);
+			Assert.assertEquals(expected.get(i).lon, inBounds.getLongitude(i), 1e-7);
+			Assert.assertEquals(expected.get(i).time, inBounds.getTime(i));
+		}
+		QuadRect all = track.getBounds();
+		QuadRect trackBounds = GPXUtilities.calculateTrackBounds(gpx.tracks.get(0).segments);
+		Assert.assertEquals(trackBounds.left, all.left, 1e-7);
+		Assert.assertEquals(trackBounds.bottom, all.bottom, 1e-7);
+	}
+
+	@Test
+	public void testCacheReplacedWhileMapped() throws IOException {
+		File dir = File.createTempFile("tracks", "");
+		dir.delete();
+		dir.mkdir();
+		File gpxFile = new File(dir, "track.gpx");
+		File cacheFile = new File(dir, "track" + BinaryTrackFile.BINARY_TRACK_EXT);
+		GPXFile gpx = createGpx();
+		Assert.assertNull(GPXUtilities.writeGpxFile(gpxFile, gpx));
+		BinaryTrackFile.loadGPXFile(gpxFile, cacheFile);
+		Assert.assertTrue(cacheFile.exists());
+		BinaryTrackFile track = BinaryTrackFile.open(cacheFile);
+
+		// changed gpx rewrites cache while old cache is still mapped
+		gpx.metadata.desc = "Changed track";
+		Assert.assertNull(GPXUtilities.writeGpxFile(gpxFile, gpx));
+		gpxFile.setLastModified(cacheFile.lastModified() + 2000);
+		GPXFile loaded = BinaryTrackFile.loadGPXFile(gpxFile, cacheFile);
+		Assert.assertEquals("Changed track", loaded.metadata.desc);
+		Assert.assertEquals(GPXUtilities.asString(GPXUtilities.loadGPXFile(gpxFile)),
+				GPXUtilities.asString(BinaryTrackFile.loadGPXFile(cacheFile)));
+		// old cache is not changed
+		Assert.assertEquals("Binary track", track.loadGPXFile().metadata.desc);
+		Assert.assertEquals(1000, track.readSegment(4).size());
+		// temporary file is renamed to cache
+		Assert.assertEquals(2, dir.listFiles().length);
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+
+	@Test
+	public void testCacheValidatedBySourceFile() throws IOException {
+		File dir = File.createTempFile("tracks", "");
+		dir.delete();
+		dir.mkdir();
+		File gpxFile = new File(dir, "track.gpx");
+		File cacheFile = new File(dir, "track" + BinaryTrackFile.BINARY_TRACK_EXT);
+		GPXFile gpx = createGpx();
+		Assert.assertNull(GPXUtilities.writeGpxFile(gpxFile, gpx));
+		BinaryTrackFile.loadGPXFile(gpxFile, cacheFile);
+		BinaryTrackFile track = BinaryTrackFile.open(cacheFile);
+		Assert.assertEquals(gpxFile.length(), track.getSourceLength());
+		Assert.assertEquals(gpxFile.lastModified(), track.getSourceModified());
+
+		// gpx replaced by older file (e.g. restored from backup) is not loaded from newer cache
+		gpx.metadata.desc = "Restored track";
+		Assert.assertNull(GPXUtilities.writeGpxFile(gpxFile, gpx));
+		gpxFile.setLastModified(cacheFile.lastModified() - 60000);
+		Assert.assertEquals("Restored track", BinaryTrackFile.loadGPXFile(gpxFile, cacheFile).metadata.desc);
+		Assert.assertEquals("Restored track", BinaryTrackFile.loadGPXFile(cacheFile).metadata.desc);
+		Assert.assertEquals(gpxFile.lastModified(), BinaryTrackFile.open(cacheFile).getSourceModified());
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+
+	@Test
+	public void testRoundAsGpxWriter() {
+		NumberFormat latLonFormat = new DecimalFormat("0.00#####", new DecimalFormatSymbols(Locale.US));
+		NumberFormat decimalFormat = new DecimalFormat("#.#", new DecimalFormatSymbols(Locale.US));
+		Random rnd = new Random(3);
+		for (int i = 0; i < 100000; i++) {
+			double lat = (rnd.nextDouble() - 0.5) * 180;
+			// values with 8 digits, so some of them are halves of 7th digit
+			double lon = Math.round((rnd.nextDouble() - 0.5) * 360 * 1e8) / 1e8;
+			double ele = i % 2 == 0 ? rnd.nextInt(40000) / 100.0 : (rnd.nextDouble() - 0.2) * 1000;
+			Assert.assertEquals(Math.round(Double.parseDouble(latLonFormat.format(lat)) * 1e7),
+					BinaryTrackFile.round(lat, 1e7));
+			Assert.assertEquals(Math.round(Double.parseDouble(latLonFormat.format(lon)) * 1e7),
+					BinaryTrackFile.round(lon, 1e7));
+			Assert.assertEquals(Math.round(Double.parseDouble(decimalFormat.format(ele)) * 10),
+					BinaryTrackFile.round(ele, 10));
+		}
+	}
+}
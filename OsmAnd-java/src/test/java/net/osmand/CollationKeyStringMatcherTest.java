@@ -0,0 +1,52 @@
+package net.osmand;
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+
+public class CollationKeyStringMatcherTest {
+
+	// accents, ligatures, contractions (aa in danish), ignorable and combining chars, cyrillic and greek
+	private static final String[] PIECES = { "a", "b", "c", "e", "s", "v", "w", "y", "A", "E", "á", "à", "ä", "å", "aa",
+			"æ", "ø", "ß", "ss", "ü", "i", "I", "İ", "ı", "é", "­", " ", " ", "-", ".", "'", "1", "²", "ﬁ",
+			"д", "Д", "ё", "е", "σ", "ς", "Σ", "ch", "ll", "ñ", "​" };
+
+	private static String randomString(Random r, int maxPieces) {
+		int cnt = r.nextInt(maxPieces + 1);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < cnt; i++) {
+			sb.append(PIECES[r.nextInt(PIECES.length)]);
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testSameResultsAsCollatorMatcher() {
+		Locale defaultLocale = Locale.getDefault();
+		try {
+			String[] locales = { "en", "de", "da", "sv", "tr", "ru", "es", "el", "ro" };
+			Random r = new Random(13);
+			for (String l : locales) {
+				Locale.setDefault(new Locale(l));
+				for (StringMatcherMode mode : StringMatcherMode.values()) {
+					for (int q = 0; q < 50; q++) {
+						String part = randomString(r, 3);
+						CollatorStringMatcher expected = new CollatorStringMatcher(part, mode);
+						CollationKeyStringMatcher matcher = new CollationKeyStringMatcher(part, mode);
+						for (int n = 0; n < 50; n++) {
+							String name = randomString(r, 8);
+							Assert.assertEquals(l + " " + mode + " '" + part + "' '" + name + "'",
+									expected.matches(name), matcher.matches(name));
+						}
+					}
+				}
+			}
+		} finally {
+			Locale.setDefault(defaultLocale);
+		}
+	}
+}
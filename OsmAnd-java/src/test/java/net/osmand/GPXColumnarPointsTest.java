@@ -0,0 +1,136 @@
+package net.osmand;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.GPXUtilities.ColumnarPoints;
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.GPXTrackAnalysis;
+import net.osmand.GPXUtilities.GPXTrackPointsListener;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+
+public class GPXColumnarPointsTest {
+
+	private static String createGpx() {
+		Random rnd = new Random(3);
+		GPXFile gpx = new GPXFile("test");
+		double lat = 52.5;
+		double lon = 13.4;
+		long time = 1600000000000L;
+		for (int t = 0; t < 2; t++) {
+			Track track = new Track();
+			gpx.tracks.add(track);
+			for (int s = 0; s < 2; s++) {
+				TrkSegment segment = new TrkSegment();
+				track.segments.add(segment);
+				for (int i = 0; i < 300; i++) {
+					lat += (rnd.nextDouble() - 0.3) * 1e-4;
+					lon += (rnd.nextDouble() - 0.3) * 1e-4;
+					time += 1000 + rnd.nextInt(3000);
+					WptPt p = new WptPt(lat, lon, time, i % 50 == 7 ? Double.NaN : 30 + rnd.nextInt(20),
+							rnd.nextInt(10), i % 3 == 0 ? Double.NaN : rnd.nextInt(8));
+					if (i % 4 == 0) {
+						p.heading = rnd.nextInt(360);
+					}
+					if (i % 97 == 0) {
+						// kept as object
+						p.name = "Point " + i;
+						p.getExtensionsToWrite().put("address", "Street " + i);
+					}
+					segment.points.add(p);
+				}
+			}
+		}
+		return GPXUtilities.asString(gpx);
+	}
+
+	private static ByteArrayInputStream stream(String gpx) throws UnsupportedEncodingException {
+		return new ByteArrayInputStream(gpx.getBytes("UTF-8"));
+	}
+
+	@Test
+	public void testColumnarLoading() throws UnsupportedEncodingException {
+		String xml = createGpx();
+		GPXFile objects = GPXUtilities.loadGPXFile(stream(xml));
+		GPXFile columnar = GPXUtilities.loadColumnarGPXFile(stream(xml));
+		Assert.assertNull(columnar.error);
+		// general track is added to both
+		Assert.assertEquals(objects.tracks.size(), columnar.tracks.size());
+		for (Track t : columnar.tracks) {
+			for (TrkSegment s : t.segments) {
+				Assert.assertTrue(s.points instanceof ColumnarPoints);
+			}
+		}
+		Assert.assertEquals(GPXUtilities.asString(objects), GPXUtilities.asString(columnar));
+
+		GPXTrackAnalysis a1 = objects.getAnalysis(0);
+		GPXTrackAnalysis a2 = columnar.getAnalysis(0);
+		Assert.assertEquals(a1.totalDistance, a2.totalDistance, 1e-3);
+		Assert.assertEquals(a1.totalDistanceWithoutGaps, a2.totalDistanceWithoutGaps, 1e-3);
+		Assert.assertEquals(a1.timeMoving, a2.timeMoving);
+		Assert.assertEquals(a1.diffElevationUp, a2.diffElevationUp, 1e-3);
+		Assert.assertEquals(a1.diffElevationDown, a2.diffElevationDown, 1e-3);
+		Assert.assertEquals(a1.maxSpeed, a2.maxSpeed, 1e-3);
+		Assert.assertEquals(a1.points, a2.points);
+		Assert.assertEquals(a1.locationEnd.distance, a2.locationEnd.distance, 1e-3);
+		TrkSegment s1 = objects.tracks.get(1).segments.get(1);
+		ColumnarPoints s2 = (ColumnarPoints) columnar.tracks.get(1).segments.get(1).points;
+		for (int i = 0; i < s2.size(); i++) {
+			Assert.assertEquals(s1.points.get(i).distance, s2.getDistance(i), 1e-3);
+		}
+
+		List<GPXTrackAnalysis> split1 = s1.splitByDistance(500, false);
+		List<GPXTrackAnalysis> split2 = columnar.tracks.get(1).segments.get(1).splitByDistance(500, false);
+		Assert.assertEquals(split1.size(), split2.size());
+		for (int i = 0; i < split1.size(); i++) {
+			Assert.assertEquals(split1.get(i).totalDistance, split2.get(i).totalDistance, 1e-3);
+		}
+	}
+
+	@Test
+	public void testStreamingAndListOperations() throws UnsupportedEncodingException {
+		final int[] count = new int[1];
+		final ColumnarPoints points = new ColumnarPoints();
+		GPXFile gpx = GPXUtilities.loadGPXFile(stream(createGpx()), null, new GPXTrackPointsListener() {
+			@Override
+			public void onTrackPoint(Track track, TrkSegment segment, WptPt point) {
+				Assert.assertTrue(track.segments.contains(segment));
+				count[0]++;
+				points.add(point);
+			}
+		});
+		Assert.assertEquals(1200, count[0]);
+		Assert.assertEquals(0, gpx.tracks.get(0).segments.get(0).points.size());
+
+		WptPt named = points.get(97);
+		Assert.assertEquals("Point 97", named.name);
+		Assert.assertEquals("Street 97", named.getAddress());
+		WptPt p = points.get(8);
+		Assert.assertFalse(Float.isNaN(p.heading));
+		Assert.assertEquals(p.heading, points.getHeading(8), 0);
+		Assert.assertTrue(Double.isNaN(points.get(7).ele));
+		Assert.assertTrue(Double.isNaN(points.getHdop(0)));
+
+		WptPt removed = points.remove(5);
+		Assert.assertEquals(1199, points.size());
+		Assert.assertEquals("Point 97", points.get(96).name);
+		points.add(5, removed);
+		Assert.assertEquals(removed.lat, points.getLatitude(5), 0);
+		Assert.assertEquals(removed.time, points.getTime(5));
+		Assert.assertEquals("Point 97", points.get(97).name);
+		p.ele = 100;
+		points.set(8, p);
+		Assert.assertEquals(100, points.getElevation(8), 0);
+		points.addPoint(1, 2, 3, 4, 5, 6);
+		Assert.assertEquals(1201, points.size());
+		Assert.assertNull(points.get(1200).name);
+		Assert.assertEquals(2, points.get(1200).lon, 0);
+	}
+}
@@ -0,0 +1,140 @@
+package net.osmand;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.GPXTrackAnalysis;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+
+public class GPXTrackAnalyzerTest {
+
+	private static GPXFile createGpx() {
+		Random rnd = new Random(7);
+		GPXFile gpx = new GPXFile("test");
+		gpx.addPoint(new WptPt(52.5, 13.4, 0, Double.NaN, 0, Double.NaN));
+		double lat = 52.5;
+		double lon = 13.4;
+		long time = 1600000000000L;
+		for (int t = 0; t < 2; t++) {
+			Track track = new Track();
+			gpx.tracks.add(track);
+			for (int s = 0; s < 3; s++) {
+				TrkSegment segment = new TrkSegment();
+				track.segments.add(segment);
+				// last segment has single point
+				int count = s == 2 ? 1 : 400;
+				for (int i = 0; i < count; i++) {
+					lat += (rnd.nextDouble() - 0.3) * 1e-4;
+					lon += (rnd.nextDouble() - 0.3) * 1e-4;
+					time += 1000 + rnd.nextInt(3000);
+					segment.points.add(new WptPt(lat, lon, time, i % 50 == 7 ? Double.NaN : 30 + rnd.nextInt(20),
+							t == 0 ? 0 : rnd.nextInt(10), i % 3 == 0 ? Double.NaN : rnd.nextInt(8)));
+				}
+			}
+		}
+		return gpx;
+	}
+
+	private static void assertAnalysis(GPXTrackAnalysis expected, GPXTrackAnalysis actual) {
+		Assert.assertEquals(expected.totalDistance, actual.totalDistance, 1e-3);
+		Assert.assertEquals(expected.totalDistanceMoving, actual.totalDistanceMoving, 1e-3);
+		Assert.assertEquals(expected.timeMoving, actual.timeMoving);
+		Assert.assertEquals(expected.startTime, actual.startTime);
+		Assert.assertEquals(expected.endTime, actual.endTime);
+		Assert.assertEquals(expected.timeSpan, actual.timeSpan);
+		Assert.assertEquals(expected.points, actual.points);
+		Assert.assertEquals(expected.avgSpeed, actual.avgSpeed, 1e-3);
+		Assert.assertEquals(expected.maxSpeed, actual.maxSpeed, 1e-3);
+		Assert.assertEquals(expected.minSpeed, actual.minSpeed, 1e-3);
+		Assert.assertEquals(expected.avgElevation, actual.avgElevation, 1e-3);
+		Assert.assertEquals(expected.minElevation, actual.minElevation, 1e-3);
+		Assert.assertEquals(expected.maxElevation, actual.maxElevation, 1e-3);
+		Assert.assertEquals(expected.minHdop, actual.minHdop, 1e-3);
+		Assert.assertEquals(expected.maxHdop, actual.maxHdop, 1e-3);
+		Assert.assertEquals(expected.left, actual.left, 0);
+		Assert.assertEquals(expected.top, actual.top, 0);
+		Assert.assertEquals(expected.metricEnd, actual.metricEnd, 1e-3);
+		Assert.assertEquals(expected.secondaryMetricEnd, actual.secondaryMetricEnd, 1e-3);
+		Assert.assertEquals(expected.hasSpeedInTrack, actual.hasSpeedInTrack);
+		Assert.assertEquals(expected.hasElevationData, actual.hasElevationData);
+		Assert.assertEquals(expected.locationStart.time, actual.locationStart.time);
+		Assert.assertEquals(expected.locationEnd.time, actual.locationEnd.time);
+	}
+
+	@Test
+	public void testSameAsGpxAnalysis() throws UnsupportedEncodingException {
+		GPXFile gpx = createGpx();
+		// general segment is added on loading
+		gpx = GPXUtilities.loadGPXFile(new ByteArrayInputStream(GPXUtilities.asString(gpx).getBytes("UTF-8")));
+		GPXTrackAnalysis expected = gpx.getAnalysis(0);
+		GPXTrackAnalysis actual = GPXTrackAnalyzer.getAnalysis(gpx, 0);
+		assertAnalysis(expected, actual);
+		Assert.assertEquals(expected.totalTracks, actual.totalTracks);
+		Assert.assertEquals(expected.wptPoints, actual.wptPoints);
+		Assert.assertEquals(expected.diffElevationUp, actual.diffElevationUp, 1e-3);
+		Assert.assertEquals(expected.diffElevationDown, actual.diffElevationDown, 1e-3);
+		Assert.assertEquals(expected.locationEnd.distance, actual.locationEnd.distance, 1e-3);
+
+		GPXFile columnar = GPXUtilities.loadColumnarGPXFile(
+				new ByteArrayInputStream(GPXUtilities.asString(gpx).getBytes("UTF-8")));
+		assertAnalysis(expected, GPXTrackAnalyzer.getAnalysis(columnar, 0));
+	}
+
+	@Test
+	public void testSplits() {
+		GPXFile gpx = createGpx();
+		for (Track t : gpx.tracks) {
+			for (TrkSegment s : t.segments) {
+				List<GPXTrackAnalysis> byDistance = s.splitByDistance(300, false);
+				GPXTrackAnalyzer analyzer = GPXTrackAnalyzer.splitByDistance(300);
+				analyzer.addSegment(s);
+				List<GPXTrackAnalysis> splits = analyzer.getSplits();
+				Assert.assertEquals(byDistance.size(), splits.size());
+				for (int i = 0; i < splits.size(); i++) {
+					assertAnalysis(byDistance.get(i), splits.get(i));
+				}
+
+				List<GPXTrackAnalysis> byTime = s.splitByTime(120, false);
+				analyzer = GPXTrackAnalyzer.splitByTime(120);
+				analyzer.addSegment(s);
+				splits = analyzer.getSplits();
+				Assert.assertEquals(byTime.size(), splits.size());
+				for (int i = 0; i < splits.size(); i++) {
+					assertAnalysis(byTime.get(i), splits.get(i));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testIncrementalUpdate() {
+		GPXFile gpx = createGpx();
+		TrkSegment segment = gpx.tracks.get(1).segments.get(0);
+		GPXTrackAnalyzer analyzer = GPXTrackAnalyzer.splitByDistance(500);
+		GPXFile recorded = new GPXFile("test");
+		Track track = new Track();
+		recorded.tracks.add(track);
+		TrkSegment recordedSegment = new TrkSegment();
+		track.segments.add(recordedSegment);
+		for (int i = 0; i < segment.points.size(); i++) {
+			WptPt p = segment.points.get(i);
+			recordedSegment.points.add(p);
+			analyzer.addPoint(p.lat, p.lon, p.time, p.ele, p.speed, p.hdop);
+			if (i % 97 == 1) {
+				GPXTrackAnalysis expected = recorded.getAnalysis(0);
+				GPXTrackAnalysis actual = analyzer.getAnalysis(0);
+				assertAnalysis(expected, actual);
+				Assert.assertEquals(expected.diffElevationUp, actual.diffElevationUp, 1e-3);
+				Assert.assertEquals(recordedSegment.splitByDistance(500, false).size(), analyzer.getSplits().size());
+			}
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.protobuf.CodedOutputStream;
+
+import net.osmand.IndexConstants;
+import net.osmand.binary.OsmandOdb.OsmAndStructure;
+
+public class CachedOsmandIndexesTest {
+
+	// map file without indexes
+	private static File createFile(File dir, String name, long dateCreated) throws IOException {
+		File f = new File(dir, name);
+		FileOutputStream fout = new FileOutputStream(f);
+		CodedOutputStream out = CodedOutputStream.newInstance(fout);
+		out.writeUInt32(OsmAndStructure.VERSION_FIELD_NUMBER, IndexConstants.BINARY_MAP_VERSION);
+		out.writeInt64(OsmAndStructure.DATECREATED_FIELD_NUMBER, dateCreated);
+		out.writeUInt32(OsmAndStructure.VERSIONCONFIRM_FIELD_NUMBER, IndexConstants.BINARY_MAP_VERSION);
+		out.flush();
+		fout.close();
+		f.deleteOnExit();
+		return f;
+	}
+
+	@Test
+	public void testJournal() throws IOException {
+		File dir = File.createTempFile("indexes", "");
+		dir.delete();
+		dir.mkdirs();
+		dir.deleteOnExit();
+		File journal = new File(dir, CachedOsmandIndexes.INDEXES_JOURNAL_DEFAULT_FILENAME);
+		journal.deleteOnExit();
+		List<File> files = new ArrayList<File>();
+		for (int i = 0; i < 5; i++) {
+			files.add(createFile(dir, "map" + i + ".obf", i));
+		}
+		CachedOsmandIndexes cache = new CachedOsmandIndexes();
+		List<BinaryMapIndexReader> readers = cache.getReaders(files, true, 3);
+		Assert.assertEquals(files.size(), readers.size());
+		for (BinaryMapIndexReader r : readers) {
+			Assert.assertNotNull(r);
+			r.close();
+		}
+		// file of same size with other modification time is not taken from stored indexes
+		File sameSize = createFile(dir, "map1.obf", 2);
+		Assert.assertEquals(files.get(1).length(), sameSize.length());
+		Assert.assertTrue(sameSize.setLastModified(sameSize.lastModified() - 10000));
+		Assert.assertNull(cache.getFileIndex(sameSize, false));
+		Assert.assertEquals(2, cache.getFileIndex(sameSize, true).getDateModified());
+		cache.writeToJournal(journal);
+
+		cache = new CachedOsmandIndexes();
+		cache.readFromJournal(journal);
+		for (File f : files) {
+			Assert.assertNotNull(cache.getFileIndex(f, false));
+		}
+		long length = journal.length();
+		// changed file is not taken from journal and new record is appended
+		File changed = createFile(dir, "map0.obf", 1000);
+		Assert.assertTrue(changed.setLastModified(changed.lastModified() - 10000));
+		Assert.assertNull(cache.getFileIndex(changed, false));
+		Assert.assertEquals(1000, cache.getFileIndex(changed, true).getDateModified());
+		cache.writeToJournal(journal);
+		Assert.assertTrue(journal.length() > length);
+		Assert.assertTrue(journal.length() < 2 * length);
+
+		cache = new CachedOsmandIndexes();
+		cache.readFromJournal(journal);
+		for (File f : files) {
+			Assert.assertNotNull(cache.getFileIndex(f, false));
+		}
+		// truncated record is skipped and journal is rewritten
+		RandomAccessFile raf = new RandomAccessFile(journal, "rw");
+		raf.setLength(journal.length() - 1);
+		raf.close();
+		cache = new CachedOsmandIndexes();
+		cache.readFromJournal(journal);
+		Assert.assertNull(cache.getFileIndex(changed, false));
+		cache.getFileIndex(changed, true);
+		cache.writeToJournal(journal);
+		cache = new CachedOsmandIndexes();
+		cache.readFromJournal(journal);
+		for (File f : files) {
+			Assert.assertNotNull(cache.getFileIndex(f, false));
+		}
+	}
+}
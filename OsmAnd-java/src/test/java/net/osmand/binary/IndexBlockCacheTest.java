@@ -0,0 +1,34 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IndexBlockCacheTest {
+
+	@Test
+	public void testReadThroughCache() throws IOException {
+		File file = MappedIndexFileTest.writeTestFile();
+		// small blocks to read values split between blocks and to evict blocks
+		IndexBlockCache cache = new IndexBlockCache(8 * 256, 256);
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		MappedIndexFileTest.checkStream(cache.newCodedInputStream(raf, file));
+		Assert.assertEquals(8, cache.getBlocksCount());
+		Assert.assertTrue(cache.getEvictions() > 0);
+		// second stream on same file reads cached blocks (start of file is read last by checkStream)
+		long hits = cache.getHits();
+		RandomAccessFile raf2 = new RandomAccessFile(file, "r");
+		Assert.assertEquals(0, cache.newCodedInputStream(raf2, file).readRawVarint32());
+		Assert.assertEquals(hits + 1, cache.getHits());
+
+		IndexBlockCache large = new IndexBlockCache(file.length() + 256, 256);
+		MappedIndexFileTest.checkStream(large.newCodedInputStream(raf2, file));
+		Assert.assertEquals(0, large.getEvictions());
+		Assert.assertEquals(large.getBlocksCount(), large.getMisses());
+		raf.close();
+		raf2.close();
+	}
+}
@@ -0,0 +1,98 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.TestObfWriter.TestRoad;
+
+public class LazyRouteDataObjectTest {
+
+	private static final int BASE = 1 << 30;
+	private static final String[][] RULES = { { "highway", "primary" }, { "highway", "residential" },
+			{ "oneway", "yes" }, { "name", "" }, { "name:de", "" }, { "highway", "traffic_signals" } };
+
+	private File file;
+	private BinaryMapIndexReader reader;
+
+	@Before
+	public void setUp() throws IOException {
+		List<TestRoad> roads = new ArrayList<TestRoad>();
+		for (int i = 0; i < 5; i++) {
+			int[] coordinates = new int[8];
+			for (int k = 0; k < 4; k++) {
+				coordinates[2 * k] = BASE + (i * 7 + k * 3) * 1024;
+				coordinates[2 * k + 1] = BASE - k * 512 + i * 4096;
+			}
+			TestRoad road = new TestRoad(100 + i * 3, i % 2 == 0 ? new int[] { 1, 3 } : new int[] { 2 }, coordinates);
+			road.names.put(4, "Main street " + i);
+			if (i % 2 == 0) {
+				road.names.put(5, "Hauptstrasse " + i);
+				road.pointTypes.put(2, new int[] { 6 });
+			}
+			roads.add(road);
+		}
+		TestObfWriter writer = new TestObfWriter();
+		writer.addRoutingIndex("test", RULES, roads);
+		file = writer.write(File.createTempFile("route", ".obf"));
+		reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		reader.close();
+		file.delete();
+	}
+
+	private RouteSubregion getSubregion() {
+		RouteRegion region = reader.getRoutingIndexes().get(0);
+		Assert.assertEquals(1, region.getSubregions().size());
+		return region.getSubregions().get(0);
+	}
+
+	@Test
+	public void testLazyDecodingIsSameAsEager() throws IOException {
+		List<RouteDataObject> eager = reader.loadRouteIndexData(getSubregion(), false);
+		List<RouteDataObject> lazy = reader.loadRouteIndexData(getSubregion(), true);
+		Assert.assertEquals(5, eager.size());
+		Assert.assertEquals(eager.size(), lazy.size());
+		for (int i = 0; i < eager.size(); i++) {
+			RouteDataObject e = eager.get(i);
+			RouteDataObject l = lazy.get(i);
+			Assert.assertFalse(e.isLazy());
+			Assert.assertTrue(l.isLazy());
+			Assert.assertEquals(100 + i * 3, l.id);
+			Assert.assertArrayEquals(e.types, l.types);
+			Assert.assertNull(l.pointsX);
+			Assert.assertNull(l.names);
+		}
+		// reader is positioned by other reads before objects are decoded
+		Assert.assertEquals(5, reader.loadRouteIndexData(getSubregion(), false).size());
+		for (int i = lazy.size() - 1; i >= 0; i--) {
+			RouteDataObject e = eager.get(i);
+			RouteDataObject l = lazy.get(i);
+			l.decodeLazyData();
+			Assert.assertFalse(l.isLazy());
+			Assert.assertEquals(e.id, l.id);
+			Assert.assertEquals(4, l.getPointsLength());
+			Assert.assertArrayEquals(e.pointsX, l.pointsX);
+			Assert.assertArrayEquals(e.pointsY, l.pointsY);
+			Assert.assertArrayEquals(e.nameIds, l.nameIds);
+			Assert.assertEquals(e.names, l.names);
+			Assert.assertEquals("Main street " + i, l.getName());
+			Assert.assertArrayEquals(e.pointTypes, l.pointTypes);
+		}
+		Assert.assertEquals(BASE + 7 * 1024 + 3 * 1024, lazy.get(1).getPoint31XTile(1));
+		Assert.assertEquals("Hauptstrasse 2", lazy.get(2).getName("de"));
+		Assert.assertArrayEquals(new int[] { 6 }, lazy.get(2).getPointTypes(2));
+	}
+}
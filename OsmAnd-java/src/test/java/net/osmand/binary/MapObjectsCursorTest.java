@@ -0,0 +1,169 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader.MapIndex;
+import net.osmand.binary.BinaryMapIndexReader.MapObjectsCursor;
+import net.osmand.binary.BinaryMapIndexReader.SearchFilter;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.TestObfWriter.TestMapObject;
+
+public class MapObjectsCursorTest {
+
+	private static final int BASE = 1 << 30;
+	private static final int AREA = 1 << 16;
+	private static final int ZOOM = 15;
+	private static final String[][] RULES = { { "highway", "primary" }, { "building", "yes" }, { "natural", "water" } };
+
+	private File file;
+	private RandomAccessFile raf;
+	private BinaryMapIndexReader reader;
+	private final List<TestMapObject> objects = new ArrayList<TestMapObject>();
+
+	@Before
+	public void setUp() throws IOException {
+		Random rnd = new Random(11);
+		List<List<TestMapObject>> blocks = new ArrayList<List<TestMapObject>>();
+		long id = 100;
+		for (int b = 0; b < 6; b++) {
+			List<TestMapObject> block = new ArrayList<TestMapObject>();
+			// blocks are located in different parts of area
+			int bx = BASE + (b % 3) * AREA / 3;
+			int by = BASE + (b / 3) * AREA / 2;
+			for (int i = 0; i < 25; i++) {
+				int points = 1 + rnd.nextInt(4);
+				int[] coordinates = new int[points * 2];
+				for (int k = 0; k < points; k++) {
+					coordinates[2 * k] = (bx + rnd.nextInt(AREA / 3)) & ~31;
+					coordinates[2 * k + 1] = (by + rnd.nextInt(AREA / 2)) & ~31;
+				}
+				TestMapObject o = new TestMapObject(id, new int[] { 1 + rnd.nextInt(RULES.length) }, coordinates);
+				id += 1 + rnd.nextInt(5);
+				block.add(o);
+				objects.add(o);
+			}
+			blocks.add(block);
+		}
+		TestObfWriter writer = new TestObfWriter();
+		writer.addMapIndex("test", RULES, ZOOM - 2, ZOOM + 2, blocks);
+		file = File.createTempFile("cursor", ".obf");
+		writer.write(file);
+		raf = new RandomAccessFile(file, "r");
+		reader = new BinaryMapIndexReader(raf, file);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		reader.close();
+		file.delete();
+	}
+
+	private static SearchFilter typeFilter(final int type) {
+		return new SearchFilter() {
+			@Override
+			public boolean accept(TIntArrayList types, MapIndex index) {
+				return types.contains(type);
+			}
+		};
+	}
+
+	/**
+	 * Objects which should be found: any point is inside of box or bounds of object intersect box
+	 */
+	private TLongArrayList expectedIds(int left, int right, int top, int bottom, int type) {
+		TLongArrayList ids = new TLongArrayList();
+		for (TestMapObject o : objects) {
+			int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+			for (int k = 0; k < o.coordinates.length; k += 2) {
+				minX = Math.min(minX, o.coordinates[k]);
+				maxX = Math.max(maxX, o.coordinates[k]);
+				minY = Math.min(minY, o.coordinates[k + 1]);
+				maxY = Math.max(maxY, o.coordinates[k + 1]);
+			}
+			if (maxX >= left && minX <= right && minY <= bottom && maxY >= top && (type == 0 || o.types[0] == type)) {
+				ids.add(o.id);
+			}
+		}
+		return ids;
+	}
+
+	private static TLongArrayList ids(List<BinaryMapDataObject> objects) {
+		TLongArrayList ids = new TLongArrayList();
+		for (BinaryMapDataObject o : objects) {
+			ids.add(o.getId());
+		}
+		return ids;
+	}
+
+	@Test
+	public void testCursorSameAsSearch() throws IOException {
+		int left = BASE + AREA / 5;
+		int right = BASE + AREA * 4 / 5;
+		int top = BASE + AREA / 4;
+		int bottom = BASE + AREA * 3 / 4;
+		for (int type = 0; type <= RULES.length; type++) {
+			TLongArrayList expected = expectedIds(left, right, top, bottom, type);
+			Assert.assertFalse(expected.isEmpty());
+			SearchFilter filter = type == 0 ? null : typeFilter(type);
+			final TLongArrayList published = new TLongArrayList();
+			SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(left, right, top, bottom,
+					ZOOM, filter, new ResultMatcher<BinaryMapDataObject>() {
+						@Override
+						public boolean publish(BinaryMapDataObject object) {
+							published.add(object.getId());
+							return true;
+						}
+
+						@Override
+						public boolean isCancelled() {
+							return false;
+						}
+					});
+			Assert.assertEquals(expected, ids(reader.searchMapIndex(req)));
+			Assert.assertEquals(expected, published);
+
+			req = BinaryMapIndexReader.buildSearchRequest(left, right, top, bottom, ZOOM, filter);
+			MapObjectsCursor cursor = reader.searchMapIndexCursor(req);
+			TLongArrayList found = new TLongArrayList();
+			while (cursor.hasNext()) {
+				found.add(cursor.next().getId());
+				if (found.size() == expected.size() / 2) {
+					// reader is used by another search between calls of cursor
+					reader.searchMapIndex(BinaryMapIndexReader.buildSearchRequest(BASE, BASE + AREA, BASE,
+							BASE + AREA, ZOOM, null));
+				}
+			}
+			Assert.assertEquals(expected, found);
+			Assert.assertTrue(req.getSearchResults().isEmpty());
+		}
+	}
+
+	@Test
+	public void testClosedAndOtherZoomCursor() throws IOException {
+		SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(BASE, BASE + AREA, BASE,
+				BASE + AREA, ZOOM, null);
+		MapObjectsCursor cursor = reader.searchMapIndexCursor(req);
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals(objects.get(i).id, cursor.next().getId());
+		}
+		cursor.close();
+		Assert.assertFalse(cursor.hasNext());
+
+		req = BinaryMapIndexReader.buildSearchRequest(BASE, BASE + AREA, BASE, BASE + AREA, ZOOM + 3, null);
+		Assert.assertFalse(reader.searchMapIndexCursor(req).hasNext());
+		Assert.assertTrue(reader.searchMapIndex(req).isEmpty());
+	}
+}
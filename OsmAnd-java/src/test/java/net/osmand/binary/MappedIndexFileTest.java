@@ -0,0 +1,70 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+public class MappedIndexFileTest {
+
+	private static final int COUNT = 2000;
+
+	static File writeTestFile() throws IOException {
+		File file = File.createTempFile("mapped", ".obf");
+		file.deleteOnExit();
+		FileOutputStream fout = new FileOutputStream(file);
+		CodedOutputStream out = CodedOutputStream.newInstance(fout);
+		for (int i = 0; i < COUNT; i++) {
+			out.writeUInt32NoTag(i * 7919);
+			out.writeStringNoTag("name " + i);
+			out.writeFixed32NoTag(i);
+		}
+		out.flush();
+		fout.close();
+		return file;
+	}
+
+	static void checkStream(CodedInputStream is) throws IOException {
+		int[] positions = new int[COUNT];
+		for (int i = 0; i < COUNT; i++) {
+			positions[i] = is.getTotalBytesRead();
+			Assert.assertEquals(i * 7919, is.readRawVarint32());
+			Assert.assertEquals("name " + i, is.readString());
+			Assert.assertEquals(i, is.readRawLittleEndian32());
+		}
+		Assert.assertTrue(is.isAtEnd());
+		for (int i = COUNT - 1; i >= 0; i -= 13) {
+			is.seek(positions[i]);
+			is.readRawVarint32();
+			is.skipRawBytes(is.readRawVarint32());
+			Assert.assertEquals(i, is.readRawLittleEndian32());
+		}
+		is.seek(positions[5]);
+		int old = is.pushLimit(positions[6] - positions[5]);
+		is.readRawVarint32();
+		is.readString();
+		is.readRawLittleEndian32();
+		Assert.assertTrue(is.isAtEnd());
+		is.popLimit(old);
+		Assert.assertEquals(6 * 7919, is.readRawVarint32());
+	}
+
+	@Test
+	public void testReadAcrossChunks() throws IOException {
+		File file = writeTestFile();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		checkStream(CodedInputStream.newInstance(raf));
+		raf.close();
+		// small chunks to read values split between chunks
+		MappedIndexFile mapped = MappedIndexFile.map(file, 1000);
+		Assert.assertEquals(file.length(), mapped.length());
+		checkStream(mapped.newCodedInputStream());
+		checkStream(MappedIndexFile.map(file).newCodedInputStream());
+	}
+}
@@ -0,0 +1,188 @@
+package net.osmand.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import gnu.trove.list.array.TIntArrayList;
+import net.osmand.Collator;
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+import net.osmand.OsmAndCollator;
+import net.osmand.binary.BinaryMapAddressReaderAdapter.AddressRegion;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiRegion;
+import net.osmand.binary.OsmandOdb.IndexedStringTable;
+import net.osmand.binary.TestObfWriter.TestStreet;
+import net.osmand.data.MapObject;
+
+public class NameIndexTrieTest {
+
+	private static final String LETTERS = "abcdeé";
+
+	private static String randomWord(Random r, int maxLength) {
+		int len = 1 + r.nextInt(maxLength);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < len; i++) {
+			sb.append(LETTERS.charAt(r.nextInt(LETTERS.length())));
+		}
+		return sb.toString();
+	}
+
+	private static byte[] writeTable(Random r, int depth) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bos);
+		int keys = 1 + r.nextInt(6);
+		for (int k = 0; k < keys; k++) {
+			out.writeString(IndexedStringTable.KEY_FIELD_NUMBER, randomWord(r, 2));
+			int vals = r.nextInt(3);
+			for (int v = 0; v < vals; v++) {
+				out.writeTag(IndexedStringTable.VAL_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED32);
+				int val = r.nextInt(1 << 20);
+				out.writeRawByte(val >>> 24);
+				out.writeRawByte(val >>> 16);
+				out.writeRawByte(val >>> 8);
+				out.writeRawByte(val);
+			}
+			if (depth > 0 && r.nextBoolean()) {
+				byte[] sub = writeTable(r, depth - 1);
+				out.writeTag(IndexedStringTable.SUBTABLES_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+				out.writeRawVarint32(sub.length);
+				out.writeRawBytes(sub);
+			}
+		}
+		out.flush();
+		return bos.toByteArray();
+	}
+
+	private static List<TIntArrayList> newOffsets(List<String> queries, TIntArrayList chars) {
+		List<TIntArrayList> offsets = new ArrayList<TIntArrayList>();
+		for (int i = 0; i < queries.size(); i++) {
+			offsets.add(new TIntArrayList());
+			chars.add(0);
+		}
+		return offsets;
+	}
+
+	@Test
+	public void testSameOffsetsAsStringTable() throws IOException {
+		Random r = new Random(11);
+		Collator collator = OsmAndCollator.primaryCollator();
+		File file = File.createTempFile("names", ".obf");
+		file.deleteOnExit();
+		File cacheFile = File.createTempFile("names", ".cache");
+		cacheFile.deleteOnExit();
+		for (int t = 0; t < 30; t++) {
+			byte[] table = writeTable(r, 3);
+			FileOutputStream fout = new FileOutputStream(file);
+			fout.write(table);
+			fout.close();
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(raf, file, false);
+			PoiRegion region = new PoiRegion();
+			for (int q = 0; q < 20; q++) {
+				List<String> queries = new ArrayList<String>();
+				int cnt = 1 + r.nextInt(2);
+				for (int i = 0; i < cnt; i++) {
+					queries.add(randomWord(r, 4));
+				}
+				TIntArrayList expectedChars = new TIntArrayList();
+				List<TIntArrayList> expected = newOffsets(queries, expectedChars);
+				reader.codedIS.seek(0);
+				int old = reader.codedIS.pushLimit(table.length);
+				reader.readIndexedStringTable(collator, queries, "", expected, expectedChars);
+				reader.codedIS.popLimit(old);
+
+				TIntArrayList chars = new TIntArrayList();
+				List<TIntArrayList> offsets = newOffsets(queries, chars);
+				if (q == 0) {
+					cacheFile.delete();
+					reader.enableNameIndexCache(t % 2 == 0 ? cacheFile : null);
+				}
+				reader.codedIS.seek(0);
+				old = reader.codedIS.pushLimit(table.length);
+				reader.searchIndexedStringTable(region, collator, queries, offsets, chars);
+				reader.codedIS.popLimit(old);
+				Assert.assertEquals(expectedChars, chars);
+				Assert.assertEquals(expected, offsets);
+			}
+			Assert.assertNotNull(region.nameIndex);
+			reader.close();
+		}
+	}
+
+	private static byte[] readFile(File f) throws IOException {
+		byte[] bytes = new byte[(int) f.length()];
+		RandomAccessFile raf = new RandomAccessFile(f, "r");
+		raf.readFully(bytes);
+		raf.close();
+		return bytes;
+	}
+
+	@Test
+	public void testRegionsAppendedToCache() throws IOException {
+		int base = 1 << 30;
+		TestObfWriter writer = new TestObfWriter();
+		for (int i = 0; i < 2; i++) {
+			List<TestStreet> streets = new ArrayList<TestStreet>();
+			for (int k = 0; k < 5; k++) {
+				streets.add(new TestStreet(i * 10 + k + 1, "Oakland Street " + i + "_" + k, base + k * 1024, base + i * 1024));
+			}
+			writer.addAddressIndex("region" + i, 100 + i, "Town " + i, base, base + i * 1024, streets);
+		}
+		File file = writer.write(File.createTempFile("names", ".obf"));
+		file.deleteOnExit();
+		File cacheFile = File.createTempFile("names", ".cache");
+		cacheFile.deleteOnExit();
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+		// valid cache with region which is not in map (it is not kept if file is rewritten)
+		NameIndexTrie.Builder builder = new NameIndexTrie.Builder();
+		builder.addPosting(builder.addNode("elm"), 1);
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(cacheFile));
+		out.writeInt(2);
+		out.writeLong(file.length());
+		out.writeLong(reader.getDateCreated());
+		out.writeInt(-1);
+		out.writeInt(-1);
+		builder.build().writeTo(out);
+		out.close();
+		byte[] cached = readFile(cacheFile);
+		long cachedLength = cached.length;
+
+		reader.enableNameIndexCache(cacheFile);
+		SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(null, "oakland",
+				StringMatcherMode.CHECK_STARTS_FROM_SPACE);
+		Assert.assertEquals(10, reader.searchAddressDataByName(req).size());
+		reader.close();
+		// both regions are appended after first one
+		long length = cacheFile.length();
+		Assert.assertTrue(length > cachedLength);
+		byte[] appended = readFile(cacheFile);
+		for (int i = 0; i < cached.length; i++) {
+			Assert.assertEquals(cached[i], appended[i]);
+		}
+
+		reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+		reader.enableNameIndexCache(cacheFile);
+		req = BinaryMapIndexReader.buildAddressByNameRequest(null, "oakland",
+				StringMatcherMode.CHECK_STARTS_FROM_SPACE);
+		Assert.assertEquals(10, reader.searchAddressDataByName(req).size());
+		for (AddressRegion region : reader.getAddressIndexes()) {
+			Assert.assertNotNull(region.nameIndex);
+		}
+		reader.close();
+		// name indexes are read from cache, so it is not changed
+		Assert.assertEquals(length, cacheFile.length());
+	}
+}
@@ -0,0 +1,148 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import gnu.trove.list.array.TLongArrayList;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader.SearchPoiTypeFilter;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.TestObfWriter.TestAmenity;
+import net.osmand.data.Amenity;
+import net.osmand.data.LatLon;
+import net.osmand.osm.PoiCategory;
+import net.osmand.util.MapUtils;
+
+public class PoiNearestSearchTest {
+
+	private static final int BASE = 1 << 30;
+	private static final int BOX_ZOOM = 14;
+	private static final int TILE = 1 << (31 - BOX_ZOOM);
+	private static final String[][] CATEGORIES = { { "sustenance", "cafe", "restaurant" }, { "shop", "bakery" } };
+
+	private File file;
+	private BinaryMapIndexReader reader;
+
+	@Before
+	public void setUp() throws IOException {
+		Random rnd = new Random(37);
+		List<TestAmenity> amenities = new ArrayList<TestAmenity>();
+		for (int i = 0; i < 300; i++) {
+			int category = rnd.nextInt(CATEGORIES.length);
+			int subcategory = rnd.nextInt(CATEGORIES[category].length - 1);
+			int x = (BASE + rnd.nextInt(4 * TILE)) & ~127;
+			int y = (BASE + rnd.nextInt(4 * TILE)) & ~127;
+			amenities.add(new TestAmenity(1000 + i, "poi " + i, category, subcategory, x, y));
+		}
+		TestObfWriter writer = new TestObfWriter();
+		writer.addPoiIndex("test", CATEGORIES, BOX_ZOOM, amenities);
+		file = File.createTempFile("poi", ".obf");
+		writer.write(file);
+		reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		reader.close();
+		file.delete();
+	}
+
+	private static SearchPoiTypeFilter subtypeFilter(final String subtype) {
+		return new SearchPoiTypeFilter() {
+			@Override
+			public boolean accept(PoiCategory type, String subcategory) {
+				return subcategory.equals(subtype);
+			}
+
+			@Override
+			public boolean isEmpty() {
+				return false;
+			}
+		};
+	}
+
+	private static double distance(Amenity a, int x31, int y31) {
+		LatLon l = a.getLocation();
+		return MapUtils.squareRootDist31(x31, y31, MapUtils.get31TileNumberX(l.getLongitude()),
+				MapUtils.get31TileNumberY(l.getLatitude()));
+	}
+
+	private static TLongArrayList ids(List<Amenity> amenities) {
+		TLongArrayList ids = new TLongArrayList();
+		for (Amenity a : amenities) {
+			ids.add(a.getId());
+		}
+		return ids;
+	}
+
+	@Test
+	public void testSameAsSortedSearchPoi() throws IOException {
+		int left = BASE + TILE / 2;
+		int right = BASE + 3 * TILE + TILE / 3;
+		int top = BASE + TILE / 3;
+		int bottom = BASE + 3 * TILE + TILE / 2;
+		final int x31 = left / 2 + right / 2;
+		final int y31 = top / 2 + bottom / 2;
+		String[] subtypes = { null, "cafe", "bakery" };
+		for (String subtype : subtypes) {
+			SearchPoiTypeFilter filter = subtype == null ? null : subtypeFilter(subtype);
+			List<Amenity> all = new ArrayList<Amenity>(reader.searchPoi(
+					BinaryMapIndexReader.buildSearchPoiRequest(left, right, top, bottom, -1, filter, null)));
+			Collections.sort(all, new Comparator<Amenity>() {
+				@Override
+				public int compare(Amenity o1, Amenity o2) {
+					return Double.compare(distance(o1, x31, y31), distance(o2, x31, y31));
+				}
+			});
+			Assert.assertTrue(all.size() > 30);
+			// result matcher rejects amenities with odd ids
+			List<Amenity> accepted = new ArrayList<Amenity>();
+			for (Amenity a : all) {
+				if (a.getId() % 2 == 0) {
+					accepted.add(a);
+				}
+			}
+			for (int k : new int[] { 1, 7, 25, all.size() + 5 }) {
+				final List<Amenity> checked = new ArrayList<Amenity>();
+				SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(left, right, top, bottom, -1,
+						filter, new ResultMatcher<Amenity>() {
+							@Override
+							public boolean publish(Amenity object) {
+								checked.add(object);
+								return object.getId() % 2 == 0;
+							}
+
+							@Override
+							public boolean isCancelled() {
+								return false;
+							}
+						});
+				List<Amenity> nearest = reader.searchPoiNearest(req, k);
+				// rejected amenities don't reduce number of results
+				TLongArrayList expected = ids(accepted.subList(0, Math.min(k, accepted.size())));
+				Assert.assertEquals(expected, ids(nearest));
+				Assert.assertTrue(ids(checked).containsAll(expected));
+				if (k == 1) {
+					// matcher is checked only for amenities closer than current k-th one
+					Assert.assertTrue(checked.size() < all.size() / 2);
+				}
+				if (subtype != null) {
+					for (Amenity a : nearest) {
+						Assert.assertEquals(subtype, a.getSubType());
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.GeocodingUtilities.GeocodingResult;
+import net.osmand.binary.ReverseGeocodingService.RoutingContextFactory;
+import net.osmand.binary.TestObfWriter.TestBuilding;
+import net.osmand.binary.TestObfWriter.TestStreet;
+import net.osmand.data.Building;
+import net.osmand.data.LatLon;
+import net.osmand.data.Street;
+import net.osmand.router.RoutingConfiguration;
+import net.osmand.router.RoutingContext;
+import net.osmand.router.TestRoadNetwork;
+import net.osmand.router.TestRoadNetwork.TestRoutingContext;
+import net.osmand.util.MapUtils;
+
+public class ReverseGeocodingServiceTest {
+
+	private static final int BASE_X = TestRoadNetwork.BASE_X;
+	private static final int BASE_Y = TestRoadNetwork.BASE_Y;
+	private static final int CELL = TestRoadNetwork.CELL;
+	// last street has no buildings, last road has no street in address index
+	private static final String[] NAMES = { "Oakwood", "Maplewood", "Birchfield", "Elmhurst", "Cedarview", "Pinecrest" };
+
+	private File file;
+	private final List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+	private final List<RouteDataObject> roads = new ArrayList<RouteDataObject>();
+	private RoutingConfiguration config;
+	private final Set<Street> loadedStreets = Collections.newSetFromMap(new IdentityHashMap<Street, Boolean>());
+	private int loadBuildingsCalls;
+
+	@Before
+	public void setUp() throws IOException {
+		List<TestStreet> streets = new ArrayList<TestStreet>();
+		long id = 1;
+		for (int i = 0; i < NAMES.length - 1; i++) {
+			int y = BASE_Y + i * CELL;
+			TestStreet s = new TestStreet(id++, NAMES[i], BASE_X + 2 * CELL, y);
+			for (int b = 0; b < 32 && i < NAMES.length - 2; b++) {
+				// buildings on both sides of street every ~25 m
+				int dy = b % 2 == 0 ? CELL / 16 : -CELL / 16;
+				s.buildings.add(new TestBuilding(id++, String.valueOf(b + 1), BASE_X + b * CELL / 8, y + dy));
+			}
+			streets.add(s);
+		}
+		TestObfWriter writer = new TestObfWriter();
+		writer.addAddressIndex("test", 1000, "Testville", BASE_X + 2 * CELL, BASE_Y + 2 * CELL, streets);
+		writer.addRoutingIndex("test");
+		file = File.createTempFile("geocoding", ".obf");
+		writer.write(file);
+
+		RouteRegion region = openReader().getRoutingIndexes().get(0);
+		region.initRouteEncodingRule(0, "highway", "residential");
+		region.initRouteEncodingRule(1, "name", "");
+		for (int i = 0; i < NAMES.length; i++) {
+			RouteDataObject ro = new RouteDataObject(region);
+			ro.id = 100 + i;
+			ro.types = new int[] { 0 };
+			ro.pointsX = new int[] { BASE_X, BASE_X + 2 * CELL, BASE_X + 4 * CELL };
+			ro.pointsY = new int[] { BASE_Y + i * CELL, BASE_Y + i * CELL, BASE_Y + i * CELL };
+			ro.names = new TIntObjectHashMap<String>();
+			ro.names.put(1, NAMES[i]);
+			roads.add(ro);
+		}
+		config = TestRoadNetwork.createConfiguration();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (BinaryMapIndexReader r : readers) {
+			r.close();
+		}
+		file.delete();
+	}
+
+	private synchronized BinaryMapIndexReader openReader() throws IOException {
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file) {
+			@Override
+			public void preloadBuildings(Street s, SearchRequest<Building> resultMatcher) throws IOException {
+				synchronized (loadedStreets) {
+					loadedStreets.add(s);
+					loadBuildingsCalls++;
+				}
+				super.preloadBuildings(s, resultMatcher);
+			}
+		};
+		readers.add(reader);
+		return reader;
+	}
+
+	private static List<String> toStrings(List<GeocodingResult> results) {
+		List<String> res = new ArrayList<String>();
+		for (GeocodingResult r : results) {
+			res.add(r.toString());
+		}
+		return res;
+	}
+
+	@Test
+	public void testSameResultsAsGeocodingUtilities() throws IOException {
+		Random rnd = new Random(41);
+		List<LatLon> points = new ArrayList<LatLon>();
+		for (int i = 0; i < 60; i++) {
+			int x = BASE_X + rnd.nextInt(4 * CELL);
+			int y = BASE_Y + rnd.nextInt(NAMES.length * CELL) - CELL / 4;
+			points.add(new LatLon(MapUtils.get31LatitudeY(y), MapUtils.get31LongitudeX(x)));
+		}
+		GeocodingUtilities utilities = new GeocodingUtilities();
+		BinaryMapIndexReader reader = openReader();
+		List<List<String>> expected = new ArrayList<List<String>>();
+		int buildings = 0;
+		for (LatLon l : points) {
+			RoutingContext ctx = new TestRoutingContext(config, roads, reader);
+			List<GeocodingResult> res = utilities.sortGeocodingResults(Collections.singletonList(reader),
+					utilities.reverseGeocodingSearch(ctx, l.getLatitude(), l.getLongitude(), false));
+			Assert.assertFalse(res.isEmpty());
+			if (res.get(0).building != null) {
+				buildings++;
+			}
+			expected.add(toStrings(res));
+		}
+		Assert.assertTrue(buildings > 10 && buildings < points.size());
+		loadedStreets.clear();
+		loadBuildingsCalls = 0;
+
+		ReverseGeocodingService service = new ReverseGeocodingService(new RoutingContextFactory() {
+			@Override
+			public RoutingContext createRoutingContext() throws IOException {
+				return new TestRoutingContext(config, roads, openReader());
+			}
+		}, 3, 4);
+		try {
+			// second batch uses cached streets with loaded buildings
+			for (int batch = 0; batch < 2; batch++) {
+				List<List<GeocodingResult>> results = service.reverseGeocoding(points);
+				Assert.assertEquals(points.size(), results.size());
+				for (int i = 0; i < points.size(); i++) {
+					Assert.assertEquals(expected.get(i), toStrings(results.get(i)));
+				}
+			}
+			// buildings of every cached street (also without buildings) are loaded once
+			Assert.assertEquals(loadedStreets.size(), loadBuildingsCalls);
+		} finally {
+			service.shutdown();
+		}
+	}
+}
@@ -0,0 +1,611 @@
+package net.osmand.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import net.osmand.binary.OsmandOdb.AddressNameIndexDataAtom;
+import net.osmand.binary.OsmandOdb.BuildingIndex;
+import net.osmand.binary.OsmandOdb.CityBlockIndex;
+import net.osmand.binary.OsmandOdb.CityIndex;
+import net.osmand.binary.OsmandOdb.IdTable;
+import net.osmand.binary.OsmandOdb.IndexedStringTable;
+import net.osmand.binary.OsmandOdb.MapData;
+import net.osmand.binary.OsmandOdb.MapDataBlock;
+import net.osmand.binary.OsmandOdb.OsmAndAddressIndex;
+import net.osmand.binary.OsmandOdb.OsmAndAddressIndex.CitiesIndex;
+import net.osmand.binary.OsmandOdb.OsmAndAddressNameIndexData;
+import net.osmand.binary.OsmandOdb.OsmAndAddressNameIndexData.AddressNameIndexData;
+import net.osmand.binary.OsmandOdb.OsmAndCategoryTable;
+import net.osmand.binary.OsmandOdb.OsmAndMapIndex;
+import net.osmand.binary.OsmandOdb.OsmAndMapIndex.MapDataBox;
+import net.osmand.binary.OsmandOdb.OsmAndMapIndex.MapEncodingRule;
+import net.osmand.binary.OsmandOdb.OsmAndMapIndex.MapRootLevel;
+import net.osmand.binary.OsmandOdb.OsmAndPoiBox;
+import net.osmand.binary.OsmandOdb.OsmAndPoiBoxData;
+import net.osmand.binary.OsmandOdb.OsmAndPoiBoxDataAtom;
+import net.osmand.binary.OsmandOdb.OsmAndPoiCategories;
+import net.osmand.binary.OsmandOdb.OsmAndPoiIndex;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex.RouteDataBlock;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex.RouteDataBox;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex.RouteEncodingRule;
+import net.osmand.binary.OsmandOdb.OsmAndStructure;
+import net.osmand.binary.OsmandOdb.OsmAndTileBox;
+import net.osmand.binary.OsmandOdb.RouteData;
+import net.osmand.binary.OsmandOdb.StreetIndex;
+import net.osmand.binary.OsmandOdb.StringTable;
+
+/**
+ * Writes small obf files for tests (obf files of test resources are not part of repository),
+ * only parts of format which are read by tests are written.
+ */
+public class TestObfWriter {
+
+	private static final int VERSION = 2;
+
+	public static class TestMapObject {
+		public final long id;
+		public final int[] types;
+		// x, y pairs, coordinates should be multiple of 1 << SHIFT_COORDINATES
+		public final int[] coordinates;
+
+		public TestMapObject(long id, int[] types, int[] coordinates) {
+			this.id = id;
+			this.types = types;
+			this.coordinates = coordinates;
+		}
+	}
+
+	public static class TestAmenity {
+		public final long id;
+		public final String name;
+		// position of category in categories of index and of subcategory in category
+		public final int category;
+		public final int subcategory;
+		// coordinates should be multiple of 1 << 7 (poi coordinates are stored with 24 zoom precision)
+		public final int x31;
+		public final int y31;
+
+		public TestAmenity(long id, String name, int category, int subcategory, int x31, int y31) {
+			this.id = id;
+			this.name = name;
+			this.category = category;
+			this.subcategory = subcategory;
+			this.x31 = x31;
+			this.y31 = y31;
+		}
+	}
+
+	public static class TestBuilding {
+		public final long id;
+		public final String name;
+		public final int x31;
+		public final int y31;
+
+		public TestBuilding(long id, String name, int x31, int y31) {
+			this.id = id;
+			this.name = name;
+			this.x31 = x31;
+			this.y31 = y31;
+		}
+	}
+
+	public static class TestStreet {
+		public final long id;
+		// one word name which is also key of name index
+		public final String name;
+		public final int x31;
+		public final int y31;
+		public final List<TestBuilding> buildings = new ArrayList<TestBuilding>();
+
+		public TestStreet(long id, String name, int x31, int y31) {
+			this.id = id;
+			this.name = name;
+			this.x31 = x31;
+			this.y31 = y31;
+		}
+	}
+
+	public static class TestRoad {
+		public final long id;
+		public final int[] types;
+		// x31, y31 pairs
+		public final int[] coordinates;
+		// rule of name tag -> name
+		public final Map<Integer, String> names = new LinkedHashMap<Integer, String>();
+		// point index -> rules of point
+		public final Map<Integer, int[]> pointTypes = new LinkedHashMap<Integer, int[]>();
+
+		public TestRoad(long id, int[] types, int[] coordinates) {
+			this.id = id;
+			this.types = types;
+			this.coordinates = coordinates;
+		}
+	}
+
+	private static final int POI_ZOOM = 24;
+	private static final int ADDRESS_ZOOM = 24;
+	private static final int ROUTE_SHIFT_COORDINATES = 4;
+
+	private final long dateCreated = System.currentTimeMillis();
+	private final Buffer indexes = new Buffer();
+
+	/**
+	 * Map index with one level, objects of every block are stored in own box.
+	 * @param rules tag and value of rules, id of rule is position + 1
+	 */
+	public void addMapIndex(String name, String[][] rules, int minZoom, int maxZoom, List<List<TestMapObject>> blocks)
+			throws IOException {
+		Buffer index = new Buffer();
+		index.out.writeString(OsmAndMapIndex.NAME_FIELD_NUMBER, name);
+		for (String[] rule : rules) {
+			Buffer r = new Buffer();
+			r.out.writeString(MapEncodingRule.TAG_FIELD_NUMBER, rule[0]);
+			r.out.writeString(MapEncodingRule.VALUE_FIELD_NUMBER, rule[1]);
+			index.writeMessage(OsmAndMapIndex.RULES_FIELD_NUMBER, r.toByteArray());
+		}
+		index.writeFixedMessage(OsmAndMapIndex.LEVELS_FIELD_NUMBER, writeMapLevel(minZoom, maxZoom, blocks));
+		indexes.writeFixedMessage(OsmAndStructure.MAPINDEX_FIELD_NUMBER, index.toByteArray());
+	}
+
+	private byte[] writeMapLevel(int minZoom, int maxZoom, List<List<TestMapObject>> blocks) throws IOException {
+		int[][] bounds = new int[blocks.size()][];
+		int[] root = { Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE };
+		for (int i = 0; i < blocks.size(); i++) {
+			bounds[i] = new int[] { Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE };
+			for (TestMapObject o : blocks.get(i)) {
+				for (int k = 0; k < o.coordinates.length; k += 2) {
+					extend(bounds[i], o.coordinates[k], o.coordinates[k + 1]);
+					extend(root, o.coordinates[k], o.coordinates[k + 1]);
+				}
+			}
+		}
+		Buffer level = new Buffer();
+		level.out.writeInt32(MapRootLevel.MAXZOOM_FIELD_NUMBER, maxZoom);
+		level.out.writeInt32(MapRootLevel.MINZOOM_FIELD_NUMBER, minZoom);
+		level.out.writeInt32(MapRootLevel.LEFT_FIELD_NUMBER, root[0]);
+		level.out.writeInt32(MapRootLevel.RIGHT_FIELD_NUMBER, root[1]);
+		level.out.writeInt32(MapRootLevel.TOP_FIELD_NUMBER, root[2]);
+		level.out.writeInt32(MapRootLevel.BOTTOM_FIELD_NUMBER, root[3]);
+		byte[][] blockBytes = new byte[blocks.size()][];
+		for (int i = 0; i < blocks.size(); i++) {
+			blockBytes[i] = writeMapDataBlock(blocks.get(i), bounds[i]);
+		}
+		// box has fixed size, so shifts to blocks are calculated before boxes are written
+		int pos = level.size();
+		int[] boxPointers = new int[blocks.size()];
+		for (int i = 0; i < blocks.size(); i++) {
+			pos += CodedOutputStream.computeTagSize(MapRootLevel.BOXES_FIELD_NUMBER) + 4;
+			boxPointers[i] = pos;
+			pos += writeMapBox(bounds[i], root, 0).length;
+		}
+		int[] blockPointers = new int[blocks.size()];
+		for (int i = 0; i < blocks.size(); i++) {
+			pos += CodedOutputStream.computeTagSize(MapRootLevel.BLOCKS_FIELD_NUMBER);
+			blockPointers[i] = pos;
+			pos += CodedOutputStream.computeRawVarint32Size(blockBytes[i].length) + blockBytes[i].length;
+		}
+		for (int i = 0; i < blocks.size(); i++) {
+			level.writeFixedMessage(MapRootLevel.BOXES_FIELD_NUMBER,
+					writeMapBox(bounds[i], root, blockPointers[i] - boxPointers[i]));
+		}
+		for (int i = 0; i < blocks.size(); i++) {
+			level.writeMessage(MapRootLevel.BLOCKS_FIELD_NUMBER, blockBytes[i]);
+		}
+		return level.toByteArray();
+	}
+
+	private byte[] writeMapBox(int[] bounds, int[] root, int shiftToData) throws IOException {
+		Buffer box = new Buffer();
+		box.out.writeSInt32(MapDataBox.LEFT_FIELD_NUMBER, bounds[0] - root[0]);
+		box.out.writeSInt32(MapDataBox.RIGHT_FIELD_NUMBER, bounds[1] - root[1]);
+		box.out.writeSInt32(MapDataBox.TOP_FIELD_NUMBER, bounds[2] - root[2]);
+		box.out.writeSInt32(MapDataBox.BOTTOM_FIELD_NUMBER, bounds[3] - root[3]);
+		box.out.writeTag(MapDataBox.SHIFTTOMAPDATA_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED32);
+		box.writeInt(shiftToData);
+		return box.toByteArray();
+	}
+
+	private byte[] writeMapDataBlock(List<TestMapObject> objects, int[] bounds) throws IOException {
+		Buffer block = new Buffer();
+		long baseId = objects.isEmpty() ? 0 : objects.get(0).id;
+		block.out.writeUInt64(MapDataBlock.BASEID_FIELD_NUMBER, baseId);
+		for (TestMapObject o : objects) {
+			Buffer data = new Buffer();
+			Buffer coordinates = new Buffer();
+			int mask = ~((1 << BinaryMapIndexReader.SHIFT_COORDINATES) - 1);
+			int px = bounds[0] & mask;
+			int py = bounds[2] & mask;
+			for (int k = 0; k < o.coordinates.length; k += 2) {
+				coordinates.out.writeSInt32NoTag((o.coordinates[k] - px) >> BinaryMapIndexReader.SHIFT_COORDINATES);
+				coordinates.out.writeSInt32NoTag((o.coordinates[k + 1] - py) >> BinaryMapIndexReader.SHIFT_COORDINATES);
+				px = o.coordinates[k];
+				py = o.coordinates[k + 1];
+			}
+			data.writeMessage(MapData.COORDINATES_FIELD_NUMBER, coordinates.toByteArray());
+			Buffer types = new Buffer();
+			for (int t : o.types) {
+				types.out.writeRawVarint32(t);
+			}
+			data.writeMessage(MapData.TYPES_FIELD_NUMBER, types.toByteArray());
+			data.out.writeSInt64(MapData.ID_FIELD_NUMBER, o.id - baseId);
+			block.writeMessage(MapDataBlock.DATAOBJECTS_FIELD_NUMBER, data.toByteArray());
+		}
+		return block.toByteArray();
+	}
+
+	/**
+	 * Poi index without name index, amenities of every tile of boxZoom are stored in own box.
+	 * @param categories category and its subcategories
+	 */
+	public void addPoiIndex(String name, String[][] categories, int boxZoom, List<TestAmenity> amenities)
+			throws IOException {
+		Map<Long, List<TestAmenity>> tiles = new LinkedHashMap<Long, List<TestAmenity>>();
+		int[] bounds = { Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE };
+		for (TestAmenity a : amenities) {
+			long tile = (((long) a.x31 >> (31 - boxZoom)) << 31) | (a.y31 >> (31 - boxZoom));
+			if (!tiles.containsKey(tile)) {
+				tiles.put(tile, new ArrayList<TestAmenity>());
+			}
+			tiles.get(tile).add(a);
+			extend(bounds, a.x31, a.y31);
+		}
+		Buffer index = new Buffer();
+		index.out.writeString(OsmAndPoiIndex.NAME_FIELD_NUMBER, name);
+		Buffer boundaries = new Buffer();
+		boundaries.out.writeUInt32(OsmAndTileBox.LEFT_FIELD_NUMBER, bounds[0]);
+		boundaries.out.writeUInt32(OsmAndTileBox.RIGHT_FIELD_NUMBER, bounds[1]);
+		boundaries.out.writeUInt32(OsmAndTileBox.TOP_FIELD_NUMBER, bounds[2]);
+		boundaries.out.writeUInt32(OsmAndTileBox.BOTTOM_FIELD_NUMBER, bounds[3]);
+		index.writeMessage(OsmAndPoiIndex.BOUNDARIES_FIELD_NUMBER, boundaries.toByteArray());
+		for (String[] category : categories) {
+			Buffer table = new Buffer();
+			table.out.writeString(OsmAndCategoryTable.CATEGORY_FIELD_NUMBER, category[0]);
+			for (int i = 1; i < category.length; i++) {
+				table.out.writeString(OsmAndCategoryTable.SUBCATEGORIES_FIELD_NUMBER, category[i]);
+			}
+			index.writeMessage(OsmAndPoiIndex.CATEGORIESTABLE_FIELD_NUMBER, table.toByteArray());
+		}
+		List<byte[]> data = new ArrayList<byte[]>();
+		for (Map.Entry<Long, List<TestAmenity>> e : tiles.entrySet()) {
+			data.add(writePoiBoxData(boxZoom, (int) (e.getKey() >> 31), (int) (e.getKey() & ((1L << 31) - 1)),
+					e.getValue()));
+		}
+		// box has fixed size, so shifts to data are calculated before boxes are written
+		int pos = index.size();
+		for (List<TestAmenity> tile : tiles.values()) {
+			pos += CodedOutputStream.computeTagSize(OsmAndPoiIndex.BOXES_FIELD_NUMBER) + 4;
+			pos += writePoiBox(boxZoom, tile, 0).length;
+		}
+		int i = 0;
+		for (List<TestAmenity> tile : tiles.values()) {
+			pos += CodedOutputStream.computeTagSize(OsmAndPoiIndex.POIDATA_FIELD_NUMBER);
+			index.writeFixedMessage(OsmAndPoiIndex.BOXES_FIELD_NUMBER, writePoiBox(boxZoom, tile, pos));
+			pos += 4 + data.get(i++).length;
+		}
+		for (byte[] d : data) {
+			index.writeFixedMessage(OsmAndPoiIndex.POIDATA_FIELD_NUMBER, d);
+		}
+		indexes.writeFixedMessage(OsmAndStructure.POIINDEX_FIELD_NUMBER, index.toByteArray());
+	}
+
+	private byte[] writePoiBox(int zoom, List<TestAmenity> amenities, int shiftToData) throws IOException {
+		Buffer box = new Buffer();
+		box.out.writeUInt32(OsmAndPoiBox.ZOOM_FIELD_NUMBER, zoom);
+		box.out.writeSInt32(OsmAndPoiBox.LEFT_FIELD_NUMBER, amenities.get(0).x31 >> (31 - zoom));
+		box.out.writeSInt32(OsmAndPoiBox.TOP_FIELD_NUMBER, amenities.get(0).y31 >> (31 - zoom));
+		Buffer categories = new Buffer();
+		Set<Integer> written = new HashSet<Integer>();
+		for (TestAmenity a : amenities) {
+			if (written.add(category(a))) {
+				categories.out.writeUInt32(OsmAndPoiCategories.CATEGORIES_FIELD_NUMBER, category(a));
+			}
+		}
+		box.writeMessage(OsmAndPoiBox.CATEGORIES_FIELD_NUMBER, categories.toByteArray());
+		box.out.writeTag(OsmAndPoiBox.SHIFTTODATA_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED32);
+		box.writeInt(shiftToData);
+		return box.toByteArray();
+	}
+
+	private byte[] writePoiBoxData(int zoom, int x, int y, List<TestAmenity> amenities) throws IOException {
+		Buffer boxData = new Buffer();
+		boxData.out.writeUInt32(OsmAndPoiBoxData.ZOOM_FIELD_NUMBER, zoom);
+		boxData.out.writeUInt32(OsmAndPoiBoxData.X_FIELD_NUMBER, x);
+		boxData.out.writeUInt32(OsmAndPoiBoxData.Y_FIELD_NUMBER, y);
+		for (TestAmenity a : amenities) {
+			Buffer atom = new Buffer();
+			atom.out.writeSInt32(OsmAndPoiBoxDataAtom.DX_FIELD_NUMBER,
+					(a.x31 >> (31 - POI_ZOOM)) - (x << (POI_ZOOM - zoom)));
+			atom.out.writeSInt32(OsmAndPoiBoxDataAtom.DY_FIELD_NUMBER,
+					(a.y31 >> (31 - POI_ZOOM)) - (y << (POI_ZOOM - zoom)));
+			atom.out.writeUInt32(OsmAndPoiBoxDataAtom.CATEGORIES_FIELD_NUMBER, category(a));
+			atom.out.writeUInt64(OsmAndPoiBoxDataAtom.ID_FIELD_NUMBER, a.id);
+			atom.out.writeString(OsmAndPoiBoxDataAtom.NAME_FIELD_NUMBER, a.name);
+			boxData.writeMessage(OsmAndPoiBoxData.POIDATA_FIELD_NUMBER, atom.toByteArray());
+		}
+		return boxData.toByteArray();
+	}
+
+	private static int category(TestAmenity a) {
+		return a.category | (a.subcategory << BinaryMapPoiReaderAdapter.SHIFT_BITS_CATEGORY);
+	}
+
+	private static void extend(int[] bounds, int x, int y) {
+		bounds[0] = Math.min(bounds[0], x);
+		bounds[1] = Math.max(bounds[1], x);
+		bounds[2] = Math.min(bounds[2], y);
+		bounds[3] = Math.max(bounds[3], y);
+	}
+
+	/**
+	 * Address index of one city with streets and buildings, name index has only street names.
+	 * Streets are referenced by absolute file offsets, so index should be added before indexes which depend on it.
+	 */
+	public void addAddressIndex(String name, long cityId, String cityName, int cityX31, int cityY31,
+			List<TestStreet> streets) throws IOException {
+		Buffer index = new Buffer();
+		index.out.writeString(OsmAndAddressIndex.NAME_FIELD_NUMBER, name);
+		// absolute offset of index content
+		int start = headerSize() + indexes.size() + CodedOutputStream.computeTagSize(OsmAndStructure.ADDRESSINDEX_FIELD_NUMBER) + 4;
+
+		int citiesStart = start + index.size() + CodedOutputStream.computeTagSize(OsmAndAddressIndex.CITIES_FIELD_NUMBER) + 4;
+		Buffer cities = new Buffer();
+		cities.out.writeUInt32(CitiesIndex.TYPE_FIELD_NUMBER, BinaryMapAddressReaderAdapter.CITY_TOWN_TYPE);
+		Buffer city = new Buffer();
+		city.out.writeUInt32(CityIndex.CITY_TYPE_FIELD_NUMBER, 0);
+		city.out.writeUInt64(CityIndex.ID_FIELD_NUMBER, cityId);
+		city.out.writeString(CityIndex.NAME_FIELD_NUMBER, cityName);
+		city.out.writeUInt32(CityIndex.X_FIELD_NUMBER, cityX31);
+		city.out.writeUInt32(CityIndex.Y_FIELD_NUMBER, cityY31);
+		int cityOffset = citiesStart + cities.size() + CodedOutputStream.computeTagSize(CitiesIndex.CITIES_FIELD_NUMBER);
+		cities.writeMessage(CitiesIndex.CITIES_FIELD_NUMBER, city.toByteArray());
+
+		Buffer block = new Buffer();
+		int[] streetOffsets = new int[streets.size()];
+		int city24X = cityX31 >> (31 - ADDRESS_ZOOM);
+		int city24Y = cityY31 >> (31 - ADDRESS_ZOOM);
+		for (int i = 0; i < streets.size(); i++) {
+			TestStreet s = streets.get(i);
+			int street24X = s.x31 >> (31 - ADDRESS_ZOOM);
+			int street24Y = s.y31 >> (31 - ADDRESS_ZOOM);
+			Buffer street = new Buffer();
+			street.out.writeUInt64(StreetIndex.ID_FIELD_NUMBER, s.id);
+			street.out.writeString(StreetIndex.NAME_FIELD_NUMBER, s.name);
+			street.out.writeSInt32(StreetIndex.X_FIELD_NUMBER, street24X - city24X);
+			street.out.writeSInt32(StreetIndex.Y_FIELD_NUMBER, street24Y - city24Y);
+			for (TestBuilding b : s.buildings) {
+				Buffer building = new Buffer();
+				building.out.writeUInt64(BuildingIndex.ID_FIELD_NUMBER, b.id);
+				building.out.writeString(BuildingIndex.NAME_FIELD_NUMBER, b.name);
+				building.out.writeSInt32(BuildingIndex.X_FIELD_NUMBER, (b.x31 >> (31 - ADDRESS_ZOOM)) - street24X);
+				building.out.writeSInt32(BuildingIndex.Y_FIELD_NUMBER, (b.y31 >> (31 - ADDRESS_ZOOM)) - street24Y);
+				street.writeMessage(StreetIndex.BUILDINGS_FIELD_NUMBER, building.toByteArray());
+			}
+			// offset inside of block, shifted below
+			streetOffsets[i] = block.size() + CodedOutputStream.computeTagSize(CityBlockIndex.STREETS_FIELD_NUMBER);
+			block.writeMessage(CityBlockIndex.STREETS_FIELD_NUMBER, street.toByteArray());
+		}
+		int blockStart = citiesStart + cities.size() + CodedOutputStream.computeTagSize(CitiesIndex.BLOCKS_FIELD_NUMBER)
+				+ CodedOutputStream.computeRawVarint32Size(block.size());
+		for (int i = 0; i < streetOffsets.length; i++) {
+			streetOffsets[i] += blockStart;
+		}
+		cities.writeMessage(CitiesIndex.BLOCKS_FIELD_NUMBER, block.toByteArray());
+		index.writeFixedMessage(OsmAndAddressIndex.CITIES_FIELD_NUMBER, cities.toByteArray());
+
+		int tableStart = start + index.size() + CodedOutputStream.computeTagSize(OsmAndAddressIndex.NAMEINDEX_FIELD_NUMBER) + 4
+				+ CodedOutputStream.computeTagSize(OsmAndAddressNameIndexData.TABLE_FIELD_NUMBER) + 4;
+		// table has fixed size, so positions of atoms are calculated before table is written
+		int pos = tableStart + writeNameTable(streets, new int[streets.size()]).length;
+		int[] atomOffsets = new int[streets.size()];
+		List<byte[]> atoms = new ArrayList<byte[]>();
+		for (int i = 0; i < streets.size(); i++) {
+			pos += CodedOutputStream.computeTagSize(OsmAndAddressNameIndexData.ATOM_FIELD_NUMBER);
+			Buffer atom = new Buffer();
+			atom.out.writeString(AddressNameIndexDataAtom.NAME_FIELD_NUMBER, streets.get(i).name);
+			atom.out.writeInt32(AddressNameIndexDataAtom.TYPE_FIELD_NUMBER, BinaryMapAddressReaderAdapter.STREET_TYPE);
+			atom.out.writeInt32(AddressNameIndexDataAtom.SHIFTTOINDEX_FIELD_NUMBER, pos - streetOffsets[i]);
+			atom.out.writeInt32(AddressNameIndexDataAtom.SHIFTTOCITYINDEX_FIELD_NUMBER, pos - cityOffset);
+			Buffer data = new Buffer();
+			data.writeMessage(AddressNameIndexData.ATOM_FIELD_NUMBER, atom.toByteArray());
+			atoms.add(data.toByteArray());
+			atomOffsets[i] = pos - tableStart;
+			pos += CodedOutputStream.computeRawVarint32Size(data.size()) + data.size();
+		}
+		Buffer nameIndex = new Buffer();
+		nameIndex.writeFixedMessage(OsmAndAddressNameIndexData.TABLE_FIELD_NUMBER, writeNameTable(streets, atomOffsets));
+		for (byte[] atom : atoms) {
+			nameIndex.writeMessage(OsmAndAddressNameIndexData.ATOM_FIELD_NUMBER, atom);
+		}
+		index.writeFixedMessage(OsmAndAddressIndex.NAMEINDEX_FIELD_NUMBER, nameIndex.toByteArray());
+		indexes.writeFixedMessage(OsmAndStructure.ADDRESSINDEX_FIELD_NUMBER, index.toByteArray());
+	}
+
+	private byte[] writeNameTable(List<TestStreet> streets, int[] offsets) throws IOException {
+		Buffer table = new Buffer();
+		for (int i = 0; i < streets.size(); i++) {
+			table.out.writeString(IndexedStringTable.KEY_FIELD_NUMBER, streets.get(i).name.toLowerCase());
+			table.out.writeTag(IndexedStringTable.VAL_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED32);
+			table.writeInt(offsets[i]);
+		}
+		return table.toByteArray();
+	}
+
+	/**
+	 * Routing index without roads (roads of tests are created in memory for region of index)
+	 */
+	public void addRoutingIndex(String name) throws IOException {
+		Buffer index = new Buffer();
+		index.out.writeString(OsmAndRoutingIndex.NAME_FIELD_NUMBER, name);
+		indexes.writeFixedMessage(OsmAndStructure.ROUTINGINDEX_FIELD_NUMBER, index.toByteArray());
+	}
+
+	/**
+	 * Routing index with one root box, all roads are stored in one block of box.
+	 * @param rules tag and value of rules, id of rule is position + 1
+	 */
+	public void addRoutingIndex(String name, String[][] rules, List<TestRoad> roads) throws IOException {
+		Buffer index = new Buffer();
+		index.out.writeString(OsmAndRoutingIndex.NAME_FIELD_NUMBER, name);
+		for (String[] rule : rules) {
+			Buffer r = new Buffer();
+			r.out.writeString(RouteEncodingRule.TAG_FIELD_NUMBER, rule[0]);
+			r.out.writeString(RouteEncodingRule.VALUE_FIELD_NUMBER, rule[1]);
+			index.writeMessage(OsmAndRoutingIndex.RULES_FIELD_NUMBER, r.toByteArray());
+		}
+		int[] bounds = { Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE };
+		for (TestRoad road : roads) {
+			for (int k = 0; k < road.coordinates.length; k += 2) {
+				extend(bounds, road.coordinates[k], road.coordinates[k + 1]);
+			}
+		}
+		byte[] block = writeRouteDataBlock(roads, bounds);
+		// shift to data is counted from start of box, block follows box
+		int shiftToData = writeRouteBox(bounds, 0).length
+				+ CodedOutputStream.computeTagSize(OsmAndRoutingIndex.BLOCKS_FIELD_NUMBER);
+		index.writeFixedMessage(OsmAndRoutingIndex.ROOTBOXES_FIELD_NUMBER, writeRouteBox(bounds, shiftToData));
+		index.writeMessage(OsmAndRoutingIndex.BLOCKS_FIELD_NUMBER, block);
+		indexes.writeFixedMessage(OsmAndStructure.ROUTINGINDEX_FIELD_NUMBER, index.toByteArray());
+	}
+
+	private byte[] writeRouteBox(int[] bounds, int shiftToData) throws IOException {
+		Buffer box = new Buffer();
+		box.out.writeSInt32(RouteDataBox.LEFT_FIELD_NUMBER, bounds[0]);
+		box.out.writeSInt32(RouteDataBox.RIGHT_FIELD_NUMBER, bounds[1]);
+		box.out.writeSInt32(RouteDataBox.TOP_FIELD_NUMBER, bounds[2]);
+		box.out.writeSInt32(RouteDataBox.BOTTOM_FIELD_NUMBER, bounds[3]);
+		box.out.writeTag(RouteDataBox.SHIFTTODATA_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED32);
+		box.writeInt(shiftToData);
+		return box.toByteArray();
+	}
+
+	private byte[] writeRouteDataBlock(List<TestRoad> roads, int[] bounds) throws IOException {
+		Buffer block = new Buffer();
+		Buffer idTable = new Buffer();
+		long prevId = 0;
+		for (TestRoad road : roads) {
+			idTable.out.writeSInt64(IdTable.ROUTEID_FIELD_NUMBER, road.id - prevId);
+			prevId = road.id;
+		}
+		block.writeMessage(RouteDataBlock.IDTABLE_FIELD_NUMBER, idTable.toByteArray());
+		List<String> stringTable = new ArrayList<String>();
+		for (int i = 0; i < roads.size(); i++) {
+			TestRoad road = roads.get(i);
+			Buffer data = new Buffer();
+			Buffer types = new Buffer();
+			for (int t : road.types) {
+				types.out.writeRawVarint32(t);
+			}
+			data.writeMessage(RouteData.TYPES_FIELD_NUMBER, types.toByteArray());
+			Buffer points = new Buffer();
+			int px = bounds[0] >> ROUTE_SHIFT_COORDINATES;
+			int py = bounds[2] >> ROUTE_SHIFT_COORDINATES;
+			for (int k = 0; k < road.coordinates.length; k += 2) {
+				int x = road.coordinates[k] >> ROUTE_SHIFT_COORDINATES;
+				int y = road.coordinates[k + 1] >> ROUTE_SHIFT_COORDINATES;
+				points.out.writeSInt32NoTag(x - px);
+				points.out.writeSInt32NoTag(y - py);
+				px = x;
+				py = y;
+			}
+			data.writeMessage(RouteData.POINTS_FIELD_NUMBER, points.toByteArray());
+			if (!road.pointTypes.isEmpty()) {
+				Buffer pointTypes = new Buffer();
+				for (Map.Entry<Integer, int[]> e : road.pointTypes.entrySet()) {
+					Buffer pt = new Buffer();
+					for (int t : e.getValue()) {
+						pt.out.writeRawVarint32(t);
+					}
+					pointTypes.out.writeRawVarint32(e.getKey());
+					pointTypes.out.writeRawVarint32(pt.size());
+					pointTypes.out.writeRawBytes(pt.toByteArray());
+				}
+				data.writeMessage(RouteData.POINTTYPES_FIELD_NUMBER, pointTypes.toByteArray());
+			}
+			if (!road.names.isEmpty()) {
+				Buffer names = new Buffer();
+				for (Map.Entry<Integer, String> e : road.names.entrySet()) {
+					names.out.writeRawVarint32(e.getKey());
+					names.out.writeRawVarint32(stringTable.size());
+					stringTable.add(e.getValue());
+				}
+				data.writeMessage(RouteData.STRINGNAMES_FIELD_NUMBER, names.toByteArray());
+			}
+			// id of object is position in id table
+			data.out.writeInt32(RouteData.ROUTEID_FIELD_NUMBER, i);
+			block.writeMessage(RouteDataBlock.DATAOBJECTS_FIELD_NUMBER, data.toByteArray());
+		}
+		Buffer table = new Buffer();
+		for (String s : stringTable) {
+			table.out.writeString(StringTable.S_FIELD_NUMBER, s);
+		}
+		block.writeMessage(RouteDataBlock.STRINGTABLE_FIELD_NUMBER, table.toByteArray());
+		return block.toByteArray();
+	}
+
+	private int headerSize() {
+		return CodedOutputStream.computeUInt32Size(OsmAndStructure.VERSION_FIELD_NUMBER, VERSION)
+				+ CodedOutputStream.computeInt64Size(OsmAndStructure.DATECREATED_FIELD_NUMBER, dateCreated);
+	}
+
+	public File write(File file) throws IOException {
+		Buffer structure = new Buffer();
+		structure.out.writeUInt32(OsmAndStructure.VERSION_FIELD_NUMBER, VERSION);
+		structure.out.writeInt64(OsmAndStructure.DATECREATED_FIELD_NUMBER, dateCreated);
+		structure.out.writeRawBytes(indexes.toByteArray());
+		structure.out.writeUInt32(OsmAndStructure.VERSIONCONFIRM_FIELD_NUMBER, VERSION);
+		FileOutputStream fout = new FileOutputStream(file);
+		try {
+			fout.write(structure.toByteArray());
+		} finally {
+			fout.close();
+		}
+		return file;
+	}
+
+	private static class Buffer {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+
+		int size() throws IOException {
+			out.flush();
+			return bytes.size();
+		}
+
+		byte[] toByteArray() throws IOException {
+			out.flush();
+			return bytes.toByteArray();
+		}
+
+		// big endian int as it is read by BinaryMapIndexReader.readInt
+		void writeInt(int v) throws IOException {
+			out.writeRawByte((v >>> 24) & 0xff);
+			out.writeRawByte((v >>> 16) & 0xff);
+			out.writeRawByte((v >>> 8) & 0xff);
+			out.writeRawByte(v & 0xff);
+		}
+
+		void writeFixedMessage(int field, byte[] message) throws IOException {
+			out.writeTag(field, WireFormat.WIRETYPE_FIXED32_LENGTH_DELIMITED);
+			writeInt(message.length);
+			out.writeRawBytes(message);
+		}
+
+		void writeMessage(int field, byte[] message) throws IOException {
+			out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			out.writeRawVarint32(message.length);
+			out.writeRawBytes(message);
+		}
+	}
+}
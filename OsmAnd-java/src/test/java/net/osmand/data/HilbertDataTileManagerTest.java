@@ -0,0 +1,116 @@
+package net.osmand.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.util.MapUtils;
+
+public class HilbertDataTileManagerTest {
+
+	private static class Point {
+		final int x;
+		final int y;
+
+		Point(int x, int y) {
+			this.x = x;
+			this.y = y;
+		}
+	}
+
+	@Test
+	public void testHilbertKeysOfGrid() {
+		// keys of 64x64 grid are 0..4095 and cells with consecutive keys are neighbours
+		int n = 64;
+		int[] xs = new int[n * n];
+		int[] ys = new int[n * n];
+		HashSet<Long> keys = new HashSet<Long>();
+		for (int x = 0; x < n; x++) {
+			for (int y = 0; y < n; y++) {
+				long key = HilbertDataTileManager.hilbertKey(x, y);
+				Assert.assertTrue(key < n * n);
+				Assert.assertTrue(keys.add(key));
+				xs[(int) key] = x;
+				ys[(int) key] = y;
+			}
+		}
+		for (int i = 1; i < n * n; i++) {
+			Assert.assertEquals(1, Math.abs(xs[i] - xs[i - 1]) + Math.abs(ys[i] - ys[i - 1]));
+		}
+	}
+
+	@Test
+	public void testRangeAndNearestQueries() {
+		Random r = new Random(7);
+		HilbertDataTileManager<Point> manager = new HilbertDataTileManager<Point>();
+		List<Point> points = new ArrayList<Point>();
+		// clustered points around city like area and some duplicates
+		int cx = MapUtils.get31TileNumberX(13.4);
+		int cy = MapUtils.get31TileNumberY(52.5);
+		for (int i = 0; i < 5000; i++) {
+			Point p = i % 10 == 0 && i > 0 ? new Point(points.get(i - 1).x, points.get(i - 1).y)
+					: new Point(cx + r.nextInt(1 << 22) - (1 << 21), cy + r.nextInt(1 << 22) - (1 << 21));
+			points.add(p);
+			manager.registerObjectXY(p.x, p.y, p);
+			if (i == 2500) {
+				// queries between registrations
+				Assert.assertEquals(i + 1, manager.getAllObjects().size());
+			}
+		}
+		for (int i = 0; i < 500; i++) {
+			Point p = points.remove(r.nextInt(points.size()));
+			Assert.assertTrue(manager.unregisterObjectXY(p.x, p.y, p));
+		}
+		Assert.assertEquals(points.size(), manager.getObjectsCount());
+		// removed objects are not compacted yet
+		List<Point> all = manager.getAllObjects();
+		Assert.assertFalse(all.contains(null));
+		Assert.assertEquals(points.size(), all.size());
+		Assert.assertEquals(new HashSet<Point>(points), new HashSet<Point>(all));
+		for (int q = 0; q < 200; q++) {
+			int l = cx + r.nextInt(1 << 22) - (1 << 21);
+			int t = cy + r.nextInt(1 << 22) - (1 << 21);
+			int rt = l + r.nextInt(1 << (10 + r.nextInt(12)));
+			int b = t + r.nextInt(1 << (10 + r.nextInt(12)));
+			HashSet<Point> expected = new HashSet<Point>();
+			for (Point p : points) {
+				if (p.x >= l && p.x <= rt && p.y >= t && p.y <= b) {
+					expected.add(p);
+				}
+			}
+			List<Point> res = manager.getObjects(l, t, rt, b);
+			Assert.assertEquals(expected.size(), res.size());
+			Assert.assertEquals(expected, new HashSet<Point>(res));
+		}
+		HilbertDataTileManager<Point>.NearestSearch search = manager.newNearestSearch(10);
+		List<Point> res = new ArrayList<Point>();
+		for (int q = 0; q < 100; q++) {
+			final int x = cx + r.nextInt(1 << 23) - (1 << 22);
+			final int y = cy + r.nextInt(1 << 23) - (1 << 22);
+			final double xScale = Math.cos(Math.toRadians(MapUtils.get31LatitudeY(y)));
+			List<Double> dists = new ArrayList<Double>();
+			for (Point p : points) {
+				dists.add(dist(p, x, y, xScale));
+			}
+			Collections.sort(dists);
+			res.clear();
+			search.search(x, y, res);
+			Assert.assertEquals(10, res.size());
+			for (int i = 0; i < res.size(); i++) {
+				Assert.assertEquals(dists.get(i), dist(res.get(i), x, y, xScale), 1e-3);
+			}
+		}
+		Assert.assertEquals(3, manager.getClosestObjects(52.5, 13.4, 3).size());
+	}
+
+	private static double dist(Point p, int x, int y, double xScale) {
+		double dx = (p.x - x) * xScale;
+		double dy = p.y - y;
+		return dx * dx + dy * dy;
+	}
+}
@@ -0,0 +1,64 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+
+public class ParallelBidirectionalSearchTest {
+
+	private static FinalRouteSegment search(TestRoadNetwork network, RoutingConfiguration config,
+			RouteSegmentPoint start, RouteSegmentPoint end) throws IOException, InterruptedException {
+		RoutingContext ctx = network.createContext(config);
+		ctx.initStartAndTargetPoints(start, end);
+		return new BinaryRoutePlanner().searchRouteInternal(ctx, new RouteSegmentPoint(start),
+				new RouteSegmentPoint(end), null);
+	}
+
+	@Test
+	public void testSameRoutesAsSequentialSearch() throws IOException, InterruptedException {
+		Random rnd = new Random(31);
+		TestRoadNetwork network = new TestRoadNetwork(rnd, 11);
+		RoutingConfiguration config = TestRoadNetwork.createConfiguration();
+		config.heuristicCoefficient = 0;
+		RoutingConfiguration parallelConfig = TestRoadNetwork.createConfiguration();
+		parallelConfig.heuristicCoefficient = 0;
+		parallelConfig.parallelBidirectionalSearch = true;
+		RouteContractionHierarchy ch = RouteContractionHierarchy.build(config, network.roads);
+		int compared = 0;
+		for (int i = 0; i < 30; i++) {
+			RouteSegmentPoint start = network.createPoint(rnd);
+			RouteSegmentPoint end = network.createPoint(rnd);
+			if (start.getRoad().getId() == end.getRoad().getId()) {
+				continue;
+			}
+			FinalRouteSegment sequential = search(network, config, start, end);
+			Assert.assertNotNull(sequential);
+			// there are no restrictions in network, so shortest route is found by contraction hierarchy
+			List<RouteSegmentResult> shortest = ch.searchRoute(network.createContext(config),
+					new RouteSegmentPoint(start), new RouteSegmentPoint(end));
+			double shortestTime = TestRoadNetwork.getRouteTime(config.router, shortest, start, end);
+			// threads are scheduled differently every time, but best meeting of searches is found
+			// (sequential search stops on first meeting which is not always the best one)
+			for (int k = 0; k < 3; k++) {
+				FinalRouteSegment parallel = search(network, parallelConfig, start, end);
+				Assert.assertNotNull(parallel);
+				Assert.assertTrue(parallel.distanceFromStart <= sequential.distanceFromStart + 0.1);
+				RoutingContext ctx = network.createContext(parallelConfig);
+				ctx.initStartAndTargetPoints(start, end);
+				List<RouteSegmentResult> route = new RouteResultPreparation().prepareResult(ctx, parallel);
+				double time = TestRoadNetwork.getRouteTime(config.router, route, start, end);
+				Assert.assertEquals(shortestTime, time, 0.1);
+				// cost of meeting is calculated from published state of opposite search
+				Assert.assertEquals(time, parallel.distanceFromStart, 0.1);
+			}
+			compared++;
+		}
+		Assert.assertTrue(compared > 20);
+	}
+}
@@ -0,0 +1,79 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RouteSegmentStore.SegmentsQueue;
+
+public class ReverseSearchTreeTest {
+
+	private static FinalRouteSegment search(RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end)
+			throws IOException, InterruptedException {
+		ctx.initStartAndTargetPoints(start, end);
+		return new BinaryRoutePlanner().searchRouteInternal(ctx, new RouteSegmentPoint(start),
+				new RouteSegmentPoint(end), null);
+	}
+
+	@Test
+	public void testObjectStore() throws IOException, InterruptedException {
+		checkRecalculationsReuseTree(false);
+	}
+
+	@Test
+	public void testPrimitiveStore() throws IOException, InterruptedException {
+		checkRecalculationsReuseTree(true);
+	}
+
+	private void checkRecalculationsReuseTree(boolean primitiveStore) throws IOException, InterruptedException {
+		Random rnd = new Random(17);
+		TestRoadNetwork network = new TestRoadNetwork(rnd, 11);
+		RoutingConfiguration config = TestRoadNetwork.createConfiguration();
+		config.reuseReverseSearchTree = true;
+		config.usePrimitiveSegmentStore = primitiveStore;
+		RouteContractionHierarchy ch = RouteContractionHierarchy.build(config, network.roads);
+		RoutingContext ctx = network.createContext(config);
+		RouteSegmentPoint end = network.createPoint(rnd);
+		Assert.assertNotNull(search(ctx, network.createPoint(rnd), end));
+		Assert.assertNotNull(ctx.reverseSearchTree);
+		SegmentsQueue queue = ctx.reverseSearchTree.queue;
+		int reused = 0;
+		for (int i = 0; i < 10; i++) {
+			RouteSegmentPoint start = network.createPoint(rnd);
+			if (start.getRoad().getId() == end.getRoad().getId()) {
+				continue;
+			}
+			if (!BinaryRoutePlanner.canReuseReverseSearchTree(ctx, end)) {
+				// reverse search could be finished by previous calculation
+				break;
+			}
+			FinalRouteSegment res = search(ctx, start, end);
+			Assert.assertNotNull(res);
+			// reverse search is continued with the same queue
+			Assert.assertSame(queue, ctx.reverseSearchTree.queue);
+			ctx.initStartAndTargetPoints(start, end);
+			List<RouteSegmentResult> route = new RouteResultPreparation().prepareResult(ctx, res);
+			// route starts from new start point (segments cached by context keep no state of previous search)
+			Assert.assertEquals(start.getRoad().getId(), route.get(0).getObject().getId());
+			Assert.assertEquals(end.getRoad().getId(), route.get(route.size() - 1).getObject().getId());
+			List<RouteSegmentResult> shortest = ch.searchRoute(network.createContext(config),
+					new RouteSegmentPoint(start), new RouteSegmentPoint(end));
+			// search stops on first meeting with retained tree, so route is not always the shortest one
+			double shortestTime = TestRoadNetwork.getRouteTime(config.router, shortest, start, end);
+			double time = TestRoadNetwork.getRouteTime(config.router, route, start, end);
+			Assert.assertTrue(time > shortestTime - 0.1 && time < shortestTime * 1.25);
+			reused++;
+		}
+		Assert.assertTrue(reused > 3);
+
+		// segments of tree reference unloaded roads
+		ctx.unloadAllData();
+		Assert.assertNull(ctx.reverseSearchTree);
+		Assert.assertFalse(BinaryRoutePlanner.canReuseReverseSearchTree(ctx, end));
+	}
+}
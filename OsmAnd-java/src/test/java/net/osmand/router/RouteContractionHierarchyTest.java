@@ -0,0 +1,118 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.binary.RouteDataObject;
+import net.osmand.osm.MapRenderingTypes;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+
+public class RouteContractionHierarchyTest {
+
+	private static List<RouteSegmentResult> searchAStar(TestRoadNetwork network, RoutingConfiguration config,
+			RouteSegmentPoint start, RouteSegmentPoint end) throws IOException, InterruptedException {
+		RoutingContext ctx = network.createContext(config);
+		ctx.initStartAndTargetPoints(start, end);
+		FinalRouteSegment finalSegment = new BinaryRoutePlanner().searchRouteInternal(ctx,
+				new RouteSegmentPoint(start), new RouteSegmentPoint(end), null);
+		Assert.assertNotNull(finalSegment);
+		return new RouteResultPreparation().prepareResult(ctx, finalSegment);
+	}
+
+	private static List<RouteSegmentResult> searchHierarchy(TestRoadNetwork network, RoutingConfiguration config,
+			RouteContractionHierarchy ch, RouteSegmentPoint start, RouteSegmentPoint end)
+			throws IOException, InterruptedException {
+		return ch.searchRoute(network.createContext(config), new RouteSegmentPoint(start), new RouteSegmentPoint(end));
+	}
+
+	@Test
+	public void testSameRouteTimeAsAStar() throws IOException, InterruptedException {
+		Random rnd = new Random(17);
+		TestRoadNetwork network = new TestRoadNetwork(rnd, 15);
+		RoutingConfiguration config = TestRoadNetwork.createConfiguration();
+		// exact search
+		config.heuristicCoefficient = 0;
+		RouteContractionHierarchy ch = RouteContractionHierarchy.build(config, network.roads);
+		Assert.assertTrue(ch.getNodesCount() > 100);
+		int found = 0;
+		int same = 0;
+		for (int test = 0; test < 40; test++) {
+			RouteSegmentPoint start = network.createPoint(rnd);
+			RouteSegmentPoint end = network.createPoint(rnd);
+			if (start.getRoad().getId() == end.getRoad().getId()) {
+				continue;
+			}
+			List<RouteSegmentResult> chRoute = searchHierarchy(network, config, ch, start, end);
+			Assert.assertNotNull(chRoute);
+			Assert.assertTrue(RouteContractionHierarchy.checkRestrictions(chRoute));
+			List<RouteSegmentResult> route = searchAStar(network, config, start, end);
+			double time = TestRoadNetwork.getRouteTime(config.router, route, start, end);
+			double chTime = TestRoadNetwork.getRouteTime(config.router, chRoute, start, end);
+			// CH is exact while A* could stop on slightly slower route (segments are processed road by road)
+			Assert.assertTrue(chTime <= time + 1e-3);
+			Assert.assertTrue(time <= chTime * 1.15);
+			if (time - chTime < 1e-3) {
+				same++;
+			}
+			found++;
+		}
+		Assert.assertTrue(found > 30);
+		Assert.assertTrue(same > found / 2);
+	}
+
+	@Test
+	public void testOnlyTurnRestriction() throws IOException, InterruptedException {
+		TestRoadNetwork network = new TestRoadNetwork();
+		RoutingConfiguration config = TestRoadNetwork.createConfiguration();
+		config.heuristicCoefficient = 0;
+		// crossing of 4 roads: west road ends and east road starts at junction, same for north and south
+		int x = TestRoadNetwork.BASE_X;
+		int y = TestRoadNetwork.BASE_Y;
+		int step = TestRoadNetwork.CELL / 2;
+		RouteDataObject west = network.addRoad("primary", false, new int[] { x - 3 * step, x - 2 * step, x - step, x },
+				new int[] { y, y, y, y });
+		RouteDataObject east = network.addRoad("primary", false, new int[] { x, x + step, x + 2 * step },
+				new int[] { y, y, y });
+		RouteDataObject north = network.addRoad("primary", false, new int[] { x, x, x },
+				new int[] { y, y - step, y - 2 * step });
+		RouteDataObject south = network.addRoad("primary", false, new int[] { x, x, x, x },
+				new int[] { y, y + step, y + 2 * step, y + 3 * step });
+		// connections to avoid dead ends
+		network.addRoad("residential", false, new int[] { x + 2 * step, x + 2 * step, x },
+				new int[] { y, y + 3 * step, y + 3 * step });
+		network.addRoad("residential", false, new int[] { x + 2 * step, x + 2 * step, x },
+				new int[] { y, y - 2 * step, y - 2 * step });
+		RouteSegmentPoint start = new RouteSegmentPoint(west, 1, 0);
+		RouteSegmentPoint end = new RouteSegmentPoint(south, 2, 0);
+
+		RouteContractionHierarchy ch = RouteContractionHierarchy.build(config, network.roads);
+		List<RouteSegmentResult> chRoute = searchHierarchy(network, config, ch, start, end);
+		Assert.assertTrue(RouteContractionHierarchy.checkRestrictions(chRoute));
+		List<RouteSegmentResult> route = searchAStar(network, config, start, end);
+		Assert.assertEquals(TestRoadNetwork.getRouteTime(config.router, route, start, end),
+				TestRoadNetwork.getRouteTime(config.router, chRoute, start, end), 0.1);
+
+		// heading east only left turn is allowed, so route to south road goes around
+		west.restrictions = new long[1];
+		west.setRestriction(0, north.getId(), MapRenderingTypes.RESTRICTION_ONLY_LEFT_TURN, 0);
+		ch = RouteContractionHierarchy.build(config, network.roads);
+		chRoute = searchHierarchy(network, config, ch, start, end);
+		Assert.assertFalse(RouteContractionHierarchy.checkRestrictions(chRoute));
+		route = searchAStar(network, config, start, end);
+		Assert.assertTrue(RouteContractionHierarchy.checkRestrictions(route));
+		Assert.assertTrue(TestRoadNetwork.getRouteTime(config.router, route, start, end)
+				> TestRoadNetwork.getRouteTime(config.router, chRoute, start, end) + 1);
+
+		west.setRestriction(0, east.getId(), MapRenderingTypes.RESTRICTION_ONLY_STRAIGHT_ON, 0);
+		Assert.assertFalse(RouteContractionHierarchy.checkRestrictions(chRoute));
+		west.setRestriction(0, south.getId(), MapRenderingTypes.RESTRICTION_ONLY_RIGHT_TURN, 0);
+		Assert.assertTrue(RouteContractionHierarchy.checkRestrictions(chRoute));
+		west.setRestriction(0, south.getId(), MapRenderingTypes.RESTRICTION_NO_RIGHT_TURN, 0);
+		Assert.assertFalse(RouteContractionHierarchy.checkRestrictions(chRoute));
+	}
+}
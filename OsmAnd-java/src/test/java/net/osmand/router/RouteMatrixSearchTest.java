@@ -0,0 +1,94 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+
+public class RouteMatrixSearchTest {
+
+	private static List<RouteSegmentPoint> createPoints(TestRoadNetwork network, Random rnd, int count) {
+		List<RouteSegmentPoint> points = new ArrayList<RouteSegmentPoint>();
+		for (int i = 0; i < count; i++) {
+			points.add(network.createPoint(rnd));
+		}
+		return points;
+	}
+
+	@Test
+	public void testSameTimeAsPairwiseRoutes() throws IOException, InterruptedException {
+		Random rnd = new Random(23);
+		TestRoadNetwork network = new TestRoadNetwork(rnd, 11);
+		RoutingConfiguration config = TestRoadNetwork.createConfiguration();
+		config.heuristicCoefficient = 0;
+		List<RouteSegmentPoint> sources = createPoints(network, rnd, 4);
+		List<RouteSegmentPoint> targets = createPoints(network, rnd, 5);
+		RouteMatrix matrix = new RouteMatrixSearch(network.createContext(config)).search(sources, targets);
+		Assert.assertNotNull(matrix);
+
+		RouteContractionHierarchy ch = RouteContractionHierarchy.build(config, network.roads);
+		int compared = 0;
+		for (int i = 0; i < sources.size(); i++) {
+			for (int j = 0; j < targets.size(); j++) {
+				RouteSegmentPoint start = sources.get(i);
+				RouteSegmentPoint end = targets.get(j);
+				if (start.getRoad().getId() == end.getRoad().getId()) {
+					continue;
+				}
+				Assert.assertTrue(matrix.isReachable(i, j));
+				Assert.assertTrue(matrix.getDistance(i, j) > 0);
+				// matrix ignores turn restrictions, there are no restrictions in network
+				List<RouteSegmentResult> route = ch.searchRoute(network.createContext(config),
+						new RouteSegmentPoint(start), new RouteSegmentPoint(end));
+				Assert.assertNotNull(route);
+				Assert.assertEquals(TestRoadNetwork.getRouteTime(config.router, route, start, end),
+						matrix.getTime(i, j), 0.1);
+
+				RoutingContext ctx = network.createContext(config);
+				ctx.initStartAndTargetPoints(start, end);
+				FinalRouteSegment finalSegment = new BinaryRoutePlanner().searchRouteInternal(ctx,
+						new RouteSegmentPoint(start), new RouteSegmentPoint(end), null);
+				route = new RouteResultPreparation().prepareResult(ctx, finalSegment);
+				Assert.assertTrue(matrix.getTime(i, j) <= TestRoadNetwork.getRouteTime(config.router, route, start, end) + 0.1);
+				compared++;
+			}
+		}
+		Assert.assertTrue(compared > 15);
+	}
+
+	@Test
+	public void testBoundedAndCancelledSearch() throws InterruptedException {
+		Random rnd = new Random(29);
+		TestRoadNetwork network = new TestRoadNetwork(rnd, 11);
+		RoutingConfiguration config = TestRoadNetwork.createConfiguration();
+		List<RouteSegmentPoint> sources = createPoints(network, rnd, 3);
+		List<RouteSegmentPoint> targets = createPoints(network, rnd, 3);
+		RouteMatrix full = new RouteMatrixSearch(network.createContext(config)).search(sources, targets);
+		RouteMatrix bounded = new RouteMatrixSearch(network.createContext(config), 60).search(sources, targets);
+		for (int i = 0; i < sources.size(); i++) {
+			for (int j = 0; j < targets.size(); j++) {
+				Assert.assertTrue(full.isReachable(i, j));
+				if (full.getTime(i, j) <= 60) {
+					Assert.assertEquals(full.getTime(i, j), bounded.getTime(i, j), 1e-3);
+				} else {
+					Assert.assertFalse(bounded.isReachable(i, j));
+				}
+			}
+		}
+
+		TestRoadNetwork.TestRoutingContext ctx = network.createContext(config);
+		ctx.calculationProgress.isCancelled = true;
+		try {
+			new RouteMatrixSearch(ctx).search(sources, targets);
+			Assert.fail();
+		} catch (InterruptedException e) {
+			// cancelled as route calculation
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.RouteSegmentIndex.NearestRoads;
+
+public class RouteSegmentIndexTest {
+
+	private static final int BASE_X = 1100000000;
+	private static final int BASE_Y = 700000000;
+
+	private static List<RouteDataObject> createRoads(Random r, int count) {
+		List<RouteDataObject> roads = new ArrayList<RouteDataObject>();
+		for (int i = 0; i < count; i++) {
+			RouteDataObject road = new RouteDataObject((RouteRegion) null);
+			road.id = i;
+			int points = 2 + r.nextInt(10);
+			road.pointsX = new int[points];
+			road.pointsY = new int[points];
+			int x = BASE_X + r.nextInt(1 << 20);
+			int y = BASE_Y + r.nextInt(1 << 20);
+			for (int j = 0; j < points; j++) {
+				road.pointsX[j] = x;
+				road.pointsY[j] = y;
+				x += r.nextInt(1 << 14) - (1 << 13);
+				y += r.nextInt(1 << 14) - (1 << 13);
+			}
+			roads.add(road);
+		}
+		return roads;
+	}
+
+	private static double roadDist(NearestRoads n, RouteDataObject o) {
+		double min = Double.POSITIVE_INFINITY;
+		for (int j = 1; j < o.getPointsLength(); j++) {
+			double ax = (o.pointsX[j - 1] - (long) n.x) * n.scaleX;
+			double ay = (o.pointsY[j - 1] - (long) n.y) * n.scaleY;
+			double dx = (o.pointsX[j] - (long) n.x) * n.scaleX - ax;
+			double dy = (o.pointsY[j] - (long) n.y) * n.scaleY - ay;
+			double l = dx * dx + dy * dy;
+			double t = l == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / l));
+			double qx = ax + t * dx;
+			double qy = ay + t * dy;
+			min = Math.min(min, qx * qx + qy * qy);
+		}
+		return min;
+	}
+
+	@Test
+	public void testNearestRoads() {
+		Random r = new Random(7);
+		List<RouteDataObject> roads = createRoads(r, 2000);
+		// same roads could be loaded in several tiles
+		RouteSegmentIndex[] tiles = new RouteSegmentIndex[] { new RouteSegmentIndex(roads.subList(0, 1200)),
+				new RouteSegmentIndex(roads.subList(1000, 2000)) };
+		for (int t = 0; t < 50; t++) {
+			int k = 1 + r.nextInt(20);
+			NearestRoads nearest = new NearestRoads(BASE_X + r.nextInt(1 << 20), BASE_Y + r.nextInt(1 << 20), k);
+			for (RouteSegmentIndex tile : tiles) {
+				tile.search(nearest);
+			}
+			double[] expected = new double[roads.size()];
+			for (int i = 0; i < roads.size(); i++) {
+				expected[i] = roadDist(nearest, roads.get(i));
+			}
+			double[] sorted = expected.clone();
+			Arrays.sort(sorted);
+			Assert.assertEquals(k, nearest.size());
+			for (int i = 0; i < k; i++) {
+				Assert.assertEquals(sorted[i], expected[(int) nearest.getRoad(i).id], 1e-6);
+			}
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package net.osmand.router;
+
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.RouteSegmentStore.LongHandleIndex;
+import net.osmand.router.RouteSegmentStore.ObjectSegmentsQueue;
+import net.osmand.router.RouteSegmentStore.PrimitiveSegmentsQueue;
+import net.osmand.router.RouteSegmentStore.PrimitiveVisitedSegments;
+import net.osmand.router.RouteSegmentStore.SegmentsQueue;
+
+public class RouteSegmentStoreTest {
+
+	private static RouteDataObject createRoad(long id, int points) {
+		RouteDataObject road = new RouteDataObject((RouteRegion) null);
+		road.id = id;
+		road.pointsX = new int[points];
+		road.pointsY = new int[points];
+		return road;
+	}
+
+	@Test
+	public void testQueueOrderAndDecreaseKey() {
+		Random r = new Random(1);
+		PrimitiveSegmentsQueue queue = new PrimitiveSegmentsQueue(1);
+		RouteDataObject road = createRoad(1, 1000);
+		for (int i = 0; i < 500; i++) {
+			RouteSegment s = new RouteSegment(road, i, i + 1);
+			s.distanceFromStart = r.nextInt(1000);
+			s.distanceToEnd = r.nextInt(1000);
+			queue.add(s);
+		}
+		RouteSegment first = new RouteSegment(road, 250, 251);
+		first.distanceFromStart = -1;
+		queue.add(first);
+		RouteSegment slower = new RouteSegment(road, 251, 252);
+		slower.distanceFromStart = 5000;
+		queue.add(slower);
+		Assert.assertEquals(500, queue.size());
+		Assert.assertSame(first, queue.poll());
+		double prev = Double.NEGATIVE_INFINITY;
+		while (!queue.isEmpty()) {
+			RouteSegment s = queue.poll();
+			Assert.assertNotSame(slower, s);
+			double f = s.distanceFromStart + s.distanceToEnd;
+			Assert.assertTrue(f >= prev);
+			prev = f;
+		}
+		Assert.assertNull(queue.poll());
+	}
+
+	@Test
+	public void testVisitedSegments() {
+		Random r = new Random(2);
+		PrimitiveVisitedSegments visited = new PrimitiveVisitedSegments();
+		TLongObjectHashMap<RouteSegment> expected = new TLongObjectHashMap<RouteSegment>();
+		for (int i = 0; i < 5000; i++) {
+			RouteDataObject road = createRoad(r.nextInt(100), 10);
+			int start = r.nextInt(9);
+			RouteSegment s = new RouteSegment(road, start, start + 1);
+			long id = BinaryRoutePlanner.calculateRoutePointId(s);
+			Assert.assertSame(expected.put(id, s), visited.put(id, s));
+		}
+		Assert.assertEquals(expected.size(), visited.size());
+		for (long id : expected.keys()) {
+			Assert.assertSame(expected.get(id), visited.get(id));
+		}
+		Assert.assertFalse(visited.containsKey(-5));
+		// segment objects referenced by storage are measured too
+		Assert.assertTrue(visited.getMemoryUsage() > (long) visited.size() * RouteSegmentStore.ROUTE_SEGMENT_SIZE);
+	}
+
+	@Test
+	public void testIndexRemove() {
+		LongHandleIndex index = new LongHandleIndex();
+		for (int i = 0; i < 1000; i++) {
+			index.put(i * 31, i);
+		}
+		for (int i = 0; i < 1000; i += 2) {
+			index.remove(i * 31);
+		}
+		Assert.assertEquals(500, index.size());
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals(i % 2 == 0 ? -1 : i, index.get(i * 31));
+		}
+	}
+
+	@Test
+	public void testUpdateHeuristicToStart() {
+		final RoutingContext ctx = new TestRoadNetwork().createContext(TestRoadNetwork.createConfiguration());
+		checkUpdateHeuristicToStart(ctx, new PrimitiveSegmentsQueue(ctx.config.heuristicCoefficient));
+		checkUpdateHeuristicToStart(ctx, new ObjectSegmentsQueue(new Comparator<RouteSegment>() {
+			@Override
+			public int compare(RouteSegment o1, RouteSegment o2) {
+				return ctx.roadPriorityComparator(o1.distanceFromStart, o1.distanceToEnd, o2.distanceFromStart,
+						o2.distanceToEnd);
+			}
+		}));
+	}
+
+	private void checkUpdateHeuristicToStart(RoutingContext ctx, SegmentsQueue queue) {
+		Random r = new Random(3);
+		RouteDataObject road = createRoad(1, 1000);
+		for (int i = 0; i < road.pointsX.length; i++) {
+			road.pointsX[i] = TestRoadNetwork.BASE_X + r.nextInt(1 << 20);
+			road.pointsY[i] = TestRoadNetwork.BASE_Y + r.nextInt(1 << 20);
+		}
+		for (int i = 0; i < 500; i++) {
+			RouteSegment s = i % 50 == 0 ? new FinalRouteSegment(road, i, i + 1) : new RouteSegment(road, i, i + 1);
+			s.distanceFromStart = r.nextInt(100);
+			s.distanceToEnd = r.nextInt(100);
+			queue.add(s);
+		}
+		ctx.startX = TestRoadNetwork.BASE_X;
+		ctx.startY = TestRoadNetwork.BASE_Y;
+		queue.updateHeuristicToStart(ctx);
+		Assert.assertEquals(490, queue.size());
+		double prev = Double.NEGATIVE_INFINITY;
+		while (!queue.isEmpty()) {
+			RouteSegment s = queue.poll();
+			Assert.assertFalse(s instanceof FinalRouteSegment);
+			Assert.assertEquals(BinaryRoutePlanner.h(ctx, road.getPoint31XTile(s.getSegmentStart()),
+					road.getPoint31YTile(s.getSegmentStart()), ctx.startX, ctx.startY), s.distanceToEnd, 0);
+			double f = s.distanceFromStart + ctx.config.heuristicCoefficient * s.distanceToEnd;
+			Assert.assertTrue(f >= prev - 1e-3);
+			prev = f;
+		}
+	}
+}
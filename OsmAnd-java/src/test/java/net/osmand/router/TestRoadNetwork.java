@@ -0,0 +1,241 @@
+package net.osmand.router;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+
+/**
+ * Grid of roads kept in memory (instead of obf file) for routing tests
+ */
+public class TestRoadNetwork {
+
+	public static final int BASE_X = 1152000000;
+	public static final int BASE_Y = 700000000;
+	// ~200 m
+	public static final int CELL = 1 << 14;
+
+	private static final String ROUTING_XML = "<osmand_routing_config defaultProfile=\"car\">"
+			+ "<routingProfile name=\"car\" baseProfile=\"car\" restrictionsAware=\"true\" "
+			+ "minDefaultSpeed=\"18\" maxDefaultSpeed=\"90\">"
+			+ "<way attribute=\"access\"><select value=\"1\" t=\"highway\"/><select value=\"-1\"/></way>"
+			+ "<way attribute=\"oneway\" type=\"int\"><select value=\"1\" t=\"oneway\" v=\"yes\"/><select value=\"0\"/></way>"
+			+ "<way attribute=\"speed\" type=\"speed\"><select value=\"90\" t=\"highway\" v=\"primary\"/>"
+			+ "<select value=\"50\" t=\"highway\" v=\"secondary\"/><select value=\"30\" t=\"highway\" v=\"residential\"/></way>"
+			+ "<way attribute=\"priority\"><select value=\"1\"/></way>"
+			+ "</routingProfile></osmand_routing_config>";
+
+	private static final String[] HIGHWAYS = { "primary", "secondary", "residential" };
+
+	public final RouteRegion region = new RouteRegion();
+	public final List<RouteDataObject> roads = new ArrayList<RouteDataObject>();
+	private long nextId = 1;
+
+	public TestRoadNetwork() {
+		region.initRouteEncodingRule(0, "highway", "primary");
+		region.initRouteEncodingRule(1, "highway", "primary");
+		region.initRouteEncodingRule(2, "highway", "secondary");
+		region.initRouteEncodingRule(3, "highway", "residential");
+		region.initRouteEncodingRule(4, "oneway", "yes");
+	}
+
+	/**
+	 * Grid of size x size junctions, every road goes through 2 cells (so junctions are in the middle and at the
+	 * ends of roads). Every cell has a very short segment in the middle which is used for start and end points
+	 * (planners differ in how they count the segment of the point).
+	 */
+	public TestRoadNetwork(Random rnd, int size) {
+		this();
+		int[][] jitterX = new int[size][size];
+		int[][] jitterY = new int[size][size];
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				jitterX[i][j] = BASE_X + i * CELL + rnd.nextInt(CELL / 4);
+				jitterY[i][j] = BASE_Y + j * CELL + rnd.nextInt(CELL / 4);
+			}
+		}
+		for (int horizontal = 0; horizontal < 2; horizontal++) {
+			for (int line = 0; line < size; line++) {
+				for (int start = 0; start < size - 1; start += 2) {
+					int end = Math.min(start + 2, size - 1);
+					TIntArrayList xs = new TIntArrayList();
+					TIntArrayList ys = new TIntArrayList();
+					for (int c = start; c <= end; c++) {
+						int i = horizontal == 1 ? c : line;
+						int j = horizontal == 1 ? line : c;
+						xs.add(jitterX[i][j]);
+						ys.add(jitterY[i][j]);
+						if (c < end) {
+							int i2 = horizontal == 1 ? c + 1 : line;
+							int j2 = horizontal == 1 ? line : c + 1;
+							int mx = jitterX[i][j] + (jitterX[i2][j2] - jitterX[i][j]) / 2;
+							int my = jitterY[i][j] + (jitterY[i2][j2] - jitterY[i][j]) / 2;
+							xs.add(mx);
+							ys.add(my);
+							xs.add(mx + 1);
+							ys.add(my + 1);
+						}
+					}
+					boolean oneway = rnd.nextInt(6) == 0;
+					addRoad(HIGHWAYS[rnd.nextInt(HIGHWAYS.length)], oneway, xs.toArray(), ys.toArray());
+				}
+			}
+		}
+	}
+
+	public RouteDataObject addRoad(String highway, boolean oneway, int[] xs, int[] ys) {
+		RouteDataObject ro = new RouteDataObject(region);
+		ro.id = nextId++;
+		ro.types = oneway ? new int[] { region.searchRouteEncodingRule("highway", highway), 4 }
+				: new int[] { region.searchRouteEncodingRule("highway", highway) };
+		ro.pointsX = xs;
+		ro.pointsY = ys;
+		roads.add(ro);
+		return ro;
+	}
+
+	public static RoutingConfiguration createConfiguration() {
+		try {
+			RoutingConfiguration.Builder builder = RoutingConfiguration
+					.parseFromInputStream(new ByteArrayInputStream(ROUTING_XML.getBytes("UTF-8")));
+			return builder.build("car", new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT,
+					RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		} catch (XmlPullParserException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public TestRoutingContext createContext(RoutingConfiguration config) {
+		return new TestRoutingContext(config, roads);
+	}
+
+	/**
+	 * Start or end point at the end of short segment in the middle of cell of grid
+	 */
+	public RouteSegmentPoint createPoint(Random rnd) {
+		RouteDataObject ro = roads.get(rnd.nextInt(roads.size()));
+		return new RouteSegmentPoint(ro, 2 + 3 * rnd.nextInt(ro.getPointsLength() / 3), 0);
+	}
+
+	/**
+	 * Time of route calculated in the same way for route planners (start and end points are located at points of
+	 * roads, but first and last segments of route could start before and end after them)
+	 */
+	public static double getRouteTime(VehicleRouter router, List<RouteSegmentResult> route, RouteSegmentPoint start,
+			RouteSegmentPoint end) {
+		double time = 0;
+		for (int k = 0; k < route.size(); k++) {
+			RouteSegmentResult r = route.get(k);
+			int from = r.getStartPointIndex();
+			int to = r.getEndPointIndex();
+			int step = to > from ? 1 : -1;
+			if (k == 0 && isBetween(start.getSegmentStart(), from, to)) {
+				from = start.getSegmentStart();
+			}
+			if (k == route.size() - 1 && isBetween(end.getSegmentStart(), from, to)) {
+				to = end.getSegmentStart();
+			}
+			for (int i = from; i != to; i += step) {
+				time += RouteContractionHierarchy.segmentTime(router, r.getObject(), i, i + step);
+			}
+		}
+		return time;
+	}
+
+	private static boolean isBetween(int ind, int from, int to) {
+		return ind >= Math.min(from, to) && ind <= Math.max(from, to);
+	}
+
+	/**
+	 * Route segments are loaded from roads list instead of map files
+	 */
+	public static class TestRoutingContext extends RoutingContext {
+		private final TLongObjectHashMap<RouteSegment> segments = new TLongObjectHashMap<RouteSegment>();
+		private final List<RouteDataObject> roads;
+		public int loadedSegments;
+
+		/**
+		 * @param maps readers which are used by tests only for other data than roads (e.g. address)
+		 */
+		public TestRoutingContext(RoutingConfiguration config, List<RouteDataObject> roads, BinaryMapIndexReader... maps) {
+			super(config, null, maps, RouteCalculationMode.NORMAL);
+			this.roads = roads;
+			calculationProgress = new RouteCalculationProgress();
+			for (RouteDataObject ro : roads) {
+				for (int k = 0; k < ro.getPointsLength(); k++) {
+					long key = (((long) ro.getPoint31XTile(k)) << 31) + (long) ro.getPoint31YTile(k);
+					RouteSegment s = new RouteSegment(ro, k);
+					s.nextLoaded = segments.get(key);
+					segments.put(key, s);
+				}
+			}
+		}
+
+		@Override
+		RoutingContext copy(RoutingConfiguration config) {
+			return new TestRoutingContext(config, roads);
+		}
+
+		@Override
+		void resetDirectSearchSegments() {
+			for (RouteSegment s : segments.valueCollection()) {
+				while (s != null) {
+					s.resetDirectSearch();
+					s = s.nextLoaded;
+				}
+			}
+		}
+
+		@Override
+		public RouteSegment loadRouteSegment(int x31, int y31, long memoryLimit, boolean reverseWaySearch) {
+			loadedSegments++;
+			RouteSegment original = null;
+			RouteSegment segment = segments.get((((long) x31) << 31) + (long) y31);
+			while (segment != null) {
+				RouteSegment s = segment;
+				if (reverseWaySearch) {
+					if (s.reverseSearch == null) {
+						s.reverseSearch = new RouteSegment(s.road, s.getSegmentStart());
+						s.reverseSearch.reverseSearch = s;
+					}
+					s = s.reverseSearch;
+				}
+				s.next = original;
+				original = s;
+				segment = segment.nextLoaded;
+			}
+			return original;
+		}
+
+		@Override
+		public void loadTileData(int x31, int y31, int zoomAround, List<RouteDataObject> toFillIn,
+				boolean allowDuplications) {
+			// roads with points in tile of location or in neighbour tiles
+			int shift = 31 - zoomAround;
+			for (RouteDataObject ro : roads) {
+				for (int k = 0; k < ro.getPointsLength(); k++) {
+					if (Math.abs((ro.getPoint31XTile(k) >> shift) - (x31 >> shift)) <= 1
+							&& Math.abs((ro.getPoint31YTile(k) >> shift) - (y31 >> shift)) <= 1) {
+						toFillIn.add(ro);
+						break;
+					}
+				}
+			}
+		}
+	}
+}
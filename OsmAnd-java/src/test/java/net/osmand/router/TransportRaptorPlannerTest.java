@@ -0,0 +1,172 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.data.LatLon;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportStop;
+import net.osmand.router.TransportRoutePlanner.TransportRouteResultSegment;
+import net.osmand.router.TransportRoutePlanner.TransportRouteSegment;
+import net.osmand.util.MapUtils;
+
+public class TransportRaptorPlannerTest {
+
+	private static class TestConfiguration extends TransportRoutingConfiguration {
+
+		public TestConfiguration() {
+			super(null, new HashMap<String, String>());
+		}
+
+		@Override
+		public float getSpeedByRouteType(String routeType) {
+			return "tram".equals(routeType) ? 8 : 12;
+		}
+	}
+
+	// tiles are loaded from routes instead of map files
+	private static class TestContext extends TransportRoutingContext {
+		private final List<TransportRoute> routes;
+
+		public TestContext(TransportRoutingConfiguration cfg, List<TransportRoute> routes) {
+			super(cfg, null);
+			this.routes = routes;
+		}
+
+		@Override
+		protected List<TransportRouteSegment> loadTile(int x, int y) throws IOException {
+			List<TransportRouteSegment> res = new ArrayList<TransportRouteSegment>();
+			int pz = 31 - cfg.ZOOM_TO_LOAD_TILES;
+			for (TransportRoute r : routes) {
+				for (int i = 0; i < r.getForwardStops().size(); i++) {
+					TransportStop s = r.getForwardStops().get(i);
+					if (s.x31 >> pz == x && s.y31 >> pz == y) {
+						res.add(new TransportRouteSegment(r, i));
+					}
+				}
+			}
+			return res;
+		}
+	}
+
+	private static List<TransportRoute> createNetwork(Random rnd) {
+		List<TransportStop> stops = new ArrayList<TransportStop>();
+		for (int i = 0; i < 150; i++) {
+			TransportStop s = new TransportStop();
+			s.setId((long) i + 1);
+			s.setName("Stop " + i);
+			s.setLocation(52.45 + rnd.nextDouble() * 0.1, 13.3 + rnd.nextDouble() * 0.15);
+			s.x31 = MapUtils.get31TileNumberX(s.getLocation().getLongitude());
+			s.y31 = MapUtils.get31TileNumberY(s.getLocation().getLatitude());
+			stops.add(s);
+		}
+		List<TransportRoute> routes = new ArrayList<TransportRoute>();
+		for (int i = 0; i < 40; i++) {
+			List<TransportStop> forward = new ArrayList<TransportStop>();
+			TransportStop s = stops.get(rnd.nextInt(stops.size()));
+			int len = 8 + rnd.nextInt(12);
+			while (forward.size() < len) {
+				forward.add(s);
+				// next stop is one of nearest stops not yet in route
+				final LatLon l = s.getLocation();
+				List<TransportStop> candidates = new ArrayList<TransportStop>(stops);
+				candidates.removeAll(forward);
+				Collections.sort(candidates, new Comparator<TransportStop>() {
+					@Override
+					public int compare(TransportStop o1, TransportStop o2) {
+						return Double.compare(MapUtils.getDistance(l, o1.getLocation()),
+								MapUtils.getDistance(l, o2.getLocation()));
+					}
+				});
+				s = candidates.get(rnd.nextInt(4));
+			}
+			TransportRoute r = new TransportRoute();
+			r.setId((long) i * 2);
+			r.setName("Route " + i);
+			r.setRef("" + i);
+			r.setType(i % 3 == 0 ? "tram" : "bus");
+			r.setForwardStops(forward);
+			routes.add(r);
+		}
+		return routes;
+	}
+
+	@Test
+	public void testSameOrFasterThanDijkstra() throws IOException, InterruptedException {
+		Assert.assertTrue(compareWithDijkstra(false) > 10);
+	}
+
+	@Test
+	public void testTransferGraph() throws IOException, InterruptedException {
+		Assert.assertTrue(compareWithDijkstra(true) > 10);
+	}
+
+	private int compareWithDijkstra(boolean useGraph) throws IOException, InterruptedException {
+		Random rnd = new Random(11);
+		int found = 0;
+		for (int test = 0; test < 30; test++) {
+			List<TransportRoute> routes = createNetwork(rnd);
+			TransportRoutingConfiguration cfg = new TestConfiguration();
+			cfg.walkRadius = 1200;
+			cfg.walkChangeRadius = 400;
+			LatLon start = new LatLon(52.45 + rnd.nextDouble() * 0.1, 13.3 + rnd.nextDouble() * 0.15);
+			LatLon end = new LatLon(52.45 + rnd.nextDouble() * 0.1, 13.3 + rnd.nextDouble() * 0.15);
+			// straight line transfers
+			TransportTransferGraph graph = useGraph ? new TransportTransferGraph(cfg.walkChangeRadius, cfg.walkSpeed, null) : null;
+
+			TransportRoutingContext ctx = new TestContext(cfg, routes);
+			ctx.transferGraph = graph;
+			List<TransportRouteResult> dijkstra = new TransportRoutePlanner().buildRoute(ctx, start, end);
+			cfg.useRaptor = true;
+			ctx = new TestContext(cfg, routes);
+			ctx.transferGraph = graph;
+			List<TransportRouteResult> raptor = new TransportRoutePlanner().buildRoute(ctx, start, end);
+			if (dijkstra.isEmpty()) {
+				continue;
+			}
+			found++;
+			if (useGraph) {
+				// graph is reused by new context
+				int tiles = graph.getTilesCount();
+				ctx = new TestContext(cfg, routes);
+				ctx.transferGraph = graph;
+				List<TransportRouteResult> again = new TransportRoutePlanner().buildRoute(ctx, start, end);
+				Assert.assertEquals(tiles, graph.getTilesCount());
+				Assert.assertEquals(raptor.get(0).getRouteTime(), again.get(0).getRouteTime(), 1e-6);
+			}
+			Assert.assertFalse(raptor.isEmpty());
+			Assert.assertTrue(raptor.get(0).getRouteTime() <= dijkstra.get(0).getRouteTime() + 1e-3);
+			int changes = Integer.MAX_VALUE;
+			for (TransportRouteResult r : raptor) {
+				// sorted by time, faster journeys have more changes
+				Assert.assertTrue(r.getChanges() < changes);
+				changes = r.getChanges();
+				Assert.assertTrue(r.getChanges() <= cfg.maxNumberOfChanges);
+				double time = r.getWalkDist() / cfg.walkSpeed + r.getChanges() * (cfg.getChangeTime() + cfg.getBoardingTime());
+				TransportStop prevEnd = null;
+				for (TransportRouteResultSegment s : r.getSegments()) {
+					Assert.assertTrue(s.start < s.end);
+					Assert.assertEquals(s.getTravelDist(), s.travelDistApproximate, 1e-3);
+					if (prevEnd != null) {
+						Assert.assertEquals(MapUtils.getDistance(prevEnd.getLocation(), s.getStart().getLocation()),
+								s.walkDist, 1e-3);
+						Assert.assertTrue(s.walkDist <= cfg.walkChangeRadius);
+					}
+					time += s.travelTime;
+					prevEnd = s.getEnd();
+				}
+				Assert.assertEquals(MapUtils.getDistance(prevEnd.getLocation(), end), r.getFinishWalkDist(), 1e-3);
+				Assert.assertEquals(time, r.getRouteTime(), 1e-3);
+			}
+		}
+		return found;
+	}
+}
@@ -0,0 +1,216 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import gnu.trove.set.hash.TLongHashSet;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportStop;
+import net.osmand.router.TransportRoutePlanner.TransportRouteSegment;
+import net.osmand.router.TransportTransferGraph.StopTransfers;
+import net.osmand.router.TransportTransferGraph.WalkingContextFactory;
+import net.osmand.util.MapUtils;
+
+public class TransportTransferGraphTest {
+
+	private static final int GRAPH_RADIUS = 600;
+
+	// tiles are loaded from routes instead of map files
+	private static class TestContext extends TransportRoutingContext {
+		private final List<TransportRoute> routes;
+
+		public TestContext(TransportRoutingConfiguration cfg, List<TransportRoute> routes) {
+			super(cfg, null);
+			this.routes = routes;
+		}
+
+		@Override
+		protected List<TransportRouteSegment> loadTile(int x, int y) throws IOException {
+			List<TransportRouteSegment> res = new ArrayList<TransportRouteSegment>();
+			int pz = 31 - cfg.ZOOM_TO_LOAD_TILES;
+			for (TransportRoute r : routes) {
+				for (int i = 0; i < r.getForwardStops().size(); i++) {
+					TransportStop s = r.getForwardStops().get(i);
+					if (s.x31 >> pz == x && s.y31 >> pz == y) {
+						res.add(new TransportRouteSegment(r, i));
+					}
+				}
+			}
+			return res;
+		}
+	}
+
+	private TestRoadNetwork network;
+	private List<TransportStop> stops;
+	private List<TransportRoute> routes;
+	private TransportRoutingConfiguration cfg;
+
+	@Before
+	public void setUp() {
+		network = new TestRoadNetwork(new Random(5), 11);
+		// stops in the middle of roads, routes of 5 stops
+		stops = new ArrayList<TransportStop>();
+		routes = new ArrayList<TransportRoute>();
+		List<TransportStop> forward = new ArrayList<TransportStop>();
+		for (RouteDataObject ro : network.roads) {
+			TransportStop s = new TransportStop();
+			s.setId((long) stops.size() + 1);
+			s.setName("Stop " + stops.size());
+			s.x31 = ro.getPoint31XTile(1);
+			s.y31 = ro.getPoint31YTile(1);
+			s.setLocation(MapUtils.get31LatitudeY(s.y31), MapUtils.get31LongitudeX(s.x31));
+			stops.add(s);
+			forward.add(s);
+			if (forward.size() == 5) {
+				TransportRoute r = new TransportRoute();
+				r.setId((long) routes.size() + 1);
+				r.setName("Route " + routes.size());
+				r.setType("bus");
+				r.setForwardStops(forward);
+				routes.add(r);
+				forward = new ArrayList<TransportStop>();
+			}
+		}
+		cfg = new TransportRoutingConfiguration(null, new HashMap<String, String>());
+		// walk radius of config is smaller than radius of graph
+		cfg.walkRadius = 200;
+		cfg.walkChangeRadius = 100;
+	}
+
+	private List<TransportStop> getRouteStops() {
+		List<TransportStop> res = new ArrayList<TransportStop>();
+		for (TransportRoute r : routes) {
+			res.addAll(r.getForwardStops());
+		}
+		return res;
+	}
+
+	private long getTileId(TransportStop s) {
+		int pz = 31 - cfg.ZOOM_TO_LOAD_TILES;
+		return (((long) (s.x31 >> pz)) << 31) + (s.y31 >> pz);
+	}
+
+	@Test
+	public void testTransfersWithinGraphRadius() throws IOException, InterruptedException {
+		TransportTransferGraph graph = new TransportTransferGraph(GRAPH_RADIUS, cfg.walkSpeed, null);
+		TransportRoutingContext ctx = new TestContext(cfg, routes);
+		List<TransportStop> routeStops = getRouteStops();
+		for (TransportStop s : routeStops) {
+			StopTransfers transfers = graph.getTransfers(ctx, s);
+			Assert.assertEquals(s.getId().longValue(), transfers.getStopId());
+			TLongHashSet ids = new TLongHashSet();
+			for (int i = 0; i < transfers.size(); i++) {
+				ids.add(transfers.getStopId(i));
+				if (transfers.getStopId(i) == s.getId()) {
+					Assert.assertEquals(0, transfers.getWalkDist(i), 1e-6);
+				} else {
+					// straight line transfers without walking contexts
+					Assert.assertEquals(transfers.getWalkDist(i) / cfg.walkSpeed, transfers.getWalkTime(i), 1e-3);
+				}
+			}
+			TLongHashSet expected = new TLongHashSet();
+			for (TransportStop t : routeStops) {
+				if (MapUtils.getDistance(s.getLocation(), t.getLocation()) <= GRAPH_RADIUS) {
+					expected.add(t.getId());
+				}
+			}
+			Assert.assertEquals(expected, ids);
+			Assert.assertTrue(ids.size() > 5);
+		}
+	}
+
+	@Test
+	public void testLeastRecentlyUsedTilesEvicted() throws IOException, InterruptedException {
+		TransportTransferGraph graph = new TransportTransferGraph(GRAPH_RADIUS, cfg.walkSpeed, null, 2);
+		TransportRoutingContext ctx = new TestContext(cfg, routes);
+		List<TransportStop> tileStops = new ArrayList<TransportStop>();
+		TLongHashSet tiles = new TLongHashSet();
+		for (TransportStop s : getRouteStops()) {
+			if (tiles.add(getTileId(s))) {
+				tileStops.add(s);
+			}
+		}
+		Assert.assertTrue(tileStops.size() >= 3);
+		StopTransfers first = graph.getTransfers(ctx, tileStops.get(0));
+		StopTransfers second = graph.getTransfers(ctx, tileStops.get(1));
+		Assert.assertSame(first, graph.getTransfers(ctx, tileStops.get(0)));
+		Assert.assertEquals(2, graph.getTilesCount());
+		// second tile is least recently used one
+		graph.getTransfers(ctx, tileStops.get(2));
+		Assert.assertEquals(2, graph.getTilesCount());
+		Assert.assertSame(first, graph.getTransfers(ctx, tileStops.get(0)));
+		Assert.assertNotSame(second, graph.getTransfers(ctx, tileStops.get(1)));
+	}
+
+	@Test
+	public void testWalkingContextsReused() throws IOException, InterruptedException {
+		final RoutingConfiguration config = TestRoadNetwork.createConfiguration();
+		final int[] created = new int[1];
+		TransportTransferGraph graph = new TransportTransferGraph(GRAPH_RADIUS, cfg.walkSpeed,
+				new WalkingContextFactory() {
+					@Override
+					public RoutingContext createWalkingContext() {
+						created[0]++;
+						return network.createContext(config);
+					}
+				});
+		TransportRoutingContext ctx = new TestContext(cfg, routes);
+		int byRoads = 0;
+		for (TransportStop s : getRouteStops()) {
+			StopTransfers transfers = graph.getTransfers(ctx, s);
+			for (int i = 0; i < transfers.size(); i++) {
+				if (transfers.getStopId(i) == s.getId()) {
+					continue;
+				}
+				double straight = MapUtils.getDistance(s.getLocation(), stops.get((int) transfers.getStopId(i) - 1)
+						.getLocation());
+				Assert.assertTrue(transfers.getWalkDist(i) > straight - 1);
+				if (transfers.getWalkTime(i) != (float) (transfers.getWalkDist(i) / cfg.walkSpeed)) {
+					byRoads++;
+				}
+			}
+		}
+		Assert.assertTrue(graph.getTilesCount() > 1);
+		Assert.assertTrue(byRoads > 0);
+		// tiles are built one by one, so one pooled context is used by all builds
+		Assert.assertEquals(1, created[0]);
+	}
+
+	@Test
+	public void testCancelledWalkingContext() throws IOException, InterruptedException {
+		final RoutingConfiguration config = TestRoadNetwork.createConfiguration();
+		final List<RoutingContext> created = new ArrayList<RoutingContext>();
+		TransportTransferGraph graph = new TransportTransferGraph(GRAPH_RADIUS, cfg.walkSpeed,
+				new WalkingContextFactory() {
+					@Override
+					public RoutingContext createWalkingContext() {
+						RoutingContext walkingContext = network.createContext(config);
+						// first context is cancelled
+						walkingContext.calculationProgress.isCancelled = created.isEmpty();
+						created.add(walkingContext);
+						return walkingContext;
+					}
+				});
+		TransportRoutingContext ctx = new TestContext(cfg, routes);
+		TransportStop stop = getRouteStops().get(0);
+		try {
+			graph.getTransfers(ctx, stop);
+			Assert.fail();
+		} catch (InterruptedException e) {
+			// transfers are not built by straight lines
+			Assert.assertEquals(0, graph.getTilesCount());
+		}
+		// cancelled context is not returned to pool
+		Assert.assertNotNull(graph.getTransfers(ctx, stop));
+		Assert.assertEquals(2, created.size());
+		Assert.assertEquals(1, graph.getTilesCount());
+	}
+}
@@ -0,0 +1,108 @@
+package net.osmand.search.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.TestObfWriter;
+import net.osmand.binary.TestObfWriter.TestStreet;
+import net.osmand.search.SearchUICore.SearchResultMatcher;
+import net.osmand.search.core.SearchCoreFactory.SearchAddressByNameAPI;
+
+public class SearchAddressRegionsTest {
+
+	private static final int REGIONS = 8;
+	private static final int BASE = 1 << 30;
+	private static final int CELL = 1 << 14;
+
+	private final List<File> files = new ArrayList<File>();
+	private final List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() throws IOException {
+		long id = 1;
+		for (int i = 0; i < REGIONS; i++) {
+			List<TestStreet> streets = new ArrayList<TestStreet>();
+			// regions have different number of matching streets
+			for (int k = 0; k < 3 + i % 4 * 5; k++) {
+				String name = (k % 3 == 2 ? "Elm Street " : "Oakland Street ") + i + "_" + k;
+				streets.add(new TestStreet(id++, name, BASE + i * 8 * CELL + k * CELL, BASE + k * CELL));
+			}
+			TestObfWriter writer = new TestObfWriter();
+			writer.addAddressIndex("region" + i, 1000 + i, "Town " + i, BASE + i * 8 * CELL, BASE, streets);
+			File file = writer.write(File.createTempFile("address", ".obf"));
+			files.add(file);
+			readers.add(new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file));
+		}
+		executor = Executors.newFixedThreadPool(3);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		executor.shutdown();
+		for (BinaryMapIndexReader r : readers) {
+			r.close();
+		}
+		for (File f : files) {
+			f.delete();
+		}
+	}
+
+	private List<String> search(boolean concurrently, final int cancelAfterResults) throws IOException {
+		SearchSettings settings = new SearchSettings(readers);
+		SearchPhrase phrase = SearchPhrase.emptyPhrase(settings).generateNewPhrase("oakland", settings);
+		final List<String> published = new ArrayList<String>();
+		ResultMatcher<SearchResult> matcher = new ResultMatcher<SearchResult>() {
+			@Override
+			public boolean publish(SearchResult object) {
+				published.add(object.objectType + " " + object.localeName + " " + readers.indexOf(object.file));
+				return true;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return published.size() >= cancelAfterResults;
+			}
+		};
+		SearchResultMatcher resultMatcher = new SearchResultMatcher(matcher, phrase, 1, new AtomicInteger(1), -1);
+		if (concurrently) {
+			resultMatcher.setRegionsSearchExecutor(executor, 3);
+		}
+		new SearchAddressByNameAPI(null, null).search(phrase, resultMatcher);
+		return published;
+	}
+
+	@Test
+	public void testSameResultsAsSequentialSearch() throws IOException {
+		List<String> expected = search(false, Integer.MAX_VALUE);
+		// 58 streets and finished search of every region
+		Assert.assertEquals(58 + REGIONS, expected.size());
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals(expected, search(true, Integer.MAX_VALUE));
+		}
+	}
+
+	@Test
+	public void testCancelledSearch() throws IOException {
+		List<String> expected = search(false, 20);
+		Assert.assertTrue(expected.size() >= 20 && expected.size() < 58 + REGIONS);
+		for (int i = 0; i < 3; i++) {
+			// readers are read by next search only after workers of cancelled one are finished
+			Assert.assertEquals(expected, search(true, 20));
+			Assert.assertEquals(search(false, Integer.MAX_VALUE), search(true, Integer.MAX_VALUE));
+		}
+	}
+}
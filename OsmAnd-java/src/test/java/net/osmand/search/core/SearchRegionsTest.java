@@ -0,0 +1,123 @@
+package net.osmand.search.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.search.SearchUICore.SearchResultMatcher;
+import net.osmand.search.core.SearchCoreFactory.RegionResults;
+import net.osmand.search.core.SearchCoreFactory.RegionSearch;
+import net.osmand.search.core.SearchCoreFactory.SearchBaseAPI;
+
+public class SearchRegionsTest {
+
+	private static final int REGIONS = 12;
+
+	private File file;
+	private final List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("regions", ".obf");
+		for (int i = 0; i < REGIONS; i++) {
+			// regions are not read by test search
+			readers.add(new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file, false));
+		}
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		executor.shutdown();
+		for (BinaryMapIndexReader r : readers) {
+			r.close();
+		}
+		file.delete();
+	}
+
+	private List<String> search(boolean concurrently, final int cancelAfterResults) throws IOException {
+		final Thread searchThread = Thread.currentThread();
+		final AtomicBoolean accessFromWorker = new AtomicBoolean();
+		final AtomicInteger searchingRegions = new AtomicInteger();
+		final List<String> published = new ArrayList<String>();
+		ResultMatcher<SearchResult> matcher = new ResultMatcher<SearchResult>() {
+			@Override
+			public boolean publish(SearchResult object) {
+				accessFromWorker.compareAndSet(false, Thread.currentThread() != searchThread);
+				return true;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				accessFromWorker.compareAndSet(false, Thread.currentThread() != searchThread);
+				return published.size() >= cancelAfterResults;
+			}
+		};
+		SearchPhrase phrase = SearchPhrase.emptyPhrase();
+		SearchResultMatcher resultMatcher = new SearchResultMatcher(matcher, phrase, 1, new AtomicInteger(1), -1);
+		if (concurrently) {
+			resultMatcher.setRegionsSearchExecutor(executor, 4);
+		}
+		SearchBaseAPI api = new SearchBaseAPI(ObjectType.POI) {
+			@Override
+			public int getSearchPriority(SearchPhrase p) {
+				return 1;
+			}
+		};
+		api.searchRegions(phrase, resultMatcher, readers.iterator(), new RegionSearch<String>() {
+
+			@Override
+			public void searchRegion(BinaryMapIndexReader r, RegionResults<String> res) throws IOException {
+				searchingRegions.incrementAndGet();
+				int ind = readers.indexOf(r);
+				try {
+					// later regions are found earlier
+					Thread.sleep((REGIONS - ind) % 4 * 10);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				for (int k = 0; k <= ind % 3 && !res.isCancelled(); k++) {
+					res.add(ind + "_" + k);
+				}
+				searchingRegions.decrementAndGet();
+			}
+
+			@Override
+			public void publishRegion(RegionResults<String> res) {
+				published.addAll(res.results);
+			}
+		});
+		Assert.assertFalse(accessFromWorker.get());
+		// readers are not read by workers of finished search
+		Assert.assertEquals(0, searchingRegions.get());
+		return published;
+	}
+
+	@Test
+	public void testSameResultsAsSequentialSearch() throws IOException {
+		List<String> expected = search(false, Integer.MAX_VALUE);
+		Assert.assertEquals(REGIONS * 2, expected.size());
+		Assert.assertEquals(expected, search(true, Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void testCancelledSearch() throws IOException {
+		List<String> expected = search(false, 7);
+		Assert.assertTrue(expected.size() >= 7 && expected.size() < REGIONS * 2);
+		Assert.assertEquals(expected, search(true, 7));
+	}
+}